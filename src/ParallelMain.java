@@ -0,0 +1,162 @@
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.acceptance.PagingFacade;
+import br.ufal.ic.p2.jackut.acceptance.QueueFacade;
+import br.ufal.ic.p2.jackut.acceptance.RecoveryFacade;
+import br.ufal.ic.p2.jackut.acceptance.SessionFacade;
+import br.ufal.ic.p2.jackut.acceptance.WalFacade;
+import easyaccept.EasyAcceptFacade;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p> Runs the acceptance scripts of {@code tests} concurrently, one user story per thread. </p>
+ *
+ * <p> Each story gets its own {@code Facade} and data directory, under a temporary directory erased at the
+ * end, and runs its scripts in order ({@code usN_1} then {@code usN_2}), so the second one still finds the
+ * data persisted by the first. The results are printed in the order of the stories, followed by the wall-clock
+ * time and the time the stories would take one after the other. </p>
+ *
+ * <p> The scripts of the internal components ({@code walN_M} and the like) run the same way, against the
+ * facade of their prefix in {@code br.ufal.ic.p2.jackut.acceptance}. </p>
+ *
+ * <p> Usage: {@code java ParallelMain [threads]}, with as many threads as processors by default. </p>
+ */
+public class ParallelMain {
+    private static final Pattern SCRIPT = Pattern.compile("([a-z]+)(\\d+)_(\\d+)\\.txt");
+
+    private static final Map<String, Function<File, Object>> FACHADAS = Map.of(
+            "us", Facade::new,
+            "wal", WalFacade::new,
+            "fila", QueueFacade::new,
+            "pagina", PagingFacade::new,
+            "recuperacao", RecoveryFacade::new,
+            "remocao", Facade::new,
+            "sessao", SessionFacade::new);
+
+    private record Resultado(String relatorio, int aprovados, int reprovados, long nanos) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        Map<String, List<String>> historias = new TreeMap<>(ParallelMain::compararHistorias);
+        File[] scripts = new File("tests").listFiles((pasta, nome) -> {
+            Matcher partes = SCRIPT.matcher(nome);
+            return partes.matches() && FACHADAS.containsKey(partes.group(1));
+        });
+        if (scripts != null) {
+            for (File script : scripts) {
+                Matcher partes = SCRIPT.matcher(script.getName());
+                partes.matches();
+                historias.computeIfAbsent(partes.group(1) + partes.group(2), historia -> new ArrayList<>())
+                        .add(script.getPath());
+            }
+        }
+        for (List<String> arquivos : historias.values()) {
+            arquivos.sort(Comparator.comparingInt(ParallelMain::ordem));
+        }
+
+        Path raiz = Files.createTempDirectory("jackut");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        long inicio = System.nanoTime();
+        try {
+            List<Future<Resultado>> resultados = new ArrayList<>();
+            for (Map.Entry<String, List<String>> historia : historias.entrySet()) {
+                File pasta = raiz.resolve(historia.getKey()).toFile();
+                resultados.add(executor.submit(() -> executar(pasta, historia.getValue())));
+            }
+
+            int aprovados = 0;
+            int reprovados = 0;
+            long sequencial = 0;
+            for (Future<Resultado> futuro : resultados) {
+                Resultado resultado = futuro.get();
+                System.out.print(resultado.relatorio());
+                aprovados += resultado.aprovados();
+                reprovados += resultado.reprovados();
+                sequencial += resultado.nanos();
+            }
+
+            System.out.printf("%d histórias, %d testes aprovados, %d reprovados%n", historias.size(),
+                    aprovados, reprovados);
+            System.out.printf("Tempo: %.2f s com %d threads (%.2f s em sequência)%n",
+                    (System.nanoTime() - inicio) / 1e9, threads, sequencial / 1e9);
+        } finally {
+            executor.shutdown();
+            apagar(raiz);
+        }
+    }
+
+    /**
+     * <p> Runs the scripts of a story in order, each with a new facade over the same directory. </p>
+     */
+    private static Resultado executar(File pasta, List<String> scripts) {
+        StringBuilder relatorio = new StringBuilder();
+        int aprovados = 0;
+        int reprovados = 0;
+        long inicio = System.nanoTime();
+
+        for (String script : scripts) {
+            Object fachada = FACHADAS.get(prefixo(script)).apply(pasta);
+            EasyAcceptFacade easyAccept = new EasyAcceptFacade(fachada, List.of(script));
+            easyAccept.executeTests();
+
+            relatorio.append(easyAccept.getScriptSummarizedResults(script).strip()).append("\n");
+            if (easyAccept.getTotalNumberOfNotPassedTests() > 0) {
+                relatorio.append(easyAccept.getScriptFailures(script).stripTrailing()).append("\n");
+            }
+            aprovados += easyAccept.getTotalNumberOfPassedTests();
+            reprovados += easyAccept.getTotalNumberOfNotPassedTests();
+        }
+
+        return new Resultado(relatorio.toString(), aprovados, reprovados, System.nanoTime() - inicio);
+    }
+
+    private static int ordem(String script) {
+        Matcher partes = SCRIPT.matcher(new File(script).getName());
+        partes.matches();
+        return Integer.parseInt(partes.group(3));
+    }
+
+    private static String prefixo(String script) {
+        Matcher partes = SCRIPT.matcher(new File(script).getName());
+        partes.matches();
+        return partes.group(1);
+    }
+
+    /**
+     * <p> Orders the user stories first, then the components, each by number. </p>
+     */
+    private static int compararHistorias(String a, String b) {
+        String prefixoA = a.replaceAll("\\d", "");
+        String prefixoB = b.replaceAll("\\d", "");
+        if (!prefixoA.equals(prefixoB)) {
+            return prefixoA.equals("us") ? -1 : prefixoB.equals("us") ? 1 : prefixoA.compareTo(prefixoB);
+        }
+        return Integer.compare(Integer.parseInt(a.substring(prefixoA.length())),
+                Integer.parseInt(b.substring(prefixoB.length())));
+    }
+
+    private static void apagar(Path raiz) {
+        try (Stream<Path> caminhos = Files.walk(raiz)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
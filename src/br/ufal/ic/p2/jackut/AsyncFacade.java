@@ -0,0 +1,559 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p> Asynchronous variant of the {@code Facade}: every operation runs on an executor and returns a
+ * {@code CompletableFuture}, completed with the value of the operation or exceptionally with the exception it
+ * threw. </p>
+ *
+ * <p> The operations of a user run in the order they were called: each operation that takes a session id is
+ * queued behind the previous ones of the user of the session, as {@code criarUsuario} and {@code abrirSessao}
+ * are behind those of their login, so two recados sent by the same user arrive in order even if the caller
+ * does not wait for the first. Users are spread over {@code FILAS} queues, so the operations of two users
+ * only wait for each other when they fall in the same queue. The queries that take a login instead of a
+ * session are not ordered and run as soon as the executor picks them. </p>
+ *
+ * <p> {@code zerarSistema} and {@code encerrarSistema} wait for every operation queued before them, and the
+ * operations called afterwards wait for them. </p>
+ *
+ * @see Facade
+ */
+public class AsyncFacade {
+    private static final int FILAS = 1024;
+
+    private final Facade facade;
+    private final Executor executor;
+    private final boolean executorProprio;
+    private final AtomicReferenceArray<CompletableFuture<?>> filas = new AtomicReferenceArray<>(FILAS);
+
+    /**
+     * <p> Constructs a new {@code AsyncFacade} that runs the operations of a facade on virtual threads, one per
+     * operation. </p>
+     *
+     * @param facade Facade whose operations are run
+     */
+    public AsyncFacade(Facade facade) {
+        this(facade, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    /**
+     * <p> Constructs a new {@code AsyncFacade} that runs the operations of a facade on the given executor, which
+     * is left open by {@code encerrarSistema}. </p>
+     *
+     * @param facade   Facade whose operations are run
+     * @param executor Executor of the operations
+     */
+    public AsyncFacade(Facade facade, Executor executor) {
+        this(facade, executor, false);
+    }
+
+    private AsyncFacade(Facade facade, Executor executor, boolean executorProprio) {
+        this.facade = facade;
+        this.executor = executor;
+        this.executorProprio = executorProprio;
+        for (int i = 0; i < FILAS; i++) {
+            this.filas.set(i, CompletableFuture.completedFuture(null));
+        }
+    }
+
+    /**
+     * <p> Returns the facade whose operations are run, for the calls that must be synchronous. </p>
+     *
+     * @return Synchronous facade
+     */
+    public Facade getFacade() {
+        return this.facade;
+    }
+
+    /**
+     * <p> Asynchronous {@code zerarSistema}, run once every operation queued before has finished. </p>
+     *
+     * @see Facade#zerarSistema()
+     */
+    public CompletableFuture<Void> zerarSistema() {
+        return this.depoisDeTodas(() -> {
+            this.facade.zerarSistema();
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code criarUsuario}, queued behind the previous operations of the login. </p>
+     *
+     * @see Facade#criarUsuario(String,String,String)
+     */
+    public CompletableFuture<Void> criarUsuario(String login, String senha, String nome) {
+        return this.emOrdem(login, () -> {
+            this.facade.criarUsuario(login, senha, nome);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code abrirSessao}, queued behind the previous operations of the login. </p>
+     *
+     * @see Facade#abrirSessao(String,String)
+     */
+    public CompletableFuture<String> abrirSessao(String login, String senha) {
+        return this.emOrdem(login, () -> this.facade.abrirSessao(login, senha));
+    }
+
+    /**
+     * <p> Asynchronous {@code encerrarSessao}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#encerrarSessao(String)
+     */
+    public CompletableFuture<Void> encerrarSessao(String id) {
+        return this.daSessao(id, () -> {
+            this.facade.encerrarSessao(id);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code getAtributoUsuario}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getAtributoUsuario(String,String)
+     */
+    public CompletableFuture<String> getAtributoUsuario(String login, String atributo) {
+        return this.agora(() -> this.facade.getAtributoUsuario(login, atributo));
+    }
+
+    /**
+     * <p> Asynchronous {@code getAtributosUsuario}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getAtributosUsuario(String,List)
+     */
+    public CompletableFuture<List<BatchResult>> getAtributosUsuario(String login, List<String> atributos) {
+        return this.agora(() -> this.facade.getAtributosUsuario(login, atributos));
+    }
+
+    /**
+     * <p> Asynchronous {@code editarPerfil}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#editarPerfil(String,String,String)
+     */
+    public CompletableFuture<Void> editarPerfil(String id, String atributo, String valor) {
+        return this.daSessao(id, () -> {
+            this.facade.editarPerfil(id, atributo, valor);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code editarPerfil}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#editarPerfil(String,Map)
+     */
+    public CompletableFuture<Void> editarPerfil(String id, Map<String, String> atributos) {
+        return this.daSessao(id, () -> {
+            this.facade.editarPerfil(id, atributos);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code adicionarAmigo}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#adicionarAmigo(String,String)
+     */
+    public CompletableFuture<Void> adicionarAmigo(String id, String amigo) {
+        return this.daSessao(id, () -> {
+            this.facade.adicionarAmigo(id, amigo);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code ehAmigo}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#ehAmigo(String,String)
+     */
+    public CompletableFuture<Boolean> ehAmigo(String login, String amigo) {
+        return this.agora(() -> this.facade.ehAmigo(login, amigo));
+    }
+
+    /**
+     * <p> Asynchronous {@code verificarRelacoes}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#verificarRelacoes(String,String,List)
+     */
+    public CompletableFuture<List<BatchResult>> verificarRelacoes(String login, String relacao, List<String> outros) {
+        return this.agora(() -> this.facade.verificarRelacoes(login, relacao, outros));
+    }
+
+    /**
+     * <p> Asynchronous {@code getAmigos}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getAmigos(String)
+     */
+    public CompletableFuture<String> getAmigos(String login) {
+        return this.agora(() -> this.facade.getAmigos(login));
+    }
+
+    /**
+     * <p> Asynchronous {@code getAmigosPagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getAmigosPagina(String,String,int)
+     */
+    public CompletableFuture<Page<String>> getAmigosPagina(String login, String token, int limite) {
+        return this.agora(() -> this.facade.getAmigosPagina(login, token, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code getAmigosPagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getAmigosPagina(String,int,int)
+     */
+    public CompletableFuture<Page<String>> getAmigosPagina(String login, int deslocamento, int limite) {
+        return this.agora(() -> this.facade.getAmigosPagina(login, deslocamento, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code enviarRecado}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#enviarRecado(String,String,String)
+     */
+    public CompletableFuture<Void> enviarRecado(String id, String destinatario, String recado) {
+        return this.daSessao(id, () -> {
+            this.facade.enviarRecado(id, destinatario, recado);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code lerRecado}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#lerRecado(String)
+     */
+    public CompletableFuture<String> lerRecado(String id) {
+        return this.daSessao(id, () -> this.facade.lerRecado(id));
+    }
+
+    /**
+     * <p> Asynchronous {@code lerRecados}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#lerRecados(String,int)
+     */
+    public CompletableFuture<List<String>> lerRecados(String id, int quantidade) {
+        return this.daSessao(id, () -> this.facade.lerRecados(id, quantidade));
+    }
+
+    /**
+     * <p> Asynchronous {@code criarComunidade}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#criarComunidade(String,String,String)
+     */
+    public CompletableFuture<Void> criarComunidade(String id, String nome, String descricao) {
+        return this.daSessao(id, () -> {
+            this.facade.criarComunidade(id, nome, descricao);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code getDescricaoComunidade}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getDescricaoComunidade(String)
+     */
+    public CompletableFuture<String> getDescricaoComunidade(String nome) {
+        return this.agora(() -> this.facade.getDescricaoComunidade(nome));
+    }
+
+    /**
+     * <p> Asynchronous {@code getDonoComunidade}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getDonoComunidade(String)
+     */
+    public CompletableFuture<String> getDonoComunidade(String nome) {
+        return this.agora(() -> this.facade.getDonoComunidade(nome));
+    }
+
+    /**
+     * <p> Asynchronous {@code getMembrosComunidade}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getMembrosComunidade(String)
+     */
+    public CompletableFuture<String> getMembrosComunidade(String nome) {
+        return this.agora(() -> this.facade.getMembrosComunidade(nome));
+    }
+
+    /**
+     * <p> Asynchronous {@code getMembrosComunidadePagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getMembrosComunidadePagina(String,String,int)
+     */
+    public CompletableFuture<Page<String>> getMembrosComunidadePagina(String nome, String token, int limite) {
+        return this.agora(() -> this.facade.getMembrosComunidadePagina(nome, token, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code getMembrosComunidadePagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getMembrosComunidadePagina(String,int,int)
+     */
+    public CompletableFuture<Page<String>> getMembrosComunidadePagina(String nome, int deslocamento, int limite) {
+        return this.agora(() -> this.facade.getMembrosComunidadePagina(nome, deslocamento, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code getComunidades}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getComunidades(String)
+     */
+    public CompletableFuture<String> getComunidades(String login) {
+        return this.agora(() -> this.facade.getComunidades(login));
+    }
+
+    /**
+     * <p> Asynchronous {@code sugerirAmigos}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#sugerirAmigos(String,int)
+     */
+    public CompletableFuture<String> sugerirAmigos(String login, int k) {
+        return this.agora(() -> this.facade.sugerirAmigos(login, k));
+    }
+
+    /**
+     * <p> Asynchronous {@code adicionarComunidade}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#adicionarComunidade(String,String)
+     */
+    public CompletableFuture<Void> adicionarComunidade(String id, String nome) {
+        return this.daSessao(id, () -> {
+            this.facade.adicionarComunidade(id, nome);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code lerMensagem}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#lerMensagem(String)
+     */
+    public CompletableFuture<String> lerMensagem(String id) {
+        return this.daSessao(id, () -> this.facade.lerMensagem(id));
+    }
+
+    /**
+     * <p> Asynchronous {@code lerMensagens}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#lerMensagens(String,int)
+     */
+    public CompletableFuture<List<String>> lerMensagens(String id, int quantidade) {
+        return this.daSessao(id, () -> this.facade.lerMensagens(id, quantidade));
+    }
+
+    /**
+     * <p> Asynchronous {@code enviarMensagem}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#enviarMensagem(String,String,String)
+     */
+    public CompletableFuture<Void> enviarMensagem(String id, String comunidade, String mensagem) {
+        return this.daSessao(id, () -> {
+            this.facade.enviarMensagem(id, comunidade, mensagem);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code ehFa}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#ehFa(String,String)
+     */
+    public CompletableFuture<Boolean> ehFa(String login, String idolo) {
+        return this.agora(() -> this.facade.ehFa(login, idolo));
+    }
+
+    /**
+     * <p> Asynchronous {@code adicionarIdolo}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#adicionarIdolo(String,String)
+     */
+    public CompletableFuture<Void> adicionarIdolo(String id, String idolo) {
+        return this.daSessao(id, () -> {
+            this.facade.adicionarIdolo(id, idolo);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code getFas}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getFas(String)
+     */
+    public CompletableFuture<String> getFas(String login) {
+        return this.agora(() -> this.facade.getFas(login));
+    }
+
+    /**
+     * <p> Asynchronous {@code getFasPagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getFasPagina(String,String,int)
+     */
+    public CompletableFuture<Page<String>> getFasPagina(String login, String token, int limite) {
+        return this.agora(() -> this.facade.getFasPagina(login, token, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code getFasPagina}, run as soon as the executor picks it. </p>
+     *
+     * @see Facade#getFasPagina(String,int,int)
+     */
+    public CompletableFuture<Page<String>> getFasPagina(String login, int deslocamento, int limite) {
+        return this.agora(() -> this.facade.getFasPagina(login, deslocamento, limite));
+    }
+
+    /**
+     * <p> Asynchronous {@code ehPaquera}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#ehPaquera(String,String)
+     */
+    public CompletableFuture<Boolean> ehPaquera(String id, String paquera) {
+        return this.daSessao(id, () -> this.facade.ehPaquera(id, paquera));
+    }
+
+    /**
+     * <p> Asynchronous {@code adicionarPaquera}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#adicionarPaquera(String,String)
+     */
+    public CompletableFuture<Void> adicionarPaquera(String id, String paquera) {
+        return this.daSessao(id, () -> {
+            this.facade.adicionarPaquera(id, paquera);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code getPaqueras}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#getPaqueras(String)
+     */
+    public CompletableFuture<String> getPaqueras(String id) {
+        return this.daSessao(id, () -> this.facade.getPaqueras(id));
+    }
+
+    /**
+     * <p> Asynchronous {@code adicionarInimigo}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#adicionarInimigo(String,String)
+     */
+    public CompletableFuture<Void> adicionarInimigo(String id, String inimigo) {
+        return this.daSessao(id, () -> {
+            this.facade.adicionarInimigo(id, inimigo);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code removerUsuario}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#removerUsuario(String)
+     */
+    public CompletableFuture<Void> removerUsuario(String id) {
+        return this.daSessao(id, () -> {
+            this.facade.removerUsuario(id);
+            return null;
+        });
+    }
+
+    /**
+     * <p> Asynchronous {@code executarLote}, queued behind the operations of the user of the session. </p>
+     *
+     * @see Facade#executarLote(String,List)
+     */
+    public CompletableFuture<List<BatchResult>> executarLote(String id, List<BatchCommand> comandos) {
+        return this.daSessao(id, () -> this.facade.executarLote(id, comandos));
+    }
+
+    /**
+     * <p> Closes the system once every operation queued before has finished, and then the executor, if it was
+     * created by this facade. </p>
+     *
+     * @return Future completed when the system is closed
+     */
+    public CompletableFuture<Void> encerrarSistema() {
+        CompletableFuture<Void> encerramento = this.depoisDeTodas(() -> {
+            this.facade.encerrarSistema();
+            return null;
+        });
+
+        if (this.executorProprio) {
+            return encerramento.whenComplete((valor, erro) -> ((ExecutorService) this.executor).shutdown());
+        }
+        return encerramento;
+    }
+
+    /**
+     * <p> Queues an operation of the user of a session. An invalid session is ordered by its id: the
+     * operation fails anyway. </p>
+     */
+    private <T> CompletableFuture<T> daSessao(String id, Callable<T> operacao) {
+        String login = this.facade.getLoginSessao(id);
+        return this.emOrdem(login != null ? login : String.valueOf(id), operacao);
+    }
+
+    /**
+     * <p> Queues an operation behind the previous ones of the same key. </p>
+     *
+     * <p> The queue of the key points to the future of its last operation; the new one takes its place and is
+     * only submitted to the executor when the previous one completes, successfully or not. </p>
+     */
+    private <T> CompletableFuture<T> emOrdem(String chave, Callable<T> operacao) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        CompletableFuture<?> anterior = this.filas.getAndSet(fila(chave), resultado);
+        anterior.whenComplete((valor, erro) -> this.submeter(resultado, operacao));
+        return resultado;
+    }
+
+    /**
+     * <p> Queues an operation behind every queue, and every later operation behind it. </p>
+     */
+    private <T> CompletableFuture<T> depoisDeTodas(Callable<T> operacao) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        CompletableFuture<?>[] anteriores = new CompletableFuture<?>[FILAS];
+        for (int i = 0; i < FILAS; i++) {
+            anteriores[i] = this.filas.getAndSet(i, resultado);
+        }
+        CompletableFuture.allOf(anteriores).whenComplete((valor, erro) -> this.submeter(resultado, operacao));
+        return resultado;
+    }
+
+    private <T> CompletableFuture<T> agora(Callable<T> operacao) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        this.submeter(resultado, operacao);
+        return resultado;
+    }
+
+    /**
+     * <p> Runs an operation on the executor and completes its future. Errors complete it too, so a failed
+     * operation never blocks the ones queued behind it. </p>
+     */
+    private <T> void submeter(CompletableFuture<T> resultado, Callable<T> operacao) {
+        try {
+            this.executor.execute(() -> {
+                try {
+                    resultado.complete(operacao.call());
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            resultado.completeExceptionally(e);
+        }
+    }
+
+    private static int fila(String chave) {
+        return (chave.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(FILAS));
+    }
+}
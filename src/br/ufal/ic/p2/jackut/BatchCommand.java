@@ -0,0 +1,15 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> One operation of a command batch, named as the method of the {@code Facade} that performs it. </p>
+ *
+ * <p> The arguments are the ones of that method without the session id, which is given once for the whole
+ * batch; for instance, {@code new BatchCommand("enviarRecado", "jdoe", "Oi!")}. </p>
+ *
+ * @param operacao   Name of the operation.
+ * @param argumentos Arguments of the operation, in the order of the {@code Facade} method.
+ *
+ * @see Facade#executarLote
+ */
+public record BatchCommand(String operacao, String... argumentos) {
+}
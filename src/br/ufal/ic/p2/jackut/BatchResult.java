@@ -0,0 +1,43 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> Result of one item of a batch operation of the {@code Facade}. </p>
+ *
+ * <p> An item that fails does not interrupt the batch: its result carries the message of the exception, as
+ * the single-item operation would have thrown it, and the following items still run. </p>
+ *
+ * @param valor Value returned by the item, or null if it returns nothing or failed.
+ * @param erro  Message of the exception thrown by the item, or null if it succeeded.
+ *
+ * @see Facade#executarLote
+ */
+public record BatchResult(String valor, String erro) {
+    /**
+     * <p> Result of an item that succeeded. </p>
+     *
+     * @param valor Value returned by the item, or null if it returns nothing.
+     * @return The result.
+     */
+    public static BatchResult sucesso(String valor) {
+        return new BatchResult(valor, null);
+    }
+
+    /**
+     * <p> Result of an item that threw an exception. </p>
+     *
+     * @param erro Exception thrown by the item.
+     * @return The result.
+     */
+    public static BatchResult falha(Exception erro) {
+        return new BatchResult(null, erro.getMessage());
+    }
+
+    /**
+     * <p> Returns true if the item succeeded. </p>
+     *
+     * @return True if no exception was thrown by the item.
+     */
+    public boolean isSucesso() {
+        return this.erro == null;
+    }
+}
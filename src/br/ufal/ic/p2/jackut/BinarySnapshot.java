@@ -0,0 +1,502 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p> Versioned binary snapshot of the whole system. </p>
+ *
+ * <p> Users and communities receive dense ids in the order they are written, relations are stored as
+ * arrays of those ids and strings are length-prefixed UTF-8, so no separator can corrupt the data. </p>
+ *
+ * <p> Layout (version 2): </p>
+ * <ul>
+ * <li> <b>header</b>: magic, version, number of users, number of communities </li>
+ * <li> <b>users</b>: login, password, name, profile attributes </li>
+ * <li> <b>communities</b>: name, description, owner id, member ids, message log (first index, then the
+ * sequence number and text of every message) </li>
+ * <li> <b>relations</b>: for each user, the id arrays of every relation list, the cursors in the message logs
+ * of their communities, followed by its mailboxes </li>
+ * </ul>
+ *
+ * <p> Version 1 has no message logs nor cursors, and its messages carry no sequence number; it is still
+ * loaded, with every message kept by its user. </p>
+ *
+ * <p> References to users or communities that no longer exist are dropped when writing. </p>
+ *
+ * <p> The file is streamed record by record to a temporary file and atomically renamed, and loaded through
+ * {@code FileChannel.map}. </p>
+ */
+public class BinarySnapshot {
+    private static final int MAGIC = 0x4A4B5554;
+    private static final int VERSAO = 2;
+
+    /**
+     * <p> Writes the users and communities to the snapshot file. </p>
+     *
+     * @param arquivo     Snapshot file.
+     * @param usuarios    Users of the system.
+     * @param comunidades Communities of the system.
+     *
+     * @throws IOException Exception thrown if the snapshot cannot be written.
+     */
+    public static void salvar(File arquivo, Map<String, User> usuarios, Map<String, Community> comunidades) throws IOException {
+        File temporario = new File(arquivo.getPath() + ".tmp");
+        gravar(temporario, capturarUsuarios(usuarios), capturarComunidades(comunidades));
+
+        Files.move(temporario.toPath(), arquivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * <p> Writes the copies of the users and communities taken by a checkpoint to a file, record by record, and
+     * forces it to disk. </p>
+     * <p> Runs after the objects were released, while the system keeps changing them. </p>
+     *
+     * @param arquivo     File written, replaced if it exists.
+     * @param usuarios    Copies of the users.
+     * @param comunidades Copies of the communities.
+     * @return Size of the file, in bytes.
+     *
+     * @throws IOException Exception thrown if the file cannot be written.
+     */
+    public static long gravar(File arquivo, Collection<ImagemUsuario> usuarios, Collection<ImagemComunidade> comunidades)
+            throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(arquivo);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            escrever(out, usuarios, comunidades);
+            out.flush();
+            fos.getFD().sync();
+            return fos.getChannel().size();
+        }
+    }
+
+    /**
+     * <p> Data of a user copied by a checkpoint, to be serialized once the user is released. </p>
+     *
+     * @param usuario     User, whose login never changes.
+     * @param senha       Password.
+     * @param nome        Name.
+     * @param atributos   Attributes of the profile.
+     * @param relacoes    Friends, requests sent, idols, fans, crushes, crushes received and enemies, in this order.
+     * @param comunidades Communities the user takes part in.
+     * @param cursores    Cursors of the user in the message logs of their communities.
+     * @param recados     Recados not read yet.
+     * @param mensagens   Messages kept by the user.
+     */
+    public record ImagemUsuario(User usuario, String senha, String nome, Map<String, String> atributos,
+                                List<List<User>> relacoes, List<Community> comunidades,
+                                List<Map.Entry<Community, Long>> cursores, List<Errand> recados,
+                                List<Messages> mensagens) {
+    }
+
+    /**
+     * <p> Data of a community copied by a checkpoint, to be serialized once the community is released. </p>
+     *
+     * @param comunidade Community, whose name never changes.
+     * @param descricao  Description.
+     * @param criador    Owner.
+     * @param membros    Members.
+     * @param base       Index of the oldest message kept in the log.
+     * @param mural      Messages kept in the log.
+     */
+    public record ImagemComunidade(Community comunidade, String descricao, User criador, List<User> membros,
+                                   long base, List<Messages> mural) {
+    }
+
+    /**
+     * <p> Copies the data of a user written by the snapshot. Must be called with the user locked. </p>
+     *
+     * @param usuario User.
+     * @return Copy of the data of the user.
+     */
+    public static ImagemUsuario capturar(User usuario) {
+        List<List<User>> relacoes = List.of(List.copyOf(usuario.getFriends()),
+                List.copyOf(usuario.getSolicitationsSent()), List.copyOf(usuario.getIdols()),
+                List.copyOf(usuario.getFas()), List.copyOf(usuario.getCrushes()),
+                List.copyOf(usuario.getCrushesReceived()), List.copyOf(usuario.getEnemy()));
+
+        List<Map.Entry<Community, Long>> cursores = new ArrayList<>();
+        for (Map.Entry<Community, Long> cursor : usuario.getCursoresMensagens().entrySet()) {
+            cursores.add(Map.entry(cursor.getKey(), cursor.getValue()));
+        }
+
+        return new ImagemUsuario(usuario, usuario.getPassword(), usuario.getName(),
+                new LinkedHashMap<>(usuario.getProfile().getAtributos()), relacoes,
+                List.copyOf(usuario.getComunidadesParticipantes()), cursores,
+                new ArrayList<>(usuario.getErrands()), new ArrayList<>(usuario.getMessages()));
+    }
+
+    /**
+     * <p> Copies the data of a community written by the snapshot. Must be called with the community locked. </p>
+     *
+     * @param comunidade Community.
+     * @return Copy of the data of the community.
+     */
+    public static ImagemComunidade capturar(Community comunidade) {
+        MessageLog mural = comunidade.getMural();
+        synchronized (mural) {
+            return new ImagemComunidade(comunidade, comunidade.getDescricao(), comunidade.getCriador(),
+                    List.copyOf(comunidade.getMembros()), mural.getBase(), mural.getMensagens());
+        }
+    }
+
+    private static List<ImagemUsuario> capturarUsuarios(Map<String, User> usuarios) {
+        List<ImagemUsuario> imagens = new ArrayList<>(usuarios.size());
+        for (User usuario : usuarios.values()) {
+            imagens.add(capturar(usuario));
+        }
+        return imagens;
+    }
+
+    private static List<ImagemComunidade> capturarComunidades(Map<String, Community> comunidades) {
+        List<ImagemComunidade> imagens = new ArrayList<>(comunidades.size());
+        for (Community comunidade : comunidades.values()) {
+            imagens.add(capturar(comunidade));
+        }
+        return imagens;
+    }
+
+    /**
+     * <p> Serializes the copies of the users and communities taken by a checkpoint in memory, without touching
+     * the disk. </p>
+     *
+     * @param usuarios    Copies of the users.
+     * @param comunidades Copies of the communities.
+     * @return Content of the snapshot file.
+     *
+     * @throws IOException Never thrown by the in-memory stream.
+     */
+    public static byte[] serializar(Collection<ImagemUsuario> usuarios, Collection<ImagemComunidade> comunidades)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        escrever(out, usuarios, comunidades);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void escrever(DataOutputStream out, Collection<ImagemUsuario> usuarios,
+                                 Collection<ImagemComunidade> comunidades) throws IOException {
+        Map<User, Integer> idsUsuarios = new HashMap<>(usuarios.size() * 2);
+        List<ImagemUsuario> listaUsuarios = new ArrayList<>(usuarios);
+        for (int i = 0; i < listaUsuarios.size(); i++) {
+            idsUsuarios.put(listaUsuarios.get(i).usuario(), i);
+        }
+
+        Map<Community, Integer> idsComunidades = new HashMap<>(comunidades.size() * 2);
+        List<ImagemComunidade> listaComunidades = new ArrayList<>(comunidades);
+        for (int i = 0; i < listaComunidades.size(); i++) {
+            idsComunidades.put(listaComunidades.get(i).comunidade(), i);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSAO);
+        out.writeInt(listaUsuarios.size());
+        out.writeInt(listaComunidades.size());
+
+        for (ImagemUsuario usuario : listaUsuarios) {
+            escreverTexto(out, usuario.usuario().getLogin());
+            escreverTexto(out, usuario.senha());
+            escreverTexto(out, usuario.nome());
+
+            out.writeInt(usuario.atributos().size());
+            for (Map.Entry<String, String> atributo : usuario.atributos().entrySet()) {
+                escreverTexto(out, atributo.getKey());
+                escreverTexto(out, atributo.getValue());
+            }
+        }
+
+        for (ImagemComunidade comunidade : listaComunidades) {
+            escreverTexto(out, comunidade.comunidade().getNome());
+            escreverTexto(out, comunidade.descricao());
+            out.writeInt(idsUsuarios.get(comunidade.criador()));
+            escreverIds(out, comunidade.membros(), idsUsuarios);
+
+            out.writeLong(comunidade.base());
+            out.writeInt(comunidade.mural().size());
+            for (Messages mensagem : comunidade.mural()) {
+                out.writeLong(mensagem.getSequencia());
+                escreverTexto(out, mensagem.getMensagem());
+            }
+        }
+
+        for (ImagemUsuario usuario : listaUsuarios) {
+            for (List<User> relacao : usuario.relacoes()) {
+                escreverIds(out, relacao, idsUsuarios);
+            }
+            escreverIds(out, usuario.comunidades(), idsComunidades);
+
+            List<Map.Entry<Community, Long>> cursores = new ArrayList<>(usuario.cursores());
+            cursores.removeIf(cursor -> !idsComunidades.containsKey(cursor.getKey()));
+            out.writeInt(cursores.size());
+            for (Map.Entry<Community, Long> cursor : cursores) {
+                out.writeInt(idsComunidades.get(cursor.getKey()));
+                out.writeLong(cursor.getValue());
+            }
+
+            List<Errand> recados = new ArrayList<>(usuario.recados());
+            recados.removeIf(recado -> !idsUsuarios.containsKey(recado.getRemetente()));
+            out.writeInt(recados.size());
+            for (Errand recado : recados) {
+                out.writeInt(idsUsuarios.get(recado.getRemetente()));
+                escreverTexto(out, recado.getRecado());
+            }
+
+            out.writeInt(usuario.mensagens().size());
+            for (Messages mensagem : usuario.mensagens()) {
+                out.writeLong(mensagem.getSequencia());
+                escreverTexto(out, mensagem.getMensagem());
+            }
+        }
+    }
+
+    /**
+     * <p> Loads the snapshot file into the given maps of users and communities. </p>
+     *
+     * @param arquivo     Snapshot file.
+     * @param usuarios    Map that receives the users, indexed by login.
+     * @param comunidades Map that receives the communities, indexed by name.
+     * @param grafo       Store that receives the relations.
+     *
+     * @throws IOException Exception thrown if the snapshot cannot be read or has an unknown version.
+     */
+    public static void carregar(File arquivo, Map<String, User> usuarios, Map<String, Community> comunidades,
+                                GraphStore grafo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            carregar(new Leitor(canal), arquivo.getPath(), usuarios, comunidades, grafo);
+        }
+    }
+
+    /**
+     * <p> Loads a snapshot held in memory, as returned by {@code serializar}, into the given maps of users and
+     * communities. </p>
+     *
+     * @param dados       Serialized snapshot.
+     * @param usuarios    Map that receives the users, indexed by login.
+     * @param comunidades Map that receives the communities, indexed by name.
+     * @param grafo       Store that receives the relations.
+     *
+     * @throws IOException Exception thrown if the snapshot is truncated or has an unknown version.
+     */
+    public static void carregar(byte[] dados, Map<String, User> usuarios, Map<String, Community> comunidades,
+                                GraphStore grafo) throws IOException {
+        carregar(new Leitor(ByteBuffer.wrap(dados)), "memória", usuarios, comunidades, grafo);
+    }
+
+    private static void carregar(Leitor in, String origem, Map<String, User> usuarios,
+                                 Map<String, Community> comunidades, GraphStore grafo) throws IOException {
+
+        if (in.lerInt() != MAGIC) {
+            throw new IOException("Arquivo de snapshot inválido: " + origem);
+        }
+        int versao = in.lerInt();
+        if (versao != 1 && versao != VERSAO) {
+            throw new IOException("Versão de snapshot não suportada: " + versao);
+        }
+
+        User[] listaUsuarios = new User[in.lerInt()];
+        Community[] listaComunidades = new Community[in.lerInt()];
+
+        for (int i = 0; i < listaUsuarios.length; i++) {
+            User usuario = new User(in.lerTexto(), in.lerTexto(), in.lerTexto());
+
+            int atributos = in.lerInt();
+            for (int j = 0; j < atributos; j++) {
+                usuario.getProfile().setAtributo(in.lerTexto(), in.lerTexto());
+            }
+
+            listaUsuarios[i] = usuario;
+            usuarios.put(usuario.getLogin(), usuario);
+            grafo.registrar(usuario);
+        }
+
+        for (int i = 0; i < listaComunidades.length; i++) {
+            String nome = in.lerTexto();
+            String descricao = in.lerTexto();
+            User dono = listaUsuarios[in.lerInt()];
+
+            Community comunidade = new Community(dono, nome, descricao);
+            for (int membro : in.lerIds()) {
+                if (listaUsuarios[membro] != dono) {
+                    comunidade.adicionarMembro(listaUsuarios[membro]);
+                }
+            }
+            dono.setCriadorComunidade(comunidade);
+
+            if (versao >= 2) {
+                long indice = in.lerLong();
+                int mensagens = in.lerInt();
+                for (int j = 0; j < mensagens; j++) {
+                    long sequencia = in.lerLong();
+                    comunidade.getMural().restaurar(indice++, new Messages(in.lerTexto(), sequencia));
+                }
+            }
+
+            listaComunidades[i] = comunidade;
+            comunidades.put(nome, comunidade);
+        }
+
+        for (User usuario : listaUsuarios) {
+            for (int id : in.lerIds()) {
+                usuario.getFriends().add(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.enviarSolicitacao(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setIdolo(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setFa(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setPaquera(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setCrushesReceived(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setInimigo(listaUsuarios[id]);
+            }
+            for (int id : in.lerIds()) {
+                usuario.setParticipanteComunidade(listaComunidades[id]);
+            }
+
+            int cursores = versao >= 2 ? in.lerInt() : 0;
+            for (int j = 0; j < cursores; j++) {
+                Community comunidade = listaComunidades[in.lerInt()];
+                usuario.setCursorMensagens(comunidade, in.lerLong());
+            }
+
+            int recados = in.lerInt();
+            for (int j = 0; j < recados; j++) {
+                User remetente = listaUsuarios[in.lerInt()];
+                usuario.receberRecado(new Errand(remetente, usuario, in.lerTexto()));
+                remetente.adicionarDestinatarioRecado(usuario);
+            }
+
+            int mensagens = in.lerInt();
+            for (int j = 0; j < mensagens; j++) {
+                long sequencia = versao >= 2 ? in.lerLong() : 0;
+                usuario.receberMensagem(new Messages(in.lerTexto(), sequencia));
+            }
+        }
+
+        for (Community comunidade : listaComunidades) {
+            comunidade.recontarLeitores();
+        }
+    }
+
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static <T> void escreverIds(DataOutputStream out, Collection<T> lista, Map<T, Integer> ids) throws IOException {
+        int[] validos = new int[lista.size()];
+        int quantidade = 0;
+        for (T elemento : lista) {
+            Integer id = ids.get(elemento);
+            if (id != null) {
+                validos[quantidade++] = id;
+            }
+        }
+
+        out.writeInt(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            out.writeInt(validos[i]);
+        }
+    }
+
+    /**
+     * <p> Sequential reader over a memory-mapped file. </p>
+     * <p> Files larger than a single mapping are read through a sliding window. </p>
+     */
+    private static class Leitor {
+        private static final long JANELA = 1L << 30;
+
+        private final FileChannel canal;
+        private final long tamanho;
+        private ByteBuffer buffer;
+        private long inicio;
+
+        Leitor(FileChannel canal) throws IOException {
+            this.canal = canal;
+            this.tamanho = canal.size();
+            this.mapear(0);
+        }
+
+        Leitor(ByteBuffer buffer) {
+            this.canal = null;
+            this.tamanho = buffer.remaining();
+            this.buffer = buffer;
+        }
+
+        private void mapear(long posicao) throws IOException {
+            this.inicio = posicao;
+            this.buffer = this.canal.map(FileChannel.MapMode.READ_ONLY, posicao, Math.min(JANELA, this.tamanho - posicao));
+        }
+
+        private void garantir(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                long posicao = this.inicio + this.buffer.position();
+                if (this.tamanho - posicao < bytes) {
+                    throw new IOException("Snapshot truncado.");
+                }
+                this.mapear(posicao);
+            }
+        }
+
+        int lerInt() throws IOException {
+            this.garantir(4);
+            return this.buffer.getInt();
+        }
+
+        long lerLong() throws IOException {
+            this.garantir(8);
+            return this.buffer.getLong();
+        }
+
+        int[] lerIds() throws IOException {
+            int[] ids = new int[this.lerInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = this.lerInt();
+            }
+            return ids;
+        }
+
+        String lerTexto() throws IOException {
+            int bytes = this.lerInt();
+            if (bytes < 0) {
+                return null;
+            }
+
+            this.garantir(bytes);
+            byte[] dados = new byte[bytes];
+            this.buffer.get(dados);
+            return new String(dados, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p> Storage engine of the binary snapshot, <b>snapshot.bin</b>, rewritten whole by every checkpoint. </p>
+ *
+ * <p> If the directory only holds the text files, they are loaded and migrated to the binary snapshot right
+ * away; once the binary snapshot exists it is always used. </p>
+ *
+ * @see BinarySnapshot
+ */
+public class BinaryStorageEngine extends FileStorageEngine {
+    /**
+     * <p> Constructs a new {@code BinaryStorageEngine} over a data directory. </p>
+     *
+     * @param pasta Data directory, created if it does not exist.
+     */
+    public BinaryStorageEngine(File pasta) {
+        super(pasta);
+    }
+
+    @Override
+    public long carregar(Estado estado, LoadReport relatorio) throws IOException {
+        this.recuperar();
+
+        File snapshot = new File(this.getPasta(), "snapshot.bin");
+        if (snapshot.exists()) {
+            long inicio = java.lang.System.nanoTime();
+            BinarySnapshot.carregar(snapshot, estado.usuarios(), estado.comunidades(), estado.grafo());
+            relatorio.registrar("snapshot.bin", java.lang.System.nanoTime() - inicio,
+                    estado.usuarios().size() + estado.comunidades().size());
+        } else {
+            new ParallelLoader(this.getPasta(), relatorio).carregar(estado.usuarios(), estado.comunidades(),
+                    estado.grafo());
+            BinarySnapshot.salvar(snapshot, estado.usuarios(), estado.comunidades());
+        }
+
+        return UtilsFileHandler.lerCheckpoint(this.getPasta());
+    }
+
+    @Override
+    public Checkpoint iniciar(Estado estado, long lsn, List<File> logsAntigos) {
+        return new Checkpoint(lsn, logsAntigos);
+    }
+
+    @Override
+    public void capturar(Checkpoint checkpoint, User usuario) {
+        checkpoint.adicionar(BinarySnapshot.capturar(usuario));
+    }
+
+    @Override
+    public void capturar(Checkpoint checkpoint, Community comunidade) {
+        checkpoint.adicionar(BinarySnapshot.capturar(comunidade));
+    }
+
+    @Override
+    public void zerar(Estado estado, long lsn) throws IOException {
+        UtilsFileHandler.limparArquivos(this.getPasta());
+        BinarySnapshot.salvar(new File(this.getPasta(), "snapshot.bin"), estado.usuarios(), estado.comunidades());
+        UtilsFileHandler.salvarCheckpoint(this.getPasta(), lsn);
+    }
+}
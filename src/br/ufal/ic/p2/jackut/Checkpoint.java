@@ -0,0 +1,242 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p> Point-in-time image of the system, captured to be written by a checkpoint. </p>
+ *
+ * <p> For the text format, the image holds the new lines of every user and community that changed since
+ * the previous checkpoint, indexed by file and by key (login or community name). An empty text means the
+ * key was removed. For the binary format, it holds the copies of every user and community, serialized into
+ * the snapshot when the image is written. </p>
+ *
+ * <p> The image is filled one object at a time, by the operations that lock the object first and by the
+ * checkpoint itself, so it accepts additions from several threads. </p>
+ *
+ * <p> After being written, it also carries the metrics of the checkpoint. </p>
+ *
+ * @see StorageEngine
+ */
+public class Checkpoint {
+    private final long lsn;
+    private final List<File> logsAntigos;
+    private final boolean completo;
+    private final boolean binario;
+    private final int divisoes;
+    private final Map<String, Map<String, String>> substituicoes = new ConcurrentHashMap<>();
+    private final Queue<BinarySnapshot.ImagemUsuario> usuarios = new ConcurrentLinkedQueue<>();
+    private final Queue<BinarySnapshot.ImagemComunidade> comunidades = new ConcurrentLinkedQueue<>();
+
+    private byte[] serializado;
+
+    private long duracaoCaptura;
+    private long duracaoGravacao;
+    private long bytes;
+    private int segmentos;
+
+    /**
+     * <p> Constructs a new {@code Checkpoint} for the text format. </p>
+     *
+     * @param lsn         LSN of the last operation included in the image.
+     * @param logsAntigos Rotated log files covered by the image.
+     * @param completo    True if the image holds every user and community, replacing all segments.
+     * @param divisoes    Number of segments each file is split into, only changed by a complete image.
+     */
+    public Checkpoint(long lsn, List<File> logsAntigos, boolean completo, int divisoes) {
+        this.lsn = lsn;
+        this.logsAntigos = logsAntigos;
+        this.completo = completo;
+        this.binario = false;
+        this.divisoes = divisoes;
+    }
+
+    /**
+     * <p> Constructs a new {@code Checkpoint} for the binary format, always complete. </p>
+     *
+     * @param lsn         LSN of the last operation included in the image.
+     * @param logsAntigos Rotated log files covered by the image.
+     *
+     * @see BinarySnapshot
+     */
+    public Checkpoint(long lsn, List<File> logsAntigos) {
+        this.lsn = lsn;
+        this.logsAntigos = logsAntigos;
+        this.completo = true;
+        this.binario = true;
+        this.divisoes = 0;
+    }
+
+    /**
+     * <p> Sets the new text of a key in one of the files. </p>
+     *
+     * @param arquivo Name of the file.
+     * @param chave   Login or community name.
+     * @param texto   New lines of the key, or an empty text if it was removed.
+     */
+    public void substituir(String arquivo, String chave, String texto) {
+        this.substituicoes.computeIfAbsent(arquivo, nome -> new ConcurrentHashMap<>()).put(chave, texto);
+    }
+
+    /**
+     * <p> Adds the copy of a user to a binary image. </p>
+     *
+     * @param usuario Copy of the user.
+     */
+    public void adicionar(BinarySnapshot.ImagemUsuario usuario) {
+        this.usuarios.add(usuario);
+    }
+
+    /**
+     * <p> Adds the copy of a community to a binary image. </p>
+     *
+     * @param comunidade Copy of the community.
+     */
+    public void adicionar(BinarySnapshot.ImagemComunidade comunidade) {
+        this.comunidades.add(comunidade);
+    }
+
+    /**
+     * <p> Returns the copies of the users of a binary image. </p>
+     *
+     * @return Copies of the users.
+     */
+    public Collection<BinarySnapshot.ImagemUsuario> getUsuarios() {
+        return this.usuarios;
+    }
+
+    /**
+     * <p> Returns the copies of the communities of a binary image. </p>
+     *
+     * @return Copies of the communities.
+     */
+    public Collection<BinarySnapshot.ImagemComunidade> getComunidades() {
+        return this.comunidades;
+    }
+
+    /**
+     * <p> Returns the new texts of the keys of one of the files. </p>
+     *
+     * @param arquivo Name of the file.
+     * @return Map of key to its new text.
+     */
+    public Map<String, String> getSubstituicoes(String arquivo) {
+        return this.substituicoes.getOrDefault(arquivo, Map.of());
+    }
+
+    /**
+     * <p> Returns the LSN of the last operation included in the image. </p>
+     *
+     * @return LSN of the image.
+     */
+    public long getLsn() {
+        return this.lsn;
+    }
+
+    /**
+     * <p> Returns the rotated log files that can be discarded once the image is on disk. </p>
+     *
+     * @return Rotated log files.
+     */
+    public List<File> getLogsAntigos() {
+        return this.logsAntigos;
+    }
+
+    /**
+     * <p> Returns true if the image replaces every segment instead of only the modified ones. </p>
+     *
+     * @return True if the image is complete.
+     */
+    public boolean isCompleto() {
+        return this.completo;
+    }
+
+    /**
+     * <p> Returns the number of segments each text file is split into, or 0 for the binary format. </p>
+     *
+     * @return Number of segments per file.
+     */
+    public int getDivisoes() {
+        return this.divisoes;
+    }
+
+    /**
+     * <p> Returns true if the image is of the binary format. </p>
+     *
+     * @return True for the binary format, false for the text format.
+     */
+    public boolean isBinario() {
+        return this.binario;
+    }
+
+    /**
+     * <p> Returns the serialized binary snapshot kept in memory by {@code MemoryStorageEngine}, or null until
+     * {@code setBinario} is called. The engines over a directory stream the snapshot to disk instead. </p>
+     *
+     * @return Serialized snapshot.
+     */
+    public byte[] getBinario() {
+        return this.serializado;
+    }
+
+    public void setBinario(byte[] serializado) {
+        this.serializado = serializado;
+    }
+
+    /**
+     * <p> Returns the time, in nanoseconds, the writes of the system were held to start the image. </p>
+     *
+     * @return Duration of the capture.
+     */
+    public long getDuracaoCaptura() {
+        return this.duracaoCaptura;
+    }
+
+    public void setDuracaoCaptura(long duracaoCaptura) {
+        this.duracaoCaptura = duracaoCaptura;
+    }
+
+    /**
+     * <p> Returns the time, in nanoseconds, spent writing the image in background. </p>
+     *
+     * @return Duration of the writing.
+     */
+    public long getDuracaoGravacao() {
+        return this.duracaoGravacao;
+    }
+
+    public void setDuracaoGravacao(long duracaoGravacao) {
+        this.duracaoGravacao = duracaoGravacao;
+    }
+
+    /**
+     * <p> Returns the number of bytes written by the checkpoint. </p>
+     *
+     * @return Size of the checkpoint.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * <p> Returns the number of files written or deleted by the checkpoint. </p>
+     *
+     * @return Number of segments.
+     */
+    public int getSegmentos() {
+        return this.segmentos;
+    }
+
+    public void setSegmentos(int segmentos) {
+        this.segmentos = segmentos;
+    }
+}
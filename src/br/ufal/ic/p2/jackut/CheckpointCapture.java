@@ -0,0 +1,128 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Copy-on-write capture of the image of a checkpoint, which runs while the system keeps changing. </p>
+ *
+ * <p> The image is started with the writes held, at the sequence number of the log, and only then released.
+ * From that moment every object the image covers is copied into it exactly once, by whoever locks it first:
+ * an operation about to change it, told by the {@code StripedLocks} it observes, or the checkpoint itself,
+ * which locks the remaining objects one at a time. Each object is thus copied as it was when the image
+ * started, and a write only waits for the copy of the objects it touches. </p>
+ *
+ * <p> The image covers the objects that existed when it started: all of them if the image is complete, or
+ * only those in the sets of changed keys. A key first locked after the start while its object does not exist,
+ * as when it is being created, is marked as seen with nothing to copy, so the new object is left out. </p>
+ *
+ * <p> Keys are shared by users and communities, so each key locked is looked up as both. </p>
+ *
+ * @see Checkpoint
+ * @see StripedLocks.Observador
+ */
+public class CheckpointCapture implements StripedLocks.Observador {
+    private final StorageEngine armazenamento;
+    private final Checkpoint checkpoint;
+    private final Map<String, User> usuarios;
+    private final Map<String, Community> comunidades;
+    private final Set<String> usuariosPendentes;
+    private final Set<String> comunidadesPendentes;
+    private final Set<String> usuariosVistos = ConcurrentHashMap.newKeySet();
+    private final Set<String> comunidadesVistas = ConcurrentHashMap.newKeySet();
+
+    /**
+     * <p> Constructs the capture of an image just started. Must be called with the writes held. </p>
+     *
+     * @param armazenamento Storage engine that copies the objects into the image.
+     * @param checkpoint    Image started by {@code StorageEngine.iniciar}.
+     * @param estado        Collections of the system, whose sets of changed keys are copied if the image is
+     *                      not complete.
+     */
+    public CheckpointCapture(StorageEngine armazenamento, Checkpoint checkpoint, StorageEngine.Estado estado) {
+        this.armazenamento = armazenamento;
+        this.checkpoint = checkpoint;
+        this.usuarios = estado.usuarios();
+        this.comunidades = estado.comunidades();
+        this.usuariosPendentes = checkpoint.isCompleto() ? null : Set.copyOf(estado.usuariosModificados());
+        this.comunidadesPendentes = checkpoint.isCompleto() ? null : Set.copyOf(estado.comunidadesModificadas());
+    }
+
+    /**
+     * <p> Returns the image being captured. </p>
+     *
+     * @return Image of the checkpoint.
+     */
+    public Checkpoint getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    /**
+     * <p> Returns the logins of the users the image may cover, to be locked one at a time by the checkpoint. </p>
+     *
+     * @return Logins, weakly consistent if the image is complete.
+     */
+    public Collection<String> getUsuarios() {
+        return this.usuariosPendentes != null ? this.usuariosPendentes : this.usuarios.keySet();
+    }
+
+    /**
+     * <p> Returns the names of the communities the image may cover, to be locked one at a time by the
+     * checkpoint. </p>
+     *
+     * @return Names, weakly consistent if the image is complete.
+     */
+    public Collection<String> getComunidades() {
+        return this.comunidadesPendentes != null ? this.comunidadesPendentes : this.comunidades.keySet();
+    }
+
+    /**
+     * <p> Copies the objects of the keys locked by an operation that were not copied yet. </p>
+     *
+     * @param chaves Logins and community names locked.
+     */
+    @Override
+    public void aoTravar(String[] chaves) {
+        for (String chave : chaves) {
+            this.capturarUsuario(chave);
+            this.capturarComunidade(chave);
+        }
+    }
+
+    /**
+     * <p> Copies every object not copied yet, before an operation that may touch any of them. </p>
+     */
+    @Override
+    public void aoTravarTudo() {
+        for (String login : this.getUsuarios()) {
+            this.capturarUsuario(login);
+        }
+        for (String nome : this.getComunidades()) {
+            this.capturarComunidade(nome);
+        }
+    }
+
+    private void capturarUsuario(String login) {
+        if ((this.usuariosPendentes == null || this.usuariosPendentes.contains(login))
+                && this.usuariosVistos.add(login)) {
+            User usuario = this.usuarios.get(login);
+            if (usuario != null) {
+                this.armazenamento.capturar(this.checkpoint, usuario);
+                usuario.limparModificado();
+            }
+        }
+    }
+
+    private void capturarComunidade(String nome) {
+        if ((this.comunidadesPendentes == null || this.comunidadesPendentes.contains(nome))
+                && this.comunidadesVistas.add(nome)) {
+            Community comunidade = this.comunidades.get(nome);
+            if (comunidade != null) {
+                this.armazenamento.capturar(this.checkpoint, comunidade);
+                comunidade.limparModificada();
+            }
+        }
+    }
+}
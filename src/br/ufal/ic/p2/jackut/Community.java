@@ -1,17 +1,41 @@
 package br.ufal.ic.p2.jackut;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 
 /**
  * <p> Class representing a community. </p>
+ *
+ * <p> The messages sent to the community are kept once, in its {@code MessageLog}; each member only holds a
+ * cursor into it. </p>
  */
 
 public class Community {
+    /**
+     * <p> Data stored in the community's line of <b>comunidades.txt</b>: description, owner and members. </p>
+     */
+    public static final int DADOS_COMUNIDADE = 1;
+
+    /**
+     * <p> Data stored in <b>mural.txt</b>: the message log. </p>
+     */
+    public static final int DADOS_MURAL = 1 << 1;
+
+    /**
+     * <p> Every kind of data of the community. </p>
+     */
+    public static final int DADOS_TODOS = DADOS_COMUNIDADE | DADOS_MURAL;
+
     private final User creator;
     private final String name;
     private final String description;
-    private final ArrayList<User> members = new ArrayList<>();
+    private final RelationSet<User> members = new RelationSet<>();
+    private final MessageLog mural = new MessageLog();
+    private int modificacoes = DADOS_TODOS;
+    private Consumer<Community> aoModificar;
 
     /**
      * <p> Constructs a new {@code Community} in Jackut. </p>
@@ -65,7 +89,7 @@ public class Community {
      * @return List of members of the community
      */
 
-    public ArrayList<User> getMembros() {
+    public RelationSet<User> getMembros() {
         return members;
     }
 
@@ -79,12 +103,12 @@ public class Community {
     }
 
     /**
-     * Returns a formatted string representation of the community's members using UtilsString.
+     * Returns a formatted string representation of the community's members, cached between changes.
      *
      * @return Formatted string of community members
      */
     public String getMembrosString() {
-        return UtilsString.formatArrayList(members);
+        return this.members.formatar();
     }
 
     /**
@@ -94,27 +118,52 @@ public class Community {
      */
     public void adicionarMembro(User usuario) {
         this.members.add(usuario);
+        this.marcarModificada(DADOS_COMUNIDADE);
     }
 
     /**
-     * Sets the members of the community based on the provided ArrayList of users.
+     * Sets the members of the community based on the provided collection of users.
      *
-     * @param membros The ArrayList of users to set as members of the community
+     * @param membros The collection of users to set as members of the community
      */
-    public void setMembros(ArrayList<User> membros) {
+    public void setMembros(Collection<User> membros) {
         this.members.clear();
         this.members.addAll(membros);
+        this.marcarModificada(DADOS_COMUNIDADE);
     }
 
     /**
      * Sends a message to all members of the community.
+     * The message is appended once to the log of the community, whatever the number of members.
      *
      * @param mensagem The message to be sent to community members
      */
     public void enviarMensagem(Messages mensagem) {
-        for (User membro : members) {
-            membro.receberMensagem(mensagem);
+        this.mural.publicar(mensagem);
+        this.marcarModificada(DADOS_MURAL);
+    }
+
+    /**
+     * Returns the log of the messages sent to the community.
+     *
+     * @return Log of messages of the community
+     */
+    public MessageLog getMural() {
+        return this.mural;
+    }
+
+    /**
+     * Recomputes the readers of the log from the cursors of the members, after the community is loaded.
+     */
+    public void recontarLeitores() {
+        List<Long> cursores = new ArrayList<>();
+        for (User membro : this.members) {
+            Long cursor = membro.getCursorMensagens(this);
+            if (cursor != null) {
+                cursores.add(cursor);
+            }
         }
+        this.mural.recontar(cursores);
     }
 
     /**
@@ -124,5 +173,46 @@ public class Community {
      */
     public void removerMembro(User membro) {
         this.members.remove(membro);
+        this.marcarModificada(DADOS_COMUNIDADE);
+    }
+
+    /**
+     * Marks the given kinds of data as changed since the last checkpoint.
+     *
+     * @param dados Bit mask of {@code DADOS_*} constants
+     */
+    public void marcarModificada(int dados) {
+        boolean limpa = this.modificacoes == 0;
+        this.modificacoes |= dados;
+
+        if (limpa && this.aoModificar != null) {
+            this.aoModificar.accept(this);
+        }
+    }
+
+    /**
+     * Sets the function notified when the community goes from saved to modified.
+     *
+     * @param aoModificar Function that receives the modified community
+     */
+    public void setAoModificar(Consumer<Community> aoModificar) {
+        this.aoModificar = aoModificar;
+    }
+
+    /**
+     * Checks if any of the given kinds of data changed since the last checkpoint.
+     *
+     * @param dados Bit mask of {@code DADOS_*} constants
+     * @return True if any of the data changed, false otherwise
+     */
+    public boolean isModificada(int dados) {
+        return (this.modificacoes & dados) != 0;
+    }
+
+    /**
+     * Marks all the data of the community as saved.
+     */
+    public void limparModificada() {
+        this.modificacoes = 0;
     }
 }
@@ -0,0 +1,23 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> Durability modes supported by the {@code WriteAheadLog}. </p>
+ *
+ * @see WriteAheadLog
+ */
+public enum DurabilityMode {
+    /**
+     * <p> Forces the log to disk after every operation. </p>
+     */
+    FSYNC,
+
+    /**
+     * <p> Forces the log to disk periodically, every configured interval. </p>
+     */
+    GROUP_COMMIT,
+
+    /**
+     * <p> Leaves the log in the operating system buffers, surviving only process crashes. </p>
+     */
+    OS_BUFFERED
+}
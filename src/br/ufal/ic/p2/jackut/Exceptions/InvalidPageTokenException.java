@@ -0,0 +1,11 @@
+package br.ufal.ic.p2.jackut.Exceptions;
+
+/**
+ * Exception for when a continuation token was not returned by a page.
+ */
+
+public class InvalidPageTokenException extends RuntimeException {
+    public InvalidPageTokenException() {
+        super("Token de paginação inválido.");
+    }
+}
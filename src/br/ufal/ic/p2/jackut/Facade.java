@@ -2,11 +2,145 @@ package br.ufal.ic.p2.jackut;
 
 import br.ufal.ic.p2.jackut.Exceptions.*;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p> Facade class that implements the interface of the Jackut system. </p>
  */
 public class Facade {
-    private final System system = new System();
+    private final System system;
+    private final FacadeMetrics metricas;
+
+    /**
+     * <p> Constructs a new {@code Facade} with the durability configured through system properties. </p>
+     *
+     * @see System
+     */
+    public Facade() {
+        this.system = new System();
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Constructs a new {@code Facade} with the given durability for the operation log. </p>
+     *
+     * @param durabilidade Durability mode of the operation log
+     * @param intervalo    Interval, in milliseconds, between two group commits
+     *
+     * @see DurabilityMode
+     */
+    public Facade(DurabilityMode durabilidade, long intervalo) {
+        this.system = new System(durabilidade, intervalo);
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Constructs a new {@code Facade} keeping its data in the given directory, so several facades can run
+     * in the same JVM without touching each other's files. </p>
+     *
+     * @param pasta Data directory, created if it does not exist
+     *
+     * @see System
+     */
+    public Facade(File pasta) {
+        this.system = new System(pasta);
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Constructs a new {@code Facade} keeping its data in the given directory, with the given durability
+     * for the operation log. </p>
+     *
+     * @param pasta        Data directory, created if it does not exist
+     * @param durabilidade Durability mode of the operation log
+     * @param intervalo    Interval, in milliseconds, between two group commits
+     *
+     * @see DurabilityMode
+     */
+    public Facade(File pasta, DurabilityMode durabilidade, long intervalo) {
+        this.system = new System(pasta, durabilidade, intervalo);
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Constructs a new {@code Facade} over the given storage engine, such as a
+     * {@code MemoryStorageEngine} for benchmarks and tests, with the durability configured through system
+     * properties. </p>
+     *
+     * @param armazenamento Storage engine of the data
+     *
+     * @see StorageEngine
+     */
+    public Facade(StorageEngine armazenamento) {
+        this.system = new System(armazenamento);
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Constructs a new {@code Facade} over the given storage engine, with the given durability for the
+     * operation log. </p>
+     *
+     * @param armazenamento Storage engine of the data
+     * @param durabilidade  Durability mode of the operation log
+     * @param intervalo     Interval, in milliseconds, between two group commits
+     *
+     * @see StorageEngine
+     */
+    public Facade(StorageEngine armazenamento, DurabilityMode durabilidade, long intervalo) {
+        this.system = new System(armazenamento, durabilidade, intervalo);
+        this.metricas = new FacadeMetrics(this.system);
+        this.metricas.publicar();
+    }
+
+    /**
+     * <p> Returns the calls, errors and latencies of each operation of this facade and the gauges of the
+     * system, also published through JMX. </p>
+     *
+     * @return Metrics of the facade; {@code toString} gives them as plain text.
+     *
+     * @see FacadeMetrics
+     */
+    public FacadeMetrics getMetricas() {
+        return this.metricas;
+    }
+
+    /**
+     * <p> Returns the login of the user of a session, used by the {@code AsyncFacade} to order the operations
+     * of each user. Not recorded in the metrics. </p>
+     *
+     * @param id Session ID
+     * @return Login of the user, or null if the session does not exist or has expired
+     */
+    String getLoginSessao(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return this.system.getSessaoUsuario(id).getLogin();
+        } catch (UserIsNotRegisterException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p> Writes a checkpoint right away, as the background thread does, while the other operations keep
+     * running. Not recorded in the metrics. </p>
+     *
+     * @return The checkpoint written, with its metrics, or null if it failed.
+     *
+     * @see Checkpoint
+     */
+    public Checkpoint checkpoint() {
+        return this.system.checkpoint();
+    }
 
     /**
      * <p> Clears all data held in the system. </p>
@@ -14,7 +148,15 @@ public class Facade {
      * @see System
      */
     public void zerarSistema() {
-        this.system.zerarSistema();
+        long inicio = this.metricas.iniciar(FacadeOperation.zerarSistema);
+        try {
+            this.system.zerarSistema();
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.zerarSistema, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.zerarSistema, inicio);
+        }
     }
 
     /**
@@ -30,9 +172,17 @@ public class Facade {
      * @see User
      */
     public void criarUsuario(String login, String password, String name) throws LoginSenhaInvalidsException, AccountAlreadyExistsException {
-        User usuario = new User(login, password, name);
+        long inicio = this.metricas.iniciar(FacadeOperation.criarUsuario);
+        try {
+            User usuario = new User(login, password, name);
 
-        this.system.setUsuario(usuario);
+            this.system.setUsuario(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.criarUsuario, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.criarUsuario, inicio);
+        }
     }
 
     /**
@@ -47,7 +197,34 @@ public class Facade {
      * @throws UserIsNotRegisterException  Exception thrown if the user is not registered
      */
     public String abrirSessao(String login, String senha) throws LoginSenhaInvalidsException, UserIsNotRegisterException {
-        return this.system.abrirSessao(login, senha);
+        long inicio = this.metricas.iniciar(FacadeOperation.abrirSessao);
+        try {
+            return this.system.abrirSessao(login, senha);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.abrirSessao, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.abrirSessao, inicio);
+        }
+    }
+
+    /**
+     * <p> Closes the session with the given ID, logging the user out. </p>
+     *
+     * @param id Session ID
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the session does not exist or has expired
+     */
+    public void encerrarSessao(String id) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.encerrarSessao);
+        try {
+            this.system.encerrarSessao(id);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.encerrarSessao, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.encerrarSessao, inicio);
+        }
     }
 
     /**
@@ -62,9 +239,42 @@ public class Facade {
      */
     public String getAtributoUsuario(String login, String attribute)
             throws UserIsNotRegisterException, AttributeNotFilledException {
-        User usuario = this.system.getUsuario(login);
+        long inicio = this.metricas.iniciar(FacadeOperation.getAtributoUsuario);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getAtributoUsuario(usuario, attribute);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getAtributoUsuario, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getAtributoUsuario, inicio);
+        }
+    }
+
+    /**
+     * <p> Retrieves several attributes of a user at once, such as the fields of a profile page. </p>
+     *
+     * @param login      User's login
+     * @param atributos  Attributes to be returned
+     * @return          Value, or error, of each attribute, in the same order
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered
+     *
+     * @see BatchResult
+     */
+    public List<BatchResult> getAtributosUsuario(String login, List<String> atributos) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getAtributosUsuario);
+        try {
+            User usuario = this.system.getUsuario(login);
 
-        return usuario.getAtributo(attribute);
+            return this.system.getAtributosUsuario(usuario, atributos);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getAtributosUsuario, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getAtributosUsuario, inicio);
+        }
     }
 
     /**
@@ -80,9 +290,41 @@ public class Facade {
      */
     public void editarPerfil(String id, String attribute, String valor)
             throws UserIsNotRegisterException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.editarPerfil);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+
+            this.system.editarPerfil(usuario, attribute, valor);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.editarPerfil, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.editarPerfil, inicio);
+        }
+    }
+
+    /**
+     * <p> Modifies several attributes of the user's profile at once. </p>
+     * <p> A valid session <b>(identified by id)</b> must be open for the user
+     * whose profile you want to edit. </p>
+     *
+     * @param id         Session ID
+     * @param atributos  New values, indexed by attribute
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered
+     */
+    public void editarPerfil(String id, Map<String, String> atributos) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.editarPerfil);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
 
-        usuario.getProfile().setAtributo(attribute, valor);
+            this.system.editarPerfil(usuario, atributos);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.editarPerfil, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.editarPerfil, inicio);
+        }
     }
 
     /**
@@ -99,10 +341,18 @@ public class Facade {
      */
     public void adicionarAmigo(String id, String amigo) throws UserAlreadyHaveRelationException, UserIsNotRegisterException,
             UserAutoRelationException, UserAlreadySentConviteException, UserIsEnemyException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User amigoUsuario = this.system.getUsuario(amigo);
+        long inicio = this.metricas.iniciar(FacadeOperation.adicionarAmigo);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User amigoUsuario = this.system.getUsuario(amigo);
 
-        this.system.adicionarAmigo(usuario, amigoUsuario);
+            this.system.adicionarAmigo(usuario, amigoUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.adicionarAmigo, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.adicionarAmigo, inicio);
+        }
     }
 
     /**
@@ -115,10 +365,64 @@ public class Facade {
      * @throws UserIsNotRegisterException Exception thrown if one of the users is not registered
      */
     public boolean ehAmigo(String login, String friend) throws UserIsNotRegisterException {
-        User usuario = this.system.getUsuario(login);
-        User amigoUsuario = this.system.getUsuario(friend);
+        long inicio = this.metricas.iniciar(FacadeOperation.ehAmigo);
+        try {
+            User usuario = this.system.getUsuario(login);
+            User amigoUsuario = this.system.getUsuario(friend);
+
+            return this.system.ehAmigo(usuario, amigoUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.ehAmigo, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.ehAmigo, inicio);
+        }
+    }
+
+    /**
+     * <p> Checks a relation between a user and each of the given users at once. </p>
+     * <p> The relation is <b>amigo</b>, <b>fa</b> (the user is a fan of the other), <b>paquera</b> or
+     * <b>inimigo</b>. The value of each result is <b>true</b> or <b>false</b>; a login that is not registered
+     * gives an error. </p>
+     *
+     * @param login    User's login
+     * @param relacao  Name of the relation
+     * @param outros   Logins of the users to be checked
+     * @return Result of each check, in the same order
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered
+     * @throws IllegalArgumentException   Exception thrown if the relation is unknown
+     */
+    public List<BatchResult> verificarRelacoes(String login, String relacao, List<String> outros)
+            throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.verificarRelacoes);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            List<BatchResult> resultados = new ArrayList<>(outros.size());
+            List<User> registrados = new ArrayList<>(outros.size());
+            for (String outro : outros) {
+                try {
+                    registrados.add(this.system.getUsuario(outro));
+                    resultados.add(null);
+                } catch (UserIsNotRegisterException e) {
+                    resultados.add(BatchResult.falha(e));
+                }
+            }
 
-        return usuario.getFriends().contains(amigoUsuario);
+            boolean[] relacionados = this.system.verificarRelacoes(usuario, relacao, registrados);
+            for (int i = 0, j = 0; i < resultados.size(); i++) {
+                if (resultados.get(i) == null) {
+                    resultados.set(i, BatchResult.sucesso(Boolean.toString(relacionados[j++])));
+                }
+            }
+            return resultados;
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.verificarRelacoes, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.verificarRelacoes, inicio);
+        }
     }
 
     /**
@@ -131,9 +435,68 @@ public class Facade {
      * @throws UserIsNotRegisterException Exception thrown if the user is not registered
      */
     public String getAmigos(String login) throws UserIsNotRegisterException {
-        User usuario = this.system.getUsuario(login);
+        long inicio = this.metricas.iniciar(FacadeOperation.getAmigos);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getAmigos(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getAmigos, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getAmigos, inicio);
+        }
+    }
+
+    /**
+     * <p> Returns one page of the friends of the specified user, as their logins. </p>
+     * <p> The token of the page is passed to get the next one; it stays valid while friends are added. </p>
+     *
+     * @param login  User's login
+     * @param token  Token of the previous page, or null for the first page
+     * @param limite Maximum number of friends in the page
+     * @return Page of logins, with the token of the next page
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered
+     * @throws InvalidPageTokenException  Exception thrown if the token was not returned by a page
+     */
+    public Page<String> getAmigosPagina(String login, String token, int limite)
+            throws UserIsNotRegisterException, InvalidPageTokenException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getAmigosPagina);
+        try {
+            User usuario = this.system.getUsuario(login);
 
-        return usuario.getAmigosString();
+            return this.system.getAmigos(usuario, token, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getAmigosPagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getAmigosPagina, inicio);
+        }
+    }
+
+    /**
+     * <p> Returns one page of the friends of the specified user, after skipping the given number of friends. </p>
+     *
+     * @param login        User's login
+     * @param deslocamento Number of friends to skip
+     * @param limite       Maximum number of friends in the page
+     * @return Page of logins, with the token of the next page
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered
+     */
+    public Page<String> getAmigosPagina(String login, int deslocamento, int limite) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getAmigosPagina);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getAmigos(usuario, deslocamento, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getAmigosPagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getAmigosPagina, inicio);
+        }
     }
 
     /**
@@ -150,10 +513,18 @@ public class Facade {
      * @throws UserIsEnemyException    Exception thrown if the user is an enemy of the recipient
      */
     public void enviarRecado(String id, String destinatario, String recado) throws UserIsNotRegisterException, SelfSentErrandException, UserIsEnemyException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User destinatarioUsuario = this.system.getUsuario(destinatario);
+        long inicio = this.metricas.iniciar(FacadeOperation.enviarRecado);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User destinatarioUsuario = this.system.getUsuario(destinatario);
 
-        this.system.enviarRecado(usuario, destinatarioUsuario, recado);
+            this.system.enviarRecado(usuario, destinatarioUsuario, recado);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.enviarRecado, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.enviarRecado, inicio);
+        }
     }
 
     /**
@@ -166,10 +537,40 @@ public class Facade {
      * @throws DontHaveErrandExcpetion          Exception thrown if the user has no messages in the queue
      */
     public String lerRecado(String id) throws UserIsNotRegisterException, DontHaveErrandExcpetion {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.lerRecado);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+
+            return this.system.lerRecado(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.lerRecado, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.lerRecado, inicio);
+        }
+    }
 
-        Errand recado = usuario.getRecado();
-        return recado.getRecado();
+    /**
+     * <p> Reads up to {@code quantidade} messages from the user's message queue at once. </p>
+     *
+     * @param id          Session ID
+     * @param quantidade  Maximum number of messages to be read
+     * @return            Messages read, oldest first; empty if the queue is empty
+     *
+     * @throws UserIsNotRegisterException  Exception thrown if the user is not registered
+     */
+    public List<String> lerRecados(String id, int quantidade) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.lerRecados);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+
+            return this.system.lerRecados(usuario, quantidade);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.lerRecados, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.lerRecados, inicio);
+        }
     }
 
     /**
@@ -184,9 +585,17 @@ public class Facade {
      */
     public void criarComunidade(String id, String nome, String descricao)
             throws UserIsNotRegisterException, CommunityAlreadyExistisException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.criarComunidade);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
 
-        system.criarComunidade(usuario, nome, descricao);
+            system.criarComunidade(usuario, nome, descricao);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.criarComunidade, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.criarComunidade, inicio);
+        }
     }
 
     /**
@@ -197,7 +606,15 @@ public class Facade {
      * @throws CommunityNotExistsException If the community does not exist.
      */
     public String getDescricaoComunidade(String nome) throws CommunityNotExistsException {
-        return this.system.getDescricaoComunidade(nome);
+        long inicio = this.metricas.iniciar(FacadeOperation.getDescricaoComunidade);
+        try {
+            return this.system.getDescricaoComunidade(nome);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getDescricaoComunidade, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getDescricaoComunidade, inicio);
+        }
     }
 
     /**
@@ -208,7 +625,15 @@ public class Facade {
      * @throws CommunityNotExistsException If the community does not exist.
      */
     public String getDonoComunidade(String nome) throws CommunityNotExistsException {
-        return this.system.getDonoComunidade(nome);
+        long inicio = this.metricas.iniciar(FacadeOperation.getDonoComunidade);
+        try {
+            return this.system.getDonoComunidade(nome);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getDonoComunidade, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getDonoComunidade, inicio);
+        }
     }
 
     /**
@@ -219,7 +644,60 @@ public class Facade {
      * @throws CommunityNotExistsException If the community does not exist.
      */
     public String getMembrosComunidade(String nome) throws CommunityNotExistsException {
-        return this.system.getMembrosComunidade(nome);
+        long inicio = this.metricas.iniciar(FacadeOperation.getMembrosComunidade);
+        try {
+            return this.system.getMembrosComunidade(nome);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getMembrosComunidade, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getMembrosComunidade, inicio);
+        }
+    }
+
+    /**
+     * Retrieves one page of the members of a community, as their logins.
+     *
+     * @param nome   The name of the community.
+     * @param token  The token of the previous page, or null for the first page.
+     * @param limite The maximum number of members in the page.
+     * @return The page of logins, with the token of the next page.
+     * @throws CommunityNotExistsException If the community does not exist.
+     * @throws InvalidPageTokenException   If the token was not returned by a page.
+     */
+    public Page<String> getMembrosComunidadePagina(String nome, String token, int limite)
+            throws CommunityNotExistsException, InvalidPageTokenException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getMembrosComunidadePagina);
+        try {
+            return this.system.getMembrosComunidade(nome, token, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getMembrosComunidadePagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getMembrosComunidadePagina, inicio);
+        }
+    }
+
+    /**
+     * Retrieves one page of the members of a community, after skipping the given number of members.
+     *
+     * @param nome         The name of the community.
+     * @param deslocamento The number of members to skip.
+     * @param limite       The maximum number of members in the page.
+     * @return The page of logins, with the token of the next page.
+     * @throws CommunityNotExistsException If the community does not exist.
+     */
+    public Page<String> getMembrosComunidadePagina(String nome, int deslocamento, int limite)
+            throws CommunityNotExistsException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getMembrosComunidadePagina);
+        try {
+            return this.system.getMembrosComunidade(nome, deslocamento, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getMembrosComunidadePagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getMembrosComunidadePagina, inicio);
+        }
     }
 
     /**
@@ -230,9 +708,39 @@ public class Facade {
      * @throws UserIsNotRegisterException If the user is not registered.
      */
     public String getComunidades(String login) throws UserIsNotRegisterException {
-        User usuario = this.system.getUsuario(login);
+        long inicio = this.metricas.iniciar(FacadeOperation.getComunidades);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getComunidades(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getComunidades, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getComunidades, inicio);
+        }
+    }
+
+    /**
+     * Suggests friends to a user: friends of their friends, ranked by mutual friends and shared communities.
+     *
+     * @param login The login of the user.
+     * @param k     The maximum number of suggestions.
+     * @return A string containing the suggested users, best first.
+     * @throws UserIsNotRegisterException If the user is not registered.
+     */
+    public String sugerirAmigos(String login, int k) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.sugerirAmigos);
+        try {
+            User usuario = this.system.getUsuario(login);
 
-        return this.system.getComunidades(usuario);
+            return this.system.sugerirAmigos(usuario, k);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.sugerirAmigos, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.sugerirAmigos, inicio);
+        }
     }
 
     /**
@@ -246,9 +754,17 @@ public class Facade {
      */
     public void adicionarComunidade(String id, String nome)
             throws UserIsNotRegisterException, CommunityNotExistsException, UserAlreadyInACommunityException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.adicionarComunidade);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
 
-        this.system.adicionarComunidade(usuario, nome);
+            this.system.adicionarComunidade(usuario, nome);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.adicionarComunidade, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.adicionarComunidade, inicio);
+        }
     }
 
     /**
@@ -260,9 +776,39 @@ public class Facade {
      * @throws DontHaveMessagesException   If the user has no messages.
      */
     public String lerMensagem(String id) throws UserIsNotRegisterException, DontHaveMessagesException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.lerMensagem);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+
+            return this.system.lerMensagem(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.lerMensagem, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.lerMensagem, inicio);
+        }
+    }
+
+    /**
+     * Reads up to {@code quantidade} community messages for a user at once.
+     *
+     * @param id         The ID of the user session.
+     * @param quantidade The maximum number of messages to be read.
+     * @return The messages read, oldest first; empty if there are none.
+     * @throws UserIsNotRegisterException If the user is not registered.
+     */
+    public List<String> lerMensagens(String id, int quantidade) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.lerMensagens);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
 
-        return this.system.lerMensagem(usuario);
+            return this.system.lerMensagens(usuario, quantidade);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.lerMensagens, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.lerMensagens, inicio);
+        }
     }
 
     /**
@@ -276,10 +822,18 @@ public class Facade {
      */
     public void enviarMensagem(String id, String comunidade, String mensagem)
             throws UserIsNotRegisterException, CommunityNotExistsException {
-        this.system.getSessaoUsuario(id);
-        Community comunidadeAlvo = this.system.getComunidade(comunidade);
+        long inicio = this.metricas.iniciar(FacadeOperation.enviarMensagem);
+        try {
+            this.system.getSessaoUsuario(id);
+            Community comunidadeAlvo = this.system.getComunidade(comunidade);
 
-        this.system.enviarMensagem(comunidadeAlvo, mensagem);
+            this.system.enviarMensagem(comunidadeAlvo, mensagem);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.enviarMensagem, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.enviarMensagem, inicio);
+        }
     }
 
     /**
@@ -290,10 +844,18 @@ public class Facade {
      * @return True if the user is a fan of the idol, false otherwise.
      */
     public boolean ehFa(String login, String idolo) {
-        User usuario = this.system.getUsuario(login);
-        User idoloUsuario = this.system.getUsuario(idolo);
+        long inicio = this.metricas.iniciar(FacadeOperation.ehFa);
+        try {
+            User usuario = this.system.getUsuario(login);
+            User idoloUsuario = this.system.getUsuario(idolo);
 
-        return idoloUsuario.getFas().contains(usuario);
+            return this.system.ehFa(usuario, idoloUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.ehFa, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.ehFa, inicio);
+        }
     }
 
     /**
@@ -308,10 +870,18 @@ public class Facade {
      */
     public void adicionarIdolo(String id, String Idolo)
             throws UserIsNotRegisterException, UserAlreadyHaveRelationException, UserAutoRelationException, UserIsEnemyException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User idoloUsuario = this.system.getUsuario(Idolo);
+        long inicio = this.metricas.iniciar(FacadeOperation.adicionarIdolo);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User idoloUsuario = this.system.getUsuario(Idolo);
 
-        this.system.adicionarIdolo(usuario, idoloUsuario);
+            this.system.adicionarIdolo(usuario, idoloUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.adicionarIdolo, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.adicionarIdolo, inicio);
+        }
     }
 
     /**
@@ -322,9 +892,65 @@ public class Facade {
      * @throws UserIsNotRegisterException If the user is not registered.
      */
     public String getFas(String login) throws UserIsNotRegisterException {
-        User usuario = this.system.getUsuario(login);
+        long inicio = this.metricas.iniciar(FacadeOperation.getFas);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getFas(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getFas, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getFas, inicio);
+        }
+    }
+
+    /**
+     * Retrieves one page of the fans of a user, as their logins.
+     *
+     * @param login  The login of the user.
+     * @param token  The token of the previous page, or null for the first page.
+     * @param limite The maximum number of fans in the page.
+     * @return The page of logins, with the token of the next page.
+     * @throws UserIsNotRegisterException If the user is not registered.
+     * @throws InvalidPageTokenException  If the token was not returned by a page.
+     */
+    public Page<String> getFasPagina(String login, String token, int limite)
+            throws UserIsNotRegisterException, InvalidPageTokenException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getFasPagina);
+        try {
+            User usuario = this.system.getUsuario(login);
+
+            return this.system.getFas(usuario, token, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getFasPagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getFasPagina, inicio);
+        }
+    }
+
+    /**
+     * Retrieves one page of the fans of a user, after skipping the given number of fans.
+     *
+     * @param login        The login of the user.
+     * @param deslocamento The number of fans to skip.
+     * @param limite       The maximum number of fans in the page.
+     * @return The page of logins, with the token of the next page.
+     * @throws UserIsNotRegisterException If the user is not registered.
+     */
+    public Page<String> getFasPagina(String login, int deslocamento, int limite) throws UserIsNotRegisterException {
+        long inicio = this.metricas.iniciar(FacadeOperation.getFasPagina);
+        try {
+            User usuario = this.system.getUsuario(login);
 
-        return this.system.getFas(usuario);
+            return this.system.getFas(usuario, deslocamento, limite).converter(User::getLogin);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getFasPagina, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getFasPagina, inicio);
+        }
     }
 
     /**
@@ -336,10 +962,18 @@ public class Facade {
      * @throws UserIsNotRegisterException If the user is not registered.
      */
     public boolean ehPaquera(String id, String paquera) throws UserIsNotRegisterException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User paqueraUsuario = this.system.getUsuario(paquera);
+        long inicio = this.metricas.iniciar(FacadeOperation.ehPaquera);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User paqueraUsuario = this.system.getUsuario(paquera);
 
-        return usuario.getCrushes().contains(paqueraUsuario);
+            return this.system.ehPaquera(usuario, paqueraUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.ehPaquera, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.ehPaquera, inicio);
+        }
     }
 
     /**
@@ -354,10 +988,18 @@ public class Facade {
      */
     public void adicionarPaquera(String id, String paquera)
             throws UserIsNotRegisterException, UserAlreadyHaveRelationException, UserAutoRelationException, UserIsEnemyException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User paqueraUsuario = this.system.getUsuario(paquera);
+        long inicio = this.metricas.iniciar(FacadeOperation.adicionarPaquera);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User paqueraUsuario = this.system.getUsuario(paquera);
 
-        this.system.adicionarPaquera(usuario, paqueraUsuario);
+            this.system.adicionarPaquera(usuario, paqueraUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.adicionarPaquera, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.adicionarPaquera, inicio);
+        }
     }
 
     /**
@@ -368,9 +1010,17 @@ public class Facade {
      * @throws UserIsNotRegisterException If the user is not registered.
      */
     public String getPaqueras(String id) throws UserIsNotRegisterException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.getPaqueras);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
 
-        return this.system.getPaqueras(usuario);
+            return this.system.getPaqueras(usuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.getPaqueras, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.getPaqueras, inicio);
+        }
     }
 
     /**
@@ -384,10 +1034,18 @@ public class Facade {
      */
     public void adicionarInimigo(String id, String inimigo)
             throws UserIsNotRegisterException, UserAlreadyHaveRelationException, UserAutoRelationException {
-        User usuario = this.system.getSessaoUsuario(id);
-        User inimigoUsuario = this.system.getUsuario(inimigo);
+        long inicio = this.metricas.iniciar(FacadeOperation.adicionarInimigo);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+            User inimigoUsuario = this.system.getUsuario(inimigo);
 
-        this.system.adicionarInimigo(usuario, inimigoUsuario);
+            this.system.adicionarInimigo(usuario, inimigoUsuario);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.adicionarInimigo, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.adicionarInimigo, inicio);
+        }
     }
 
     /**
@@ -397,21 +1055,162 @@ public class Facade {
      * @throws UserIsNotRegisterException If the user is not registered.
      */
     public void removerUsuario(String id) throws UserIsNotRegisterException {
-        User usuario = this.system.getSessaoUsuario(id);
+        long inicio = this.metricas.iniciar(FacadeOperation.removerUsuario);
+        try {
+            User usuario = this.system.getSessaoUsuario(id);
+
+            this.system.removerUsuario(usuario, id);
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.removerUsuario, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.removerUsuario, inicio);
+        }
+    }
+
+
+    /**
+     * <p> Runs an ordered batch of operations for the user of a session, resolving the session only once. </p>
+     *
+     * <p> Each command names a method of this class and carries its arguments without the session id:
+     * <b>editarPerfil</b>, <b>adicionarAmigo</b>, <b>enviarRecado</b>, <b>lerRecado</b>,
+     * <b>criarComunidade</b>, <b>adicionarComunidade</b>, <b>enviarMensagem</b>, <b>lerMensagem</b>,
+     * <b>adicionarIdolo</b>, <b>adicionarPaquera</b>, <b>adicionarInimigo</b>, <b>getPaqueras</b> and
+     * <b>ehPaquera</b> act on the user of the session; <b>getAtributoUsuario</b>, <b>ehAmigo</b>,
+     * <b>getAmigos</b>, <b>getComunidades</b>, <b>getFas</b>, <b>ehFa</b> and <b>sugerirAmigos</b> take a login
+     * as in their own methods. </p>
+     *
+     * <p> A command that fails does not stop the batch: its result holds the error and the next commands
+     * still run. If the session is not valid, every command fails with the same error. </p>
+     *
+     * @param id        Session ID
+     * @param comandos  Commands to be run, in order
+     * @return Result of each command, in the same order
+     *
+     * @see BatchCommand
+     * @see BatchResult
+     */
+    public List<BatchResult> executarLote(String id, List<BatchCommand> comandos) {
+        long inicio = this.metricas.iniciar(FacadeOperation.executarLote);
+        try {
+            List<BatchResult> resultados = new ArrayList<>(comandos.size());
+
+            User usuario;
+            try {
+                usuario = this.system.getSessaoUsuario(id);
+            } catch (UserIsNotRegisterException e) {
+                for (int i = 0; i < comandos.size(); i++) {
+                    resultados.add(BatchResult.falha(e));
+                }
+                return resultados;
+            }
 
-        this.system.removerUsuario(usuario, id);
+            for (BatchCommand comando : comandos) {
+                try {
+                    resultados.add(BatchResult.sucesso(this.executarComando(usuario, comando)));
+                } catch (Exception e) {
+                    resultados.add(BatchResult.falha(e));
+                }
+            }
+            return resultados;
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.executarLote, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.executarLote, inicio);
+        }
     }
 
+    /**
+     * <p> Runs one command of a batch for the user of the session. </p>
+     *
+     * @return Value returned by the operation, or null if it returns nothing.
+     *
+     * @throws Exception Exception thrown by the operation.
+     */
+    private String executarComando(User usuario, BatchCommand comando) throws Exception {
+        String[] argumentos = comando.argumentos();
+
+        switch (comando.operacao()) {
+            case "editarPerfil":
+                this.system.editarPerfil(usuario, argumentos[0], argumentos[1]);
+                return null;
+            case "adicionarAmigo":
+                this.system.adicionarAmigo(usuario, this.system.getUsuario(argumentos[0]));
+                return null;
+            case "enviarRecado":
+                this.system.enviarRecado(usuario, this.system.getUsuario(argumentos[0]), argumentos[1]);
+                return null;
+            case "lerRecado":
+                return this.system.lerRecado(usuario);
+            case "criarComunidade":
+                this.system.criarComunidade(usuario, argumentos[0], argumentos[1]);
+                return null;
+            case "adicionarComunidade":
+                this.system.adicionarComunidade(usuario, argumentos[0]);
+                return null;
+            case "enviarMensagem":
+                this.system.enviarMensagem(this.system.getComunidade(argumentos[0]), argumentos[1]);
+                return null;
+            case "lerMensagem":
+                return this.system.lerMensagem(usuario);
+            case "adicionarIdolo":
+                this.system.adicionarIdolo(usuario, this.system.getUsuario(argumentos[0]));
+                return null;
+            case "adicionarPaquera":
+                this.system.adicionarPaquera(usuario, this.system.getUsuario(argumentos[0]));
+                return null;
+            case "adicionarInimigo":
+                this.system.adicionarInimigo(usuario, this.system.getUsuario(argumentos[0]));
+                return null;
+            case "getPaqueras":
+                return this.system.getPaqueras(usuario);
+            case "ehPaquera":
+                return Boolean.toString(this.system.ehPaquera(usuario, this.system.getUsuario(argumentos[0])));
+            case "getAtributoUsuario":
+                return this.system.getAtributoUsuario(this.system.getUsuario(argumentos[0]), argumentos[1]);
+            case "ehAmigo":
+                return Boolean.toString(this.system.ehAmigo(this.system.getUsuario(argumentos[0]),
+                        this.system.getUsuario(argumentos[1])));
+            case "getAmigos":
+                return this.system.getAmigos(this.system.getUsuario(argumentos[0]));
+            case "getComunidades":
+                return this.system.getComunidades(this.system.getUsuario(argumentos[0]));
+            case "getFas":
+                return this.system.getFas(this.system.getUsuario(argumentos[0]));
+            case "ehFa":
+                return Boolean.toString(this.system.ehFa(this.system.getUsuario(argumentos[0]),
+                        this.system.getUsuario(argumentos[1])));
+            case "sugerirAmigos":
+                return this.system.sugerirAmigos(this.system.getUsuario(argumentos[0]), Integer.parseInt(argumentos[1]));
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + comando.operacao());
+        }
+    }
 
     /**
      * <p> Writes the user registrations to a file and terminates the program.</p>
      * <p> Reaching the end of a script (end of file) is equivalent to encountering this command. </p>
      * <p> In this case, the command has no parameters, and will save only the registered users at this moment. </p>
+     * <p> The metrics of the facade are printed to the standard error when the property
+     * <b>jackut.metricas.relatorio</b> is true. </p>
      *
      * @throws AttributeNotFilledException Exception thrown if any attribute is not filled
      */
 
     public void encerrarSistema() throws AttributeNotFilledException {
-        this.system.encerrarSistema();
+        long inicio = this.metricas.iniciar(FacadeOperation.encerrarSistema);
+        try {
+            this.system.encerrarSistema();
+        } catch (Exception e) {
+            this.metricas.falhou(FacadeOperation.encerrarSistema, e);
+            throw e;
+        } finally {
+            this.metricas.concluir(FacadeOperation.encerrarSistema, inicio);
+            this.metricas.retirar();
+            if (Boolean.getBoolean("jackut.metricas.relatorio")) {
+                java.lang.System.err.print(this.metricas.relatorio());
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package br.ufal.ic.p2.jackut;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Calls, errors by exception type and latencies of each public operation of the {@code Facade}, and gauges
+ * of the state of the system. </p>
+ *
+ * <p> Every call is counted, in counters striped by thread as in the {@code LatencyRecorder}. Reading the
+ * clock costs about as much as the rest of the recording, so only one call in <b>jackut.metricas.amostragem</b>
+ * (a power of two, 8 by default; 1 times every call) is timed, which keeps the cost of a call within a few tens
+ * of nanoseconds. Errors are counted apart, only when an operation fails. The gauges are read from the
+ * {@code System} when asked for. </p>
+ *
+ * <p> The metrics are published through JMX, unless the property <b>jackut.jmx</b> is false, and as a
+ * plain-text report by {@code relatorio}. When several facades are open in the same JVM, the last one
+ * opened is the one published. </p>
+ *
+ * @see FacadeOperation
+ * @see FacadeMetricsMBean
+ */
+public class FacadeMetrics implements FacadeMetricsMBean {
+    private static final String NOME = "br.ufal.ic.p2.jackut:type=Facade";
+    private static final AtomicReference<FacadeMetrics> publicada = new AtomicReference<>();
+    private static final int FAIXAS = Math.min(8,
+            Integer.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1));
+    private static final long SEM_MEDICAO = Long.MIN_VALUE;
+
+    private final System system;
+    private final Estatisticas[] estatisticas = new Estatisticas[FacadeOperation.values().length];
+    private final AtomicLongArray[] chamadas = new AtomicLongArray[FAIXAS];
+    private final long amostragem;
+
+    private static class Estatisticas {
+        private final LatencyRecorder latencias = new LatencyRecorder();
+        private final LongAdder erros = new LongAdder();
+        private final Map<String, LongAdder> errosPorTipo = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * <p> Constructs a new {@code FacadeMetrics} for a system, with every counter at zero. </p>
+     *
+     * @param system System whose gauges are reported.
+     */
+    public FacadeMetrics(System system) {
+        this.system = system;
+        for (int i = 0; i < this.estatisticas.length; i++) {
+            this.estatisticas[i] = new Estatisticas();
+        }
+        for (int i = 0; i < FAIXAS; i++) {
+            this.chamadas[i] = new AtomicLongArray(this.estatisticas.length);
+        }
+        this.amostragem = Integer.highestOneBit(Math.max(1, Integer.getInteger("jackut.metricas.amostragem", 8)));
+    }
+
+    /**
+     * <p> Counts a call of an operation and returns its start time, to be given to {@code concluir}. </p>
+     *
+     * @param operacao Operation called.
+     * @return Current time, in nanoseconds, or a mark telling {@code concluir} the call is not timed.
+     */
+    public long iniciar(FacadeOperation operacao) {
+        int faixa = (int) Thread.currentThread().threadId() & (FAIXAS - 1);
+        long chamada = this.chamadas[faixa].getAndIncrement(operacao.ordinal());
+        if ((chamada & (this.amostragem - 1)) != 0) {
+            return SEM_MEDICAO;
+        }
+        return java.lang.System.nanoTime();
+    }
+
+    /**
+     * <p> Records the latency of a call of an operation, successful or not, if it was timed. </p>
+     *
+     * @param operacao Operation called.
+     * @param inicio   Value returned by {@code iniciar} when the call started.
+     */
+    public void concluir(FacadeOperation operacao, long inicio) {
+        if (inicio != SEM_MEDICAO) {
+            this.estatisticas[operacao.ordinal()].latencias.registrar(java.lang.System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * <p> Records the exception thrown by a call of an operation. </p>
+     *
+     * @param operacao Operation called.
+     * @param erro     Exception thrown.
+     */
+    public void falhou(FacadeOperation operacao, Exception erro) {
+        Estatisticas estatisticas = this.estatisticas[operacao.ordinal()];
+        estatisticas.erros.increment();
+        estatisticas.errosPorTipo.computeIfAbsent(erro.getClass().getSimpleName(), tipo -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * <p> Publishes these metrics in the platform MBean server, replacing those of a facade opened before. </p>
+     */
+    public void publicar() {
+        if (!Boolean.parseBoolean(java.lang.System.getProperty("jackut.jmx", "true"))) {
+            return;
+        }
+
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nome = new ObjectName(NOME);
+            synchronized (publicada) {
+                if (servidor.isRegistered(nome)) {
+                    servidor.unregisterMBean(nome);
+                }
+                servidor.registerMBean(this, nome);
+                publicada.set(this);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * <p> Removes these metrics from the platform MBean server, if they are the ones published. </p>
+     */
+    public void retirar() {
+        try {
+            synchronized (publicada) {
+                if (publicada.get() == this) {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(NOME));
+                    publicada.set(null);
+                }
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int getUsuarios() {
+        return this.system.contarUsuarios();
+    }
+
+    @Override
+    public int getSessoes() {
+        return this.system.contarSessoes();
+    }
+
+    @Override
+    public int getComunidades() {
+        return this.system.contarComunidades();
+    }
+
+    @Override
+    public long getRecadosPendentes() {
+        return this.system.contarRecados();
+    }
+
+    @Override
+    public long getMensagensPendentes() {
+        return this.system.contarMensagens();
+    }
+
+    @Override
+    public double getDuracaoUltimoCheckpoint() {
+        Checkpoint checkpoint = this.system.getUltimoCheckpoint();
+        if (checkpoint == null) {
+            return -1;
+        }
+        return (checkpoint.getDuracaoCaptura() + checkpoint.getDuracaoGravacao()) / 1e6;
+    }
+
+    @Override
+    public String[] getOperacoes() {
+        FacadeOperation[] operacoes = FacadeOperation.values();
+        String[] nomes = new String[operacoes.length];
+        for (int i = 0; i < operacoes.length; i++) {
+            nomes[i] = operacoes[i].name();
+        }
+        return nomes;
+    }
+
+    @Override
+    public long chamadas(String operacao) {
+        return this.contarChamadas(FacadeOperation.valueOf(operacao));
+    }
+
+    @Override
+    public long erros(String operacao) {
+        return this.getEstatisticas(operacao).erros.sum();
+    }
+
+    @Override
+    public long erros(String operacao, String tipo) {
+        LongAdder erros = this.getEstatisticas(operacao).errosPorTipo.get(tipo);
+        return erros == null ? 0 : erros.sum();
+    }
+
+    @Override
+    public double percentil(String operacao, double quantil) {
+        return this.getEstatisticas(operacao).latencias.percentis(quantil)[0] / 1e3;
+    }
+
+    @Override
+    public void zerar() {
+        for (AtomicLongArray faixa : this.chamadas) {
+            for (int i = 0; i < faixa.length(); i++) {
+                faixa.set(i, 0);
+            }
+        }
+        for (Estatisticas estatisticas : this.estatisticas) {
+            estatisticas.latencias.zerar();
+            estatisticas.erros.reset();
+            estatisticas.errosPorTipo.clear();
+        }
+    }
+
+    /**
+     * <p> Returns one line per operation called, with its calls, errors and p50, p99 and p99.9 latencies in
+     * microseconds, followed by its errors by type and by the gauges. </p>
+     *
+     * @return Formatted report.
+     */
+    @Override
+    public String relatorio() {
+        StringBuilder relatorio = new StringBuilder();
+        relatorio.append(String.format("%-28s %12s %10s %10s %10s %10s%n",
+                "operacao", "chamadas", "erros", "p50 us", "p99 us", "p99.9 us"));
+
+        for (FacadeOperation operacao : FacadeOperation.values()) {
+            Estatisticas estatisticas = this.estatisticas[operacao.ordinal()];
+            long chamadas = this.contarChamadas(operacao);
+            if (chamadas == 0) {
+                continue;
+            }
+
+            long[] percentis = estatisticas.latencias.percentis(0.5, 0.99, 0.999);
+            relatorio.append(String.format("%-28s %12d %10d %10.1f %10.1f %10.1f%n", operacao.name(), chamadas,
+                    estatisticas.erros.sum(), percentis[0] / 1e3, percentis[1] / 1e3, percentis[2] / 1e3));
+            for (Map.Entry<String, LongAdder> tipo : new TreeMap<>(estatisticas.errosPorTipo).entrySet()) {
+                relatorio.append(String.format("    %-36s %10d%n", tipo.getKey(), tipo.getValue().sum()));
+            }
+        }
+
+        relatorio.append(String.format("%-28s %12d%n", "usuarios", this.getUsuarios()));
+        relatorio.append(String.format("%-28s %12d%n", "sessoes", this.getSessoes()));
+        relatorio.append(String.format("%-28s %12d%n", "comunidades", this.getComunidades()));
+        relatorio.append(String.format("%-28s %12d%n", "recados pendentes", this.getRecadosPendentes()));
+        relatorio.append(String.format("%-28s %12d%n", "mensagens pendentes", this.getMensagensPendentes()));
+        relatorio.append(String.format("%-28s %12.3f ms%n", "ultimo checkpoint", this.getDuracaoUltimoCheckpoint()));
+        return relatorio.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.relatorio();
+    }
+
+    private long contarChamadas(FacadeOperation operacao) {
+        long chamadas = 0;
+        for (AtomicLongArray faixa : this.chamadas) {
+            chamadas += faixa.get(operacao.ordinal());
+        }
+        return chamadas;
+    }
+
+    private Estatisticas getEstatisticas(String operacao) {
+        return this.estatisticas[FacadeOperation.valueOf(operacao).ordinal()];
+    }
+}
@@ -0,0 +1,82 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> Management interface of the {@code FacadeMetrics}, registered in the platform MBean server as
+ * <b>br.ufal.ic.p2.jackut:type=Facade</b>. </p>
+ *
+ * <p> Operations are named as in {@code FacadeOperation}; latencies are given in microseconds. </p>
+ *
+ * @see FacadeMetrics
+ */
+public interface FacadeMetricsMBean {
+    /**
+     * @return Number of registered users.
+     */
+    int getUsuarios();
+
+    /**
+     * @return Number of open sessions.
+     */
+    int getSessoes();
+
+    /**
+     * @return Number of communities.
+     */
+    int getComunidades();
+
+    /**
+     * @return Number of unread recados of all users.
+     */
+    long getRecadosPendentes();
+
+    /**
+     * @return Number of unread community messages of all users.
+     */
+    long getMensagensPendentes();
+
+    /**
+     * @return Duration of the last checkpoint, captured and written, in milliseconds, or -1 if none was written.
+     */
+    double getDuracaoUltimoCheckpoint();
+
+    /**
+     * @return Names of the operations of the {@code Facade}.
+     */
+    String[] getOperacoes();
+
+    /**
+     * @param operacao Name of the operation.
+     * @return Number of calls of the operation, including the failed ones.
+     */
+    long chamadas(String operacao);
+
+    /**
+     * @param operacao Name of the operation.
+     * @return Number of calls of the operation that threw an exception.
+     */
+    long erros(String operacao);
+
+    /**
+     * @param operacao Name of the operation.
+     * @param tipo     Simple name of the exception class, such as {@code UserIsNotRegisterException}.
+     * @return Number of calls of the operation that threw that exception.
+     */
+    long erros(String operacao, String tipo);
+
+    /**
+     * @param operacao Name of the operation.
+     * @param quantil  Fraction of the calls, such as 0.99.
+     * @return Latency below which that fraction of the calls fall, in microseconds.
+     */
+    double percentil(String operacao, double quantil);
+
+    /**
+     * @return Plain-text report of every operation called and of the gauges.
+     */
+    String relatorio();
+
+    /**
+     * <p> Clears the counters and histograms of every operation. </p>
+     */
+    void zerar();
+}
@@ -0,0 +1,18 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> Public operations of the {@code Facade} whose calls, errors and latencies are recorded. </p>
+ * <p> The constants are named after the methods, so the metrics show the names of the API; overloads of a
+ * method share its constant. </p>
+ *
+ * @see FacadeMetrics
+ */
+public enum FacadeOperation {
+    zerarSistema, criarUsuario, abrirSessao, encerrarSessao, getAtributoUsuario, getAtributosUsuario,
+    editarPerfil, adicionarAmigo, ehAmigo, verificarRelacoes, getAmigos, getAmigosPagina,
+    enviarRecado, lerRecado, lerRecados, criarComunidade, getDescricaoComunidade, getDonoComunidade,
+    getMembrosComunidade, getMembrosComunidadePagina, getComunidades, sugerirAmigos, adicionarComunidade, lerMensagem,
+    lerMensagens, enviarMensagem, ehFa, adicionarIdolo, getFas, getFasPagina,
+    ehPaquera, adicionarPaquera, getPaqueras, adicionarInimigo, removerUsuario, executarLote,
+    encerrarSistema
+}
@@ -0,0 +1,56 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p> Base of the storage engines that keep their data in a directory, with an operation log and the
+ * {@code checkpoint.txt} manifest written by {@code UtilsFileHandler}. </p>
+ *
+ * <p> Two engines in the same JVM must not share a directory. </p>
+ *
+ * @see UtilsFileHandler#gravarCheckpoint(File, Checkpoint)
+ */
+public abstract class FileStorageEngine implements StorageEngine {
+    private final File pasta;
+
+    /**
+     * <p> Constructs a new {@code FileStorageEngine} over a data directory. </p>
+     *
+     * @param pasta Data directory, created if it does not exist.
+     */
+    protected FileStorageEngine(File pasta) {
+        this.pasta = pasta;
+    }
+
+    /**
+     * <p> Returns the directory where the engine keeps its data. </p>
+     *
+     * @return Data directory.
+     */
+    public File getPasta() {
+        return this.pasta;
+    }
+
+    /**
+     * <p> Creates the directory and completes the checkpoint interrupted by a crash, if any, before the
+     * image is loaded. </p>
+     *
+     * @throws IOException Exception thrown if the interrupted checkpoint cannot be completed.
+     */
+    protected void recuperar() throws IOException {
+        UtilsFileHandler.criarPasta(this.pasta);
+        UtilsFileHandler.recuperarCheckpoint(this.pasta);
+    }
+
+    @Override
+    public WriteAheadLog abrirLog(DurabilityMode durabilidade, long intervalo) throws IOException {
+        return new WriteAheadLog(new File(this.pasta, "wal.log"), durabilidade, intervalo);
+    }
+
+    @Override
+    public void gravar(Checkpoint checkpoint) throws IOException {
+        UtilsFileHandler.criarPasta(this.pasta);
+        UtilsFileHandler.gravarCheckpoint(this.pasta, checkpoint);
+    }
+}
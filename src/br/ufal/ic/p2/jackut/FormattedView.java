@@ -0,0 +1,102 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * <p> Cached <b>{a,b,c}</b> representation of an insertion-ordered relation, as returned by {@code getAmigos},
+ * {@code getFas}, {@code getPaqueras}, {@code getComunidades} and {@code getMembrosComunidade}. </p>
+ *
+ * <p> The set that owns the view reports its changes: an item appended at the end is patched into the cached
+ * text, while only a removal drops it, to be rebuilt by the next read. The text is kept in a builder, patched in
+ * time proportional to the item. If the cached string was read since the last change, it is patched right away
+ * too, so reads between appends return it as is; during a burst of appends with no reads in between, only the
+ * builder is patched and the next read copies it once. Repeated reads of an unchanged relation return the same
+ * string. </p>
+ *
+ * <p> The view does not rely on the locks of its callers to stay consistent. Changes are bracketed by
+ * {@code antesDeAlterar} and one of {@code anexado}, {@code alterado} or {@code inalterado}, which bump a
+ * counter, and a rebuilt text is only kept if no change started or finished while the relation was being read,
+ * as in a seqlock. </p>
+ *
+ * @see RelationSet
+ * @see GraphStore.Relacao
+ */
+public class FormattedView {
+    private StringBuilder texto;
+    private String formatada;
+    private boolean lida;
+    private int escritas;
+
+    /**
+     * <p> Returns the formatted relation, rebuilding it only if it changed in a way that could not be
+     * patched. </p>
+     *
+     * @param itens The relation that owns this view.
+     * @return Items of the relation, in the format <b>{a,b,c}</b>.
+     */
+    public String formatar(Iterable<?> itens) {
+        int escritas;
+        synchronized (this) {
+            if (this.formatada == null && this.texto != null) {
+                this.formatada = this.texto.toString();
+            }
+            if (this.formatada != null) {
+                this.lida = true;
+                return this.formatada;
+            }
+            escritas = this.escritas;
+        }
+
+        StringBuilder texto = UtilsString.formatar(itens, new StringBuilder());
+        String formatada = texto.toString();
+
+        synchronized (this) {
+            if (this.escritas == escritas && (escritas & 1) == 0) {
+                this.texto = texto;
+                this.formatada = formatada;
+                this.lida = true;
+            }
+        }
+        return formatada;
+    }
+
+    /**
+     * <p> Called by the owner before changing the relation. </p>
+     */
+    public synchronized void antesDeAlterar() {
+        this.escritas++;
+    }
+
+    /**
+     * <p> Called by the owner after appending an item at the end of the relation. </p>
+     *
+     * @param item Item appended.
+     */
+    public synchronized void anexado(Object item) {
+        if (this.texto != null) {
+            this.texto.setLength(this.texto.length() - 1);
+            if (this.texto.length() > 1) {
+                this.texto.append(',');
+            }
+            this.texto.append(item).append('}');
+        }
+        this.formatada = this.texto != null && this.formatada != null && this.lida ? this.texto.toString() : null;
+        this.lida = false;
+        this.escritas++;
+    }
+
+    /**
+     * <p> Called by the owner after any other change of the relation, such as a removal. </p>
+     */
+    public synchronized void alterado() {
+        this.texto = null;
+        this.formatada = null;
+        this.lida = false;
+        this.escritas++;
+    }
+
+    /**
+     * <p> Called by the owner after a change that did not happen, such as adding an item already present. </p>
+     */
+    public synchronized void inalterado() {
+        this.escritas++;
+    }
+}
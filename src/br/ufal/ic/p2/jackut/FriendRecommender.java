@@ -0,0 +1,436 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p> Friend suggestions ("pessoas que você talvez conheça"), computed over the {@code GraphStore}. </p>
+ *
+ * <p> The candidates are the friends of the user's friends. Each one scores its number of mutual friends,
+ * multiplied by one plus the number of communities it shares with the user. The user, their friends, their
+ * enemies and anyone with a pending friend request to or from them are left out. Ties are broken by the
+ * number of mutual friends and then by login. </p>
+ *
+ * <p> Mutual friends are counted in a small open-addressing table sized by the number of friends of the
+ * user's friends, so a suggestion allocates in proportion to the friendships it walks and never to the number
+ * of users, even when every request runs on its own virtual thread. When the friends of the user have more
+ * than {@code LIMITE_PARALELO} friends in total, the counting is split between the threads of the common
+ * fork-join pool. </p>
+ *
+ * <p> The best {@code TAMANHO_CACHE} suggestions of each user are cached with the time they started to be
+ * computed, on a clock ticked by every invalidation. Each user carries two stamps of that clock: the last
+ * change read only by their own ranking, and the last change read by the rankings of their friends too (their
+ * friendships, or a community joined by one of their friends). A cached ranking is used while neither stamp
+ * of the user, nor the second stamp of any of their friends, is newer than it. Invalidating therefore costs
+ * at most one stamp per friend of the user who changed, and checking costs one lookup per friend. </p>
+ *
+ * <p> Every neighbourhood is read under the read lock of the stripe of its owner, one at a time, so the ranking
+ * never walks a relation while it changes, and never holds two stripes at once, which could deadlock with a
+ * writer taking them in order. A ranking may therefore mix the states before and after a change that ran
+ * while it was computed; the change stamped a time newer than the ranking, so it is computed again on the
+ * next request. </p>
+ *
+ * @see GraphStore
+ */
+public class FriendRecommender {
+    private static final int LIMITE_PARALELO = 1 << 15;
+    private static final int TAMANHO_CACHE = 32;
+
+    private final GraphStore grafo;
+    private final StripedLocks travas;
+    private final Map<User, Sugestoes> cache = new ConcurrentHashMap<>();
+    private final AtomicLong relogio = new AtomicLong();
+    private final Map<User, Long> alteracoesProprias = new ConcurrentHashMap<>();
+    private final Map<User, Long> alteracoesVizinhanca = new ConcurrentHashMap<>();
+    private volatile long limpeza;
+
+    /**
+     * <p> Cached ranking of a user. {@code completa} is true if it holds every candidate, and {@code inicio} is
+     * the time of the clock when it started to be computed. </p>
+     */
+    private record Sugestoes(List<User> usuarios, boolean completa, long inicio) {
+    }
+
+    /**
+     * <p> Candidate counted by the ranking. </p>
+     */
+    private record Candidato(User usuario, int comuns, long pontuacao) {
+    }
+
+    private static final Comparator<Candidato> ORDEM = Comparator.comparingLong(Candidato::pontuacao)
+            .thenComparingInt(Candidato::comuns)
+            .thenComparing(candidato -> candidato.usuario().getLogin(), Comparator.reverseOrder());
+
+    /**
+     * <p> Constructs a new {@code FriendRecommender} over the given store. </p>
+     *
+     * @param grafo  Store of the relations.
+     * @param travas Locks of the system, whose stripes protect the relations of each user.
+     */
+    public FriendRecommender(GraphStore grafo, StripedLocks travas) {
+        this.grafo = grafo;
+        this.travas = travas;
+    }
+
+    /**
+     * <p> Returns the best friend suggestions for a user. </p>
+     *
+     * @param usuario User.
+     * @param k       Maximum number of suggestions.
+     * @return Suggestions, best first.
+     */
+    public List<User> sugerir(User usuario, int k) {
+        if (k <= 0 || usuario.getVertice() == null) {
+            return List.of();
+        }
+
+        Sugestoes sugestoes = this.cache.get(usuario);
+        if (sugestoes == null || (!sugestoes.completa() && sugestoes.usuarios().size() < k)
+                || !this.valida(usuario, sugestoes)) {
+            sugestoes = this.calcularEGuardar(usuario, Math.max(k, TAMANHO_CACHE));
+        }
+
+        List<User> usuarios = sugestoes.usuarios();
+        return usuarios.size() <= k ? usuarios : usuarios.subList(0, k);
+    }
+
+    /**
+     * <p> Forgets the suggestions of a user, after a change that only affects their own ranking. </p>
+     *
+     * @param usuario User.
+     */
+    public void invalidar(User usuario) {
+        carimbar(this.alteracoesProprias, usuario, this.relogio.incrementAndGet());
+    }
+
+    /**
+     * <p> Forgets the suggestions of a user and of their friends, after a friendship of the user changed. </p>
+     *
+     * @param usuario User.
+     */
+    public void invalidarAmizades(User usuario) {
+        carimbar(this.alteracoesVizinhanca, usuario, this.relogio.incrementAndGet());
+    }
+
+    /**
+     * <p> Forgets the suggestions where the score of a user may appear, after they joined a community: their
+     * own, and those of the friends of their friends, through the stamps of their friends. Must be called with
+     * the user locked. </p>
+     *
+     * @param usuario User.
+     */
+    public void invalidarComunidades(User usuario) {
+        long agora = this.relogio.incrementAndGet();
+        carimbar(this.alteracoesProprias, usuario, agora);
+        for (User amigo : usuario.getFriends()) {
+            carimbar(this.alteracoesVizinhanca, amigo, agora);
+        }
+    }
+
+    /**
+     * <p> Forgets the cached ranking and the stamps of a removed user. The rankings where they appeared must be
+     * invalidated through their friends, as {@code invalidarAmizades} does. </p>
+     *
+     * @param usuario Removed user.
+     */
+    public void esquecer(User usuario) {
+        this.cache.remove(usuario);
+        this.alteracoesProprias.remove(usuario);
+        this.alteracoesVizinhanca.remove(usuario);
+    }
+
+    /**
+     * <p> Forgets every suggestion. Must be called with every stripe locked. </p>
+     */
+    public void limpar() {
+        this.limpeza = this.relogio.incrementAndGet();
+        this.cache.clear();
+        this.alteracoesProprias.clear();
+        this.alteracoesVizinhanca.clear();
+    }
+
+    private static void carimbar(Map<User, Long> carimbos, User usuario, long agora) {
+        carimbos.merge(usuario, agora, Math::max);
+    }
+
+    private static boolean alteradoDepois(Map<User, Long> carimbos, User usuario, long inicio) {
+        Long carimbo = carimbos.get(usuario);
+        return carimbo != null && carimbo > inicio;
+    }
+
+    /**
+     * <p> Returns true if no change read by a cached ranking was stamped after it started. The friends of the
+     * user are read under their read lock. </p>
+     */
+    private boolean valida(User usuario, Sugestoes sugestoes) {
+        long inicio = sugestoes.inicio();
+        if (this.limpeza > inicio || alteradoDepois(this.alteracoesProprias, usuario, inicio)
+                || alteradoDepois(this.alteracoesVizinhanca, usuario, inicio)) {
+            return false;
+        }
+
+        return this.travas.ler(usuario.getLogin(), () -> {
+            for (User amigo : usuario.getFriends()) {
+                if (alteradoDepois(this.alteracoesVizinhanca, amigo, inicio)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * <p> Computes the ranking of a user and caches it. </p>
+     */
+    private Sugestoes calcularEGuardar(User usuario, int limite) {
+        Sugestoes sugestoes = this.calcular(usuario, limite, this.relogio.get());
+        this.cache.put(usuario, sugestoes);
+        return sugestoes;
+    }
+
+    private Sugestoes calcular(User usuario, int limite, long inicio) {
+        int id = usuario.getVertice().getId();
+        int[] amigos = this.travas.ler(usuario.getLogin(), () -> this.grafo.vizinhos(id, GraphStore.AMIGOS));
+
+        long trabalho = 0;
+        for (int amigo : amigos) {
+            trabalho += this.grau(amigo);
+        }
+
+        long[] contagens = trabalho > LIMITE_PARALELO
+                ? ForkJoinPool.commonPool().invoke(new Contagem(amigos, 0, amigos.length))
+                : this.contar(amigos, 0, amigos.length, trabalho);
+
+        long[] permitidos = this.travas.ler(usuario.getLogin(), () -> this.filtrar(id, contagens));
+        Set<Community> comunidades = this.travas.ler(usuario.getLogin(),
+                () -> new HashSet<>(usuario.getComunidadesParticipantes()));
+
+        PriorityQueue<Candidato> melhores = new PriorityQueue<>(ORDEM);
+        int candidatos = 0;
+        for (long contagem : permitidos) {
+            User outro = this.grafo.getUsuario((int) (contagem >>> 32));
+            if (outro == null) {
+                continue;
+            }
+
+            int comuns = (int) contagem;
+            int emComum = this.travas.ler(outro.getLogin(), () -> comunidadesEmComum(comunidades, outro));
+
+            candidatos++;
+            melhores.add(new Candidato(outro, comuns, (long) comuns * (1 + emComum)));
+            if (melhores.size() > limite) {
+                melhores.poll();
+            }
+        }
+
+        List<User> resultado = new ArrayList<>(melhores.size());
+        while (!melhores.isEmpty()) {
+            resultado.add(melhores.poll().usuario());
+        }
+        Collections.reverse(resultado);
+        return new Sugestoes(List.copyOf(resultado), candidatos <= limite, inicio);
+    }
+
+    /**
+     * <p> Returns the counted candidates that are not the user nor excluded by their relations. Called under
+     * the read lock of the user. </p>
+     */
+    private long[] filtrar(int id, long[] contagens) {
+        long[] permitidos = new long[contagens.length];
+        int n = 0;
+        for (long contagem : contagens) {
+            int candidato = (int) (contagem >>> 32);
+            if (candidato != id && !this.excluido(id, candidato)) {
+                permitidos[n++] = contagem;
+            }
+        }
+        return Arrays.copyOf(permitidos, n);
+    }
+
+    private boolean excluido(int id, int candidato) {
+        return this.grafo.contem(id, GraphStore.AMIGOS, candidato)
+                || this.grafo.contem(id, GraphStore.INIMIGOS, candidato)
+                || this.grafo.contem(id, GraphStore.SOLICITACOES_ENVIADAS, candidato)
+                || this.grafo.contem(id, GraphStore.SOLICITACOES_RECEBIDAS, candidato);
+    }
+
+    private static int comunidadesEmComum(Set<Community> comunidades, User outro) {
+        int comuns = 0;
+        for (Community comunidade : outro.getComunidadesParticipantes()) {
+            if (comunidades.contains(comunidade)) {
+                comuns++;
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * <p> Counts the friends of a range of friends, reading the friends of each one under its read lock. </p>
+     *
+     * @param trabalho Number of friends of the range, used to size the table.
+     * @return Candidates and counts, packed as {@code id << 32 | count}.
+     */
+    private long[] contar(int[] amigos, int inicio, int fim, long trabalho) {
+        Contador contador = new Contador((int) Math.min(trabalho, this.grafo.getQuantidade()));
+        for (int i = inicio; i < fim; i++) {
+            int amigo = amigos[i];
+            User usuario = this.grafo.getUsuario(amigo);
+            if (usuario != null) {
+                this.travas.ler(usuario.getLogin(), () -> {
+                    this.grafo.paraCadaVizinho(amigo, GraphStore.AMIGOS, contador::somar);
+                    return null;
+                });
+            }
+        }
+        return contador.empacotar();
+    }
+
+    /**
+     * <p> Returns the number of friends of a user, read under its read lock. </p>
+     */
+    private int grau(int id) {
+        User usuario = this.grafo.getUsuario(id);
+        return usuario == null ? 0 : this.travas.ler(usuario.getLogin(), () -> this.grafo.grau(id, GraphStore.AMIGOS));
+    }
+
+    /**
+     * <p> Open-addressing table from user id to count, with linear probing. </p>
+     * <p> The keys are stored as {@code id + 1}, so an empty slot is 0. The table doubles when half full, so a
+     * degree that grew after it was read can only make it grow, never loop. </p>
+     */
+    private static final class Contador {
+        private int[] chaves;
+        private int[] valores;
+        private int tamanho;
+
+        Contador(int esperados) {
+            int capacidade = Integer.highestOneBit(Math.max(8, esperados) * 2 - 1) << 1;
+            this.chaves = new int[capacidade];
+            this.valores = new int[capacidade];
+        }
+
+        void somar(int id) {
+            int mascara = this.chaves.length - 1;
+            int indice = espalhar(id) & mascara;
+            while (this.chaves[indice] != 0) {
+                if (this.chaves[indice] == id + 1) {
+                    this.valores[indice]++;
+                    return;
+                }
+                indice = (indice + 1) & mascara;
+            }
+
+            this.chaves[indice] = id + 1;
+            this.valores[indice] = 1;
+            if (++this.tamanho * 2 > this.chaves.length) {
+                this.crescer();
+            }
+        }
+
+        long[] empacotar() {
+            long[] resultado = new long[this.tamanho];
+            int n = 0;
+            for (int i = 0; i < this.chaves.length; i++) {
+                if (this.chaves[i] != 0) {
+                    resultado[n++] = (long) (this.chaves[i] - 1) << 32 | this.valores[i];
+                }
+            }
+            return resultado;
+        }
+
+        private void crescer() {
+            int[] chaves = this.chaves;
+            int[] valores = this.valores;
+            this.chaves = new int[chaves.length * 2];
+            this.valores = new int[chaves.length * 2];
+
+            int mascara = this.chaves.length - 1;
+            for (int i = 0; i < chaves.length; i++) {
+                if (chaves[i] != 0) {
+                    int indice = espalhar(chaves[i] - 1) & mascara;
+                    while (this.chaves[indice] != 0) {
+                        indice = (indice + 1) & mascara;
+                    }
+                    this.chaves[indice] = chaves[i];
+                    this.valores[indice] = valores[i];
+                }
+            }
+        }
+
+        private static int espalhar(int id) {
+            int hash = id * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * <p> Counting split between the threads of the fork-join pool, by range of friends. </p>
+     */
+    private final class Contagem extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] amigos;
+        private final int inicio;
+        private final int fim;
+
+        Contagem(int[] amigos, int inicio, int fim) {
+            this.amigos = amigos;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected long[] compute() {
+            long trabalho = 0;
+            for (int i = this.inicio; i < this.fim; i++) {
+                trabalho += FriendRecommender.this.grau(this.amigos[i]);
+            }
+
+            if (trabalho <= LIMITE_PARALELO || this.fim - this.inicio < 2) {
+                return FriendRecommender.this.contar(this.amigos, this.inicio, this.fim, trabalho);
+            }
+
+            int meio = (this.inicio + this.fim) >>> 1;
+            Contagem esquerda = new Contagem(this.amigos, this.inicio, meio);
+            esquerda.fork();
+            long[] direita = new Contagem(this.amigos, meio, this.fim).compute();
+            return somar(esquerda.join(), direita);
+        }
+    }
+
+    /**
+     * <p> Merges two packed counts, adding the counts of the candidates found in both. </p>
+     */
+    private static long[] somar(long[] a, long[] b) {
+        Arrays.sort(a);
+        Arrays.sort(b);
+
+        long[] soma = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            long idA = i < a.length ? a[i] >>> 32 : Long.MAX_VALUE;
+            long idB = j < b.length ? b[j] >>> 32 : Long.MAX_VALUE;
+            if (idA == idB) {
+                soma[n++] = a[i++] + (b[j++] & 0xFFFFFFFFL);
+            } else if (idA < idB) {
+                soma[n++] = a[i++];
+            } else {
+                soma[n++] = b[j++];
+            }
+        }
+        return Arrays.copyOf(soma, n);
+    }
+}
@@ -0,0 +1,720 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * <p> Store of the relations between users, kept as primitive int adjacency arrays. </p>
+ *
+ * <p> Every registered user receives a dense int id. The edges of each relation (friends, friend requests,
+ * idols, fans, crushes and enemies) are kept in two layouts: </p>
+ *
+ * <ul>
+ *     <li> a <b>CSR</b> (compressed sparse row) layout shared by all users, where the neighbours of user
+ *     {@code v} are {@code destinos[inicio[v]]} to {@code destinos[inicio[v + 1] - 1]}, in insertion order,
+ *     with a sorted copy of the ranges of high-degree users for binary search; </li>
+ *     <li> a growable row per user and relation, created when the user's edges change after the last
+ *     compaction, with an open-addressing index once it grows past {@code LIMITE_LINEAR} items. </li>
+ * </ul>
+ *
+ * <p> {@code compactar} folds the rows back into the CSR layout. It runs after the load and after a
+ * checkpoint once enough edges were changed, with every operation of the system held. </p>
+ *
+ * <p> The accessors of {@code User} are views over the store, so each edge costs one int instead of an
+ * object reference in a boxed list. Each view caches its <b>{a,b,c}</b> text in a {@code FormattedView}. </p>
+ *
+ * @see User
+ */
+public class GraphStore {
+    public static final int AMIGOS = 0;
+    public static final int SOLICITACOES_ENVIADAS = 1;
+    public static final int SOLICITACOES_RECEBIDAS = 2;
+    public static final int IDOLOS = 3;
+    public static final int FAS = 4;
+    public static final int PAQUERAS = 5;
+    public static final int PAQUERAS_RECEBIDAS = 6;
+    public static final int INIMIGOS = 7;
+
+    private static final int RELACOES = 8;
+    private static final int[] INVERSAS = {
+            AMIGOS, SOLICITACOES_RECEBIDAS, SOLICITACOES_ENVIADAS, FAS, IDOLOS, PAQUERAS_RECEBIDAS, PAQUERAS, INIMIGOS
+    };
+    private static final int LIMITE_LINEAR = 16;
+    private static final int VAZIO = -1;
+
+    private volatile User[] usuarios = new User[16];
+    private int proximoId;
+
+    private volatile Csr[] csr = new Csr[RELACOES];
+    private final LongAdder arestasSoltas = new LongAdder();
+    private long arestasCompactadas;
+
+    /**
+     * <p> Edges of every user in one relation, in the CSR layout. </p>
+     * <p> The sorted copy only holds the ranges of the users with more than {@code LIMITE_LINEAR} edges. </p>
+     */
+    private record Csr(int[] inicio, int[] destinos, int[] inicioOrdenado, int[] ordenados) {
+        static final Csr VAZIO = new Csr(new int[] { 0 }, new int[0], new int[] { 0 }, new int[0]);
+
+        int usuarios() {
+            return this.inicio.length - 1;
+        }
+    }
+
+    /**
+     * <p> Node of a user in the store. </p>
+     */
+    public static final class Vertice {
+        private final GraphStore grafo;
+        private final int id;
+        private final Linha[] linhas = new Linha[RELACOES];
+        private final Relacao[] visoes = new Relacao[RELACOES];
+
+        private Vertice(GraphStore grafo, int id) {
+            this.grafo = grafo;
+            this.id = id;
+        }
+
+        /**
+         * <p> Returns the id of the user. </p>
+         *
+         * @return Dense id, from 0 to the number of users registered.
+         */
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * <p> Returns the view of the users related to this user. </p>
+         *
+         * @param tipo Relation, one of the constants of {@code GraphStore}.
+         * @return Live view of the relation.
+         */
+        public Relacao relacao(int tipo) {
+            Relacao visao = this.visoes[tipo];
+            if (visao == null) {
+                visao = new Relacao(this, tipo);
+                this.visoes[tipo] = visao;
+            }
+            return visao;
+        }
+    }
+
+    /**
+     * <p> Live, insertion-ordered view of the users related to a user. </p>
+     */
+    public static final class Relacao extends AbstractSet<User> implements OrderedRelation<User> {
+        private final Vertice vertice;
+        private final int tipo;
+        private final FormattedView formatada = new FormattedView();
+
+        private Relacao(Vertice vertice, int tipo) {
+            this.vertice = vertice;
+            this.tipo = tipo;
+        }
+
+        /**
+         * <p> Returns the related users in the format <b>{a,b,c}</b>, cached between changes. </p>
+         *
+         * @return Formatted logins.
+         */
+        public String formatar() {
+            return this.formatada.formatar(this);
+        }
+
+        @Override
+        public int size() {
+            return this.vertice.grafo.grau(this.vertice, this.tipo);
+        }
+
+        @Override
+        public int getLimite() {
+            Linha linha = this.vertice.linhas[this.tipo];
+            if (linha != null) {
+                return linha.ocupados;
+            }
+
+            Csr csr = this.vertice.grafo.csr(this.tipo);
+            int id = this.vertice.id;
+            return id < csr.usuarios() ? csr.inicio[id + 1] - csr.inicio[id] : 0;
+        }
+
+        @Override
+        public User getItem(int posicao) {
+            Linha linha = this.vertice.linhas[this.tipo];
+            int id;
+            if (linha != null) {
+                id = linha.itens[posicao];
+            } else {
+                Csr csr = this.vertice.grafo.csr(this.tipo);
+                id = csr.destinos[csr.inicio[this.vertice.id] + posicao];
+            }
+            return id == VAZIO ? null : this.vertice.grafo.usuarios[id];
+        }
+
+        @Override
+        public boolean contains(Object item) {
+            int id = this.idDe(item);
+            return id >= 0 && this.vertice.grafo.contem(this.vertice, this.tipo, id);
+        }
+
+        @Override
+        public boolean add(User usuario) {
+            int id = this.idDe(usuario);
+            if (id < 0) {
+                throw new IllegalArgumentException("Usuário não registrado: " + usuario);
+            }
+
+            this.formatada.antesDeAlterar();
+            if (this.vertice.grafo.adicionar(this.vertice, this.tipo, id)) {
+                this.formatada.anexado(usuario);
+                return true;
+            }
+            this.formatada.inalterado();
+            return false;
+        }
+
+        @Override
+        public boolean remove(Object item) {
+            int id = this.idDe(item);
+            if (id < 0) {
+                return false;
+            }
+
+            this.formatada.antesDeAlterar();
+            if (this.vertice.grafo.remover(this.vertice, this.tipo, id, true)) {
+                this.formatada.alterado();
+                return true;
+            }
+            this.formatada.inalterado();
+            return false;
+        }
+
+        @Override
+        public Iterator<User> iterator() {
+            GraphStore grafo = this.vertice.grafo;
+            User[] usuarios = grafo.usuarios;
+            Linha linha = this.vertice.linhas[this.tipo];
+
+            int[] ids;
+            int inicio;
+            int fim;
+            if (linha != null) {
+                ids = linha.itens;
+                inicio = 0;
+                fim = linha.ocupados;
+            } else {
+                Csr csr = grafo.csr(this.tipo);
+                ids = csr.destinos;
+                inicio = this.vertice.id < csr.usuarios() ? csr.inicio[this.vertice.id] : 0;
+                fim = this.vertice.id < csr.usuarios() ? csr.inicio[this.vertice.id + 1] : 0;
+            }
+
+            return new Iterator<>() {
+                private int posicao = this.avancar(inicio);
+                private int atual = VAZIO;
+
+                private int avancar(int posicao) {
+                    while (posicao < fim && (ids[posicao] == VAZIO || usuarios[ids[posicao]] == null)) {
+                        posicao++;
+                    }
+                    return posicao;
+                }
+
+                public boolean hasNext() {
+                    return this.posicao < fim;
+                }
+
+                public User next() {
+                    if (this.posicao >= fim) {
+                        throw new NoSuchElementException();
+                    }
+
+                    this.atual = ids[this.posicao];
+                    this.posicao = this.avancar(this.posicao + 1);
+                    return usuarios[this.atual];
+                }
+
+                public void remove() {
+                    if (this.atual == VAZIO) {
+                        throw new IllegalStateException();
+                    }
+                    Relacao.this.formatada.antesDeAlterar();
+                    grafo.remover(Relacao.this.vertice, Relacao.this.tipo, this.atual, false);
+                    Relacao.this.formatada.alterado();
+                    this.atual = VAZIO;
+                }
+            };
+        }
+
+        private int idDe(Object item) {
+            if (item instanceof User usuario) {
+                Vertice outro = usuario.getVertice();
+                if (outro != null && outro.grafo == this.vertice.grafo) {
+                    return outro.id;
+                }
+            }
+            return VAZIO;
+        }
+    }
+
+    /**
+     * <p> Growable row of the edges of a user in one relation. </p>
+     * <p> Removed edges leave a hole ({@code VAZIO}) that is compacted once holes outnumber the edges. </p>
+     */
+    private static final class Linha {
+        private int[] itens;
+        private int ocupados;
+        private int tamanho;
+        private int[] indice;
+
+        Linha(int[] destinos, int inicio, int fim) {
+            this.itens = Arrays.copyOfRange(destinos, inicio, Math.max(fim, inicio + 4));
+            this.ocupados = fim - inicio;
+            this.tamanho = this.ocupados;
+            if (this.tamanho > LIMITE_LINEAR) {
+                this.indexar();
+            }
+        }
+
+        int posicao(int id) {
+            if (this.indice == null) {
+                for (int i = 0; i < this.ocupados; i++) {
+                    if (this.itens[i] == id) {
+                        return i;
+                    }
+                }
+                return VAZIO;
+            }
+
+            int mascara = this.indice.length - 1;
+            for (int slot = espalhar(id) & mascara; this.indice[slot] != 0; slot = (slot + 1) & mascara) {
+                int posicao = this.indice[slot] - 1;
+                if (this.itens[posicao] == id) {
+                    return posicao;
+                }
+            }
+            return VAZIO;
+        }
+
+        boolean adicionar(int id) {
+            if (this.posicao(id) >= 0) {
+                return false;
+            }
+
+            if (this.ocupados == this.itens.length) {
+                this.itens = Arrays.copyOf(this.itens, Math.max(4, this.itens.length * 2));
+            }
+            this.itens[this.ocupados] = id;
+            this.tamanho++;
+
+            if (this.indice != null && this.tamanho * 2 <= this.indice.length) {
+                this.inserirNoIndice(this.ocupados++);
+            } else {
+                this.ocupados++;
+                if (this.tamanho > LIMITE_LINEAR) {
+                    this.indexar();
+                }
+            }
+            return true;
+        }
+
+        boolean remover(int id, boolean compactar) {
+            int posicao = this.posicao(id);
+            if (posicao < 0) {
+                return false;
+            }
+
+            if (this.indice != null) {
+                this.removerDoIndice(posicao);
+            }
+            this.itens[posicao] = VAZIO;
+            this.tamanho--;
+
+            if (compactar && this.ocupados - this.tamanho > Math.max(LIMITE_LINEAR / 2, this.tamanho)) {
+                this.compactar();
+            }
+            return true;
+        }
+
+        private void compactar() {
+            int destino = 0;
+            for (int i = 0; i < this.ocupados; i++) {
+                if (this.itens[i] != VAZIO) {
+                    this.itens[destino++] = this.itens[i];
+                }
+            }
+            this.ocupados = destino;
+
+            if (this.itens.length > 4 * Math.max(4, this.tamanho)) {
+                this.itens = Arrays.copyOf(this.itens, Math.max(4, this.tamanho * 2));
+            }
+
+            this.indice = null;
+            if (this.tamanho > LIMITE_LINEAR) {
+                this.indexar();
+            }
+        }
+
+        private void indexar() {
+            this.indice = new int[Integer.highestOneBit(Math.max(8, this.tamanho * 4 - 1)) << 1];
+            for (int i = 0; i < this.ocupados; i++) {
+                if (this.itens[i] != VAZIO) {
+                    this.inserirNoIndice(i);
+                }
+            }
+        }
+
+        private void inserirNoIndice(int posicao) {
+            int mascara = this.indice.length - 1;
+            int slot = espalhar(this.itens[posicao]) & mascara;
+            while (this.indice[slot] != 0) {
+                slot = (slot + 1) & mascara;
+            }
+            this.indice[slot] = posicao + 1;
+        }
+
+        /**
+         * <p> Removes a position from the index, shifting back the entries of its probe sequence. </p>
+         */
+        private void removerDoIndice(int posicao) {
+            int mascara = this.indice.length - 1;
+            int livre = espalhar(this.itens[posicao]) & mascara;
+            while (this.indice[livre] != posicao + 1) {
+                livre = (livre + 1) & mascara;
+            }
+
+            for (int slot = (livre + 1) & mascara; this.indice[slot] != 0; slot = (slot + 1) & mascara) {
+                int desejado = espalhar(this.itens[this.indice[slot] - 1]) & mascara;
+                if (((slot - desejado) & mascara) >= ((slot - livre) & mascara)) {
+                    this.indice[livre] = this.indice[slot];
+                    livre = slot;
+                }
+            }
+            this.indice[livre] = 0;
+        }
+
+        private static int espalhar(int id) {
+            int hash = id * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * <p> Constructs a new, empty {@code GraphStore}. </p>
+     */
+    public GraphStore() {
+        Arrays.fill(this.csr, Csr.VAZIO);
+    }
+
+    /**
+     * <p> Assigns the next id to a user. </p>
+     *
+     * @param usuario User to be registered.
+     */
+    public synchronized void registrar(User usuario) {
+        User[] usuarios = this.usuarios;
+        if (this.proximoId == usuarios.length) {
+            usuarios = Arrays.copyOf(usuarios, usuarios.length * 2);
+        }
+
+        Vertice vertice = new Vertice(this, this.proximoId);
+        usuarios[this.proximoId++] = usuario;
+        usuario.setVertice(vertice);
+        this.usuarios = usuarios;
+    }
+
+    /**
+     * <p> Unregisters a user. Its id is not reused. </p>
+     * <p> Each relation is kept on both sides, so the edges still pointing to the user are found through its
+     * own rows: each related user loses the user from the inverse relation, so the degree of every relation
+     * only counts registered users. Takes time proportional to the degree of the user. Must be called while no
+     * other operation reads or changes the relations of the user or of those related to it. </p>
+     *
+     * @param usuario User to be removed.
+     */
+    public synchronized void remover(User usuario) {
+        Vertice vertice = usuario.getVertice();
+        if (vertice == null || vertice.grafo != this) {
+            return;
+        }
+
+        User[] usuarios = this.usuarios;
+        for (int tipo = 0; tipo < RELACOES; tipo++) {
+            int inversa = INVERSAS[tipo];
+            this.paraCadaVizinho(vertice.id, tipo, vizinho -> {
+                Vertice outro = usuarios[vizinho].getVertice();
+                if (vizinho != vertice.id && this.contem(outro, inversa, vertice.id)) {
+                    outro.relacao(inversa).remove(usuario);
+                }
+            });
+        }
+
+        for (int tipo = 0; tipo < RELACOES; tipo++) {
+            Linha linha = vertice.linhas[tipo];
+            if (linha != null) {
+                this.arestasSoltas.add(-linha.tamanho);
+            }
+            vertice.linhas[tipo] = new Linha(new int[0], 0, 0);
+        }
+        usuarios[vertice.id] = null;
+        this.usuarios = usuarios;
+    }
+
+    /**
+     * <p> Removes every user and edge. </p>
+     */
+    public synchronized void limpar() {
+        this.usuarios = new User[16];
+        this.proximoId = 0;
+        Csr[] csr = new Csr[RELACOES];
+        Arrays.fill(csr, Csr.VAZIO);
+        this.csr = csr;
+        this.arestasSoltas.reset();
+        this.arestasCompactadas = 0;
+    }
+
+    /**
+     * <p> Returns true if enough edges changed since the last compaction to make another one worthwhile. </p>
+     *
+     * @return True if at least one eighth of the edges are outside the CSR layout.
+     */
+    public boolean precisaCompactar() {
+        long soltas = this.arestasSoltas.sum();
+        return soltas > 1024 && soltas * 8 > this.arestasCompactadas;
+    }
+
+    /**
+     * <p> Folds the rows changed since the last compaction back into the CSR layout. </p>
+     * <p> Must be called while no other operation reads or changes the relations. </p>
+     */
+    public synchronized void compactar() {
+        User[] usuarios = this.usuarios;
+        int total = this.proximoId;
+        Csr[] novos = new Csr[RELACOES];
+        long arestas = 0;
+
+        for (int tipo = 0; tipo < RELACOES; tipo++) {
+            Csr antigo = this.csr[tipo];
+
+            int[] inicio = new int[total + 1];
+            int[] inicioOrdenado = new int[total + 1];
+            for (int v = 0; v < total; v++) {
+                int grau = usuarios[v] == null ? 0 : this.grau(usuarios[v].getVertice(), tipo);
+                inicio[v + 1] = inicio[v] + grau;
+                inicioOrdenado[v + 1] = inicioOrdenado[v] + (grau > LIMITE_LINEAR ? grau : 0);
+            }
+
+            int[] destinos = new int[inicio[total]];
+            int[] ordenados = new int[inicioOrdenado[total]];
+            for (int v = 0; v < total; v++) {
+                if (usuarios[v] == null) {
+                    continue;
+                }
+
+                Vertice vertice = usuarios[v].getVertice();
+                Linha linha = vertice.linhas[tipo];
+                int[] origem = linha != null ? linha.itens : antigo.destinos;
+                int de = linha != null ? 0 : (v < antigo.usuarios() ? antigo.inicio[v] : 0);
+                int ate = linha != null ? linha.ocupados : (v < antigo.usuarios() ? antigo.inicio[v + 1] : 0);
+
+                int destino = inicio[v];
+                for (int i = de; i < ate; i++) {
+                    if (origem[i] != VAZIO && usuarios[origem[i]] != null) {
+                        destinos[destino++] = origem[i];
+                    }
+                }
+                inicio[v + 1] = destino;
+
+                if (inicioOrdenado[v + 1] > inicioOrdenado[v]) {
+                    java.lang.System.arraycopy(destinos, inicio[v], ordenados, inicioOrdenado[v], destino - inicio[v]);
+                    Arrays.sort(ordenados, inicioOrdenado[v], inicioOrdenado[v] + destino - inicio[v]);
+                }
+                vertice.linhas[tipo] = null;
+            }
+
+            novos[tipo] = new Csr(inicio, destinos, inicioOrdenado, ordenados);
+            arestas += destinos.length;
+        }
+
+        this.csr = novos;
+        this.arestasSoltas.reset();
+        this.arestasCompactadas = arestas;
+    }
+
+    /**
+     * <p> Returns the user with the given id, or null if it was removed. </p>
+     *
+     * @param id Id of the user.
+     * @return User with the id.
+     */
+    public User getUsuario(int id) {
+        User[] usuarios = this.usuarios;
+        return id < usuarios.length ? usuarios[id] : null;
+    }
+
+    /**
+     * <p> Returns the number of ids assigned so far, removed users included. </p>
+     *
+     * @return Upper bound of the ids.
+     */
+    public synchronized int getQuantidade() {
+        return this.proximoId;
+    }
+
+    /**
+     * <p> Returns the number of users related to a user. </p>
+     *
+     * @param id   Id of the user.
+     * @param tipo Relation.
+     * @return Degree of the user in the relation.
+     */
+    public int grau(int id, int tipo) {
+        User usuario = this.getUsuario(id);
+        return usuario == null ? 0 : this.grau(usuario.getVertice(), tipo);
+    }
+
+    /**
+     * <p> Returns the ids of the users related to a user, in insertion order. </p>
+     *
+     * @param id   Id of the user.
+     * @param tipo Relation.
+     * @return Ids of the related users that were not removed.
+     */
+    public int[] vizinhos(int id, int tipo) {
+        int[] vizinhos = new int[this.grau(id, tipo)];
+        int[] quantidade = new int[1];
+        this.paraCadaVizinho(id, tipo, vizinho -> {
+            if (quantidade[0] < vizinhos.length) {
+                vizinhos[quantidade[0]++] = vizinho;
+            }
+        });
+        return quantidade[0] == vizinhos.length ? vizinhos : Arrays.copyOf(vizinhos, quantidade[0]);
+    }
+
+    /**
+     * <p> Calls the given function with the id of each user related to a user, without allocating. </p>
+     *
+     * @param id   Id of the user.
+     * @param tipo Relation.
+     * @param acao Function that receives the ids.
+     */
+    public void paraCadaVizinho(int id, int tipo, IntConsumer acao) {
+        User[] usuarios = this.usuarios;
+        User usuario = id < usuarios.length ? usuarios[id] : null;
+        if (usuario == null) {
+            return;
+        }
+
+        Linha linha = usuario.getVertice().linhas[tipo];
+        int[] ids;
+        int inicio;
+        int fim;
+        if (linha != null) {
+            ids = linha.itens;
+            inicio = 0;
+            fim = linha.ocupados;
+        } else {
+            Csr csr = this.csr(tipo);
+            ids = csr.destinos;
+            inicio = id < csr.usuarios() ? csr.inicio[id] : 0;
+            fim = id < csr.usuarios() ? csr.inicio[id + 1] : 0;
+        }
+
+        for (int i = inicio; i < fim; i++) {
+            int vizinho = ids[i];
+            if (vizinho != VAZIO && vizinho < usuarios.length && usuarios[vizinho] != null) {
+                acao.accept(vizinho);
+            }
+        }
+    }
+
+    /**
+     * <p> Returns true if a user is related to another. </p>
+     *
+     * @param id    Id of the user.
+     * @param tipo  Relation.
+     * @param outro Id of the other user.
+     * @return True if the edge exists.
+     */
+    public boolean contem(int id, int tipo, int outro) {
+        User usuario = this.getUsuario(id);
+        return usuario != null && this.contem(usuario.getVertice(), tipo, outro);
+    }
+
+    private Csr csr(int tipo) {
+        return this.csr[tipo];
+    }
+
+    private int grau(Vertice vertice, int tipo) {
+        Linha linha = vertice.linhas[tipo];
+        if (linha != null) {
+            return linha.tamanho;
+        }
+
+        Csr csr = this.csr(tipo);
+        return vertice.id < csr.usuarios() ? csr.inicio[vertice.id + 1] - csr.inicio[vertice.id] : 0;
+    }
+
+    private boolean contem(Vertice vertice, int tipo, int id) {
+        Linha linha = vertice.linhas[tipo];
+        if (linha != null) {
+            return linha.posicao(id) >= 0;
+        }
+
+        Csr csr = this.csr(tipo);
+        if (vertice.id >= csr.usuarios()) {
+            return false;
+        }
+
+        int inicio = csr.inicio[vertice.id];
+        int fim = csr.inicio[vertice.id + 1];
+        if (fim - inicio > LIMITE_LINEAR) {
+            int inicioOrdenado = csr.inicioOrdenado[vertice.id];
+            return Arrays.binarySearch(csr.ordenados, inicioOrdenado, inicioOrdenado + fim - inicio, id) >= 0;
+        }
+
+        for (int i = inicio; i < fim; i++) {
+            if (csr.destinos[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean adicionar(Vertice vertice, int tipo, int id) {
+        if (this.soltar(vertice, tipo).adicionar(id)) {
+            this.arestasSoltas.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean remover(Vertice vertice, int tipo, int id, boolean compactar) {
+        if (!this.contem(vertice, tipo, id)) {
+            return false;
+        }
+        return this.soltar(vertice, tipo).remover(id, compactar);
+    }
+
+    /**
+     * <p> Returns the row of a user's relation, copying it out of the CSR layout if needed. </p>
+     */
+    private Linha soltar(Vertice vertice, int tipo) {
+        Linha linha = vertice.linhas[tipo];
+        if (linha == null) {
+            Csr csr = this.csr(tipo);
+            int inicio = vertice.id < csr.usuarios() ? csr.inicio[vertice.id] : 0;
+            int fim = vertice.id < csr.usuarios() ? csr.inicio[vertice.id + 1] : 0;
+
+            linha = new Linha(csr.destinos, inicio, fim);
+            vertice.linhas[tipo] = linha;
+            this.arestasSoltas.add(fim - inicio);
+        }
+        return linha;
+    }
+}
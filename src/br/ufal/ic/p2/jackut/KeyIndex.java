@@ -0,0 +1,100 @@
+package br.ufal.ic.p2.jackut;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * <p> Read-only hash index from the UTF-8 bytes of a key to its position in a list. </p>
+ *
+ * <p> Used by the loader to resolve logins and community names straight from the buffer of a file,
+ * without building a {@code String} for every reference. The index is immutable after construction and
+ * may be shared between threads. </p>
+ *
+ * @see TextScanner
+ */
+public class KeyIndex {
+    private final byte[][] chaves;
+    private final int[] tabela;
+    private final int mascara;
+
+    /**
+     * <p> Constructs a new {@code KeyIndex} for the given keys. </p>
+     *
+     * @param chaves Keys, whose positions become their ids.
+     */
+    public KeyIndex(List<String> chaves) {
+        this.chaves = new byte[chaves.size()][];
+
+        int capacidade = Integer.highestOneBit(Math.max(4, chaves.size() * 2 - 1)) << 1;
+        this.tabela = new int[capacidade];
+        this.mascara = capacidade - 1;
+
+        for (int id = 0; id < chaves.size(); id++) {
+            byte[] chave = chaves.get(id).getBytes(StandardCharsets.UTF_8);
+            this.chaves[id] = chave;
+
+            int posicao = hash(chave) & this.mascara;
+            while (this.tabela[posicao] != 0) {
+                posicao = (posicao + 1) & this.mascara;
+            }
+            this.tabela[posicao] = id + 1;
+        }
+    }
+
+    /**
+     * <p> Returns the id of the key stored in a range of a buffer. </p>
+     *
+     * @param dados  Buffer holding the key.
+     * @param inicio Position of the first byte of the key.
+     * @param fim    Position after the last byte of the key.
+     * @return Id of the key, or -1 if it is not in the index.
+     */
+    public int buscar(ByteBuffer dados, int inicio, int fim) {
+        int hash = 0x811C9DC5;
+        for (int i = inicio; i < fim; i++) {
+            hash = (hash ^ (dados.get(i) & 0xFF)) * 0x01000193;
+        }
+
+        int posicao = hash & this.mascara;
+        while (this.tabela[posicao] != 0) {
+            int id = this.tabela[posicao] - 1;
+            if (igual(this.chaves[id], dados, inicio, fim)) {
+                return id;
+            }
+            posicao = (posicao + 1) & this.mascara;
+        }
+        return -1;
+    }
+
+    /**
+     * <p> Returns the id of the current field of a scanner. </p>
+     *
+     * @param scanner Scanner positioned on the key.
+     * @return Id of the key, or -1 if it is not in the index.
+     */
+    public int buscar(TextScanner scanner) {
+        return this.buscar(scanner.getDados(), scanner.inicio(), scanner.fim());
+    }
+
+    private static int hash(byte[] chave) {
+        int hash = 0x811C9DC5;
+        for (byte b : chave) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static boolean igual(byte[] chave, ByteBuffer dados, int inicio, int fim) {
+        if (chave.length != fim - inicio) {
+            return false;
+        }
+
+        for (int i = 0; i < chave.length; i++) {
+            if (chave[i] != dados.get(inicio + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
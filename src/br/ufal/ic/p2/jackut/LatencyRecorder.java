@@ -0,0 +1,126 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p> Thread-safe histogram of latencies in nanoseconds, with a relative error below 1/16 (about 6%). </p>
+ *
+ * <p> Values are grouped by their power of two and, inside it, in 16 linear buckets, up to about two minutes;
+ * longer values fall in the last bucket. Recording is a few shifts and one atomic increment, without locks
+ * or allocation. To keep the threads from fighting over the same counters, the buckets are repeated in a few
+ * stripes, chosen by the id of the thread, which are only added up when the histogram is read. </p>
+ *
+ * @see FacadeMetrics
+ */
+public class LatencyRecorder {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAIOR_EXPOENTE = 36 - SUB_BITS + 1;
+    private static final int BUCKETS = (MAIOR_EXPOENTE + 1) * SUB_BUCKETS;
+    private static final int FAIXAS = Math.min(8,
+            Integer.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1));
+
+    private final AtomicLongArray[] faixas = new AtomicLongArray[FAIXAS];
+
+    /**
+     * <p> Constructs a new, empty {@code LatencyRecorder}. </p>
+     */
+    public LatencyRecorder() {
+        for (int i = 0; i < FAIXAS; i++) {
+            this.faixas[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * <p> Records a latency. </p>
+     *
+     * @param nanos Latency in nanoseconds; negative values count as zero.
+     */
+    public void registrar(long nanos) {
+        int faixa = (int) Thread.currentThread().threadId() & (FAIXAS - 1);
+        this.faixas[faixa].getAndIncrement(indice(Math.max(0, nanos)));
+    }
+
+    /**
+     * <p> Returns the number of latencies recorded, each bucket of each stripe being read once. </p>
+     *
+     * @return Number of latencies.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long contagem : this.contagens()) {
+            total += contagem;
+        }
+        return total;
+    }
+
+    /**
+     * <p> Returns the value below which the given fractions of the latencies fall. </p>
+     *
+     * @param quantis Fractions, such as 0.5, 0.99 or 0.999, in increasing order.
+     * @return Upper bound of the bucket of each quantile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long[] percentis(double... quantis) {
+        long[] contagens = this.contagens();
+        long total = 0;
+        for (long contagem : contagens) {
+            total += contagem;
+        }
+
+        long[] percentis = new long[quantis.length];
+        if (total == 0) {
+            return percentis;
+        }
+
+        long acumulado = 0;
+        int q = 0;
+        for (int i = 0; i < BUCKETS && q < quantis.length; i++) {
+            acumulado += contagens[i];
+            while (q < quantis.length && acumulado >= Math.max(1, (long) Math.ceil(quantis[q] * total))) {
+                percentis[q++] = limiteSuperior(i);
+            }
+        }
+        return percentis;
+    }
+
+    /**
+     * <p> Clears the histogram. Latencies recorded at the same time may be lost. </p>
+     */
+    public void zerar() {
+        for (AtomicLongArray faixa : this.faixas) {
+            for (int i = 0; i < BUCKETS; i++) {
+                faixa.set(i, 0);
+            }
+        }
+    }
+
+    private long[] contagens() {
+        long[] contagens = new long[BUCKETS];
+        for (AtomicLongArray faixa : this.faixas) {
+            for (int i = 0; i < BUCKETS; i++) {
+                contagens[i] += faixa.get(i);
+            }
+        }
+        return contagens;
+    }
+
+    private static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor) - SUB_BITS + 1;
+        if (expoente > MAIOR_EXPOENTE) {
+            return BUCKETS - 1;
+        }
+        return expoente * SUB_BUCKETS + (int) ((valor >>> (expoente - 1)) & (SUB_BUCKETS - 1));
+    }
+
+    private static long limiteSuperior(int indice) {
+        int expoente = indice / SUB_BUCKETS;
+        long sub = indice % SUB_BUCKETS;
+        if (expoente == 0) {
+            return sub;
+        }
+        return ((SUB_BUCKETS | sub) << (expoente - 1)) + (1L << (expoente - 1)) - 1;
+    }
+}
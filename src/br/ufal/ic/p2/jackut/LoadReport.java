@@ -0,0 +1,59 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p> Report of the time spent and the number of records processed by each phase of the startup. </p>
+ */
+public class LoadReport {
+    private final Map<String, long[]> fases = new LinkedHashMap<>();
+
+    /**
+     * <p> Records the duration and the number of records of a phase. </p>
+     * <p> May be called concurrently by the workers of the loader. </p>
+     *
+     * @param fase      Name of the phase.
+     * @param nanos     Duration of the phase, in nanoseconds.
+     * @param registros Number of records processed by the phase.
+     */
+    public synchronized void registrar(String fase, long nanos, long registros) {
+        this.fases.put(fase, new long[] { nanos, registros });
+    }
+
+    /**
+     * <p> Returns the duration of a phase in nanoseconds, or -1 if the phase did not run. </p>
+     *
+     * @param fase Name of the phase.
+     * @return Duration of the phase.
+     */
+    public synchronized long getDuracao(String fase) {
+        long[] dados = this.fases.get(fase);
+        return dados == null ? -1 : dados[0];
+    }
+
+    /**
+     * <p> Returns the number of records processed by a phase, or -1 if the phase did not run. </p>
+     *
+     * @param fase Name of the phase.
+     * @return Number of records of the phase.
+     */
+    public synchronized long getRegistros(String fase) {
+        long[] dados = this.fases.get(fase);
+        return dados == null ? -1 : dados[1];
+    }
+
+    /**
+     * <p> Returns the report as one line per phase, in the order the phases finished. </p>
+     *
+     * @return Formatted report.
+     */
+    public synchronized String toString() {
+        StringBuilder relatorio = new StringBuilder();
+        for (Map.Entry<String, long[]> fase : this.fases.entrySet()) {
+            relatorio.append(String.format("%-20s %10.3f ms %12d registros%n",
+                    fase.getKey(), fase.getValue()[0] / 1e6, fase.getValue()[1]));
+        }
+        return relatorio.toString();
+    }
+}
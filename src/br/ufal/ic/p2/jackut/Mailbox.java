@@ -0,0 +1,409 @@
+package br.ufal.ic.p2.jackut;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * <p> Queue of recados or messages of a user whose backlog stays on disk until it is read. </p>
+ *
+ * <p> When the database is loaded, the lines of the user are not parsed: the queue only keeps the range
+ * they occupy in the memory-mapped segment file (its <b>origin</b>). The items of the origin are parsed
+ * all at once by the first {@code poll}, {@code peek} or {@code isEmpty}, and are dropped again by
+ * {@code descartarSeOcioso} if the queue is not touched for a while; the position of the next unread line
+ * is kept, so nothing is lost. Items received after the load are always kept in memory, after the origin, in
+ * an {@code MpscQueue}: {@code offer} may be called by any thread without the lock of the owner of the queue,
+ * while the other methods are still called by one thread at a time. </p>
+ *
+ * <p> Iterating the queue, as the checkpoint does, parses the origin on the fly without keeping it. </p>
+ *
+ * <p> A line of the origin whose parser returns null (for instance, a recado whose sender no longer
+ * exists) is skipped. </p>
+ *
+ * <p> The queue may keep a counter shared with other queues up to date, as the system does for the gauges of
+ * pending recados and messages, so they are read without visiting every user. Until the origin is parsed, its
+ * lines are counted without being parsed; the lines skipped by the parser are discounted once it runs. Moving
+ * the queue to another counter waits for the deliveries in progress, which share a read lock, so a user can be
+ * removed while recados are still being sent to them. </p>
+ *
+ * @param <T> Type of the items, {@code Errand} or {@code Messages}.
+ *
+ * @see ParallelLoader
+ * @see MpscQueue
+ */
+public class Mailbox<T> extends AbstractQueue<T> {
+    private ByteBuffer origem;
+    private int cursor;
+    private int fimOrigem;
+    private Leitor<T> leitor;
+
+    private List<T> carregados;
+    private int[] finsCarregados;
+    private int proximoCarregado;
+    private long ultimoAcesso;
+    private LongAdder contador;
+    private boolean origemPorLinhas;
+    private int linhasOrigem = -1;
+
+    private final MpscQueue<T> recebidos = new MpscQueue<>();
+    private final StampedLock entregas = new StampedLock();
+
+    /**
+     * <p> Parser of one line of the origin. </p>
+     *
+     * @param <T> Type of the items.
+     */
+    public interface Leitor<T> {
+        /**
+         * <p> Parses the line on which the scanner is positioned. </p>
+         *
+         * @param scanner Scanner positioned on the line, before its first field.
+         * @return The item of the line, or null if it must be skipped.
+         */
+        T ler(TextScanner scanner);
+    }
+
+    /**
+     * <p> Sets the range of a file that holds the oldest items of the queue. </p>
+     * <p> Must be called before any item is received. </p>
+     *
+     * @param origem Memory-mapped content of the file.
+     * @param inicio Position of the first line of the queue.
+     * @param fim    Position after the last line of the queue.
+     * @param linhas Number of lines in the range, found while the range was located.
+     * @param leitor Parser of the lines.
+     */
+    public void setOrigem(ByteBuffer origem, int inicio, int fim, int linhas, Leitor<T> leitor) {
+        this.origem = origem;
+        this.cursor = inicio;
+        this.fimOrigem = fim;
+        this.linhasOrigem = linhas;
+        this.leitor = leitor;
+        this.carregados = null;
+        this.origemPorLinhas = false;
+    }
+
+    /**
+     * <p> Moves the items of the queue from the counter it kept up to date to another one, which from then
+     * on follows every item received, read or removed. </p>
+     * <p> Must not run concurrently with the other methods, except {@code offer}, which waits for it. </p>
+     *
+     * @param contador Counter shared with other queues, or null to stop counting.
+     */
+    public void setContador(LongAdder contador) {
+        long carimbo = this.entregas.writeLock();
+        try {
+            if (this.contador != null) {
+                if (!this.origemPorLinhas && this.carregados == null && this.origem != null) {
+                    this.carregar();
+                }
+                this.contador.add(-this.contados());
+            }
+
+            this.origemPorLinhas = contador != null && this.carregados == null && this.origem != null;
+            this.contador = contador;
+            if (contador != null) {
+                contador.add(this.contados());
+            }
+        } finally {
+            this.entregas.unlockWrite(carimbo);
+        }
+    }
+
+    /**
+     * <p> Returns true if the unread part of the origin is parsed and kept in memory. </p>
+     *
+     * @return True if the queue is materialized.
+     */
+    public boolean isCarregada() {
+        return this.carregados != null;
+    }
+
+    /**
+     * <p> Drops the parsed items of the origin if the queue was not touched since the given instant. </p>
+     *
+     * @param limite Instant, in {@code System.nanoTime} units, before which the queue is considered idle.
+     * @return True if the items were dropped.
+     */
+    public boolean descartarSeOcioso(long limite) {
+        if (this.carregados == null || this.ultimoAcesso - limite > 0) {
+            return false;
+        }
+
+        this.carregados = null;
+        this.finsCarregados = null;
+        return true;
+    }
+
+    /**
+     * <p> Appends an item to the queue. Safe to be called concurrently with any other method. </p>
+     */
+    @Override
+    public boolean offer(T item) {
+        long carimbo = this.entregas.readLock();
+        try {
+            LongAdder contador = this.contador;
+            if (contador != null) {
+                contador.increment();
+            }
+            return this.recebidos.offer(item);
+        } finally {
+            this.entregas.unlockRead(carimbo);
+        }
+    }
+
+    @Override
+    public T poll() {
+        T item = this.retirar();
+        if (item != null && this.contador != null) {
+            this.contador.decrement();
+        }
+        return item;
+    }
+
+    private T retirar() {
+        if (this.carregar()) {
+            T item = this.carregados.get(this.proximoCarregado);
+            this.carregados.set(this.proximoCarregado, null);
+            this.cursor = this.finsCarregados[this.proximoCarregado++];
+            this.liberarOrigemLida();
+            return item;
+        }
+        return this.recebidos.poll();
+    }
+
+    @Override
+    public T peek() {
+        if (this.carregar()) {
+            return this.carregados.get(this.proximoCarregado);
+        }
+        return this.recebidos.peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !this.carregar() && this.recebidos.isEmpty();
+    }
+
+    /**
+     * <p> Removes up to {@code maximo} items, oldest first, and passes them to the consumer. </p>
+     * <p> The items received after the load are taken from the blocks of the queue in a single pass. </p>
+     *
+     * @param maximo  Maximum number of items to be removed.
+     * @param destino Function that receives the items.
+     * @return Number of items removed.
+     */
+    public int drenar(int maximo, Consumer<? super T> destino) {
+        int drenados = 0;
+        while (drenados < maximo && this.carregar()) {
+            destino.accept(this.poll());
+            drenados++;
+        }
+        int recebidos = this.recebidos.drenar(maximo - drenados, destino);
+        if (this.contador != null) {
+            this.contador.add(-recebidos);
+        }
+        return drenados + recebidos;
+    }
+
+    @Override
+    public int size() {
+        int tamanho = this.recebidos.size();
+        if (this.carregados != null) {
+            return tamanho + this.carregados.size() - this.proximoCarregado;
+        }
+
+        Iterator<T> origem = this.iteradorOrigem();
+        while (origem.hasNext()) {
+            origem.next();
+            tamanho++;
+        }
+        return tamanho;
+    }
+
+    /**
+     * <p> Removes the items that match the predicate. </p>
+     * <p> The origin is only materialized if one of its items matches. </p>
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filtro) {
+        int[] removidos = new int[1];
+        boolean removido = this.recebidos.removeIf(item -> filtro.test(item) && ++removidos[0] > 0);
+
+        if (this.carregados == null && this.origem != null) {
+            Iterator<T> origem = this.iteradorOrigem();
+            while (origem.hasNext()) {
+                if (filtro.test(origem.next())) {
+                    this.carregar();
+                    break;
+                }
+            }
+        }
+
+        if (this.carregados != null) {
+            for (int i = this.proximoCarregado; i < this.carregados.size(); i++) {
+                if (filtro.test(this.carregados.get(i))) {
+                    this.carregados.remove(i);
+                    java.lang.System.arraycopy(this.finsCarregados, i + 1, this.finsCarregados, i, this.carregados.size() - i);
+                    i--;
+                    removidos[0]++;
+                    removido = true;
+                }
+            }
+            this.liberarOrigemLida();
+        }
+
+        if (this.contador != null) {
+            this.contador.add(-removidos[0]);
+        }
+        return removido;
+    }
+
+    /**
+     * <p> Iterates the unread items, parsing the origin on the fly if it is not materialized. </p>
+     * <p> The iterator does not support removal. </p>
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> origem = this.carregados != null
+                ? this.carregados.subList(this.proximoCarregado, this.carregados.size()).iterator()
+                : this.iteradorOrigem();
+        Iterator<T> recebidos = this.recebidos.iterator();
+
+        return new Iterator<>() {
+            public boolean hasNext() {
+                return origem.hasNext() || recebidos.hasNext();
+            }
+
+            public T next() {
+                return origem.hasNext() ? origem.next() : recebidos.next();
+            }
+        };
+    }
+
+    /**
+     * <p> Parses the unread part of the origin, if it was not parsed yet. </p>
+     *
+     * @return True if there is an unread item of the origin.
+     */
+    private boolean carregar() {
+        this.ultimoAcesso = java.lang.System.nanoTime();
+
+        if (this.origem == null) {
+            return false;
+        }
+
+        if (this.carregados == null) {
+            this.carregados = new ArrayList<>();
+            int[] fins = new int[8];
+
+            int linhas = 0;
+            TextScanner scanner = this.scanner();
+            while (scanner.proximaLinha()) {
+                linhas++;
+                T item = this.leitor.ler(scanner);
+                if (item != null) {
+                    if (this.carregados.size() == fins.length) {
+                        fins = Arrays.copyOf(fins, fins.length * 2);
+                    }
+                    fins[this.carregados.size()] = scanner.fimDaLinha();
+                    this.carregados.add(item);
+                }
+            }
+
+            this.finsCarregados = fins;
+            this.proximoCarregado = 0;
+            this.linhasOrigem = -1;
+
+            if (this.origemPorLinhas) {
+                this.contador.add(this.carregados.size() - linhas);
+                this.origemPorLinhas = false;
+            }
+        }
+
+        this.liberarOrigemLida();
+        return this.origem != null;
+    }
+
+    /**
+     * <p> Forgets the origin once every item of it was read. </p>
+     */
+    private void liberarOrigemLida() {
+        if (this.carregados != null && this.proximoCarregado >= this.carregados.size()) {
+            this.origem = null;
+            this.leitor = null;
+            this.carregados = null;
+            this.finsCarregados = null;
+        }
+    }
+
+    /**
+     * <p> Returns the number of items the queue adds to its counter: the lines of the origin while they are
+     * counted as lines, or else its parsed items, plus the items received. The lines are only scanned if the
+     * origin was parsed since the load, which moves its start. </p>
+     */
+    private long contados() {
+        long contados = this.recebidos.size();
+        if (this.carregados != null) {
+            contados += this.carregados.size() - this.proximoCarregado;
+        } else if (this.linhasOrigem >= 0) {
+            contados += this.linhasOrigem;
+        } else if (this.origem != null) {
+            TextScanner scanner = this.scanner();
+            while (scanner.proximaLinha()) {
+                contados++;
+            }
+        }
+        return contados;
+    }
+
+    private TextScanner scanner() {
+        return new TextScanner(this.origem.duplicate().limit(this.fimOrigem).position(this.cursor));
+    }
+
+    private Iterator<T> iteradorOrigem() {
+        if (this.origem == null) {
+            return Collections.emptyIterator();
+        }
+
+        TextScanner scanner = this.scanner();
+        Leitor<T> leitor = this.leitor;
+
+        return new Iterator<>() {
+            private T proximo = this.avancar();
+
+            private T avancar() {
+                while (scanner.proximaLinha()) {
+                    T item = leitor.ler(scanner);
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return this.proximo != null;
+            }
+
+            public T next() {
+                if (this.proximo == null) {
+                    throw new NoSuchElementException();
+                }
+
+                T item = this.proximo;
+                this.proximo = this.avancar();
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p> Storage engine that does no I/O: operations are not logged and a checkpoint keeps the binary snapshot
+ * in memory, where the next system constructed over the same engine loads it from. </p>
+ *
+ * <p> Meant for benchmarks and tests, which then measure the system without the cost of the disk. The data
+ * does not outlive the JVM, and the operations after the last checkpoint are lost if the system is not
+ * closed by {@code encerrarSistema}. Only one system at a time may use an engine. </p>
+ *
+ * @see BinarySnapshot
+ */
+public class MemoryStorageEngine implements StorageEngine {
+    private volatile byte[] snapshot;
+
+    @Override
+    public long carregar(Estado estado, LoadReport relatorio) throws IOException {
+        byte[] snapshot = this.snapshot;
+        if (snapshot != null) {
+            long inicio = java.lang.System.nanoTime();
+            BinarySnapshot.carregar(snapshot, estado.usuarios(), estado.comunidades(), estado.grafo());
+            relatorio.registrar("memoria", java.lang.System.nanoTime() - inicio,
+                    estado.usuarios().size() + estado.comunidades().size());
+        }
+        return 0;
+    }
+
+    @Override
+    public WriteAheadLog abrirLog(DurabilityMode durabilidade, long intervalo) {
+        return null;
+    }
+
+    @Override
+    public Checkpoint iniciar(Estado estado, long lsn, List<File> logsAntigos) {
+        return new Checkpoint(lsn, logsAntigos);
+    }
+
+    @Override
+    public void capturar(Checkpoint checkpoint, User usuario) {
+        checkpoint.adicionar(BinarySnapshot.capturar(usuario));
+    }
+
+    @Override
+    public void capturar(Checkpoint checkpoint, Community comunidade) {
+        checkpoint.adicionar(BinarySnapshot.capturar(comunidade));
+    }
+
+    @Override
+    public void gravar(Checkpoint checkpoint) throws IOException {
+        checkpoint.setBinario(BinarySnapshot.serializar(checkpoint.getUsuarios(), checkpoint.getComunidades()));
+        this.snapshot = checkpoint.getBinario();
+        checkpoint.setBytes(checkpoint.getBinario().length);
+        checkpoint.setSegmentos(1);
+        checkpoint.setDuracaoGravacao(0);
+    }
+
+    @Override
+    public void zerar(Estado estado, long lsn) {
+        this.snapshot = null;
+    }
+
+    /**
+     * <p> Returns the size of the snapshot kept by the last checkpoint. </p>
+     *
+     * @return Size of the snapshot, in bytes, or 0 if no checkpoint was written.
+     */
+    public int getTamanho() {
+        byte[] snapshot = this.snapshot;
+        return snapshot == null ? 0 : snapshot.length;
+    }
+}
@@ -0,0 +1,263 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Append-only log of the messages sent to a community. </p>
+ *
+ * <p> A message is stored once, whatever the number of members: each member only keeps a <b>cursor</b>, the
+ * index of the next message of the log they have not read, which {@code avancar} moves forward. Indexes grow
+ * forever; the log keeps the messages from index {@code base} to {@code fim - 1} in a circular array. </p>
+ *
+ * <p> Every message counts the readers that have not passed it yet. When the oldest message reaches zero it
+ * is reclaimed, so the log only holds the messages that someone still has to read. A member that joins the
+ * community starts at {@code fim}, as before, and does not receive older messages. </p>
+ *
+ * <p> The log also keeps the number of messages its readers still have to read, the sum of their counts, and
+ * may add its changes to a counter shared with other logs, for the gauge of pending messages. </p>
+ *
+ * <p> The methods are synchronized: messages are posted under the lock of the community and read under the
+ * lock of the member, so both may touch the log at the same time. </p>
+ *
+ * @see Community
+ * @see Messages
+ */
+public class MessageLog {
+    private Messages[] mensagens = new Messages[8];
+    private int[] pendentes = new int[8];
+    private int inicio;
+    private int tamanho;
+    private long base;
+    private int leitores;
+    private long naoLidas;
+    private LongAdder contador;
+
+    /**
+     * <p> Registers a new reader, which starts after the last message of the log. </p>
+     *
+     * @return Cursor of the reader.
+     */
+    public synchronized long registrarLeitor() {
+        this.leitores++;
+        return this.getFim();
+    }
+
+    /**
+     * <p> Unregisters a reader, as if it had read every message from its cursor on. </p>
+     *
+     * @param cursor Cursor of the reader.
+     * @return The messages the reader had not read, oldest first.
+     */
+    public synchronized List<Messages> liberarLeitor(long cursor) {
+        List<Messages> naoLidas = new ArrayList<>();
+        for (long indice = Math.max(cursor, this.base); indice < this.getFim(); indice++) {
+            int posicao = this.posicao(indice);
+            naoLidas.add(this.mensagens[posicao]);
+            this.pendentes[posicao]--;
+        }
+        this.contar(-naoLidas.size());
+
+        this.leitores--;
+        this.recolher();
+        return naoLidas;
+    }
+
+    /**
+     * <p> Appends a message, to be read by every registered reader. </p>
+     * <p> Runs in constant time, whatever the number of readers. </p>
+     *
+     * @param mensagem Message to be posted.
+     */
+    public synchronized void publicar(Messages mensagem) {
+        if (this.leitores == 0) {
+            this.base++;
+            return;
+        }
+
+        if (this.tamanho == this.mensagens.length) {
+            this.redimensionar(this.mensagens.length * 2);
+        }
+
+        int posicao = this.posicao(this.getFim());
+        this.mensagens[posicao] = mensagem;
+        this.pendentes[posicao] = this.leitores;
+        this.tamanho++;
+        this.contar(this.leitores);
+    }
+
+    /**
+     * <p> Returns the message at the cursor of a reader. </p>
+     *
+     * @param cursor Cursor of the reader.
+     * @return The next message of the reader, or null if they read them all.
+     */
+    public synchronized Messages proxima(long cursor) {
+        if (cursor >= this.getFim()) {
+            return null;
+        }
+        return this.mensagens[this.posicao(Math.max(cursor, this.base))];
+    }
+
+    /**
+     * <p> Moves the cursor of a reader past its next message, reclaiming the messages read by everyone. </p>
+     * <p> While a checkpoint is being captured the messages are kept, since the community may not be copied
+     * yet and its image must still hold what its readers had not read when it started. They are reclaimed by
+     * the next read after it. </p>
+     *
+     * @param cursor   Cursor of the reader, which must have a next message.
+     * @param recolher False to keep the messages read by everyone.
+     * @return The new cursor of the reader.
+     */
+    public synchronized long avancar(long cursor, boolean recolher) {
+        long indice = Math.max(cursor, this.base);
+        this.pendentes[this.posicao(indice)]--;
+        this.contar(-1);
+        if (recolher) {
+            this.recolher();
+        }
+        return indice + 1;
+    }
+
+    /**
+     * <p> Returns the index of the oldest message kept in the log. </p>
+     *
+     * @return Index of the oldest message.
+     */
+    public synchronized long getBase() {
+        return this.base;
+    }
+
+    /**
+     * <p> Returns the index the next message will take. </p>
+     *
+     * @return Index after the last message.
+     */
+    public synchronized long getFim() {
+        return this.base + this.tamanho;
+    }
+
+    /**
+     * <p> Returns a copy of the messages kept in the log, from {@code getBase} on. </p>
+     *
+     * @return Messages kept in the log.
+     */
+    public synchronized List<Messages> getMensagens() {
+        List<Messages> copia = new ArrayList<>(this.tamanho);
+        for (int i = 0; i < this.tamanho; i++) {
+            copia.add(this.mensagens[(this.inicio + i) & (this.mensagens.length - 1)]);
+        }
+        return copia;
+    }
+
+    /**
+     * <p> Appends a message read from disk at the given index. </p>
+     * <p> Messages must be restored in increasing order of index; indexes already kept are ignored. Once
+     * every message is restored, {@code recontar} must be called with the cursors of the readers. </p>
+     *
+     * @param indice   Index of the message in the log.
+     * @param mensagem Message.
+     */
+    public synchronized void restaurar(long indice, Messages mensagem) {
+        if (this.tamanho == 0) {
+            this.base = indice;
+        } else if (indice < this.getFim()) {
+            return;
+        }
+
+        if (this.tamanho == this.mensagens.length) {
+            this.redimensionar(this.mensagens.length * 2);
+        }
+        this.mensagens[this.posicao(this.getFim())] = mensagem;
+        this.tamanho++;
+    }
+
+    /**
+     * <p> Recomputes the readers of every message from the cursors of the readers, after a load. </p>
+     * <p> Messages before every cursor are reclaimed. </p>
+     *
+     * @param cursores Cursors of every reader.
+     */
+    public synchronized void recontar(Collection<Long> cursores) {
+        long fim = this.getFim();
+        for (long cursor : cursores) {
+            fim = Math.max(fim, cursor);
+        }
+        if (this.tamanho == 0) {
+            this.base = fim;
+        }
+
+        Arrays.fill(this.pendentes, 0);
+        long naoLidas = 0;
+        for (long cursor : cursores) {
+            for (long indice = Math.max(cursor, this.base); indice < this.getFim(); indice++) {
+                this.pendentes[this.posicao(indice)]++;
+                naoLidas++;
+            }
+        }
+        this.contar(naoLidas - this.naoLidas);
+
+        this.leitores = cursores.size();
+        this.recolher();
+    }
+
+    /**
+     * <p> Moves the unread messages of the log from the counter it kept up to date to another one, which from
+     * then on follows every message posted or read. </p>
+     *
+     * @param contador Counter shared with other logs, or null to stop counting.
+     */
+    public synchronized void setContador(LongAdder contador) {
+        if (this.contador != null) {
+            this.contador.add(-this.naoLidas);
+        }
+        this.contador = contador;
+        if (contador != null) {
+            contador.add(this.naoLidas);
+        }
+    }
+
+    private void contar(long variacao) {
+        this.naoLidas += variacao;
+        if (this.contador != null) {
+            this.contador.add(variacao);
+        }
+    }
+
+    /**
+     * <p> Reclaims the oldest messages while no reader is left on them. </p>
+     */
+    private void recolher() {
+        while (this.tamanho > 0 && this.pendentes[this.inicio] <= 0) {
+            this.mensagens[this.inicio] = null;
+            this.inicio = (this.inicio + 1) & (this.mensagens.length - 1);
+            this.tamanho--;
+            this.base++;
+        }
+
+        if (this.mensagens.length > 8 && this.tamanho < this.mensagens.length / 4) {
+            this.redimensionar(this.mensagens.length / 2);
+        }
+    }
+
+    private int posicao(long indice) {
+        return (int) ((this.inicio + (indice - this.base)) & (this.mensagens.length - 1));
+    }
+
+    private void redimensionar(int capacidade) {
+        Messages[] mensagens = new Messages[capacidade];
+        int[] pendentes = new int[capacidade];
+        for (int i = 0; i < this.tamanho; i++) {
+            int posicao = (this.inicio + i) & (this.mensagens.length - 1);
+            mensagens[i] = this.mensagens[posicao];
+            pendentes[i] = this.pendentes[posicao];
+        }
+
+        this.mensagens = mensagens;
+        this.pendentes = pendentes;
+        this.inicio = 0;
+    }
+}
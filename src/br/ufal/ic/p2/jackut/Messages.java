@@ -1,15 +1,35 @@
 package br.ufal.ic.p2.jackut;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Messages {
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
     private final String message;
+    private final long sequencia;
 
     /**
      * <p> Constructs a new {@code Messages} object with the specified message. </p>
+     * <p> The message receives the next sequence number, which orders it against the messages of other
+     * communities. </p>
      *
      * @param message The message to be stored in the Messages object.
      */
     public Messages(String message) {
+        this(message, SEQUENCIA.incrementAndGet());
+    }
+
+    /**
+     * <p> Constructs a {@code Messages} object read from disk, with its original sequence number. </p>
+     * <p> Messages created afterwards receive greater sequence numbers. </p>
+     *
+     * @param message   The message to be stored in the Messages object.
+     * @param sequencia Sequence number of the message, or 0 if it is unknown.
+     */
+    public Messages(String message, long sequencia) {
         this.message = message;
+        this.sequencia = sequencia;
+        SEQUENCIA.accumulateAndGet(sequencia, Math::max);
     }
 
     /**
@@ -20,4 +40,13 @@ public class Messages {
     public String getMensagem() {
         return this.message;
     }
+
+    /**
+     * <p> Returns the sequence number of the message. Messages sent later have greater numbers. </p>
+     *
+     * @return Sequence number of the message.
+     */
+    public long getSequencia() {
+        return this.sequencia;
+    }
 }
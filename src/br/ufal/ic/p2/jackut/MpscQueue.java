@@ -0,0 +1,272 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * <p> Unbounded queue with many producers and a single consumer, backed by a chain of arrays (blocks). </p>
+ *
+ * <p> A producer claims a slot of the last block with a single {@code getAndIncrement} and stores its item
+ * there, so producers never wait for one another. The one that finds the block full links the next block,
+ * twice as large up to {@code BLOCO_MAXIMO} slots, with its item already in the first slot; the others help
+ * moving the tail forward. No node is allocated per item. </p>
+ *
+ * <p> {@code poll}, {@code peek}, {@code isEmpty}, {@code drenar} and {@code removeIf} must only be called by
+ * one thread at a time, the consumer; the system guarantees it with the lock of the owner of the queue. A slot
+ * claimed by a producer that did not store its item yet is awaited by the consumer, so the order of the claims
+ * is kept. </p>
+ *
+ * <p> {@code size} and {@code iterator} are weakly consistent. {@code removeIf} reads the items claimed when it
+ * starts and puts the ones it keeps back in a block of their own, ahead of the others, so producers may keep
+ * appending meanwhile. </p>
+ *
+ * @param <T> Type of the items.
+ *
+ * @see Mailbox
+ */
+public class MpscQueue<T> extends AbstractQueue<T> {
+    private static final int BLOCO_INICIAL = 8;
+    private static final int BLOCO_MAXIMO = 1024;
+    private static final int ESPERAS_ANTES_DE_CEDER = 64;
+
+    private final AtomicReference<Bloco<T>> cauda;
+    private Bloco<T> cabeca;
+
+    private static final class Bloco<T> {
+        private final AtomicReferenceArray<T> itens;
+        private final AtomicInteger escrita = new AtomicInteger();
+        private final AtomicReference<Bloco<T>> proximo = new AtomicReference<>();
+        private int leitura;
+
+        private Bloco(int capacidade) {
+            this.itens = new AtomicReferenceArray<>(capacidade);
+        }
+
+        private int capacidade() {
+            return this.itens.length();
+        }
+
+        /**
+         * <p> Returns the number of slots claimed by producers, some of which may not be stored yet. </p>
+         */
+        private int reservados() {
+            return Math.min(this.escrita.get(), this.capacidade());
+        }
+    }
+
+    /**
+     * <p> Constructs an empty queue. </p>
+     */
+    public MpscQueue() {
+        this.cabeca = new Bloco<>(BLOCO_INICIAL);
+        this.cauda = new AtomicReference<>(this.cabeca);
+    }
+
+    /**
+     * <p> Appends an item to the queue. Safe to be called by any number of threads. </p>
+     *
+     * @param item Item to be appended.
+     * @return Always true.
+     */
+    @Override
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        Bloco<T> bloco = this.cauda.get();
+        while (true) {
+            int indice = bloco.escrita.getAndIncrement();
+            if (indice < bloco.capacidade()) {
+                bloco.itens.setRelease(indice, item);
+                return true;
+            }
+
+            Bloco<T> proximo = bloco.proximo.get();
+            if (proximo == null) {
+                Bloco<T> novo = new Bloco<>(Math.min(bloco.capacidade() * 2, BLOCO_MAXIMO));
+                novo.itens.setPlain(0, item);
+                novo.escrita.setPlain(1);
+
+                if (bloco.proximo.compareAndSet(null, novo)) {
+                    this.cauda.compareAndSet(bloco, novo);
+                    return true;
+                }
+                proximo = bloco.proximo.get();
+            }
+
+            this.cauda.compareAndSet(bloco, proximo);
+            bloco = proximo;
+        }
+    }
+
+    @Override
+    public T poll() {
+        Bloco<T> bloco = this.blocoDeLeitura();
+        if (bloco == null) {
+            return null;
+        }
+
+        T item = aguardar(bloco, bloco.leitura);
+        bloco.itens.setPlain(bloco.leitura++, null);
+        return item;
+    }
+
+    @Override
+    public T peek() {
+        Bloco<T> bloco = this.blocoDeLeitura();
+        return bloco == null ? null : aguardar(bloco, bloco.leitura);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.blocoDeLeitura() == null;
+    }
+
+    /**
+     * <p> Removes up to {@code maximo} items, oldest first, and passes them to the consumer. </p>
+     * <p> Only the blocks are walked: there is no per-item check of the tail. </p>
+     *
+     * @param maximo  Maximum number of items to be removed.
+     * @param destino Function that receives the items.
+     * @return Number of items removed.
+     */
+    public int drenar(int maximo, Consumer<? super T> destino) {
+        int drenados = 0;
+        Bloco<T> bloco;
+        while (drenados < maximo && (bloco = this.blocoDeLeitura()) != null) {
+            int fim = bloco.leitura + Math.min(bloco.reservados() - bloco.leitura, maximo - drenados);
+            for (int i = bloco.leitura; i < fim; i++) {
+                destino.accept(aguardar(bloco, i));
+                bloco.itens.setPlain(i, null);
+            }
+            drenados += fim - bloco.leitura;
+            bloco.leitura = fim;
+        }
+        return drenados;
+    }
+
+    /**
+     * <p> Returns the number of items claimed and not read yet. </p>
+     * <p> May be outdated as soon as it returns if producers are running. </p>
+     */
+    @Override
+    public int size() {
+        int tamanho = 0;
+        for (Bloco<T> bloco = this.cabeca; bloco != null; bloco = bloco.proximo.get()) {
+            tamanho += bloco.reservados() - bloco.leitura;
+        }
+        return tamanho;
+    }
+
+    /**
+     * <p> Removes the items that match the predicate, keeping the order of the others. </p>
+     * <p> Only the items claimed when it starts are tested; items appended meanwhile stay after them. </p>
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filtro) {
+        List<T> mantidos = new ArrayList<>();
+        boolean[] removido = new boolean[1];
+        this.drenar(this.size(), item -> {
+            if (filtro.test(item)) {
+                removido[0] = true;
+            } else {
+                mantidos.add(item);
+            }
+        });
+
+        if (!mantidos.isEmpty()) {
+            Bloco<T> bloco = new Bloco<>(mantidos.size());
+            for (int i = 0; i < mantidos.size(); i++) {
+                bloco.itens.setPlain(i, mantidos.get(i));
+            }
+            bloco.escrita.setPlain(mantidos.size());
+            bloco.proximo.setPlain(this.cabeca);
+            this.cabeca = bloco;
+        }
+        return removido[0];
+    }
+
+    /**
+     * <p> Iterates the items stored and not read yet, without removing them. </p>
+     * <p> The iterator stops at the first claimed slot whose item is not stored yet and does not support
+     * removal. </p>
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private Bloco<T> bloco = MpscQueue.this.cabeca;
+            private int indice = this.bloco.leitura;
+            private T proximo = this.avancar();
+
+            private T avancar() {
+                while (this.bloco != null) {
+                    if (this.indice < this.bloco.reservados()) {
+                        return this.bloco.itens.getAcquire(this.indice++);
+                    }
+                    if (this.indice < this.bloco.capacidade()) {
+                        return null;
+                    }
+                    this.bloco = this.bloco.proximo.get();
+                    this.indice = this.bloco != null ? this.bloco.leitura : 0;
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return this.proximo != null;
+            }
+
+            public T next() {
+                if (this.proximo == null) {
+                    throw new NoSuchElementException();
+                }
+
+                T item = this.proximo;
+                this.proximo = this.avancar();
+                return item;
+            }
+        };
+    }
+
+    /**
+     * <p> Returns the block of the oldest unread item, dropping the blocks already read. </p>
+     *
+     * @return Block with an item claimed at its read position, or null if the queue is empty.
+     */
+    private Bloco<T> blocoDeLeitura() {
+        Bloco<T> bloco = this.cabeca;
+        while (bloco.leitura == bloco.capacidade()) {
+            Bloco<T> proximo = bloco.proximo.get();
+            if (proximo == null) {
+                return null;
+            }
+            this.cabeca = bloco = proximo;
+        }
+        return bloco.leitura < bloco.reservados() ? bloco : null;
+    }
+
+    /**
+     * <p> Waits for the producer that claimed a slot to store its item, yielding the processor now and then
+     * in case the producer was descheduled between the claim and the store. </p>
+     */
+    private static <T> T aguardar(Bloco<T> bloco, int indice) {
+        T item;
+        for (int tentativas = 1; (item = bloco.itens.getAcquire(indice)) == null; tentativas++) {
+            if (tentativas % ESPERAS_ANTES_DE_CEDER == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return item;
+    }
+}
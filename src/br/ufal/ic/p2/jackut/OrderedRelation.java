@@ -0,0 +1,174 @@
+package br.ufal.ic.p2.jackut;
+
+import br.ufal.ic.p2.jackut.Exceptions.InvalidPageTokenException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p> Insertion-ordered relation read by position, so it can be paged without being copied. </p>
+ *
+ * <p> Items live at positions from 0 to {@code getLimite() - 1}, in insertion order; a removed item leaves a
+ * hole, where {@code getItem} returns null, until the relation is compacted. New items are always appended at
+ * the end, so the position of an item only changes when holes are compacted. </p>
+ *
+ * <p> A continuation token holds the position and the text of the last item of a page. The next page starts
+ * right after that position if the item is still there, or after wherever the item moved to. If the item was
+ * removed, the next page starts at the same position; items may then be skipped or repeated only if the
+ * relation was compacted in between. Items added while paging are always reached. </p>
+ *
+ * @param <T> Type of the items, {@code User} or {@code Community}.
+ *
+ * @see RelationSet
+ * @see GraphStore.Relacao
+ */
+public interface OrderedRelation<T> extends Iterable<T> {
+    /**
+     * <p> Returns the position after the last item, holes included. </p>
+     *
+     * @return Number of positions.
+     */
+    int getLimite();
+
+    /**
+     * <p> Returns the item at a position. </p>
+     *
+     * @param posicao Position, from 0 to {@code getLimite() - 1}.
+     * @return The item, or null if the position is a hole.
+     */
+    T getItem(int posicao);
+
+    /**
+     * <p> Returns the page that follows a continuation token. </p>
+     *
+     * @param token  Token returned with the previous page, or null for the first page.
+     * @param limite Maximum number of items in the page.
+     * @return The page, whose token is null if it is the last one.
+     *
+     * @throws InvalidPageTokenException Exception thrown if the token was not returned by a page.
+     */
+    default Page<T> pagina(String token, int limite) throws InvalidPageTokenException {
+        return this.paginaDe(this.inicioDe(token), limite);
+    }
+
+    /**
+     * <p> Returns the page that starts after the given number of items. </p>
+     * <p> Skipping the items takes time proportional to {@code deslocamento}; tokens should be preferred for
+     * large relations. </p>
+     *
+     * @param deslocamento Number of items to skip.
+     * @param limite       Maximum number of items in the page.
+     * @return The page, whose token continues after it, or is null if it is the last one.
+     */
+    default Page<T> pagina(int deslocamento, int limite) {
+        int posicao = 0;
+        int limiteRelacao = this.getLimite();
+        for (int pulados = 0; posicao < limiteRelacao && pulados < deslocamento; posicao++) {
+            if (this.getItem(posicao) != null) {
+                pulados++;
+            }
+        }
+        return this.paginaDe(posicao, limite);
+    }
+
+    /**
+     * <p> Returns an iterator from a position on, which reads the relation as it is at each step. </p>
+     *
+     * @param inicio First position to be read.
+     * @return Iterator over the items from that position.
+     */
+    default Iterator<T> iterador(int inicio) {
+        return new Iterator<>() {
+            private int posicao = inicio;
+            private T proximo;
+
+            public boolean hasNext() {
+                while (this.proximo == null && this.posicao < OrderedRelation.this.getLimite()) {
+                    this.proximo = OrderedRelation.this.getItem(this.posicao++);
+                }
+                return this.proximo != null;
+            }
+
+            public T next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = this.proximo;
+                this.proximo = null;
+                return item;
+            }
+        };
+    }
+
+    private Page<T> paginaDe(int inicio, int limite) {
+        List<T> itens = new ArrayList<>(Math.max(0, Math.min(limite, this.getLimite() - inicio)));
+        int posicao = inicio;
+        int ultima = -1;
+        int limiteRelacao = this.getLimite();
+        while (posicao < limiteRelacao && itens.size() < limite) {
+            T item = this.getItem(posicao);
+            if (item != null) {
+                itens.add(item);
+                ultima = posicao;
+            }
+            posicao++;
+        }
+
+        while (posicao < limiteRelacao && this.getItem(posicao) == null) {
+            posicao++;
+        }
+        if (posicao >= limiteRelacao) {
+            return new Page<>(itens, null);
+        }
+        if (ultima < 0) {
+            return new Page<>(itens, codificar(posicao - 1, ""));
+        }
+        return new Page<>(itens, codificar(ultima, itens.get(itens.size() - 1)));
+    }
+
+    private int inicioDe(String token) {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+
+        String texto;
+        int separador;
+        int posicao;
+        try {
+            texto = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            separador = texto.indexOf(':');
+            posicao = Integer.parseInt(texto.substring(0, separador));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidPageTokenException();
+        }
+        if (posicao < -1) {
+            throw new InvalidPageTokenException();
+        }
+
+        String ultimo = texto.substring(separador + 1);
+        if (ultimo.isEmpty()) {
+            return posicao + 1;
+        }
+
+        T item = posicao >= 0 && posicao < this.getLimite() ? this.getItem(posicao) : null;
+        if (item != null && item.toString().equals(ultimo)) {
+            return posicao + 1;
+        }
+        for (int i = 0, limite = this.getLimite(); i < limite; i++) {
+            item = this.getItem(i);
+            if (item != null && item.toString().equals(ultimo)) {
+                return i + 1;
+            }
+        }
+        return posicao;
+    }
+
+    private static String codificar(int posicao, Object ultimo) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((posicao + ":" + ultimo).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p> One page of a relation, with the token of the next page. </p>
+ *
+ * @param itens  Items of the page, in insertion order.
+ * @param token  Opaque token to be passed to get the next page, or null if this is the last one.
+ * @param <T>    Type of the items.
+ *
+ * @see OrderedRelation
+ */
+public record Page<T>(List<T> itens, String token) {
+    /**
+     * <p> Returns true if there are items after this page. </p>
+     *
+     * @return True if the token is not null.
+     */
+    public boolean temProxima() {
+        return this.token != null;
+    }
+
+    /**
+     * <p> Returns the same page with every item converted. </p>
+     *
+     * @param conversao Conversion of each item.
+     * @param <R>       Type of the converted items.
+     * @return The converted page, with the same token.
+     */
+    public <R> Page<R> converter(Function<? super T, ? extends R> conversao) {
+        List<R> convertidos = new ArrayList<>(this.itens.size());
+        for (T item : this.itens) {
+            convertidos.add(conversao.apply(item));
+        }
+        return new Page<>(convertidos, this.token);
+    }
+
+    /**
+     * <p> Returns the items of the page in the format <b>{a,b,c}</b>. </p>
+     *
+     * @return Formatted items.
+     */
+    public String formatar() {
+        return UtilsString.formatArrayList(this.itens);
+    }
+}
@@ -0,0 +1,51 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * <p> Iterator over a large relation that fetches it one page at a time. </p>
+ *
+ * <p> Each page is read through a continuation token, under the lock of the owner of the relation, so the
+ * relation is never copied as a whole and may change while it is iterated: items added after the iterator
+ * started are reached, and items removed before their page is read are not returned. </p>
+ *
+ * @param <T> Type of the items.
+ *
+ * @see OrderedRelation
+ */
+public class PagedIterator<T> implements Iterator<T> {
+    private final Function<String, Page<T>> leitura;
+    private Iterator<T> pagina;
+    private String token;
+    private boolean ultima;
+
+    /**
+     * <p> Constructs a new {@code PagedIterator}. </p>
+     *
+     * @param leitura Reads the page that follows a token, or the first page for a null token.
+     */
+    public PagedIterator(Function<String, Page<T>> leitura) {
+        this.leitura = leitura;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ((this.pagina == null || !this.pagina.hasNext()) && !this.ultima) {
+            Page<T> proxima = this.leitura.apply(this.token);
+            this.pagina = proxima.itens().iterator();
+            this.token = proxima.token();
+            this.ultima = !proxima.temProxima();
+        }
+        return this.pagina.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.pagina.next();
+    }
+}
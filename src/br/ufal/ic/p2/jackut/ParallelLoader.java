@@ -0,0 +1,739 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * <p> Loads the text database using every core of the machine. </p>
+ *
+ * <p> The users file is parsed first and every user receives a dense id. The other files are then
+ * parsed concurrently, each on its own virtual thread, by a {@code TextScanner} that tokenizes the lines in
+ * place: every login is resolved to an id through a {@code KeyIndex}, so relations are collected as pairs of
+ * ints in growable arrays, without a {@code String} or an array per line. Only the names and profiles are
+ * decoded. </p>
+ *
+ * <p> Recados and messages are not parsed at all: the files are memory-mapped and every user only receives the
+ * range of its lines, which its {@code Mailbox} parses the first time it is read. </p>
+ *
+ * <p> The pairs are then grouped by user and the users are linked in parallel: every task only mutates the
+ * lists of the user it is responsible for, so no locking is needed and the order of every list is the same
+ * as in the files. Repeated relations, such as the two lines written for every enemy, are loaded once. </p>
+ *
+ * <p> Finally, the message logs of the communities are restored and the cursors of their members are set. </p>
+ *
+ * @see LoadReport
+ */
+public class ParallelLoader {
+    private static final byte[] IDOLO = "idolo".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FA = "fa".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAQUERA = "paquera".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAQUERA_RECEBIDA = "paqueraRecebida".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INIMIGO = "inimigo".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int TIPO_IDOLO = 0;
+    private static final int TIPO_FA = 1;
+    private static final int TIPO_PAQUERA = 2;
+    private static final int TIPO_PAQUERA_RECEBIDA = 3;
+    private static final int TIPO_INIMIGO = 4;
+
+    private static final int GRAU_LINEAR = 32;
+
+    private final File diretorio;
+    private final LoadReport relatorio;
+
+    private User[] usuarios = new User[0];
+    private ByteBuffer[] listasBuffer = new ByteBuffer[0];
+    private int[] listasInicio = new int[0];
+    private int[] listasFim = new int[0];
+    private KeyIndex indiceUsuarios;
+
+    private final IntList amigosDono = new IntList();
+    private final IntList amigosAlvo = new IntList();
+
+    private Caixas recados;
+    private Caixas mensagens;
+
+    private final IntList relacoesDono = new IntList();
+    private final IntList relacoesAlvo = new IntList();
+    private final IntList relacoesTipo = new IntList();
+
+    private final List<Community> comunidadesLidas = new ArrayList<>();
+    private final IntList comunidadesDono = new IntList();
+
+    private final List<Publicacao> publicacoes = new ArrayList<>();
+    private final List<Cursor> cursores = new ArrayList<>();
+
+    /**
+     * <p> Constructs a new {@code ParallelLoader} for the files of the given directory. </p>
+     *
+     * @param diretorio Directory of the database.
+     * @param relatorio Report that receives the timings of every phase.
+     */
+    public ParallelLoader(File diretorio, LoadReport relatorio) {
+        this.diretorio = diretorio;
+        this.relatorio = relatorio;
+    }
+
+    /**
+     * <p> Loads the database into the given maps of users and communities. </p>
+     *
+     * @param usuarios    Map that receives the users, indexed by login.
+     * @param comunidades Map that receives the communities, indexed by name.
+     * @param grafo       Store that receives the relations, with the users registered in the order of the files.
+     *
+     * @throws IOException Exception thrown if any of the files cannot be read.
+     */
+    public void carregar(Map<String, User> usuarios, Map<String, Community> comunidades, GraphStore grafo) throws IOException {
+        long inicio = java.lang.System.nanoTime();
+
+        long fase = java.lang.System.nanoTime();
+        this.lerUsuarios();
+        List<String> logins = new ArrayList<>(this.usuarios.length);
+        for (User usuario : this.usuarios) {
+            usuarios.put(usuario.getLogin(), usuario);
+            logins.add(usuario.getLogin());
+            grafo.registrar(usuario);
+        }
+        this.indiceUsuarios = new KeyIndex(logins);
+        this.recados = new Caixas(this.usuarios.length, true);
+        this.mensagens = new Caixas(this.usuarios.length, false);
+        this.relatorio.registrar("usuarios", java.lang.System.nanoTime() - fase, usuarios.size());
+
+        this.lerArquivos();
+
+        fase = java.lang.System.nanoTime();
+        List<String> nomes = new ArrayList<>(this.comunidadesLidas.size());
+        for (Community comunidade : this.comunidadesLidas) {
+            comunidades.put(comunidade.getNome(), comunidade);
+            nomes.add(comunidade.getNome());
+        }
+        KeyIndex indiceComunidades = new KeyIndex(nomes);
+        this.relatorio.registrar("comunidades", java.lang.System.nanoTime() - fase, comunidades.size());
+
+        fase = java.lang.System.nanoTime();
+        int total = this.usuarios.length;
+        Grupos amigos = agrupar(this.amigosDono, total);
+        Grupos recados = agrupar(this.recados.extrasDono, total);
+        Grupos mensagens = agrupar(this.mensagens.extrasDono, total);
+        Grupos relacoes = agrupar(this.relacoesDono, total);
+        Grupos proprietarias = agrupar(this.comunidadesDono, total);
+        Grupos remetidos = agrupar(this.recados.remetentes, total);
+
+        IntStream.range(0, total).parallel().forEach(id ->
+                this.vincular(id, amigos, recados, mensagens, relacoes, proprietarias, remetidos, indiceComunidades, usuarios));
+        this.relatorio.registrar("vinculos", java.lang.System.nanoTime() - fase, total);
+
+        fase = java.lang.System.nanoTime();
+        this.restaurarMurais(comunidades);
+        this.relatorio.registrar("murais", java.lang.System.nanoTime() - fase, this.publicacoes.size());
+
+        this.relatorio.registrar("total", java.lang.System.nanoTime() - inicio, usuarios.size() + comunidades.size());
+    }
+
+    /**
+     * <p> Links a user to its friends, communities, mailboxes and relations. </p>
+     * <p> Only the lists of the user {@code id} are modified. </p>
+     */
+    private void vincular(int id, Grupos amigos, Grupos recados, Grupos mensagens, Grupos relacoes,
+                          Grupos proprietarias, Grupos remetidos, KeyIndex indiceComunidades, Map<String, User> logins) {
+        User usuario = this.usuarios[id];
+
+        Set<Long> vistos = amigos.grau(id) > GRAU_LINEAR ? new HashSet<>() : null;
+        for (int p = amigos.inicio[id]; p < amigos.inicio[id + 1]; p++) {
+            int alvo = this.amigosAlvo.get(amigos.ordem[p]);
+            if (!repetido(amigos, id, p, this.amigosAlvo, null, vistos)) {
+                usuario.getFriends().add(this.usuarios[alvo]);
+            }
+        }
+
+        for (int p = proprietarias.inicio[id]; p < proprietarias.inicio[id + 1]; p++) {
+            usuario.setCriadorComunidade(this.comunidadesLidas.get(proprietarias.ordem[p]));
+        }
+
+        if (this.listasFim[id] - this.listasInicio[id] > 2) {
+            TextScanner lista = new TextScanner(this.listasBuffer[id]);
+            lista.abrirLista(this.listasInicio[id], this.listasFim[id]);
+            while (lista.proximoItem()) {
+                int comunidade = indiceComunidades.buscar(lista);
+                if (comunidade >= 0) {
+                    usuario.setParticipanteComunidade(this.comunidadesLidas.get(comunidade));
+                }
+            }
+        }
+
+        Mailbox.Leitor<Errand> leitorRecados = scanner -> {
+            scanner.proximoCampo();
+            scanner.proximoCampo();
+            User remetente = logins.get(scanner.texto());
+            if (remetente == null || remetente == usuario) {
+                return null;
+            }
+
+            scanner.restoDaLinha();
+            return new Errand(remetente, usuario, scanner.texto());
+        };
+        this.recados.vincular(id, recados, usuario.getErrands(), leitorRecados);
+
+        for (int p = remetidos.inicio[id]; p < remetidos.inicio[id + 1]; p++) {
+            usuario.adicionarDestinatarioRecado(this.usuarios[this.recados.destinatarios.get(remetidos.ordem[p])]);
+        }
+
+        Mailbox.Leitor<Messages> leitorMensagens = scanner -> {
+            scanner.proximoCampo();
+            scanner.restoDaLinha();
+            return new Messages(scanner.texto(), 0);
+        };
+        this.mensagens.vincular(id, mensagens, usuario.getMessages(), leitorMensagens);
+
+        vistos = relacoes.grau(id) > GRAU_LINEAR ? new HashSet<>() : null;
+        for (int p = relacoes.inicio[id]; p < relacoes.inicio[id + 1]; p++) {
+            int relacao = relacoes.ordem[p];
+            if (repetido(relacoes, id, p, this.relacoesAlvo, this.relacoesTipo, vistos)) {
+                continue;
+            }
+
+            User outro = this.usuarios[this.relacoesAlvo.get(relacao)];
+            switch (this.relacoesTipo.get(relacao)) {
+                case TIPO_IDOLO:
+                    usuario.setIdolo(outro);
+                    break;
+                case TIPO_FA:
+                    usuario.setFa(outro);
+                    break;
+                case TIPO_PAQUERA:
+                    usuario.setPaquera(outro);
+                    break;
+                case TIPO_PAQUERA_RECEBIDA:
+                    usuario.setCrushesReceived(outro);
+                    break;
+                case TIPO_INIMIGO:
+                    usuario.setInimigo(outro);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * <p> Restores the message log of every community and the cursors of its members, then recounts the
+     * readers of every log. </p>
+     */
+    private void restaurarMurais(Map<String, Community> comunidades) {
+        this.publicacoes.sort(Comparator.comparingLong(Publicacao::indice));
+        for (Publicacao publicacao : this.publicacoes) {
+            Community comunidade = comunidades.get(publicacao.comunidade());
+            if (comunidade != null) {
+                comunidade.getMural().restaurar(publicacao.indice(), new Messages(publicacao.texto(), publicacao.sequencia()));
+            }
+        }
+
+        for (Cursor cursor : this.cursores) {
+            Community comunidade = comunidades.get(cursor.comunidade());
+            User usuario = this.usuarios[cursor.dono()];
+            if (comunidade != null && usuario.getComunidadesParticipantes().contains(comunidade)) {
+                usuario.setCursorMensagens(comunidade, cursor.valor());
+            }
+        }
+
+        for (Community comunidade : comunidades.values()) {
+            comunidade.recontarLeitores();
+        }
+    }
+
+    /**
+     * <p> Returns true if the entry at position {@code p} of the group of {@code dono} repeats an earlier
+     * entry with the same target and type. Small groups are scanned linearly, large ones use {@code vistos}. </p>
+     */
+    private static boolean repetido(Grupos grupos, int dono, int p, IntList alvos, IntList tipos, Set<Long> vistos) {
+        int entrada = grupos.ordem[p];
+        int alvo = alvos.get(entrada);
+        int tipo = tipos == null ? 0 : tipos.get(entrada);
+
+        if (vistos != null) {
+            return !vistos.add(((long) tipo << 32) | alvo);
+        }
+
+        for (int q = grupos.inicio[dono]; q < p; q++) {
+            int anterior = grupos.ordem[q];
+            if (alvos.get(anterior) == alvo && (tipos == null || tipos.get(anterior) == tipo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p> Parses the users file, creating every user with its profile. </p>
+     * <p> The position of the list of communities of each user is kept to be resolved once the communities exist. </p>
+     */
+    private void lerUsuarios() throws IOException {
+        long inicio = java.lang.System.nanoTime();
+
+        List<User> lidos = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        IntList inicios = new IntList();
+        IntList fins = new IntList();
+
+        for (File arquivo : this.arquivos("usuarios.txt")) {
+            TextScanner scanner = TextScanner.abrir(arquivo);
+
+            while (scanner.proximaLinha()) {
+                scanner.proximoCampo();
+                String login = scanner.texto();
+                String senha = scanner.proximoCampo() ? scanner.texto() : "";
+                String nome = scanner.proximoCampo() ? scanner.texto() : "";
+                User usuario = new User(login, senha, nome);
+
+                int listaInicio = 0;
+                int listaFim = 0;
+                while (scanner.proximoCampo()) {
+                    if (scanner.ultimoCampo()) {
+                        listaInicio = scanner.inicio();
+                        listaFim = scanner.fim();
+                        break;
+                    }
+
+                    int separador = scanner.indiceNoCampo((byte) ':');
+                    if (separador < 0) {
+                        usuario.getProfile().setAtributo(scanner.texto(), "");
+                    } else {
+                        usuario.getProfile().setAtributo(scanner.texto(scanner.inicio(), separador),
+                                scanner.texto(separador + 1, scanner.fim()));
+                    }
+                }
+
+                Integer anterior = ids.putIfAbsent(login, lidos.size());
+                if (anterior != null) {
+                    lidos.set(anterior, usuario);
+                    buffers.set(anterior, scanner.getDados());
+                    inicios.set(anterior, listaInicio);
+                    fins.set(anterior, listaFim);
+                } else {
+                    lidos.add(usuario);
+                    buffers.add(scanner.getDados());
+                    inicios.add(listaInicio);
+                    fins.add(listaFim);
+                }
+            }
+        }
+
+        this.usuarios = lidos.toArray(new User[0]);
+        this.listasBuffer = buffers.toArray(new ByteBuffer[0]);
+        this.listasInicio = inicios.toArray();
+        this.listasFim = fins.toArray();
+
+        this.relatorio.registrar("usuarios.txt", java.lang.System.nanoTime() - inicio, this.usuarios.length);
+    }
+
+    /**
+     * <p> Parses the other files concurrently, one virtual thread per file. </p>
+     */
+    private void lerArquivos() throws IOException {
+        long inicio = java.lang.System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> tarefas = new ArrayList<>();
+
+            tarefas.add(executor.submit(this.tarefa("amigos.txt", scanner -> {
+                int registros = 0;
+                while (scanner.proximaLinha()) {
+                    scanner.proximoCampo();
+                    int dono = this.indiceUsuarios.buscar(scanner);
+                    if (dono < 0 || !scanner.proximoCampo()) {
+                        continue;
+                    }
+
+                    scanner.abrirLista();
+                    while (scanner.proximoItem()) {
+                        int amigo = this.indiceUsuarios.buscar(scanner);
+                        if (amigo >= 0) {
+                            this.amigosDono.add(dono);
+                            this.amigosAlvo.add(amigo);
+                            registros++;
+                        }
+                    }
+                }
+                return registros;
+            })));
+
+            tarefas.add(executor.submit(this.tarefa("recados.txt", this.recados::ler)));
+
+            tarefas.add(executor.submit(this.tarefa("comunidades.txt", scanner -> {
+                int registros = 0;
+                while (scanner.proximaLinha()) {
+                    scanner.proximoCampo();
+                    int dono = this.indiceUsuarios.buscar(scanner);
+                    if (dono < 0 || !scanner.proximoCampo()) {
+                        continue;
+                    }
+                    String nome = scanner.texto();
+                    String descricao = scanner.proximoCampo() ? scanner.texto() : "";
+
+                    User criador = this.usuarios[dono];
+                    Community comunidade = new Community(criador, nome, descricao);
+                    if (scanner.proximoCampo()) {
+                        scanner.abrirLista();
+                        while (scanner.proximoItem()) {
+                            int membro = this.indiceUsuarios.buscar(scanner);
+                            if (membro >= 0 && membro != dono) {
+                                comunidade.adicionarMembro(this.usuarios[membro]);
+                            }
+                        }
+                    }
+
+                    this.comunidadesLidas.add(comunidade);
+                    this.comunidadesDono.add(dono);
+                    registros++;
+                }
+                return registros;
+            })));
+
+            tarefas.add(executor.submit(this.tarefa("mensagens.txt", this.mensagens::ler)));
+
+            tarefas.add(executor.submit(this.tarefa("mural.txt", scanner -> {
+                int registros = 0;
+                while (scanner.proximaLinha()) {
+                    scanner.proximoCampo();
+                    String comunidade = scanner.texto();
+                    long indice = scanner.proximoCampo() ? scanner.numero() : -1;
+                    long sequencia = scanner.proximoCampo() ? scanner.numero() : -1;
+                    if (indice < 0 || sequencia < 0) {
+                        continue;
+                    }
+
+                    scanner.restoDaLinha();
+                    this.publicacoes.add(new Publicacao(comunidade, indice, sequencia, scanner.texto()));
+                    registros++;
+                }
+                return registros;
+            })));
+
+            tarefas.add(executor.submit(this.tarefa("cursores.txt", scanner -> {
+                int registros = 0;
+                while (scanner.proximaLinha()) {
+                    scanner.proximoCampo();
+                    int dono = this.indiceUsuarios.buscar(scanner);
+                    if (dono < 0 || !scanner.proximoCampo()) {
+                        continue;
+                    }
+                    String comunidade = scanner.texto();
+                    long valor = scanner.proximoCampo() ? scanner.numero() : -1;
+                    if (valor < 0) {
+                        continue;
+                    }
+
+                    this.cursores.add(new Cursor(dono, comunidade, valor));
+                    registros++;
+                }
+                return registros;
+            })));
+
+            tarefas.add(executor.submit(this.tarefa("relacoes.txt", scanner -> {
+                int registros = 0;
+                while (scanner.proximaLinha()) {
+                    scanner.proximoCampo();
+                    int dono = this.indiceUsuarios.buscar(scanner);
+                    scanner.proximoCampo();
+                    int outro = this.indiceUsuarios.buscar(scanner);
+                    if (dono < 0 || outro < 0 || !scanner.proximoCampo()) {
+                        continue;
+                    }
+
+                    int tipo = tipoRelacao(scanner);
+                    if (tipo < 0) {
+                        continue;
+                    }
+
+                    this.relacoesDono.add(dono);
+                    this.relacoesAlvo.add(outro);
+                    this.relacoesTipo.add(tipo);
+                    if (tipo == TIPO_INIMIGO) {
+                        this.relacoesDono.add(outro);
+                        this.relacoesAlvo.add(dono);
+                        this.relacoesTipo.add(tipo);
+                    }
+                    registros++;
+                }
+                return registros;
+            })));
+
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        this.relatorio.registrar("leitura", java.lang.System.nanoTime() - inicio, this.usuarios.length);
+    }
+
+    private static int tipoRelacao(TextScanner scanner) {
+        if (scanner.campoIgual(IDOLO)) {
+            return TIPO_IDOLO;
+        } else if (scanner.campoIgual(FA)) {
+            return TIPO_FA;
+        } else if (scanner.campoIgual(PAQUERA)) {
+            return TIPO_PAQUERA;
+        } else if (scanner.campoIgual(PAQUERA_RECEBIDA)) {
+            return TIPO_PAQUERA_RECEBIDA;
+        } else if (scanner.campoIgual(INIMIGO)) {
+            return TIPO_INIMIGO;
+        }
+        return -1;
+    }
+
+    /**
+     * <p> Wraps the parsing of every file of a kind, recording its duration and number of records. </p>
+     */
+    private Callable<Void> tarefa(String nome, Leitura leitura) {
+        return () -> {
+            long inicio = java.lang.System.nanoTime();
+            int registros = 0;
+            boolean caixa = nome.equals("recados.txt") || nome.equals("mensagens.txt");
+            for (File arquivo : this.arquivos(nome)) {
+                registros += leitura.ler(caixa ? TextScanner.mapear(arquivo) : TextScanner.abrir(arquivo));
+            }
+            this.relatorio.registrar(nome, java.lang.System.nanoTime() - inicio, registros);
+            return null;
+        };
+    }
+
+    /**
+     * <p> Lists the files of a kind, in the single-file layout and in the segmented layout. </p>
+     *
+     * @see UtilsFileHandler#gravarCheckpoint
+     */
+    private List<File> arquivos(String nome) {
+        List<File> arquivos = new ArrayList<>();
+
+        File legado = new File(this.diretorio, nome);
+        if (legado.isFile()) {
+            arquivos.add(legado);
+        }
+
+        File[] segmentos = new File(this.diretorio, nome.substring(0, nome.lastIndexOf('.')))
+                .listFiles((diretorio, segmento) -> segmento.endsWith(".txt"));
+        if (segmentos != null) {
+            Arrays.sort(segmentos);
+            arquivos.addAll(Arrays.asList(segmentos));
+        }
+
+        return arquivos;
+    }
+
+    /**
+     * <p> Groups the entries of a relation by their owner, keeping the order of the files (counting sort). </p>
+     */
+    private static Grupos agrupar(IntList donos, int total) {
+        int[] inicio = new int[total + 1];
+        for (int i = 0; i < donos.size(); i++) {
+            inicio[donos.get(i) + 1]++;
+        }
+        for (int i = 0; i < total; i++) {
+            inicio[i + 1] += inicio[i];
+        }
+
+        int[] proximo = Arrays.copyOf(inicio, total);
+        int[] ordem = new int[donos.size()];
+        for (int i = 0; i < donos.size(); i++) {
+            ordem[proximo[donos.get(i)]++] = i;
+        }
+
+        return new Grupos(inicio, ordem);
+    }
+
+    /**
+     * <p> Ranges of the mailboxes of every user in the memory-mapped files. </p>
+     *
+     * <p> The lines of a user are expected to be contiguous in a file, as they are written by the checkpoint,
+     * so each user receives a single range that is only parsed when its mailbox is first read. Lines found
+     * outside that range (for instance, in both the legacy file and a segment) are parsed at load. </p>
+     *
+     * <p> For recados, the sender of every line is also resolved, so each sender knows which mailboxes may
+     * hold their recados. </p>
+     *
+     * @see Mailbox
+     */
+    private final class Caixas {
+        private final ByteBuffer[] buffers;
+        private final int[] inicios;
+        private final int[] fins;
+        private final int[] linhas;
+
+        private final IntList extrasDono = new IntList();
+        private final List<ByteBuffer> extrasBuffer = new ArrayList<>();
+        private final IntList extrasInicio = new IntList();
+        private final IntList extrasFim = new IntList();
+
+        private final boolean indexarRemetentes;
+        private final IntList remetentes = new IntList();
+        private final IntList destinatarios = new IntList();
+
+        Caixas(int usuarios, boolean indexarRemetentes) {
+            this.buffers = new ByteBuffer[usuarios];
+            this.inicios = new int[usuarios];
+            this.fins = new int[usuarios];
+            this.linhas = new int[usuarios];
+            this.indexarRemetentes = indexarRemetentes;
+        }
+
+        /**
+         * <p> Finds the range of lines of every user in a file, without parsing the lines. </p>
+         */
+        int ler(TextScanner scanner) {
+            int registros = 0;
+            int dono = -1;
+            int inicio = 0;
+            int fim = 0;
+            int linhas = 0;
+
+            while (scanner.proximaLinha()) {
+                scanner.proximoCampo();
+                int atual = ParallelLoader.this.indiceUsuarios.buscar(scanner);
+                registros++;
+
+                if (this.indexarRemetentes && atual >= 0 && scanner.proximoCampo()) {
+                    int remetente = ParallelLoader.this.indiceUsuarios.buscar(scanner);
+                    if (remetente >= 0 && remetente != atual) {
+                        this.remetentes.add(remetente);
+                        this.destinatarios.add(atual);
+                    }
+                }
+
+                if (atual == dono && scanner.inicioDaLinha() == fim) {
+                    fim = scanner.fimDaLinha();
+                    linhas++;
+                    continue;
+                }
+
+                this.fechar(scanner.getDados(), dono, inicio, fim, linhas);
+                dono = atual;
+                inicio = scanner.inicioDaLinha();
+                fim = scanner.fimDaLinha();
+                linhas = 1;
+            }
+            this.fechar(scanner.getDados(), dono, inicio, fim, linhas);
+
+            return registros;
+        }
+
+        private void fechar(ByteBuffer dados, int dono, int inicio, int fim, int linhas) {
+            if (dono < 0) {
+                return;
+            }
+
+            if (this.buffers[dono] == null) {
+                this.buffers[dono] = dados;
+                this.inicios[dono] = inicio;
+                this.fins[dono] = fim;
+                this.linhas[dono] = linhas;
+            } else {
+                this.extrasDono.add(dono);
+                this.extrasBuffer.add(dados);
+                this.extrasInicio.add(inicio);
+                this.extrasFim.add(fim);
+            }
+        }
+
+        /**
+         * <p> Sets the origin of the mailbox of a user and parses the lines found outside it. </p>
+         */
+        <T> void vincular(int id, Grupos extras, Mailbox<T> caixa, Mailbox.Leitor<T> leitor) {
+            if (this.buffers[id] == null) {
+                return;
+            }
+            caixa.setOrigem(this.buffers[id], this.inicios[id], this.fins[id], this.linhas[id], leitor);
+
+            for (int p = extras.inicio[id]; p < extras.inicio[id + 1]; p++) {
+                int extra = extras.ordem[p];
+                TextScanner scanner = new TextScanner(this.extrasBuffer.get(extra).duplicate()
+                        .limit(this.extrasFim.get(extra)).position(this.extrasInicio.get(extra)));
+                while (scanner.proximaLinha()) {
+                    T item = leitor.ler(scanner);
+                    if (item != null) {
+                        caixa.add(item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p> Line of <b>mural.txt</b>: a message at the given index of the log of a community. </p>
+     */
+    private record Publicacao(String comunidade, long indice, long sequencia, String texto) {
+    }
+
+    /**
+     * <p> Line of <b>cursores.txt</b>: the cursor of a user in the log of a community. </p>
+     */
+    private record Cursor(int dono, String comunidade, long valor) {
+    }
+
+    private interface Leitura {
+        int ler(TextScanner scanner) throws IOException;
+    }
+
+    /**
+     * <p> Entries of a relation grouped by owner: the entries of owner {@code i} are
+     * {@code ordem[inicio[i]]} to {@code ordem[inicio[i + 1] - 1]}. </p>
+     */
+    private record Grupos(int[] inicio, int[] ordem) {
+        int grau(int dono) {
+            return this.inicio[dono + 1] - this.inicio[dono];
+        }
+    }
+
+    /**
+     * <p> Growable array of primitive ints. </p>
+     */
+    private static final class IntList {
+        private int[] dados = new int[16];
+        private int tamanho;
+
+        void add(int valor) {
+            if (this.tamanho == this.dados.length) {
+                this.dados = Arrays.copyOf(this.dados, this.tamanho * 2);
+            }
+            this.dados[this.tamanho++] = valor;
+        }
+
+        void set(int indice, int valor) {
+            this.dados[indice] = valor;
+        }
+
+        int get(int indice) {
+            return this.dados[indice];
+        }
+
+        int size() {
+            return this.tamanho;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(this.dados, this.tamanho);
+        }
+    }
+}
@@ -10,6 +10,8 @@ import br.ufal.ic.p2.jackut.Exceptions.AttributeNotFilledException;
  */
 public class Profile {
     private final Map<String, String> attributes = new HashMap<>();
+    private boolean modificado = true;
+    private Runnable aoModificar;
 
     /**
      * <p> Adds an attribute to the profile. </p>
@@ -19,6 +21,13 @@ public class Profile {
      */
     public void setAtributo(String key, String value) {
         this.attributes.put(key, value);
+
+        if (!this.modificado) {
+            this.modificado = true;
+            if (this.aoModificar != null) {
+                this.aoModificar.run();
+            }
+        }
     }
 
     /**
@@ -45,4 +54,29 @@ public class Profile {
     public Map<String, String> getAtributos() {
         return this.attributes;
     }
+
+    /**
+     * <p> Checks if the profile changed since the last checkpoint. </p>
+     *
+     * @return True if any attribute changed, false otherwise.
+     */
+    public boolean isModificado() {
+        return this.modificado;
+    }
+
+    /**
+     * <p> Sets the function notified when the profile goes from saved to modified. </p>
+     *
+     * @param aoModificar Function to be notified.
+     */
+    public void setAoModificar(Runnable aoModificar) {
+        this.aoModificar = aoModificar;
+    }
+
+    /**
+     * <p> Marks the profile as saved. </p>
+     */
+    public void limparModificado() {
+        this.modificado = false;
+    }
 }
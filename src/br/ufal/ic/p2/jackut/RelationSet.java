@@ -0,0 +1,228 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p> Insertion-ordered set of the users or communities related to a user. </p>
+ *
+ * <p> Most users have a handful of friends, fans or communities, so the items are kept in a plain array and
+ * found by a linear scan. Once the set grows past {@code LIMITE_LINEAR} items, a hash index from each item
+ * to its position in the array is built, so {@code contains}, {@code add} and {@code remove} stay constant
+ * time for users with hundreds of thousands of fans. </p>
+ *
+ * <p> Removed items leave a hole in the array, which is compacted when holes outnumber the items, so the
+ * iteration order is always the insertion order, as the <b>{a,b,c}</b> format expects. </p>
+ *
+ * <p> The formatted text of the set is cached by a {@code FormattedView}, patched when an item is added. </p>
+ *
+ * @param <T> Type of the items, {@code User} or {@code Community}.
+ */
+public class RelationSet<T> extends AbstractSet<T> implements OrderedRelation<T> {
+    private static final int LIMITE_LINEAR = 16;
+    private static final Object[] VAZIO = new Object[0];
+
+    private Object[] itens = VAZIO;
+    private int ocupados;
+    private int tamanho;
+    private int modificacoes;
+    private HashMap<Object, Integer> posicoes;
+    private final FormattedView formatada = new FormattedView();
+
+    /**
+     * <p> Returns the items of the set in the format <b>{a,b,c}</b>, cached between changes. </p>
+     *
+     * @return Formatted items.
+     */
+    public String formatar() {
+        return this.formatada.formatar(this);
+    }
+
+    @Override
+    public int getLimite() {
+        return this.ocupados;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getItem(int posicao) {
+        return (T) this.itens[posicao];
+    }
+
+    @Override
+    public int size() {
+        return this.tamanho;
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        return item != null && this.posicao(item) >= 0;
+    }
+
+    @Override
+    public boolean add(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (this.posicao(item) >= 0) {
+            return false;
+        }
+
+        this.formatada.antesDeAlterar();
+        if (this.ocupados == this.itens.length) {
+            this.itens = Arrays.copyOf(this.itens, Math.max(4, this.itens.length * 2));
+        }
+        if (this.posicoes != null) {
+            this.posicoes.put(item, this.ocupados);
+        }
+        this.itens[this.ocupados++] = item;
+        this.tamanho++;
+        this.modificacoes++;
+
+        if (this.posicoes == null && this.tamanho > LIMITE_LINEAR) {
+            this.indexar();
+        }
+        this.formatada.anexado(item);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        int posicao = item == null ? -1 : this.posicao(item);
+        if (posicao < 0) {
+            return false;
+        }
+
+        this.formatada.antesDeAlterar();
+        this.removerPosicao(posicao);
+        this.compactar();
+        this.formatada.alterado();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        this.formatada.antesDeAlterar();
+        this.itens = VAZIO;
+        this.ocupados = 0;
+        this.tamanho = 0;
+        this.posicoes = null;
+        this.modificacoes++;
+        this.formatada.alterado();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int proximo = this.avancar(0);
+            private int atual = -1;
+            private int esperado = RelationSet.this.modificacoes;
+
+            private int avancar(int posicao) {
+                Object[] itens = RelationSet.this.itens;
+                while (posicao < RelationSet.this.ocupados && itens[posicao] == null) {
+                    posicao++;
+                }
+                return posicao;
+            }
+
+            public boolean hasNext() {
+                return this.proximo < RelationSet.this.ocupados;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (this.esperado != RelationSet.this.modificacoes) {
+                    throw new ConcurrentModificationException();
+                }
+                if (this.proximo >= RelationSet.this.ocupados) {
+                    throw new NoSuchElementException();
+                }
+
+                this.atual = this.proximo;
+                this.proximo = this.avancar(this.proximo + 1);
+                return (T) RelationSet.this.itens[this.atual];
+            }
+
+            public void remove() {
+                if (this.atual < 0) {
+                    throw new IllegalStateException();
+                }
+                if (this.esperado != RelationSet.this.modificacoes) {
+                    throw new ConcurrentModificationException();
+                }
+
+                RelationSet.this.formatada.antesDeAlterar();
+                RelationSet.this.removerPosicao(this.atual);
+                RelationSet.this.formatada.alterado();
+                this.esperado = RelationSet.this.modificacoes;
+                this.atual = -1;
+            }
+        };
+    }
+
+    private int posicao(Object item) {
+        if (this.posicoes != null) {
+            Integer posicao = this.posicoes.get(item);
+            return posicao == null ? -1 : posicao;
+        }
+
+        for (int i = 0; i < this.ocupados; i++) {
+            if (item.equals(this.itens[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removerPosicao(int posicao) {
+        if (this.posicoes != null) {
+            this.posicoes.remove(this.itens[posicao]);
+        }
+        this.itens[posicao] = null;
+        this.tamanho--;
+        this.modificacoes++;
+    }
+
+    /**
+     * <p> Closes the holes left by removals once they outnumber the items. </p>
+     * <p> Not called while iterating, so an iterator never sees the items move. </p>
+     */
+    private void compactar() {
+        int buracos = this.ocupados - this.tamanho;
+        if (buracos <= Math.max(LIMITE_LINEAR / 2, this.tamanho)) {
+            return;
+        }
+
+        int destino = 0;
+        for (int i = 0; i < this.ocupados; i++) {
+            if (this.itens[i] != null) {
+                this.itens[destino++] = this.itens[i];
+            }
+        }
+        Arrays.fill(this.itens, destino, this.ocupados, null);
+        this.ocupados = destino;
+
+        if (this.itens.length > 4 * Math.max(4, this.tamanho)) {
+            this.itens = Arrays.copyOf(this.itens, Math.max(4, this.tamanho * 2));
+        }
+
+        this.posicoes = null;
+        if (this.tamanho > LIMITE_LINEAR) {
+            this.indexar();
+        }
+    }
+
+    private void indexar() {
+        this.posicoes = new HashMap<>(this.tamanho * 2);
+        for (int i = 0; i < this.ocupados; i++) {
+            if (this.itens[i] != null) {
+                this.posicoes.put(this.itens[i], i);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package br.ufal.ic.p2.jackut;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p> Table of the open sessions of the system. </p>
+ *
+ * <p> A session expires when it is not used for <b>jackut.sessao.ociosidade</b> milliseconds (30 minutes by
+ * default) or <b>jackut.sessao.duracao</b> milliseconds after it was opened (24 hours by default). Expired
+ * sessions are dropped lazily when they are looked up and by {@code varrer}, which the system calls
+ * periodically from its background thread, never on the thread of a login. </p>
+ *
+ * <p> A user keeps at most <b>jackut.sessao.maximo</b> sessions (16 by default); opening another one closes
+ * the oldest. </p>
+ *
+ * <p> Tokens are 128 random bits, written as 32 hexadecimal digits and stored as two longs. Each thread draws
+ * them from its own generator, so logins of different threads never contend. </p>
+ *
+ * @see System
+ */
+public class SessionTable {
+    private static final long PRECISAO_ACESSO = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ThreadLocal<SecureRandom> GERADORES = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    });
+
+    private final Map<Chave, Sessao> sessoes = new ConcurrentHashMap<>();
+    private final Map<String, ArrayDeque<Chave>> sessoesDoUsuario = new ConcurrentHashMap<>();
+
+    private final long ociosidade;
+    private final long duracao;
+    private final int maximo;
+
+    private record Chave(long alto, long baixo) {
+    }
+
+    private static final class Sessao {
+        private final User usuario;
+        private final long abertura;
+        private volatile long ultimoAcesso;
+
+        private Sessao(User usuario, long agora) {
+            this.usuario = usuario;
+            this.abertura = agora;
+            this.ultimoAcesso = agora;
+        }
+    }
+
+    /**
+     * <p> Constructs a new {@code SessionTable} with the limits read from the properties of the system. </p>
+     */
+    public SessionTable() {
+        this(Long.getLong("jackut.sessao.ociosidade", TimeUnit.MINUTES.toMillis(30)),
+                Long.getLong("jackut.sessao.duracao", TimeUnit.HOURS.toMillis(24)),
+                Integer.getInteger("jackut.sessao.maximo", 16));
+    }
+
+    /**
+     * <p> Constructs a new {@code SessionTable} with the given limits. </p>
+     *
+     * @param ociosidade Milliseconds without use after which a session expires.
+     * @param duracao    Milliseconds after its opening after which a session expires.
+     * @param maximo     Maximum number of sessions of a user.
+     */
+    public SessionTable(long ociosidade, long duracao, int maximo) {
+        this.ociosidade = TimeUnit.MILLISECONDS.toNanos(ociosidade);
+        this.duracao = TimeUnit.MILLISECONDS.toNanos(duracao);
+        this.maximo = Math.max(1, maximo);
+    }
+
+    /**
+     * <p> Opens a session for the user, closing their oldest one if they reached the limit. </p>
+     *
+     * @param usuario User logging in.
+     * @return Token of the new session.
+     */
+    public String abrir(User usuario) {
+        SecureRandom gerador = GERADORES.get();
+        Chave chave = new Chave(gerador.nextLong(), gerador.nextLong());
+        long agora = java.lang.System.nanoTime();
+
+        boolean aberta = false;
+        while (!aberta) {
+            ArrayDeque<Chave> chaves = this.sessoesDoUsuario.computeIfAbsent(usuario.getLogin(), login -> new ArrayDeque<>());
+            synchronized (chaves) {
+                // encerrarTodas dropped this deque before it was locked: retry on the one now mapped.
+                if (this.sessoesDoUsuario.get(usuario.getLogin()) != chaves) {
+                    continue;
+                }
+
+                this.sessoes.put(chave, new Sessao(usuario, agora));
+                chaves.addLast(chave);
+
+                while (chaves.size() > this.maximo) {
+                    this.sessoes.remove(chaves.pollFirst());
+                }
+                aberta = true;
+            }
+        }
+
+        return codificar(chave);
+    }
+
+    /**
+     * <p> Returns the user of a session, renewing its idle time. </p>
+     *
+     * @param id Token of the session.
+     * @return User of the session, or null if it does not exist or expired.
+     */
+    public User buscar(String id) {
+        Chave chave = decodificar(id);
+        if (chave == null) {
+            return null;
+        }
+
+        Sessao sessao = this.sessoes.get(chave);
+        if (sessao == null) {
+            return null;
+        }
+
+        long agora = java.lang.System.nanoTime();
+        if (this.expirada(sessao, agora)) {
+            this.remover(chave, sessao);
+            return null;
+        }
+
+        if (agora - sessao.ultimoAcesso > PRECISAO_ACESSO) {
+            sessao.ultimoAcesso = agora;
+        }
+        return sessao.usuario;
+    }
+
+    /**
+     * <p> Closes a session. </p>
+     *
+     * @param id Token of the session.
+     * @return True if the session was open.
+     */
+    public boolean encerrar(String id) {
+        Chave chave = decodificar(id);
+        if (chave == null) {
+            return false;
+        }
+
+        Sessao sessao = this.sessoes.get(chave);
+        if (sessao == null) {
+            return false;
+        }
+
+        return this.remover(chave, sessao) && !this.expirada(sessao, java.lang.System.nanoTime());
+    }
+
+    /**
+     * <p> Closes every session of a user. </p>
+     *
+     * @param login Login of the user.
+     */
+    public void encerrarTodas(String login) {
+        ArrayDeque<Chave> chaves = this.sessoesDoUsuario.remove(login);
+        if (chaves == null) {
+            return;
+        }
+
+        synchronized (chaves) {
+            for (Chave chave : chaves) {
+                this.sessoes.remove(chave);
+            }
+            chaves.clear();
+        }
+    }
+
+    /**
+     * <p> Drops the expired sessions. </p>
+     *
+     * @return Number of sessions dropped.
+     */
+    public int varrer() {
+        long agora = java.lang.System.nanoTime();
+        int removidas = 0;
+
+        for (Map.Entry<Chave, Sessao> entrada : this.sessoes.entrySet()) {
+            if (this.expirada(entrada.getValue(), agora)) {
+                this.remover(entrada.getKey(), entrada.getValue());
+                removidas++;
+            }
+        }
+        return removidas;
+    }
+
+    /**
+     * <p> Returns the number of open sessions, expired ones not yet dropped included. </p>
+     *
+     * @return Number of sessions.
+     */
+    public int tamanho() {
+        return this.sessoes.size();
+    }
+
+    /**
+     * <p> Closes every session. </p>
+     */
+    public void limpar() {
+        this.sessoes.clear();
+        this.sessoesDoUsuario.clear();
+    }
+
+    private boolean expirada(Sessao sessao, long agora) {
+        return agora - sessao.ultimoAcesso > this.ociosidade || agora - sessao.abertura > this.duracao;
+    }
+
+    private boolean remover(Chave chave, Sessao sessao) {
+        if (!this.sessoes.remove(chave, sessao)) {
+            return false;
+        }
+
+        ArrayDeque<Chave> chaves = this.sessoesDoUsuario.get(sessao.usuario.getLogin());
+        if (chaves != null) {
+            synchronized (chaves) {
+                chaves.remove(chave);
+            }
+        }
+        return true;
+    }
+
+    private static String codificar(Chave chave) {
+        char[] texto = new char[32];
+        for (int i = 0; i < 16; i++) {
+            texto[i] = Character.forDigit((int) (chave.alto() >>> (60 - 4 * i)) & 0xF, 16);
+            texto[16 + i] = Character.forDigit((int) (chave.baixo() >>> (60 - 4 * i)) & 0xF, 16);
+        }
+        return new String(texto);
+    }
+
+    private static Chave decodificar(String id) {
+        if (id == null || id.length() != 32) {
+            return null;
+        }
+
+        long alto = 0;
+        long baixo = 0;
+        for (int i = 0; i < 16; i++) {
+            int digitoAlto = Character.digit(id.charAt(i), 16);
+            int digitoBaixo = Character.digit(id.charAt(16 + i), 16);
+            if (digitoAlto < 0 || digitoBaixo < 0) {
+                return null;
+            }
+            alto = (alto << 4) | digitoAlto;
+            baixo = (baixo << 4) | digitoBaixo;
+        }
+        return new Chave(alto, baixo);
+    }
+}
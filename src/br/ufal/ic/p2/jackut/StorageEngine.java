@@ -0,0 +1,131 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p> Storage of the data of the system: how it is loaded at startup, captured and written by a checkpoint,
+ * and erased by {@code zerarSistema}. </p>
+ *
+ * <p> Three engines are provided: {@code TextStorageEngine}, the segmented text files; {@code BinaryStorageEngine},
+ * a single binary snapshot; and {@code MemoryStorageEngine}, which keeps the last checkpoint in memory and does
+ * no I/O at all, for benchmarks and tests. The engine is chosen when the {@code Facade} is constructed. </p>
+ *
+ * <p> The engine is only called by the {@code System}, one checkpoint at a time. </p>
+ *
+ * @see System
+ * @see Checkpoint
+ */
+public interface StorageEngine {
+    /**
+     * <p> Collections of the system read and written by the engine, and the keys changed since the last
+     * checkpoint. </p>
+     *
+     * @param usuarios               Users, indexed by login.
+     * @param comunidades            Communities, indexed by name.
+     * @param grafo                  Relations between users and communities.
+     * @param usuariosModificados    Logins of the users changed since the last checkpoint.
+     * @param comunidadesModificadas Names of the communities changed since the last checkpoint.
+     * @param usuariosRemovidos      Logins of the users removed since the last checkpoint.
+     * @param comunidadesRemovidas   Names of the communities removed since the last checkpoint.
+     */
+    record Estado(Map<String, User> usuarios, Map<String, Community> comunidades, GraphStore grafo,
+                  Set<String> usuariosModificados, Set<String> comunidadesModificadas,
+                  Set<String> usuariosRemovidos, Set<String> comunidadesRemovidas) {
+    }
+
+    /**
+     * <p> Loads the last image written into the collections of the system, recording each phase in the
+     * report. </p>
+     *
+     * @param estado    Collections of the system, empty.
+     * @param relatorio Report of the startup.
+     * @return Sequence number of the last operation covered by the image, from which the log is replayed.
+     *
+     * @throws IOException Exception thrown if the image cannot be read.
+     */
+    long carregar(Estado estado, LoadReport relatorio) throws IOException;
+
+    /**
+     * <p> Opens the operation log of this storage. </p>
+     *
+     * @param durabilidade Durability mode of the log.
+     * @param intervalo    Interval, in milliseconds, between two group commits.
+     * @return Operation log, or null if the operations are not logged.
+     *
+     * @throws IOException Exception thrown if the log cannot be opened.
+     */
+    WriteAheadLog abrirLog(DurabilityMode durabilidade, long intervalo) throws IOException;
+
+    /**
+     * <p> Starts the image of a checkpoint. Called while the mutating operations of the system are held, so it
+     * must not copy any user or community: they are added afterwards by {@code capturar}. </p>
+     *
+     * <p> The image covers every user and community if it is complete, or else only those in the sets of
+     * changed keys of the state. </p>
+     *
+     * @param estado      Collections of the system.
+     * @param lsn         Sequence number of the last operation covered by the image.
+     * @param logsAntigos Log files the image makes obsolete.
+     * @return Empty image, to be filled by {@code capturar} and written by {@code gravar}.
+     *
+     * @throws IOException Exception thrown if the image cannot be started.
+     */
+    Checkpoint iniciar(Estado estado, long lsn, List<File> logsAntigos) throws IOException;
+
+    /**
+     * <p> Adds a user to the image, as they were when it started. Called once per user covered by the image,
+     * with the user locked and before any later change of the user. </p>
+     *
+     * @param checkpoint Image started by {@code iniciar}.
+     * @param usuario    User.
+     */
+    void capturar(Checkpoint checkpoint, User usuario);
+
+    /**
+     * <p> Adds a community to the image, as it was when it started. Called once per community covered by the
+     * image, with the community locked and before any later change of the community. </p>
+     *
+     * @param checkpoint Image started by {@code iniciar}.
+     * @param comunidade Community.
+     */
+    void capturar(Checkpoint checkpoint, Community comunidade);
+
+    /**
+     * <p> Writes an image once every object it covers was captured, filling in its metrics. Runs while the
+     * system keeps changing. </p>
+     *
+     * @param checkpoint Image captured.
+     *
+     * @throws IOException Exception thrown if the image cannot be written.
+     */
+    void gravar(Checkpoint checkpoint) throws IOException;
+
+    /**
+     * <p> Erases every image written, leaving the storage as for an empty system. </p>
+     *
+     * @param estado Collections of the system, already cleared.
+     * @param lsn    Sequence number of the last operation of the log.
+     *
+     * @throws IOException Exception thrown if the files cannot be erased.
+     */
+    void zerar(Estado estado, long lsn) throws IOException;
+
+    /**
+     * <p> Returns the engine of a data directory: binary if it holds a binary snapshot or if the property
+     * <b>jackut.snapshot</b> is binario, text otherwise. </p>
+     *
+     * @param pasta Data directory.
+     * @return Storage engine of the directory.
+     */
+    static StorageEngine padrao(File pasta) {
+        if (new File(pasta, "snapshot.bin").exists()
+                || java.lang.System.getProperty("jackut.snapshot", "texto").equals("binario")) {
+            return new BinaryStorageEngine(pasta);
+        }
+        return new TextStorageEngine(pasta);
+    }
+}
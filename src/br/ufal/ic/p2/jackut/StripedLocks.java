@@ -0,0 +1,253 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * <p> Fine-grained locks of the system, striped by login or community name. </p>
+ *
+ * <p> Every mutating operation locks the stripes of the keys it touches with {@code travar}. The stripes
+ * are always acquired in ascending index order, so two operations on the same pair of users can never
+ * deadlock, whatever the order of their arguments. </p>
+ *
+ * <p> Read-only operations use {@code ler}, which holds the read lock of the stripe, so any number of them
+ * run together while the collections they walk cannot change under them. Reads of a single scalar field
+ * use {@code lerCampo}, which runs optimistically without writing to any shared memory and only falls back
+ * to the read lock if a writer interfered. </p>
+ *
+ * <p> A barrier lets operations that touch the whole system ({@code travarTudo}) or need a consistent view of
+ * it ({@code suspenderEscritas}) wait for the operations in progress and hold the new ones. </p>
+ *
+ * <p> An observer, if set, is told of the keys of every write once their stripes are held and before the
+ * operation changes anything, which lets a checkpoint copy an object before its first change. </p>
+ */
+public class StripedLocks {
+    private final StampedLock barreira = new StampedLock();
+    private final StampedLock[] travas;
+    private final int mascara;
+    private volatile Observador observador;
+
+    /**
+     * <p> Operation that reads the state protected by a stripe. </p>
+     *
+     * @param <T> Type of the result.
+     * @param <E> Type of the exception thrown by the operation.
+     */
+    public interface Leitura<T, E extends Exception> {
+        T ler() throws E;
+    }
+
+    /**
+     * <p> Locks held by an operation, released by {@code close}. </p>
+     */
+    public interface Travamento extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * <p> Function told of the writes about to run, while their stripes are held. </p>
+     */
+    public interface Observador {
+        /**
+         * <p> Called by {@code travar} with the keys of an operation, before the operation runs. </p>
+         *
+         * @param chaves Logins and community names locked.
+         */
+        void aoTravar(String[] chaves);
+
+        /**
+         * <p> Called by {@code travarTudo}, before the operation runs. </p>
+         */
+        void aoTravarTudo();
+    }
+
+    /**
+     * <p> Constructs a new {@code StripedLocks} with at least the given number of stripes. </p>
+     *
+     * @param quantidade Minimum number of stripes, rounded up to a power of two.
+     */
+    public StripedLocks(int quantidade) {
+        int tamanho = Integer.highestOneBit(Math.max(1, quantidade - 1)) << 1;
+        this.travas = new StampedLock[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            this.travas[i] = new StampedLock();
+        }
+        this.mascara = tamanho - 1;
+    }
+
+    /**
+     * <p> Returns the index of the stripe of a key. </p>
+     *
+     * @param chave Login or community name.
+     * @return Index of the stripe.
+     */
+    public int indice(String chave) {
+        int hash = chave.hashCode();
+        return (hash ^ (hash >>> 16)) & this.mascara;
+    }
+
+    /**
+     * <p> Locks the stripes of the given keys for writing, in ascending order. </p>
+     *
+     * @param chaves Logins and community names touched by the operation.
+     * @return Locks to be released when the operation finishes.
+     */
+    public Travamento travar(String... chaves) {
+        long barreira = this.barreira.readLock();
+        Travamento travamento = this.travarChaves(chaves);
+
+        Travamento liberacao = () -> {
+            travamento.close();
+            this.barreira.unlockRead(barreira);
+        };
+
+        Observador observador = this.observador;
+        if (observador != null) {
+            avisar(liberacao, () -> observador.aoTravar(chaves));
+        }
+        return liberacao;
+    }
+
+    /**
+     * <p> Locks the distinct stripes of the given keys for writing, in ascending order, so two operations
+     * never wait for each other in a cycle. </p>
+     */
+    private Travamento travarChaves(String... chaves) {
+        int[] indices = new int[chaves.length];
+        for (int i = 0; i < chaves.length; i++) {
+            indices[i] = this.indice(chaves[i]);
+        }
+        Arrays.sort(indices);
+
+        int unicos = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (i == 0 || indices[i] != indices[i - 1]) {
+                indices[unicos++] = indices[i];
+            }
+        }
+
+        long[] carimbos = new long[unicos];
+        for (int i = 0; i < unicos; i++) {
+            carimbos[i] = this.travas[indices[i]].writeLock();
+        }
+
+        int quantidade = unicos;
+        return () -> {
+            for (int i = quantidade - 1; i >= 0; i--) {
+                this.travas[indices[i]].unlockWrite(carimbos[i]);
+            }
+        };
+    }
+
+    /**
+     * <p> Waits for the operations in progress and locks every stripe, for operations that touch the whole
+     * system, such as compacting the graph or resetting the system. </p>
+     *
+     * @return Locks to be released when the operation finishes.
+     */
+    public Travamento travarTudo() {
+        long barreira = this.barreira.writeLock();
+        long[] carimbos = new long[this.travas.length];
+        for (int i = 0; i < this.travas.length; i++) {
+            carimbos[i] = this.travas[i].writeLock();
+        }
+
+        Travamento liberacao = () -> {
+            for (int i = this.travas.length - 1; i >= 0; i--) {
+                this.travas[i].unlockWrite(carimbos[i]);
+            }
+            this.barreira.unlockWrite(barreira);
+        };
+
+        Observador observador = this.observador;
+        if (observador != null) {
+            avisar(liberacao, observador::aoTravarTudo);
+        }
+        return liberacao;
+    }
+
+    /**
+     * <p> Sets the observer of the writes, or removes it if null. </p>
+     * <p> Should be set while the writes are suspended, so that no write in progress misses it. </p>
+     *
+     * @param observador Observer of the writes.
+     */
+    public void setObservador(Observador observador) {
+        this.observador = observador;
+    }
+
+    /**
+     * <p> Runs the notification of an observer, releasing the locks just taken if it fails. </p>
+     */
+    private static void avisar(Travamento liberacao, Runnable aviso) {
+        try {
+            aviso.run();
+        } catch (RuntimeException | Error e) {
+            liberacao.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p> Waits for the mutating operations in progress and holds the new ones, while read-only operations keep
+     * running. Used to capture a consistent view of the system. </p>
+     *
+     * @return Lock to be released when the view is captured.
+     */
+    public Travamento suspenderEscritas() {
+        long barreira = this.barreira.writeLock();
+        return () -> this.barreira.unlockWrite(barreira);
+    }
+
+    /**
+     * <p> Runs a read-only operation on the state protected by the stripe of a key, under its read lock. </p>
+     *
+     * @param chave   Login or community name whose state is read.
+     * @param leitura Operation to be run.
+     * @return Result of the operation.
+     *
+     * @throws E Exception thrown by the operation.
+     */
+    public <T, E extends Exception> T ler(String chave, Leitura<T, E> leitura) throws E {
+        StampedLock trava = this.travas[this.indice(chave)];
+
+        long carimbo = trava.readLock();
+        try {
+            return leitura.ler();
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    /**
+     * <p> Reads a single scalar field protected by the stripe of a key. </p>
+     *
+     * <p> The field is read first without locking, and read again under the read lock of the stripe only if a
+     * writer held it in the meantime. The read must not walk a collection nor follow a reference that a
+     * writer may change, since it may observe them half-changed. </p>
+     *
+     * @param chave Login or community name whose state is read.
+     * @param campo Read of the field.
+     * @return Value of the field.
+     */
+    public <T> T lerCampo(String chave, Supplier<T> campo) {
+        StampedLock trava = this.travas[this.indice(chave)];
+
+        long carimbo = trava.tryOptimisticRead();
+        if (carimbo != 0) {
+            T valor = campo.get();
+            if (trava.validate(carimbo)) {
+                return valor;
+            }
+        }
+
+        carimbo = trava.readLock();
+        try {
+            return campo.get();
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+}
@@ -1,212 +1,585 @@
 package br.ufal.ic.p2.jackut;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import br.ufal.ic.p2.jackut.Exceptions.*;
 import br.ufal.ic.p2.jackut.Exceptions.SelfSentErrandException;
 
 /**
  * <p> Class that represents the system. </p>
+ *
+ * <p> The system may be used by many threads at once. Each operation locks only the stripes of the users and
+ * communities it touches, and read-only queries do not lock at all unless a writer interferes. </p>
+ *
+ * @see StripedLocks
  */
 
 public class System {
-    private Map<String, User> users = new HashMap<>();
-    private Map<String, User> sessions = new HashMap<>();
-    private Map<String, Community> communities = new HashMap<>();
+    private static final int TAMANHO_PAGINA = 1024;
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final SessionTable sessions = new SessionTable();
+    private final Map<String, Community> communities = new ConcurrentHashMap<>();
+    private final GraphStore grafo = new GraphStore();
+    private final StripedLocks travas = new StripedLocks(64 * Runtime.getRuntime().availableProcessors());
+    private final FriendRecommender recomendacoes = new FriendRecommender(this.grafo, this.travas);
+    private final StorageEngine armazenamento;
+    private WriteAheadLog log;
+    private boolean carregado;
+    private final LoadReport relatorioCarga = new LoadReport();
+    private final Set<String> usuariosRemovidos = ConcurrentHashMap.newKeySet();
+    private final Set<String> comunidadesRemovidas = ConcurrentHashMap.newKeySet();
+    private final Set<String> usuariosModificados = ConcurrentHashMap.newKeySet();
+    private final Set<String> comunidadesModificadas = ConcurrentHashMap.newKeySet();
+    private final StorageEngine.Estado estado = new StorageEngine.Estado(this.users, this.communities, this.grafo,
+            this.usuariosModificados, this.comunidadesModificadas, this.usuariosRemovidos, this.comunidadesRemovidas);
+    private final ReentrantLock checkpointando = new ReentrantLock();
+    private ScheduledExecutorService agendador;
+    private volatile Checkpoint ultimoCheckpoint;
+    private volatile CheckpointCapture captura;
+    private final LongAdder recadosPendentes = new LongAdder();
+    private final LongAdder mensagensPendentes = new LongAdder();
 
     /**
      * <p> Constructs a new {@code System} responsible for managing users and sessions. </p>
      *
-     * <p> Initializes the lists of users and sessions. </p>
+     * <p> The durability of the operation log is read from the properties <b>jackut.wal.durabilidade</b>
+     * (FSYNC, GROUP_COMMIT or OS_BUFFERED) and <b>jackut.wal.intervalo</b> (milliseconds). </p>
+     *
+     * <p> The storage format is read from the property <b>jackut.snapshot</b> (texto or binario). </p>
+     *
+     * <p> The interval between two background checkpoints is read from the property
+     * <b>jackut.checkpoint.intervalo</b> (milliseconds, 0 disables them). The same thread drops the mailboxes
+     * not read for <b>jackut.caixa.ociosidade</b> milliseconds. </p>
+     *
+     * <p> The data directory is read from the property <b>jackut.pasta</b> (default <b>./database</b>). </p>
      *
      * @see User
+     * @see WriteAheadLog
      */
 
     public System() {
+        this(pastaPadrao());
+    }
+
+    /**
+     * <p> Constructs a new {@code System} keeping its data in the given directory, with the durability and
+     * checkpoints configured through the same properties as {@code System()}. </p>
+     *
+     * <p> Two systems in the same JVM must not share a directory. </p>
+     *
+     * @param pasta Data directory, created if it does not exist.
+     */
+
+    public System(File pasta) {
+        this(StorageEngine.padrao(pasta));
+    }
+
+    /**
+     * <p> Constructs a new {@code System} over the given storage engine, with the durability and checkpoints
+     * configured through the same properties as {@code System()}. </p>
+     *
+     * @param armazenamento Storage engine of the data.
+     *
+     * @see StorageEngine
+     */
+
+    public System(StorageEngine armazenamento) {
+        this(armazenamento,
+                DurabilityMode.valueOf(java.lang.System.getProperty("jackut.wal.durabilidade", "GROUP_COMMIT")),
+                Long.getLong("jackut.wal.intervalo", 10));
+
+        this.agendarCheckpoints(Long.getLong("jackut.checkpoint.intervalo", 60000));
+    }
+
+    /**
+     * <p> Constructs a new {@code System} in the directory given by the property <b>jackut.pasta</b>. </p>
+     *
+     * @param durabilidade Durability mode of the operation log.
+     * @param intervalo    Interval, in milliseconds, between two group commits.
+     */
+
+    public System(DurabilityMode durabilidade, long intervalo) {
+        this(pastaPadrao(), durabilidade, intervalo);
+    }
+
+    /**
+     * <p> Constructs a new {@code System} keeping its data in the given directory, in the format given by the
+     * property <b>jackut.snapshot</b>. </p>
+     *
+     * @param pasta        Data directory, created if it does not exist.
+     * @param durabilidade Durability mode of the operation log.
+     * @param intervalo    Interval, in milliseconds, between two group commits.
+     *
+     * @see StorageEngine#padrao(File)
+     */
+
+    public System(File pasta, DurabilityMode durabilidade, long intervalo) {
+        this(StorageEngine.padrao(pasta), durabilidade, intervalo);
+    }
+
+    /**
+     * <p> Constructs a new {@code System} responsible for managing users and sessions. </p>
+     *
+     * <p> Initializes the lists of users and sessions from the last image written by the storage engine and
+     * replays the operation log on top of it. </p>
+     *
+     * @param armazenamento Storage engine of the data.
+     * @param durabilidade  Durability mode of the operation log.
+     * @param intervalo     Interval, in milliseconds, between two group commits.
+     *
+     * @see User
+     * @see StorageEngine
+     * @see WriteAheadLog
+     */
+
+    public System(StorageEngine armazenamento, DurabilityMode durabilidade, long intervalo) {
+        this.armazenamento = armazenamento;
         try {
-            UtilsFileHandler.criarPasta();
+            long lsn = armazenamento.carregar(this.estado, this.relatorioCarga);
+            this.grafo.compactar();
 
-            Map<String, String[]> communities = new HashMap<>();
+            for (User usuario : this.users.values()) {
+                usuario.limparModificado();
+                this.observar(usuario);
+            }
+            for (Community comunidade : this.communities.values()) {
+                comunidade.limparModificada();
+                this.observar(comunidade);
+            }
 
-            File arquivo = new File("./database/usuarios.txt");
-            if (arquivo.exists()) {
-                String[] dados;
-                String linha;
+            long inicio = java.lang.System.nanoTime();
+            WriteAheadLog log = armazenamento.abrirLog(durabilidade, intervalo);
+            if (log != null) {
+                log.reproduzir(lsn, this::aplicarOperacao);
+                this.relatorioCarga.registrar("wal.log", java.lang.System.nanoTime() - inicio, log.getUltimoLsn());
+            }
+            this.log = log;
+            this.carregado = true;
 
-                BufferedReader br = new BufferedReader(new FileReader(arquivo));
+            if (Boolean.getBoolean("jackut.carga.relatorio")) {
+                java.lang.System.err.print(this.relatorioCarga);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
+    /**
+     * <p> Returns the timings and record counts of each phase of the startup. </p>
+     * <p> Printed to the standard error when the property <b>jackut.carga.relatorio</b> is true. </p>
+     *
+     * @return Report of the startup.
+     *
+     * @see LoadReport
+     */
 
-                    String login = dados[0];
-                    String senha = dados[1];
-                    String nome = "";
-                    if (dados.length > 2) {
-                        nome = dados[2];
-                    }
+    public LoadReport getRelatorioCarga() {
+        return this.relatorioCarga;
+    }
 
-                    User usuario = new User(login, senha, nome);
-                    for (int i = 3; i < dados.length - 1; i++) {
-                        String[] atributo = dados[i].split(":");
-                        usuario.getProfile().setAtributo(atributo[0], atributo[1]);
-                    }
+    /**
+     * <p> Returns the last checkpoint written, with its duration and size, or null if none was written yet. </p>
+     *
+     * @return Last checkpoint written.
+     *
+     * @see Checkpoint
+     */
 
-                    String[] comunidadesUsuario = dados[dados.length - 1]
-                            .substring(1, dados[dados.length - 1].length() - 1)
-                            .split(",");
+    public Checkpoint getUltimoCheckpoint() {
+        return this.ultimoCheckpoint;
+    }
 
-                    communities.put(login, comunidadesUsuario);
+    /**
+     * <p> Returns the storage engine of the system. </p>
+     *
+     * @return Storage engine.
+     */
 
-                    this.setUsuario(usuario);
-                }
-                br.close();
+    public StorageEngine getArmazenamento() {
+        return this.armazenamento;
+    }
+
+    private static File pastaPadrao() {
+        return new File(java.lang.System.getProperty("jackut.pasta", "./database"));
+    }
+
+    /**
+     * <p> Returns the number of registered users. </p>
+     *
+     * @return Number of users.
+     */
+
+    public int contarUsuarios() {
+        return this.users.size();
+    }
+
+    /**
+     * <p> Returns the number of open sessions, including expired ones not swept yet. </p>
+     *
+     * @return Number of sessions.
+     */
+
+    public int contarSessoes() {
+        return this.sessions.tamanho();
+    }
+
+    /**
+     * <p> Returns the number of communities. </p>
+     *
+     * @return Number of communities.
+     */
+
+    public int contarComunidades() {
+        return this.communities.size();
+    }
+
+    /**
+     * <p> Returns the number of unread recados of all users. </p>
+     * <p> Read from a counter kept up to date by the mailboxes, so it does not visit the users; it may be
+     * momentarily off by the deliveries and reads in progress. </p>
+     *
+     * @return Number of recados waiting to be read.
+     */
+
+    public long contarRecados() {
+        return this.recadosPendentes.sum();
+    }
+
+    /**
+     * <p> Returns the number of unread community messages of all users. </p>
+     * <p> Read from a counter kept up to date by the mailboxes and the logs of the communities, so it does not
+     * visit the users; it may be momentarily off by the messages posted and read in progress. </p>
+     *
+     * @return Number of messages waiting to be read.
+     */
+
+    public long contarMensagens() {
+        return this.mensagensPendentes.sum();
+    }
+
+    /**
+     * <p> Starts the background thread that writes a checkpoint periodically, while there are changes. </p>
+     *
+     * @param intervalo Interval, in milliseconds, between two checkpoints; 0 disables them.
+     */
+
+    private void agendarCheckpoints(long intervalo) {
+        if (intervalo <= 0) {
+            return;
+        }
+
+        this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "jackut-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long ociosidade = TimeUnit.MILLISECONDS.toNanos(Long.getLong("jackut.caixa.ociosidade", 300000));
+        this.agendador.scheduleWithFixedDelay(() -> {
+            if (this.possuiModificacoes()) {
+                this.checkpoint();
             }
+            this.descartarCaixasOciosas(java.lang.System.nanoTime() - ociosidade);
+            this.sessions.varrer();
+        }, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
 
-            File arquivo2 = new File("./database/amigos.txt");
-            if (arquivo2.exists()) {
-                String[] dados;
-                String linha;
+    /**
+     * <p> Drops from memory the mailboxes loaded from disk that were not read since the given instant. </p>
+     *
+     * @param limite Instant, in {@code System.nanoTime} units, before which a mailbox is considered idle.
+     *
+     * @see Mailbox
+     */
 
-                BufferedReader br = new BufferedReader(new FileReader(arquivo2));
+    @SuppressWarnings("try")
+    private void descartarCaixasOciosas(long limite) {
+        for (User usuario : this.users.values()) {
+            try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+                usuario.descartarCaixasOciosas(limite);
+            }
+        }
+    }
 
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
-                    User usuario = this.getUsuario(dados[0]);
+    private boolean possuiModificacoes() {
+        return !this.usuariosModificados.isEmpty() || !this.comunidadesModificadas.isEmpty()
+                || !this.usuariosRemovidos.isEmpty() || !this.comunidadesRemovidas.isEmpty();
+    }
 
-                    if (dados[1].length() <= 2) {
-                        continue;
-                    }
+    /**
+     * <p> Writes a checkpoint of the system and discards the operation log it covers. </p>
+     *
+     * <p> The writes of the system are only held while the log is rotated and the image is started. The
+     * users and communities are then copied into the image one at a time, each before its first change, and
+     * the files are written afterwards, while the other operations keep running and are recorded in the new
+     * log. </p>
+     *
+     * <p> Once enough relations changed, they are then compacted back into the CSR layout of the
+     * {@code GraphStore}, which holds every operation for a moment. </p>
+     *
+     * @return The checkpoint written, with its metrics, or null if it failed.
+     *
+     * @see Checkpoint
+     */
 
-                    String[] amigos = dados[1].substring(1, dados[1].length() - 1).split(",");
+    @SuppressWarnings("try")
+    public Checkpoint checkpoint() {
+        this.checkpointando.lock();
+        try {
+            Checkpoint checkpoint = this.capturar();
+            if (checkpoint == null) {
+                return null;
+            }
 
-                    for (String amigo : amigos) {
-                        usuario.setAmigo(this.getUsuario(amigo));
-                    }
+            this.armazenamento.gravar(checkpoint);
+            if (this.log != null) {
+                this.log.descartar(checkpoint.getLogsAntigos());
+            }
+
+            if (this.grafo.precisaCompactar()) {
+                try (StripedLocks.Travamento travamento = this.travas.travarTudo()) {
+                    this.grafo.compactar();
                 }
-                br.close();
             }
 
-            File arquivo3 = new File("./database/recados.txt");
-            if (arquivo3.exists()) {
-                String[] dados;
-                String linha;
+            this.ultimoCheckpoint = checkpoint;
+            return checkpoint;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.checkpointando.unlock();
+        }
+    }
+
+    /**
+     * <p> Captures the image of a checkpoint, as the system was when the log was rotated. </p>
+     *
+     * <p> The mutating operations are only held to rotate the log and start the image. Until the image is
+     * complete, the first operation to lock a user or community copies it into the image before changing it;
+     * the objects no operation touched are copied here, one lock at a time. </p>
+     *
+     * @see CheckpointCapture
+     */
+
+    @SuppressWarnings("try")
+    private Checkpoint capturar() throws IOException {
+        if (!this.carregado) {
+            return null;
+        }
 
-                BufferedReader br = new BufferedReader(new FileReader(arquivo3));
+        CheckpointCapture captura;
+        try (StripedLocks.Travamento travamento = this.travas.suspenderEscritas()) {
+            captura = this.iniciarCaptura();
+        }
 
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
-                    User usuario = this.getUsuario(dados[0]);
-                    User amigo = this.getUsuario(dados[1]);
-                    String recado = dados[2];
-                    try {
-                        this.enviarRecado(amigo, usuario, recado);
-                    } catch (UserIsEnemyException e) {
-                    }
-                }
-                br.close();
+        try {
+            for (String login : captura.getUsuarios()) {
+                this.travas.travar(login).close();
+            }
+            for (String nome : captura.getComunidades()) {
+                this.travas.travar(nome).close();
             }
+        } finally {
+            this.travas.setObservador(null);
+            this.captura = null;
+        }
+        return captura.getCheckpoint();
+    }
 
-            File arquivo4 = new File("./database/communities.txt");
-            if (arquivo4.exists()) {
-                String[] dados;
-                String linha;
+    /**
+     * <p> Rotates the log and starts the image at its last operation. Called with the writes held. </p>
+     */
 
-                BufferedReader br = new BufferedReader(new FileReader(arquivo4));
+    private CheckpointCapture iniciarCaptura() throws IOException {
+        long inicio = java.lang.System.nanoTime();
+        List<File> logsAntigos = this.log != null ? this.log.rotacionar() : List.of();
+        long lsn = this.log != null ? this.log.getUltimoLsn() : 0;
+        Checkpoint checkpoint = this.armazenamento.iniciar(this.estado, lsn, logsAntigos);
 
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
-                    User dono = this.getUsuario(dados[0]);
-                    String nome = dados[1];
-                    String descricao = dados[2];
+        CheckpointCapture captura = new CheckpointCapture(this.armazenamento, checkpoint, this.estado);
+        this.usuariosModificados.clear();
+        this.comunidadesModificadas.clear();
+        this.usuariosRemovidos.clear();
+        this.comunidadesRemovidas.clear();
 
-                    Community comunidade = new Community(dono, nome, descricao);
+        this.captura = captura;
+        this.travas.setObservador(captura);
 
-                    dono.setCriadorComunidade(comunidade);
+        checkpoint.setDuracaoCaptura(java.lang.System.nanoTime() - inicio);
+        return captura;
+    }
 
-                    String[] membros = dados[3].substring(1, dados[3].length() - 1).split(",");
+    /**
+     * <p> Tracks the changes of a user until the next checkpoint. </p>
+     */
 
-                    for (String membro : membros) {
-                        if (membro.equals(dono.getLogin())) {
-                            continue;
-                        }
-                        comunidade.adicionarMembro(this.getUsuario(membro));
-                    }
+    private void observar(User usuario) {
+        usuario.setAoModificar(modificado -> this.usuariosModificados.add(modificado.getLogin()));
+        usuario.setContadores(this.recadosPendentes, this.mensagensPendentes);
+    }
 
-                    this.communities.put(nome, comunidade);
-                }
+    /**
+     * <p> Tracks the changes of a community until the next checkpoint. </p>
+     */
 
-                try {
-                    for (String login : communities.keySet()) {
-                        User usuario = this.getUsuario(login);
-                        for (String comunidade : communities.get(login)) {
-                            usuario.setParticipanteComunidade(this.getComunidade(comunidade));
-                        }
-                    }
-                } catch (CommunityNotExistsException e) {
-                }
+    private void observar(Community comunidade) {
+        comunidade.setAoModificar(modificada -> this.comunidadesModificadas.add(modificada.getNome()));
+        comunidade.getMural().setContador(this.mensagensPendentes);
+    }
+
+    /**
+     * <p> Applies an operation read from the log, resolving users and communities by their names. </p>
+     * <p> An operation rejected by a rule of the system is skipped, as it had no effect when it was logged. Any
+     * other failure stops the replay, since the state would no longer match the log. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of the operation.
+     */
 
-                br.close();
+    private void aplicarOperacao(String operacao, String[] argumentos) {
+        try {
+            switch (operacao) {
+                case "criarUsuario":
+                    this.setUsuario(new User(argumentos[0], argumentos[1], argumentos[2]));
+                    break;
+                case "editarPerfil":
+                    this.editarPerfil(this.getUsuario(argumentos[0]), argumentos[1], argumentos[2]);
+                    break;
+                case "adicionarAmigo":
+                    this.adicionarAmigo(this.getUsuario(argumentos[0]), this.getUsuario(argumentos[1]));
+                    break;
+                case "enviarRecado":
+                    this.enviarRecado(this.getUsuario(argumentos[0]), this.getUsuario(argumentos[1]), argumentos[2]);
+                    break;
+                case "lerRecado":
+                    this.lerRecado(this.getUsuario(argumentos[0]));
+                    break;
+                case "criarComunidade":
+                    this.criarComunidade(this.getUsuario(argumentos[0]), argumentos[1], argumentos[2]);
+                    break;
+                case "adicionarComunidade":
+                    this.adicionarComunidade(this.getUsuario(argumentos[0]), argumentos[1]);
+                    break;
+                case "enviarMensagem":
+                    this.enviarMensagem(this.getComunidade(argumentos[0]), argumentos[1]);
+                    break;
+                case "lerMensagem":
+                    this.lerMensagem(this.getUsuario(argumentos[0]));
+                    break;
+                case "adicionarIdolo":
+                    this.adicionarIdolo(this.getUsuario(argumentos[0]), this.getUsuario(argumentos[1]));
+                    break;
+                case "adicionarPaquera":
+                    this.adicionarPaquera(this.getUsuario(argumentos[0]), this.getUsuario(argumentos[1]));
+                    break;
+                case "adicionarInimigo":
+                    this.adicionarInimigo(this.getUsuario(argumentos[0]), this.getUsuario(argumentos[1]));
+                    break;
+                case "removerUsuario":
+                    this.removerUsuario(this.getUsuario(argumentos[0]), null);
+                    break;
+                default:
+                    throw new IllegalStateException("Operação desconhecida no log: " + operacao + ".");
             }
+        } catch (AccountAlreadyExistsException | LoginSenhaInvalidsException | UserIsNotRegisterException
+                 | UserAlreadyHaveRelationException | UserAlreadySentConviteException | UserAutoRelationException
+                 | UserIsEnemyException | SelfSentErrandException | DontHaveErrandExcpetion
+                 | CommunityAlreadyExistisException | CommunityNotExistsException | UserAlreadyInACommunityException
+                 | DontHaveMessagesException e) {
+            // The operation was validated when it was logged; a rule failing here means it had no effect then.
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Falha ao reproduzir " + operacao + " do log.", e);
+        }
+    }
 
-            File arquivo5 = new File("./database/mensagens.txt");
-            if (arquivo5.exists()) {
-                String[] dados;
-                String linha;
+    /**
+     * <p> Records a mutating operation in the log, before the operation returns to its caller. </p>
+     * <p> Does nothing while the system is still being loaded. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of the operation.
+     *
+     * @throws UncheckedIOException Exception thrown if the record cannot be written, so the operation never
+     *                              reports a success that would not survive a restart.
+     */
 
-                BufferedReader br = new BufferedReader(new FileReader(arquivo5));
+    private void registrarOperacao(String operacao, String... argumentos) {
+        if (this.log == null) {
+            return;
+        }
 
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
-                    User usuario = this.getUsuario(dados[0]);
-                    String mensagem = dados[1];
-                    Messages msg = new Messages(mensagem);
-                    usuario.receberMensagem(msg);
-                }
-                br.close();
-            }
-
-            File arquivo6 = new File("./database/relacoes.txt");
-            if (arquivo6.exists()) {
-                String[] dados;
-                String linha;
-
-                BufferedReader br = new BufferedReader(new FileReader(arquivo6));
-
-                while ((linha = br.readLine()) != null) {
-                    dados = linha.split(";");
-                    User usuario = this.getUsuario(dados[0]);
-                    User amigo = this.getUsuario(dados[1]);
-                    String tipo = dados[2];
-
-                    switch (tipo) {
-                        case "idolo":
-                            usuario.setIdolo(amigo);
-                            break;
-                        case "fa":
-                            usuario.setFa(amigo);
-                            break;
-                        case "paquera":
-                            usuario.setPaquera(amigo);
-                            break;
-                        case "paqueraRecebida":
-                            usuario.setCrushesReceived(amigo);
-                            break;
-                        case "inimigo":
-                            usuario.setInimigo(amigo);
-                            amigo.setInimigo(usuario);
-                            break;
-                    }
-                }
-                br.close();
-            }
+        try {
+            this.log.registrar(operacao, argumentos);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Falha ao gravar " + operacao + " no log.", e);
+        }
+    }
+
+    /**
+     * <p> Applies the effect of a mutating operation and records it in the log, keeping the effects on each of
+     * the given keys in the order of their records. </p>
+     * <p> While the system is still being loaded, only the effect is applied. </p>
+     *
+     * @param efeito     Effect of the operation.
+     * @param chaves     Logins or community names whose state the effect changes.
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of the operation.
+     *
+     * @throws UncheckedIOException Exception thrown if the record cannot be written.
+     *
+     * @see WriteAheadLog#registrar(Runnable, String[], String, String...)
+     */
+
+    private void registrarOperacao(Runnable efeito, String[] chaves, String operacao, String... argumentos) {
+        if (this.log == null) {
+            efeito.run();
+            return;
+        }
+
+        try {
+            this.log.registrar(efeito, chaves, operacao, argumentos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar " + operacao + " no log.", e);
+        }
+    }
+
+    /**
+     * <p> Records several operations of the same kind, done by a batch, with a single write to the log. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of every operation.
+     *
+     * @throws UncheckedIOException Exception thrown if the records cannot be written.
+     */
+
+    private void registrarOperacoes(String operacao, List<String[]> argumentos) {
+        if (this.log == null) {
+            return;
+        }
+
+        try {
+            this.log.registrarLote(operacao, argumentos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar " + operacao + " no log.", e);
         }
     }
 
@@ -220,18 +593,63 @@ public class System {
      * @see User
      */
 
+    @SuppressWarnings("try")
     public void setUsuario(User usuario) throws AccountAlreadyExistsException {
         String login = usuario.getLogin();
 
-        if (this.users.containsKey(login)) {
-            throw new AccountAlreadyExistsException();
+        try (StripedLocks.Travamento travamento = this.travas.travar(login)) {
+            this.observar(usuario);
+            if (this.users.putIfAbsent(login, usuario) != null) {
+                throw new AccountAlreadyExistsException();
+            }
+            this.grafo.registrar(usuario);
+
+            this.usuariosModificados.add(login);
+
+            this.registrarOperacao("criarUsuario", login, usuario.getPassword(), usuario.getName());
+        }
+    }
+
+    /**
+     * <p> Modifies the value of a user's profile attribute. </p>
+     *
+     * @param usuario  User whose profile will be edited.
+     * @param atributo Attribute to be modified.
+     * @param valor    New value of the attribute.
+     */
+
+    @SuppressWarnings("try")
+    public void editarPerfil(User usuario, String atributo, String valor) {
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            usuario.getProfile().setAtributo(atributo, valor);
+
+            this.registrarOperacao("editarPerfil", usuario.getLogin(), atributo, valor);
         }
+    }
+
+    /**
+     * <p> Modifies several attributes of a user's profile under a single lock. </p>
+     *
+     * @param usuario    User whose profile will be modified.
+     * @param atributos  New values, indexed by attribute, applied in iteration order.
+     */
+
+    @SuppressWarnings("try")
+    public void editarPerfil(User usuario, Map<String, String> atributos) {
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            List<String[]> operacoes = new ArrayList<>(atributos.size());
+            for (Map.Entry<String, String> atributo : atributos.entrySet()) {
+                usuario.getProfile().setAtributo(atributo.getKey(), atributo.getValue());
+                operacoes.add(new String[] { usuario.getLogin(), atributo.getKey(), atributo.getValue() });
+            }
 
-        this.users.put(login, usuario);
+            this.registrarOperacoes("editarPerfil", operacoes);
+        }
     }
 
     /**
      * <p> Logs a user into the system, creating their session ID and returning it. </p>
+     * <p> If the user already has the maximum number of sessions, the oldest one is closed. </p>
      *
      * @param login User's login.
      * @param senha User's password.
@@ -250,62 +668,225 @@ public class System {
                 throw new LoginSenhaInvalidsException("any");
             }
 
-            String id = UUID.randomUUID().toString();
-
-            this.sessions.put(id, usuario);
-
-            return id;
+            return this.sessions.abrir(usuario);
         } catch (UserIsNotRegisterException e) {
             throw new LoginSenhaInvalidsException("any");
         }
     }
 
     /**
-     * <p> Retrieves a user from the system by their login. </p>
+     * <p> Retrieves a user from the system by their login. </p>
+     *
+     * @param login User's login.
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered.
+     *
+     * @see User
+     */
+
+    public User getUsuario(String login) throws UserIsNotRegisterException {
+        User usuario = login == null ? null : this.users.get(login);
+        if (usuario == null) {
+            throw new UserIsNotRegisterException();
+        }
+
+        return usuario;
+    }
+
+    /**
+     * <p> Retrieves a logged-in user from the system by their session ID. </p>
+     *
+     * @param id Session ID of the user.
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the user is not registered.
+     *
+     * @see User
+     */
+
+    public User getSessaoUsuario(String id) throws UserIsNotRegisterException {
+        User usuario = this.sessions.buscar(id);
+        if (usuario == null) {
+            throw new UserIsNotRegisterException();
+        }
+
+        return usuario;
+    }
+
+    /**
+     * <p> Logs a user out of the system, closing their session. </p>
+     *
+     * @param id Session ID of the user.
+     *
+     * @throws UserIsNotRegisterException Exception thrown if the session does not exist or has expired.
+     *
+     * @see SessionTable
+     */
+
+    public void encerrarSessao(String id) throws UserIsNotRegisterException {
+        if (!this.sessions.encerrar(id)) {
+            throw new UserIsNotRegisterException();
+        }
+    }
+
+    /**
+     * <p> Retrieves all users from the system. </p>
+     *
+     * @return Map with all users in the system.
+     *
+     * @see User
+     */
+
+    public Map<String, User> getUsers() {
+        return this.users;
+    }
+
+    /**
+     * <p> Retrieves the value of an attribute of a user's profile. </p>
+     *
+     * @param usuario  User.
+     * @param atributo Attribute to be returned.
+     * @return Value of the attribute.
+     *
+     * @throws AttributeNotFilledException Exception thrown if the attribute is not filled.
+     */
+
+    public String getAtributoUsuario(User usuario, String atributo) throws AttributeNotFilledException {
+        if (atributo.equals("nome")) {
+            return this.travas.lerCampo(usuario.getLogin(), usuario::getName);
+        }
+        return this.travas.ler(usuario.getLogin(), () -> usuario.getAtributo(atributo));
+    }
+
+    /**
+     * <p> Retrieves several attributes of a user under a single read of their state. </p>
+     *
+     * @param usuario   User.
+     * @param atributos Attributes to be returned.
+     * @return The value, or the error, of each attribute, in the same order.
+     */
+
+    public List<BatchResult> getAtributosUsuario(User usuario, List<String> atributos) {
+        return this.travas.ler(usuario.getLogin(), () -> {
+            List<BatchResult> resultados = new ArrayList<>(atributos.size());
+            for (String atributo : atributos) {
+                try {
+                    resultados.add(BatchResult.sucesso(usuario.getAtributo(atributo)));
+                } catch (AttributeNotFilledException e) {
+                    resultados.add(BatchResult.falha(e));
+                }
+            }
+            return resultados;
+        });
+    }
+
+    /**
+     * <p> Checks whether a user has a relation with each of the given users, under a single read of their state. </p>
+     *
+     * <p> The relations are named as the single checks of the {@code Facade}: <b>amigo</b> ({@code ehAmigo}),
+     * <b>fa</b> ({@code ehFa}, the user is a fan of the other), <b>paquera</b> ({@code ehPaquera}) and
+     * <b>inimigo</b>. </p>
+     *
+     * @param usuario User.
+     * @param relacao Name of the relation.
+     * @param outros  Users to be checked.
+     * @return For each user, true if the relation exists.
+     *
+     * @throws IllegalArgumentException Exception thrown if the relation is unknown.
+     */
+
+    public boolean[] verificarRelacoes(User usuario, String relacao, List<User> outros) {
+        return this.travas.ler(usuario.getLogin(), () -> {
+            Set<User> relacionados = switch (relacao) {
+                case "amigo" -> usuario.getFriends();
+                case "fa" -> usuario.getIdols();
+                case "paquera" -> usuario.getCrushes();
+                case "inimigo" -> usuario.getEnemy();
+                default -> throw new IllegalArgumentException("Relação desconhecida: " + relacao);
+            };
+
+            boolean[] resultados = new boolean[outros.size()];
+            for (int i = 0; i < resultados.length; i++) {
+                resultados[i] = relacionados.contains(outros.get(i));
+            }
+            return resultados;
+        });
+    }
+
+    /**
+     * <p> Checks if two users are friends. </p>
+     *
+     * @param usuario User.
+     * @param amigo   User checked as a friend.
+     * @return True if the users are friends.
+     */
+
+    public boolean ehAmigo(User usuario, User amigo) {
+        return this.travas.ler(usuario.getLogin(), () -> usuario.getFriends().contains(amigo));
+    }
+
+    /**
+     * <p> Retrieves the friends of a user in a formatted string. </p>
+     *
+     * @param usuario User.
+     * @return Friends of the user in a formatted string.
+     */
+
+    public String getAmigos(User usuario) {
+        return this.travas.ler(usuario.getLogin(), usuario::getAmigosString);
+    }
+
+    /**
+     * <p> Retrieves a page of the friends of a user. </p>
      *
-     * @param login User's login.
+     * @param usuario User.
+     * @param token   Token returned with the previous page, or null for the first page.
+     * @param limite  Maximum number of friends in the page.
+     * @return The page of friends, in the order they were added.
      *
-     * @throws UserIsNotRegisterException Exception thrown if the user is not registered.
+     * @throws InvalidPageTokenException Exception thrown if the token was not returned by a page.
      *
-     * @see User
+     * @see OrderedRelation
      */
 
-    public User getUsuario(String login) throws UserIsNotRegisterException {
-        if (!this.users.containsKey(login)) {
-            throw new UserIsNotRegisterException();
-        }
-
-        return this.users.get(login);
+    public Page<User> getAmigos(User usuario, String token, int limite) throws InvalidPageTokenException {
+        return this.travas.ler(usuario.getLogin(),
+                () -> usuario.getRelacaoOrdenada(GraphStore.AMIGOS).pagina(token, limite));
     }
 
     /**
-     * <p> Retrieves a logged-in user from the system by their session ID. </p>
-     *
-     * @param id Session ID of the user.
+     * <p> Retrieves a page of the friends of a user, after skipping the given number of friends. </p>
      *
-     * @throws UserIsNotRegisterException Exception thrown if the user is not registered.
-     *
-     * @see User
+     * @param usuario      User.
+     * @param deslocamento Number of friends to skip.
+     * @param limite       Maximum number of friends in the page.
+     * @return The page of friends, in the order they were added.
      */
 
-    public User getSessaoUsuario(String id) throws UserIsNotRegisterException {
-        if (!this.sessions.containsKey(id)) {
-            throw new UserIsNotRegisterException();
-        }
-
-        return this.sessions.get(id);
+    public Page<User> getAmigos(User usuario, int deslocamento, int limite) {
+        return this.travas.ler(usuario.getLogin(),
+                () -> usuario.getRelacaoOrdenada(GraphStore.AMIGOS).pagina(deslocamento, limite));
     }
 
     /**
-     * <p> Retrieves all users from the system. </p>
+     * <p> Iterates over the friends of a user, reading them one page at a time. </p>
      *
-     * @return Map with all users in the system.
+     * @param usuario User.
+     * @return Iterator over the friends, which sees the changes made while iterating.
+     */
+
+    public Iterator<User> iterarAmigos(User usuario) {
+        return new PagedIterator<>(token -> this.getAmigos(usuario, token, TAMANHO_PAGINA));
+    }
+
+    /**
+     * <p> Streams the friends of a user, reading them one page at a time. </p>
      *
-     * @see User
+     * @param usuario User.
+     * @return Ordered stream of the friends.
      */
 
-    public Map<String, User> getUsers() {
-        return this.users;
+    public Stream<User> percorrerAmigos(User usuario) {
+        return percorrer(this.iterarAmigos(usuario));
     }
 
     /**
@@ -319,31 +900,49 @@ public class System {
      * @throws UserIsEnemyException                   Exception thrown if the user is an enemy of the friend.
      */
 
+    @SuppressWarnings("try")
     public void adicionarAmigo(User usuario, User amigo)
             throws UserAlreadyHaveRelationException, UserAlreadySentConviteException, UserAutoRelationException,
             UserIsEnemyException {
-        if (usuario.equals(amigo)) {
-            throw new UserAutoRelationException("amizade");
-        }
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin(), amigo.getLogin())) {
+            if (usuario.equals(amigo)) {
+                throw new UserAutoRelationException("amizade");
+            }
 
-        if (usuario.getFriends().contains(amigo) || amigo.getFriends().contains(usuario)) {
-            throw new UserAlreadyHaveRelationException("amigo");
-        }
+            if (usuario.getFriends().contains(amigo) || amigo.getFriends().contains(usuario)) {
+                throw new UserAlreadyHaveRelationException("amigo");
+            }
 
-        this.verificarInimigo(usuario, amigo);
+            this.verificarInimigo(usuario, amigo);
+
+            if (usuario.getSolicitationsSent().contains(amigo)) {
+                throw new UserAlreadySentConviteException();
+            } else if (usuario.getSolicitationsReceived().contains(amigo)) {
+                usuario.aceitarSolicitacao(amigo);
+                this.recomendacoes.invalidarAmizades(usuario);
+                this.recomendacoes.invalidarAmizades(amigo);
+            } else {
+                usuario.enviarSolicitacao(amigo);
+                this.recomendacoes.invalidar(usuario);
+                this.recomendacoes.invalidar(amigo);
+            }
 
-        if (usuario.getSolicitationsSent().contains(amigo)) {
-            throw new UserAlreadySentConviteException();
-        } else if (usuario.getSolicitationsReceived().contains(amigo)) {
-            usuario.aceitarSolicitacao(amigo);
-        } else {
-            usuario.enviarSolicitacao(amigo);
+            this.registrarOperacao("adicionarAmigo", usuario.getLogin(), amigo.getLogin());
         }
     }
 
     /**
      * <p> Sends a message to the specified user. </p>
      *
+     * <p> Only the sender is locked: the enemies are kept on both sides, so the sender's own relations tell
+     * whether the recado is allowed, and the recipient's mailbox accepts concurrent senders. The recado is
+     * queued under the ordering lock of the recipient in the log, which reserves its record in the same
+     * critical section, so the recipient reads the recados in the order they are replayed after a restart,
+     * while senders to other recipients do not wait. </p>
+     *
+     * <p> While a checkpoint is being captured the recipient is locked too, so that it is copied into the
+     * image before the recado reaches its mailbox. </p>
+     *
      * @param destinatario Recipient's login.
      * @param recado       Message to be sent.
      *
@@ -351,7 +950,44 @@ public class System {
      * @throws UserIsEnemyException    Exception thrown if the user is an enemy of the recipient.
      */
 
+    @SuppressWarnings("try")
     public void enviarRecado(User remetente, User destinatario, String recado) throws SelfSentErrandException, UserIsEnemyException {
+        try (StripedLocks.Travamento travamento = this.travarRecado(remetente, destinatario)) {
+            Runnable entrega = this.prepararRecado(remetente, destinatario, recado);
+
+            this.registrarOperacao(entrega, new String[] { destinatario.getLogin() }, "enviarRecado", remetente.getLogin(), destinatario.getLogin(), recado);
+        }
+    }
+
+    /**
+     * <p> Locks the sender of a recado, and also the recipient while a checkpoint is being captured. </p>
+     * <p> The capture only starts with the writes held, so it cannot start once the sender is locked. </p>
+     */
+
+    private StripedLocks.Travamento travarRecado(User remetente, User destinatario) {
+        StripedLocks.Travamento travamento = this.travas.travar(remetente.getLogin());
+        if (this.captura == null) {
+            return travamento;
+        }
+
+        travamento.close();
+        return this.travas.travar(remetente.getLogin(), destinatario.getLogin());
+    }
+
+    /**
+     * <p> Validates a message and returns its delivery to the recipient, to be run when it is recorded. </p>
+     * <p> Must be called with the lock of the sender, which is the only user it reads and changes. </p>
+     *
+     * @param remetente    Sender of the message.
+     * @param destinatario Recipient of the message.
+     * @param recado       Message to be sent.
+     * @return Delivery of the message to the recipient's mailbox.
+     *
+     * @throws SelfSentErrandException Exception thrown if the user tries to send a message to themselves.
+     * @throws UserIsEnemyException    Exception thrown if the user is an enemy of the recipient.
+     */
+
+    private Runnable prepararRecado(User remetente, User destinatario, String recado) throws SelfSentErrandException, UserIsEnemyException {
         if (remetente.getLogin().equals(destinatario.getLogin())) {
             throw new SelfSentErrandException();
         }
@@ -359,7 +995,51 @@ public class System {
         this.verificarInimigo(remetente, destinatario);
 
         Errand r = new Errand(remetente, destinatario, recado);
-        destinatario.receberRecado(r);
+        remetente.adicionarDestinatarioRecado(destinatario);
+        return () -> destinatario.receberRecado(r);
+    }
+
+    /**
+     * <p> Reads the oldest message in the user's queue. </p>
+     *
+     * @param usuario User.
+     * @return The message read by the user.
+     *
+     * @throws DontHaveErrandExcpetion Exception thrown if the user has no messages in the queue.
+     */
+
+    @SuppressWarnings("try")
+    public String lerRecado(User usuario) throws DontHaveErrandExcpetion {
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            String recado = usuario.getRecado().getRecado();
+
+            this.registrarOperacao("lerRecado", usuario.getLogin());
+
+            return recado;
+        }
+    }
+
+    /**
+     * <p> Reads up to {@code quantidade} messages (recados) for the user under a single lock. </p>
+     *
+     * @param usuario    User.
+     * @param quantidade Maximum number of recados to be read.
+     * @return The recados read, oldest first; empty if there are none.
+     */
+    @SuppressWarnings("try")
+    public List<String> lerRecados(User usuario, int quantidade) {
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            List<String> recados = new ArrayList<>();
+            List<String[]> operacoes = new ArrayList<>();
+            for (Errand recado : usuario.getRecados(quantidade)) {
+                recados.add(recado.getRecado());
+                operacoes.add(new String[] { usuario.getLogin() });
+            }
+
+            this.registrarOperacoes("lerRecado", operacoes);
+
+            return recados;
+        }
     }
 
     /**
@@ -372,11 +1052,12 @@ public class System {
      */
 
     public Community getComunidade(String nome) throws CommunityNotExistsException {
-        if (!this.communities.containsKey(nome)) {
+        Community comunidade = nome == null ? null : this.communities.get(nome);
+        if (comunidade == null) {
             throw new CommunityNotExistsException();
         }
 
-        return this.communities.get(nome);
+        return comunidade;
     }
 
     /**
@@ -391,16 +1072,22 @@ public class System {
      * @see Community
      */
 
+    @SuppressWarnings("try")
     public void criarComunidade(User dono, String nome, String descricao) throws CommunityAlreadyExistisException {
-        if (this.communities.containsKey(nome)) {
-            throw new CommunityAlreadyExistisException();
-        }
+        try (StripedLocks.Travamento travamento = this.travas.travar(dono.getLogin(), nome)) {
+            Community comunidade = new Community(dono, nome, descricao);
+            if (this.communities.putIfAbsent(nome, comunidade) != null) {
+                throw new CommunityAlreadyExistisException();
+            }
 
-        Community comunidade = new Community(dono, nome, descricao);
-        this.communities.put(nome, comunidade);
+            this.comunidadesModificadas.add(nome);
+            this.observar(comunidade);
 
-        dono.setCriadorComunidade(comunidade);
-        dono.setParticipanteComunidade(comunidade);
+            dono.setCriadorComunidade(comunidade);
+            dono.setParticipanteComunidade(comunidade);
+
+            this.registrarOperacao("criarComunidade", dono.getLogin(), nome, descricao);
+        }
     }
 
     /**
@@ -445,7 +1132,78 @@ public class System {
     public String getMembrosComunidade(String nome) throws CommunityNotExistsException {
         Community comunidade = this.getComunidade(nome);
 
-        return comunidade.getMembrosString();
+        return this.travas.ler(nome, comunidade::getMembrosString);
+    }
+
+    /**
+     * <p> Retrieves a page of the members of a community. </p>
+     *
+     * @param nome   Name of the community.
+     * @param token  Token returned with the previous page, or null for the first page.
+     * @param limite Maximum number of members in the page.
+     * @return The page of members, in the order they joined.
+     *
+     * @throws CommunityNotExistsException Exception thrown if the community does not exist.
+     * @throws InvalidPageTokenException   Exception thrown if the token was not returned by a page.
+     */
+
+    public Page<User> getMembrosComunidade(String nome, String token, int limite)
+            throws CommunityNotExistsException, InvalidPageTokenException {
+        Community comunidade = this.getComunidade(nome);
+
+        return this.travas.ler(nome, () -> comunidade.getMembros().pagina(token, limite));
+    }
+
+    /**
+     * <p> Retrieves a page of the members of a community, after skipping the given number of members. </p>
+     *
+     * @param nome         Name of the community.
+     * @param deslocamento Number of members to skip.
+     * @param limite       Maximum number of members in the page.
+     * @return The page of members, in the order they joined.
+     *
+     * @throws CommunityNotExistsException Exception thrown if the community does not exist.
+     */
+
+    public Page<User> getMembrosComunidade(String nome, int deslocamento, int limite)
+            throws CommunityNotExistsException {
+        Community comunidade = this.getComunidade(nome);
+
+        return this.travas.ler(nome, () -> comunidade.getMembros().pagina(deslocamento, limite));
+    }
+
+    /**
+     * <p> Iterates over the members of a community, reading them one page at a time. </p>
+     *
+     * @param nome Name of the community.
+     * @return Iterator over the members, which sees the changes made while iterating.
+     *
+     * @throws CommunityNotExistsException Exception thrown if the community does not exist.
+     */
+
+    public Iterator<User> iterarMembrosComunidade(String nome) throws CommunityNotExistsException {
+        Community comunidade = this.getComunidade(nome);
+
+        return new PagedIterator<>(token -> this.travas.ler(nome,
+                () -> comunidade.getMembros().pagina(token, TAMANHO_PAGINA)));
+    }
+
+    /**
+     * <p> Streams the members of a community, reading them one page at a time. </p>
+     *
+     * @param nome Name of the community.
+     * @return Ordered stream of the members.
+     *
+     * @throws CommunityNotExistsException Exception thrown if the community does not exist.
+     */
+
+    public Stream<User> percorrerMembrosComunidade(String nome) throws CommunityNotExistsException {
+        return percorrer(this.iterarMembrosComunidade(nome));
+    }
+
+    private static Stream<User> percorrer(Iterator<User> iterador) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterador,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
     }
 
     /**
@@ -456,7 +1214,23 @@ public class System {
      */
 
     public String getComunidades(User usuario) {
-        return UtilsString.formatArrayList(usuario.getComunidadesParticipantes());
+        return this.travas.ler(usuario.getLogin(), usuario.getComunidadesParticipantes()::formatar);
+    }
+
+    /**
+     * <p> Suggests friends to a user, ranked by mutual friends and shared communities. </p>
+     * <p> Each neighbourhood is read under the read lock of its owner, so the ranking runs alongside the
+     * writes to other users. </p>
+     *
+     * @param usuario User.
+     * @param k       Maximum number of suggestions.
+     * @return Suggested users in a formatted string, best first.
+     *
+     * @see FriendRecommender
+     */
+
+    public String sugerirAmigos(User usuario, int k) {
+        return UtilsString.formatArrayList(this.recomendacoes.sugerir(usuario, k));
     }
 
     /**
@@ -469,16 +1243,22 @@ public class System {
      * @throws UserAlreadyInACommunityException  Exception thrown if the user is already in the community.
      */
 
+    @SuppressWarnings("try")
     public void adicionarComunidade(User usuario, String nome)
             throws CommunityNotExistsException, UserAlreadyInACommunityException {
-        Community comunidade = this.getComunidade(nome);
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin(), nome)) {
+            Community comunidade = this.getComunidade(nome);
 
-        if (usuario.getComunidadesParticipantes().contains(comunidade)) {
-            throw new UserAlreadyInACommunityException();
-        }
+            if (usuario.getComunidadesParticipantes().contains(comunidade)) {
+                throw new UserAlreadyInACommunityException();
+            }
+
+            comunidade.adicionarMembro(usuario);
+            usuario.setParticipanteComunidade(comunidade);
+            this.recomendacoes.invalidarComunidades(usuario);
 
-        comunidade.adicionarMembro(usuario);
-        usuario.setParticipanteComunidade(comunidade);
+            this.registrarOperacao("adicionarComunidade", usuario.getLogin(), nome);
+        }
     }
 
     /**
@@ -489,20 +1269,64 @@ public class System {
      *
      * @throws DontHaveMessagesException Exception thrown if the user has no messages.
      */
+    @SuppressWarnings("try")
     public String lerMensagem(User usuario) throws DontHaveMessagesException {
-        return usuario.lerMensagem();
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            String mensagem = usuario.lerMensagem(this.captura != null);
+
+            this.registrarOperacao("lerMensagem", usuario.getLogin());
+
+            return mensagem;
+        }
+    }
+
+    /**
+     * <p> Reads up to {@code quantidade} messages for the user under a single lock. </p>
+     *
+     * @param usuario    User.
+     * @param quantidade Maximum number of messages to be read.
+     * @return The messages read, oldest first; empty if there are none.
+     */
+    @SuppressWarnings("try")
+    public List<String> lerMensagens(User usuario, int quantidade) {
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin())) {
+            List<String> mensagens = new ArrayList<>();
+            List<String[]> operacoes = new ArrayList<>();
+            while (mensagens.size() < quantidade && usuario.temMensagens()) {
+                try {
+                    mensagens.add(usuario.lerMensagem(this.captura != null));
+                } catch (DontHaveMessagesException e) {
+                    break;
+                }
+                operacoes.add(new String[] { usuario.getLogin() });
+            }
+
+            this.registrarOperacoes("lerMensagem", operacoes);
+
+            return mensagens;
+        }
     }
 
     /**
      * <p> Sends a message to a community. </p>
      *
+     * <p> The message is appended once to the log of the community, under its lock only; each member reads
+     * it through their own cursor, so the cost does not depend on the number of members. </p>
+     *
+     * <p> The readers do not take the lock of the community, so the message is appended only after its record
+     * is reserved in the operation log: a read of the message is always recorded after it. </p>
+     *
      * @param comunidade Community.
      * @param msg       Message to be sent.
+     *
+     * @see MessageLog
      */
+    @SuppressWarnings("try")
     public void enviarMensagem(Community comunidade, String msg) {
-        Messages mensagem = new Messages(msg);
-
-        comunidade.enviarMensagem(mensagem);
+        try (StripedLocks.Travamento travamento = this.travas.travar(comunidade.getNome())) {
+            this.registrarOperacao(() -> comunidade.enviarMensagem(new Messages(msg)),
+                    new String[] { comunidade.getNome() }, "enviarMensagem", comunidade.getNome(), msg);
+        }
     }
 
     /**
@@ -515,20 +1339,25 @@ public class System {
      * @throws UserAlreadyHaveRelationException Exception thrown if the user already has a relation with the specified user.
      * @throws UserIsEnemyException            Exception thrown if the user is an enemy of the specified user.
      */
+    @SuppressWarnings("try")
     public void adicionarIdolo(User usuario, User idolo)
             throws UserAutoRelationException, UserAlreadyHaveRelationException, UserIsEnemyException {
-        if (usuario.equals(idolo)) {
-            throw new UserAutoRelationException("fã");
-        }
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin(), idolo.getLogin())) {
+            if (usuario.equals(idolo)) {
+                throw new UserAutoRelationException("fã");
+            }
 
-        if (usuario.getIdols().contains(idolo)) {
-            throw new UserAlreadyHaveRelationException("Ídolo");
-        }
+            if (usuario.getIdols().contains(idolo)) {
+                throw new UserAlreadyHaveRelationException("Ídolo");
+            }
 
-        this.verificarInimigo(usuario, idolo);
+            this.verificarInimigo(usuario, idolo);
 
-        usuario.setIdolo(idolo);
-        idolo.setFa(usuario);
+            usuario.setIdolo(idolo);
+            idolo.setFa(usuario);
+
+            this.registrarOperacao("adicionarIdolo", usuario.getLogin(), idolo.getLogin());
+        }
     }
 
     /**
@@ -538,7 +1367,55 @@ public class System {
      * @return Fans (idols) of the user in a formatted string.
      */
     public String getFas(User usuario) {
-        return UtilsString.formatArrayList(usuario.getFas());
+        return this.travas.ler(usuario.getLogin(), usuario::getFasString);
+    }
+
+    /**
+     * <p> Retrieves a page of the fans of a user. </p>
+     *
+     * @param usuario User.
+     * @param token   Token returned with the previous page, or null for the first page.
+     * @param limite  Maximum number of fans in the page.
+     * @return The page of fans, in the order they were added.
+     *
+     * @throws InvalidPageTokenException Exception thrown if the token was not returned by a page.
+     */
+    public Page<User> getFas(User usuario, String token, int limite) throws InvalidPageTokenException {
+        return this.travas.ler(usuario.getLogin(),
+                () -> usuario.getRelacaoOrdenada(GraphStore.FAS).pagina(token, limite));
+    }
+
+    /**
+     * <p> Retrieves a page of the fans of a user, after skipping the given number of fans. </p>
+     *
+     * @param usuario      User.
+     * @param deslocamento Number of fans to skip.
+     * @param limite       Maximum number of fans in the page.
+     * @return The page of fans, in the order they were added.
+     */
+    public Page<User> getFas(User usuario, int deslocamento, int limite) {
+        return this.travas.ler(usuario.getLogin(),
+                () -> usuario.getRelacaoOrdenada(GraphStore.FAS).pagina(deslocamento, limite));
+    }
+
+    /**
+     * <p> Iterates over the fans of a user, reading them one page at a time. </p>
+     *
+     * @param usuario User.
+     * @return Iterator over the fans, which sees the changes made while iterating.
+     */
+    public Iterator<User> iterarFas(User usuario) {
+        return new PagedIterator<>(token -> this.getFas(usuario, token, TAMANHO_PAGINA));
+    }
+
+    /**
+     * <p> Streams the fans of a user, reading them one page at a time. </p>
+     *
+     * @param usuario User.
+     * @return Ordered stream of the fans.
+     */
+    public Stream<User> percorrerFas(User usuario) {
+        return percorrer(this.iterarFas(usuario));
     }
 
     /**
@@ -551,25 +1428,36 @@ public class System {
      * @throws UserAlreadyHaveRelationException Exception thrown if the user already has a relation with the specified user.
      * @throws UserIsEnemyException            Exception thrown if the user is an enemy of the specified user.
      */
+    @SuppressWarnings("try")
     public void adicionarPaquera(User usuario, User paquera)
             throws UserAutoRelationException, UserAlreadyHaveRelationException, UserIsEnemyException {
-        if (usuario.equals(paquera)) {
-            throw new UserAutoRelationException("paquera");
-        }
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin(), paquera.getLogin())) {
+            if (usuario.equals(paquera)) {
+                throw new UserAutoRelationException("paquera");
+            }
 
-        if (usuario.getCrushes().contains(paquera)) {
-            throw new UserAlreadyHaveRelationException("paquera");
-        }
+            if (usuario.getCrushes().contains(paquera)) {
+                throw new UserAlreadyHaveRelationException("paquera");
+            }
 
-        this.verificarInimigo(usuario, paquera);
+            this.verificarInimigo(usuario, paquera);
 
-        if (usuario.getCrushesReceived().contains(paquera) || paquera.getCrushesReceived().contains(usuario)) {
-            this.enviarRecado(paquera, usuario, paquera.getName() + " é seu paquera - Recado do Jackut.");
-            this.enviarRecado(usuario, paquera, usuario.getName() + " é seu paquera - Recado do Jackut.");
-        }
+            Runnable entregas = () -> {};
+            if (usuario.getCrushesReceived().contains(paquera) || paquera.getCrushesReceived().contains(usuario)) {
+                Runnable paraUsuario = this.prepararRecado(paquera, usuario, paquera.getName() + " é seu paquera - Recado do Jackut.");
+                Runnable paraPaquera = this.prepararRecado(usuario, paquera, usuario.getName() + " é seu paquera - Recado do Jackut.");
+                entregas = () -> {
+                    paraUsuario.run();
+                    paraPaquera.run();
+                };
+            }
 
-        usuario.setPaquera(paquera);
-        paquera.setCrushesReceived(usuario);
+            usuario.setPaquera(paquera);
+            paquera.setCrushesReceived(usuario);
+
+            this.registrarOperacao(entregas, new String[] { usuario.getLogin(), paquera.getLogin() },
+                    "adicionarPaquera", usuario.getLogin(), paquera.getLogin());
+        }
     }
 
     /**
@@ -579,7 +1467,29 @@ public class System {
      * @return Crushes (romantic interests) of the user in a formatted string.
      */
     public String getPaqueras(User usuario) {
-        return UtilsString.formatArrayList(usuario.getCrushes());
+        return this.travas.ler(usuario.getLogin(), usuario::getPaquerasString);
+    }
+
+    /**
+     * <p> Checks if a user is a fan of another user. </p>
+     *
+     * @param usuario User.
+     * @param idolo   User checked as an idol.
+     * @return True if the user is a fan of the idol.
+     */
+    public boolean ehFa(User usuario, User idolo) {
+        return this.travas.ler(idolo.getLogin(), () -> idolo.getFas().contains(usuario));
+    }
+
+    /**
+     * <p> Checks if a user has another user as a crush. </p>
+     *
+     * @param usuario User.
+     * @param paquera User checked as a crush.
+     * @return True if the user has the other user as a crush.
+     */
+    public boolean ehPaquera(User usuario, User paquera) {
+        return this.travas.ler(usuario.getLogin(), () -> usuario.getCrushes().contains(paquera));
     }
 
     /**
@@ -591,18 +1501,25 @@ public class System {
      * @throws UserAutoRelationException       Exception thrown if the user tries to add themselves as an enemy.
      * @throws UserAlreadyHaveRelationException Exception thrown if the user already has a relation with the specified user.
      */
+    @SuppressWarnings("try")
     public void adicionarInimigo(User usuario, User inimigo)
             throws UserAutoRelationException, UserAlreadyHaveRelationException {
-        if (usuario.equals(inimigo)) {
-            throw new UserAutoRelationException("inimigo");
-        }
+        try (StripedLocks.Travamento travamento = this.travas.travar(usuario.getLogin(), inimigo.getLogin())) {
+            if (usuario.equals(inimigo)) {
+                throw new UserAutoRelationException("inimigo");
+            }
 
-        if (usuario.getEnemy().contains(inimigo)) {
-            throw new UserAlreadyHaveRelationException("inimigo");
-        }
+            if (usuario.getEnemy().contains(inimigo)) {
+                throw new UserAlreadyHaveRelationException("inimigo");
+            }
+
+            usuario.setInimigo(inimigo);
+            inimigo.setInimigo(usuario);
+            this.recomendacoes.invalidar(usuario);
+            this.recomendacoes.invalidar(inimigo);
 
-        usuario.setInimigo(inimigo);
-        inimigo.setInimigo(usuario);
+            this.registrarOperacao("adicionarInimigo", usuario.getLogin(), inimigo.getLogin());
+        }
     }
 
     /**
@@ -621,74 +1538,210 @@ public class System {
 
     /**
      * <p> Removes a user from the system, along with all associated information, including relationships, sent messages, and profile. </p>
+     * <p> Only the users and communities related to the removed user are visited, and only their stripes are
+     * locked: the keys are read first, then locked in stripe order and read again, until the user has no
+     * relation outside them. Recados sent meanwhile by users outside the keys only reach the removed
+     * mailbox. </p>
      *
      * @param usuario User to be removed from the system.
      * @param id      ID of the user's session.
      *
      * @throws UserIsNotRegisterException Exception thrown if the user is not registered in the system.
      */
+    @SuppressWarnings("try")
     public void removerUsuario(User usuario, String id) throws UserIsNotRegisterException {
+        Set<String> chaves = this.chavesDaRemocao(usuario);
+
+        while (true) {
+            try (StripedLocks.Travamento travamento = this.travas.travar(chaves.toArray(new String[0]))) {
+                if (this.users.get(usuario.getLogin()) != usuario) {
+                    throw new UserIsNotRegisterException();
+                }
+
+                Set<String> atuais = chavesDoUsuario(usuario);
+                if (chaves.containsAll(atuais)) {
+                    for (Community comunidade : usuario.getComunidadesProprietarias()) {
+                        adicionarLogins(atuais, comunidade.getMembros());
+                    }
+                }
+                if (chaves.containsAll(atuais)) {
+                    this.removerTravado(usuario, chaves);
+                    return;
+                }
+                chaves.addAll(atuais);
+            }
+        }
+    }
+
+    /**
+     * <p> Reads the keys touched by the removal of a user, each one under the read lock of its owner. The
+     * senders of the recados in the mailbox of the user are read only here, since they send without locking
+     * the user. </p>
+     */
+    private Set<String> chavesDaRemocao(User usuario) {
+        List<Community> proprietarias = new ArrayList<>();
+        Set<String> chaves = this.travas.ler(usuario.getLogin(), () -> {
+            proprietarias.addAll(usuario.getComunidadesProprietarias());
+            Set<String> lidas = chavesDoUsuario(usuario);
+            for (Errand recado : usuario.getErrands()) {
+                lidas.add(recado.getRemetente().getLogin());
+            }
+            return lidas;
+        });
+
+        for (Community comunidade : proprietarias) {
+            this.travas.ler(comunidade.getNome(), () -> adicionarLogins(chaves, comunidade.getMembros()));
+        }
+        return chaves;
+    }
+
+    /**
+     * <p> Returns the login of the user, the logins of everyone related to them and the names of their
+     * communities, which only change with the user locked. The members of the communities they own are added
+     * apart, under the lock of each one. </p>
+     */
+    private static Set<String> chavesDoUsuario(User usuario) {
+        Set<String> chaves = new HashSet<>();
+        chaves.add(usuario.getLogin());
+
+        adicionarLogins(chaves, usuario.getFriends());
+        adicionarLogins(chaves, usuario.getIdols());
+        adicionarLogins(chaves, usuario.getFas());
+        adicionarLogins(chaves, usuario.getCrushes());
+        adicionarLogins(chaves, usuario.getCrushesReceived());
+        adicionarLogins(chaves, usuario.getEnemy());
+        adicionarLogins(chaves, usuario.getSolicitationsSent());
+        adicionarLogins(chaves, usuario.getSolicitationsReceived());
+        adicionarLogins(chaves, usuario.getDestinatariosRecados());
+
+        for (Community comunidade : usuario.getComunidadesProprietarias()) {
+            chaves.add(comunidade.getNome());
+        }
+        for (Community comunidade : usuario.getComunidadesParticipantes()) {
+            chaves.add(comunidade.getNome());
+        }
+        for (Community comunidade : usuario.getCursoresMensagens().keySet()) {
+            chaves.add(comunidade.getNome());
+        }
+        return chaves;
+    }
+
+    /**
+     * <p> Adds the logins of the users to the keys, returning true if any of them was new. </p>
+     */
+    private static boolean adicionarLogins(Set<String> chaves, Iterable<User> usuarios) {
+        boolean adicionados = false;
+        for (User usuario : usuarios) {
+            adicionados |= chaves.add(usuario.getLogin());
+        }
+        return adicionados;
+    }
+
+    /**
+     * <p> Removes a user whose keys are all locked. The senders of recados delivered after the keys were read
+     * are not locked, so they are left alone. </p>
+     */
+    private void removerTravado(User usuario, Set<String> chaves) {
         for (User amigo : usuario.getFriends()) {
             amigo.removerAmigo(usuario);
+            this.recomendacoes.invalidarAmizades(amigo);
         }
 
-        for (User fa : usuario.getIdols()) {
-            fa.removerFa(usuario);
+        for (User idolo : usuario.getIdols()) {
+            idolo.removerFa(usuario);
+        }
+
+        for (User fa : usuario.getFas()) {
+            fa.removerIdolo(usuario);
         }
 
         for (User paquera : usuario.getCrushes()) {
-            paquera.removerPaquera(usuario);
+            paquera.removerPaqueraRecebida(usuario);
         }
 
         for (User paqueraRecebida : usuario.getCrushesReceived()) {
-            paqueraRecebida.removerPaqueraRecebida(usuario);
+            paqueraRecebida.removerPaquera(usuario);
         }
 
         for (User inimigo : usuario.getEnemy()) {
             inimigo.removerInimigo(usuario);
+            this.recomendacoes.invalidar(inimigo);
         }
 
         for (User solicitacaoEnviada : usuario.getSolicitationsSent()) {
-            solicitacaoEnviada.removerSolicitacaoEnviada(usuario);
+            solicitacaoEnviada.removerSolicitacaoRecebida(usuario);
+            this.recomendacoes.invalidar(solicitacaoEnviada);
         }
 
         for (User solicitacaoRecebida : usuario.getSolicitationsReceived()) {
-            solicitacaoRecebida.removerSolicitacaoRecebida(usuario);
+            solicitacaoRecebida.removerSolicitacaoEnviada(usuario);
+            this.recomendacoes.invalidar(solicitacaoRecebida);
         }
 
-        for (Community comunidade : this.communities.values()) {
-            if (comunidade.getCriador().equals(usuario)) {
-                for (User membro : comunidade.getMembros()) {
-                    membro.removerComunidade(comunidade);
-                }
-                this.communities.remove(comunidade.getNome());
+        for (Community comunidade : usuario.getComunidadesProprietarias()) {
+            for (User membro : comunidade.getMembros()) {
+                membro.removerComunidade(comunidade);
+                this.recomendacoes.invalidarComunidades(membro);
             }
+            this.communities.remove(comunidade.getNome());
+            this.comunidadesRemovidas.add(comunidade.getNome());
+            comunidade.getMural().setContador(null);
+        }
+        for (Community comunidade : usuario.getComunidadesParticipantes()) {
+            comunidade.removerMembro(usuario);
         }
+        usuario.liberarCursoresMensagens();
 
-        for (User destinatario : this.users.values()) {
-            for (Errand recado : destinatario.getErrands()) { // O(n^2)
-                if (recado.getRemetente().equals(usuario)) {
-                    destinatario.removerRecado(recado);
-                }
+        for (User destinatario : usuario.getDestinatariosRecados()) {
+            destinatario.removerRecadosDe(usuario);
+        }
+        for (Errand recado : usuario.getErrands()) {
+            if (chaves.contains(recado.getRemetente().getLogin())) {
+                recado.getRemetente().getDestinatariosRecados().remove(usuario);
             }
         }
+        usuario.setContadores(null, null);
 
         this.users.remove(usuario.getLogin());
-        this.sessions.remove(id);
+        this.grafo.remover(usuario);
+        this.recomendacoes.esquecer(usuario);
+        this.sessions.encerrarTodas(usuario.getLogin());
+        this.usuariosRemovidos.add(usuario.getLogin());
+
+        this.registrarOperacao("removerUsuario", usuario.getLogin());
     }
 
     /**
      * <p> Resets the system's information. </p>
      */
 
+    @SuppressWarnings("try")
     public void zerarSistema() {
-        this.users = new HashMap<>();
-        this.sessions = new HashMap<>();
-        this.communities = new HashMap<>();
+        this.checkpointando.lock();
         try {
-            UtilsFileHandler.limparArquivos();
+            try (StripedLocks.Travamento travamento = this.travas.travarTudo()) {
+                this.users.clear();
+                this.sessions.limpar();
+                this.communities.clear();
+                this.grafo.limpar();
+                this.recomendacoes.limpar();
+                this.usuariosRemovidos.clear();
+                this.comunidadesRemovidas.clear();
+                this.usuariosModificados.clear();
+                this.comunidadesModificadas.clear();
+                this.recadosPendentes.reset();
+                this.mensagensPendentes.reset();
+
+                List<File> logsAntigos = this.log != null ? this.log.rotacionar() : List.of();
+                this.armazenamento.zerar(this.estado, this.log != null ? this.log.getUltimoLsn() : 0);
+                if (this.log != null) {
+                    this.log.descartar(logsAntigos);
+                }
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            this.checkpointando.unlock();
         }
     }
 
@@ -701,10 +1754,16 @@ public class System {
      */
 
     public void encerrarSistema() throws AttributeNotFilledException {
+        if (this.agendador != null) {
+            this.agendador.shutdown();
+        }
+
         try {
-            UtilsFileHandler.criarPasta();
+            this.checkpoint();
 
-            UtilsFileHandler.persistirDados(this.users, this.communities);
+            if (this.log != null) {
+                this.log.fechar();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,347 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p> Streaming tokenizer over the bytes of a text file of the database. </p>
+ *
+ * <p> Lines and fields are never copied: the scanner only keeps the position of the current line and of the
+ * current field inside the buffer, so logins can be resolved directly against a {@code KeyIndex}. A
+ * {@code String} is only built when {@code texto} is called, for the data that is kept in memory. </p>
+ *
+ * <p> Lists in the <b>{a,b,c}</b> format are walked item by item with {@code abrirLista} and
+ * {@code proximoItem}. </p>
+ *
+ * @see KeyIndex
+ */
+public class TextScanner {
+    private static final long LIMITE_LEITURA = 1 << 20;
+
+    private final ByteBuffer dados;
+    private final int limite;
+    private byte[] copia = new byte[0];
+
+    private int posicao;
+    private int inicioLinha;
+    private int fimLinha;
+    private int cursor;
+    private int inicioCampo;
+    private int fimCampo;
+    private int cursorLista;
+    private int fimLista;
+
+    /**
+     * <p> Constructs a new {@code TextScanner} over the given bytes. </p>
+     *
+     * @param dados Content of the file, from its position to its limit.
+     */
+    public TextScanner(ByteBuffer dados) {
+        this.dados = dados;
+        this.posicao = dados.position();
+        this.limite = dados.limit();
+    }
+
+    /**
+     * <p> Opens a file of the database. Small files are read into the heap and large ones are memory-mapped. </p>
+     *
+     * @param arquivo File to be read.
+     * @return Scanner positioned before the first line.
+     *
+     * @throws IOException Exception thrown if the file cannot be read.
+     */
+    public static TextScanner abrir(File arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo muito grande: " + arquivo);
+            }
+
+            if (tamanho > LIMITE_LEITURA) {
+                return new TextScanner(canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) tamanho);
+            while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+                // reads the whole file
+            }
+            buffer.flip();
+            return new TextScanner(buffer);
+        }
+    }
+
+    /**
+     * <p> Maps a file of the database into memory, whatever its size. </p>
+     * <p> Used for the files whose ranges are kept after the load, so they do not occupy the heap. </p>
+     *
+     * @param arquivo File to be mapped.
+     * @return Scanner positioned before the first line.
+     *
+     * @throws IOException Exception thrown if the file cannot be mapped.
+     *
+     * @see Mailbox
+     */
+    public static TextScanner mapear(File arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo muito grande: " + arquivo);
+            }
+            return new TextScanner(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * <p> Advances to the next non-empty line. </p>
+     *
+     * @return False if the end of the file was reached.
+     */
+    public boolean proximaLinha() {
+        while (this.posicao < this.limite) {
+            int fim = this.indice((byte) '\n', this.posicao, this.limite);
+            if (fim < 0) {
+                fim = this.limite;
+            }
+
+            this.cursor = this.posicao;
+            this.inicioLinha = this.posicao;
+            this.fimLinha = fim > this.cursor && this.dados.get(fim - 1) == '\r' ? fim - 1 : fim;
+            this.posicao = fim + 1;
+            this.inicioCampo = this.cursor;
+            this.fimCampo = this.cursor;
+
+            if (this.fimLinha > this.cursor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p> Returns the start of the current line in the buffer. </p>
+     *
+     * @return Position of the first byte of the line.
+     */
+    public int inicioDaLinha() {
+        return this.inicioLinha;
+    }
+
+    /**
+     * <p> Returns the end of the current line in the buffer, after its line break. </p>
+     *
+     * @return Position of the first byte of the next line.
+     */
+    public int fimDaLinha() {
+        return Math.min(this.posicao, this.limite);
+    }
+
+    /**
+     * <p> Advances to the next field of the line, separated by <b>;</b>. </p>
+     *
+     * @return False if the line has no more fields.
+     */
+    public boolean proximoCampo() {
+        if (this.cursor > this.fimLinha) {
+            return false;
+        }
+
+        int fim = this.indice((byte) ';', this.cursor, this.fimLinha);
+        if (fim < 0) {
+            fim = this.fimLinha;
+        }
+
+        this.inicioCampo = this.cursor;
+        this.fimCampo = fim;
+        this.cursor = fim + 1;
+        return true;
+    }
+
+    /**
+     * <p> Takes the rest of the line, separators included, as the current field. </p>
+     * <p> Used for free text, such as recados and messages, that is always the last field. </p>
+     */
+    public void restoDaLinha() {
+        this.inicioCampo = Math.min(this.cursor, this.fimLinha);
+        this.fimCampo = this.fimLinha;
+        this.cursor = this.fimLinha + 1;
+    }
+
+    /**
+     * <p> Returns true if the current field is the last one of the line. </p>
+     *
+     * @return True if there are no more fields.
+     */
+    public boolean ultimoCampo() {
+        return this.cursor > this.fimLinha;
+    }
+
+    /**
+     * <p> Returns the start of the current field in the buffer. </p>
+     *
+     * @return Position of the first byte of the field.
+     */
+    public int inicio() {
+        return this.inicioCampo;
+    }
+
+    /**
+     * <p> Returns the end of the current field in the buffer. </p>
+     *
+     * @return Position after the last byte of the field.
+     */
+    public int fim() {
+        return this.fimCampo;
+    }
+
+    /**
+     * <p> Returns the buffer being tokenized. </p>
+     *
+     * @return Content of the file.
+     */
+    public ByteBuffer getDados() {
+        return this.dados;
+    }
+
+    /**
+     * <p> Returns the position of a byte inside the current field, or -1 if it is not there. </p>
+     *
+     * @param valor Byte to be found.
+     * @return Position of the byte in the buffer.
+     */
+    public int indiceNoCampo(byte valor) {
+        return this.indice(valor, this.inicioCampo, this.fimCampo);
+    }
+
+    /**
+     * <p> Returns true if the current field is equal to the given ASCII text. </p>
+     *
+     * @param valor Text to be compared.
+     * @return True if the field has exactly the same bytes.
+     */
+    public boolean campoIgual(byte[] valor) {
+        if (this.fimCampo - this.inicioCampo != valor.length) {
+            return false;
+        }
+
+        for (int i = 0; i < valor.length; i++) {
+            if (this.dados.get(this.inicioCampo + i) != valor[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p> Parses the current field as a non-negative decimal number, without decoding it. </p>
+     *
+     * @return Value of the field, or -1 if it is empty or has a byte that is not a digit.
+     */
+    public long numero() {
+        if (this.fimCampo == this.inicioCampo) {
+            return -1;
+        }
+
+        long valor = 0;
+        for (int i = this.inicioCampo; i < this.fimCampo; i++) {
+            int digito = this.dados.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    /**
+     * <p> Decodes the current field. </p>
+     *
+     * @return Text of the field.
+     */
+    public String texto() {
+        return this.texto(this.inicioCampo, this.fimCampo);
+    }
+
+    /**
+     * <p> Decodes a range of the buffer. </p>
+     *
+     * @param inicio Position of the first byte.
+     * @param fim    Position after the last byte.
+     * @return Text of the range.
+     */
+    public String texto(int inicio, int fim) {
+        int tamanho = fim - inicio;
+        if (tamanho <= 0) {
+            return "";
+        }
+
+        if (this.dados.hasArray()) {
+            return new String(this.dados.array(), this.dados.arrayOffset() + inicio, tamanho, StandardCharsets.UTF_8);
+        }
+
+        if (this.copia.length < tamanho) {
+            this.copia = new byte[Math.max(tamanho, this.copia.length * 2)];
+        }
+        this.dados.get(inicio, this.copia, 0, tamanho);
+        return new String(this.copia, 0, tamanho, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p> Starts walking the items of a list in the <b>{a,b,c}</b> format. </p>
+     *
+     * @param inicio Position of the list in the buffer.
+     * @param fim    Position after the end of the list.
+     */
+    public void abrirLista(int inicio, int fim) {
+        if (fim > inicio && this.dados.get(inicio) == '{') {
+            inicio++;
+        }
+        if (fim > inicio && this.dados.get(fim - 1) == '}') {
+            fim--;
+        }
+
+        this.cursorLista = inicio;
+        this.fimLista = fim;
+    }
+
+    /**
+     * <p> Starts walking the items of the current field, in the <b>{a,b,c}</b> format. </p>
+     */
+    public void abrirLista() {
+        this.abrirLista(this.inicioCampo, this.fimCampo);
+    }
+
+    /**
+     * <p> Advances to the next non-empty item of the list, which becomes the current field. </p>
+     *
+     * @return False if the list has no more items.
+     */
+    public boolean proximoItem() {
+        while (this.cursorLista < this.fimLista) {
+            int fim = this.indice((byte) ',', this.cursorLista, this.fimLista);
+            if (fim < 0) {
+                fim = this.fimLista;
+            }
+
+            this.inicioCampo = this.cursorLista;
+            this.fimCampo = fim;
+            this.cursorLista = fim + 1;
+
+            if (this.fimCampo > this.inicioCampo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indice(byte valor, int inicio, int fim) {
+        for (int i = inicio; i < fim; i++) {
+            if (this.dados.get(i) == valor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,152 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p> Storage engine of the segmented text files: <b>usuarios.txt</b>, <b>amigos.txt</b>,
+ * <b>comunidades.txt</b> and the others, each split in segments by key. </p>
+ *
+ * <p> A checkpoint only formats the lines of the users and communities changed since the previous one, and
+ * only rewrites the segments holding them. The first checkpoint after the files were found in the old
+ * single-file layout, or after a checkpoint failed, rewrites every segment. So does the first checkpoint
+ * after the users or communities outgrew the segments: it splits the files into twice as many or more, so
+ * each segment keeps about {@code UtilsFileHandler.CHAVES_POR_SEGMENTO} keys. </p>
+ *
+ * @see ParallelLoader
+ * @see UtilsFileHandler
+ */
+public class TextStorageEngine extends FileStorageEngine {
+    private static final String[] ARQUIVOS_USUARIO = {
+            "usuarios.txt", "amigos.txt", "recados.txt", "mensagens.txt", "cursores.txt", "relacoes.txt" };
+
+    private volatile boolean completo;
+    private volatile int divisoes;
+
+    /**
+     * <p> Constructs a new {@code TextStorageEngine} over a data directory. </p>
+     *
+     * @param pasta Data directory, created if it does not exist.
+     */
+    public TextStorageEngine(File pasta) {
+        super(pasta);
+    }
+
+    @Override
+    public long carregar(Estado estado, LoadReport relatorio) throws IOException {
+        this.recuperar();
+        new ParallelLoader(this.getPasta(), relatorio).carregar(estado.usuarios(), estado.comunidades(),
+                estado.grafo());
+
+        this.completo = UtilsFileHandler.existemArquivosLegados(this.getPasta());
+        this.divisoes = UtilsFileHandler.lerSegmentos(this.getPasta());
+        return UtilsFileHandler.lerCheckpoint(this.getPasta());
+    }
+
+    @Override
+    public Checkpoint iniciar(Estado estado, long lsn, List<File> logsAntigos) {
+        int divisoes = Math.max(this.divisoes,
+                UtilsFileHandler.segmentosPara(Math.max(estado.usuarios().size(), estado.comunidades().size())));
+        boolean completo = this.completo || divisoes != this.divisoes
+                || UtilsFileHandler.existemArquivosLegados(this.getPasta());
+        Checkpoint checkpoint = new Checkpoint(lsn, logsAntigos, completo, divisoes);
+
+        for (String login : estado.usuariosRemovidos()) {
+            for (String arquivo : ARQUIVOS_USUARIO) {
+                checkpoint.substituir(arquivo, login, "");
+            }
+        }
+        for (String nome : estado.comunidadesRemovidas()) {
+            checkpoint.substituir("comunidades.txt", nome, "");
+            checkpoint.substituir("mural.txt", nome, "");
+        }
+
+        this.completo = false;
+        return checkpoint;
+    }
+
+    /**
+     * <p> Formats the lines of a user whose data changed since the last checkpoint, or all of them if the
+     * image is complete. </p>
+     */
+    @Override
+    public void capturar(Checkpoint checkpoint, User usuario) {
+        String login = usuario.getLogin();
+        boolean completo = checkpoint.isCompleto();
+
+        if (completo || usuario.isModificado(User.DADOS_USUARIO)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarUsuario(usuario, linhas);
+            checkpoint.substituir("usuarios.txt", login, linhas.toString());
+        }
+        if (completo || usuario.isModificado(User.DADOS_AMIGOS)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarAmigos(usuario, linhas);
+            checkpoint.substituir("amigos.txt", login, linhas.toString());
+        }
+        if (completo || usuario.isModificado(User.DADOS_RECADOS)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarRecados(usuario, linhas);
+            checkpoint.substituir("recados.txt", login, linhas.toString());
+        }
+        if (completo || usuario.isModificado(User.DADOS_MENSAGENS)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarMensagens(usuario, linhas);
+            checkpoint.substituir("mensagens.txt", login, linhas.toString());
+
+            linhas = new StringBuilder();
+            UtilsFileHandler.formatarCursores(usuario, linhas);
+            checkpoint.substituir("cursores.txt", login, linhas.toString());
+        }
+        if (completo || usuario.isModificado(User.DADOS_RELACOES)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarRelacoes(usuario, linhas);
+            checkpoint.substituir("relacoes.txt", login, linhas.toString());
+        }
+    }
+
+    /**
+     * <p> Formats the lines of a community whose data or messages changed since the last checkpoint, or all of
+     * them if the image is complete. </p>
+     */
+    @Override
+    public void capturar(Checkpoint checkpoint, Community comunidade) {
+        boolean completo = checkpoint.isCompleto();
+
+        if (completo || comunidade.isModificada(Community.DADOS_COMUNIDADE)) {
+            StringBuilder linha = new StringBuilder();
+            UtilsFileHandler.formatarComunidade(comunidade, linha);
+            checkpoint.substituir("comunidades.txt", comunidade.getNome(), linha.toString());
+        }
+        if (completo || comunidade.isModificada(Community.DADOS_MURAL)) {
+            StringBuilder linhas = new StringBuilder();
+            UtilsFileHandler.formatarMural(comunidade, linhas);
+            checkpoint.substituir("mural.txt", comunidade.getNome(), linhas.toString());
+        }
+    }
+
+    /**
+     * <p> Writes the segments of a checkpoint. If it fails, the next checkpoint rewrites every segment, since
+     * the changes captured by this one are no longer tracked. </p>
+     */
+    @Override
+    public void gravar(Checkpoint checkpoint) throws IOException {
+        try {
+            super.gravar(checkpoint);
+        } catch (IOException e) {
+            this.completo = true;
+            throw e;
+        }
+        this.divisoes = checkpoint.getDivisoes();
+    }
+
+    @Override
+    public void zerar(Estado estado, long lsn) throws IOException {
+        this.completo = false;
+        UtilsFileHandler.limparArquivos(this.getPasta());
+        this.divisoes = UtilsFileHandler.segmentosPara(0);
+        UtilsFileHandler.salvarSegmentos(this.getPasta(), this.divisoes);
+        UtilsFileHandler.salvarCheckpoint(this.getPasta(), lsn);
+    }
+}
@@ -1,8 +1,15 @@
 package br.ufal.ic.p2.jackut;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import br.ufal.ic.p2.jackut.Exceptions.DontHaveMessagesException;
 import br.ufal.ic.p2.jackut.Exceptions.AttributeNotFilledException;
@@ -14,34 +21,59 @@ import br.ufal.ic.p2.jackut.Exceptions.LoginSenhaInvalidsException;
  */
 
 public class User {
+    /**
+     * <p> Data stored in the user's line of <b>usuarios.txt</b>: account, profile and communities. </p>
+     */
+    public static final int DADOS_USUARIO = 1;
+
+    /**
+     * <p> Data stored in <b>amigos.txt</b>. </p>
+     */
+    public static final int DADOS_AMIGOS = 1 << 1;
+
+    /**
+     * <p> Data stored in <b>recados.txt</b>. </p>
+     */
+    public static final int DADOS_RECADOS = 1 << 2;
+
+    /**
+     * <p> Data stored in <b>mensagens.txt</b> and <b>cursores.txt</b>. </p>
+     */
+    public static final int DADOS_MENSAGENS = 1 << 3;
+
+    /**
+     * <p> Data stored in <b>relacoes.txt</b>. </p>
+     */
+    public static final int DADOS_RELACOES = 1 << 4;
+
+    /**
+     * <p> Every kind of data of the user. </p>
+     */
+    public static final int DADOS_TODOS = DADOS_USUARIO | DADOS_AMIGOS | DADOS_RECADOS | DADOS_MENSAGENS | DADOS_RELACOES;
+
     private final String login;
     private final String password;
     private final String name;
 
     private final Profile profile = new Profile();
+    private GraphStore.Vertice vertice;
 
-    private final ArrayList<User> friends = new ArrayList<>();
-    private final ArrayList<User> solicitationsSent = new ArrayList<>();
-    private final ArrayList<User> solicitationsReceived = new ArrayList<>();
-
-    private final Queue<Errand> errands = new LinkedList<>();
+    private final Mailbox<Errand> errands = new Mailbox<>();
+    private final Set<User> destinatariosRecados = new HashSet<>();
 
-    private final ArrayList<Community> comunidadesProprietarias = new ArrayList<>();
-    private final ArrayList<Community> comunidadesParticipantes = new ArrayList<>();
-    private final Queue<Messages> messages = new LinkedList<>();
+    private final RelationSet<Community> comunidadesProprietarias = new RelationSet<>();
+    private final RelationSet<Community> comunidadesParticipantes = new RelationSet<>();
+    private final Mailbox<Messages> messages = new Mailbox<>();
+    private final Map<Community, Long> cursoresMensagens = new LinkedHashMap<>();
 
-    private final ArrayList<User> idols = new ArrayList<>();
-    private final ArrayList<User> fas = new ArrayList<>();
-
-    private final ArrayList<User> crushes = new ArrayList<>();
-    private final ArrayList<User> crushesReceived = new ArrayList<>();
-
-    private final ArrayList<User> enemy = new ArrayList<>();
+    private final AtomicInteger modificacoes = new AtomicInteger(DADOS_TODOS);
+    private Consumer<User> aoModificar;
 
     /**
      * <p> Constructs a new {@code User} in the Jackut system. </p>
      *
-     * <p> Initializes a {@code Profile} for the user, along with lists for friends, sent friend requests, and received friend requests. </p>
+     * <p> Initializes a {@code Profile} for the user. The relations of the user are kept in the {@code GraphStore}
+     * of the system, once the user is registered. </p>
      *
      * @param login User's login.
      * @param password User's password.
@@ -64,6 +96,12 @@ public class User {
         this.login = login;
         this.password = password;
         this.name = name;
+
+        this.profile.setAoModificar(() -> {
+            if (this.aoModificar != null) {
+                this.aoModificar.accept(this);
+            }
+        });
     }
 
     /**
@@ -128,6 +166,100 @@ public class User {
         return this.profile;
     }
 
+    /**
+     * <p> Gets the node of the user in the graph of relations, or null if the user is not registered. </p>
+     *
+     * @return Node of the user.
+     *
+     * @see GraphStore
+     */
+
+    public GraphStore.Vertice getVertice() {
+        return this.vertice;
+    }
+
+    /**
+     * <p> Sets the node of the user in the graph of relations. </p>
+     * <p> Called by {@code GraphStore} when the user is registered. </p>
+     *
+     * @param vertice Node of the user.
+     */
+
+    public void setVertice(GraphStore.Vertice vertice) {
+        this.vertice = vertice;
+    }
+
+    /**
+     * <p> Returns a relation of the user read by position, to be paged or streamed. </p>
+     *
+     * @param tipo Relation, one of the constants of {@code GraphStore}.
+     * @return Live view of the relation, empty while the user is not registered.
+     */
+
+    public OrderedRelation<User> getRelacaoOrdenada(int tipo) {
+        return this.vertice == null ? new RelationSet<>() : this.vertice.relacao(tipo);
+    }
+
+    /**
+     * <p> Returns a live view of a relation of the user, empty while the user is not registered. </p>
+     */
+
+    private Set<User> relacao(int tipo) {
+        return this.vertice == null ? Collections.emptySet() : this.vertice.relacao(tipo);
+    }
+
+    /**
+     * <p> Marks the given kinds of data as changed since the last checkpoint. </p>
+     * <p> Atomic, since a recado may be received without the lock of the user. </p>
+     *
+     * @param dados Bit mask of {@code DADOS_*} constants.
+     */
+
+    public void marcarModificado(int dados) {
+        boolean perfilLimpo = !this.profile.isModificado();
+        boolean limpo = this.modificacoes.getAndUpdate(atuais -> atuais | dados) == 0 && perfilLimpo;
+
+        if (limpo && this.aoModificar != null) {
+            this.aoModificar.accept(this);
+        }
+    }
+
+    /**
+     * <p> Sets the function notified when the user goes from saved to modified. </p>
+     * <p> Used by the system to keep the set of users that must be written by the next checkpoint. </p>
+     *
+     * @param aoModificar Function that receives the modified user.
+     */
+
+    public void setAoModificar(Consumer<User> aoModificar) {
+        this.aoModificar = aoModificar;
+    }
+
+    /**
+     * <p> Checks if any of the given kinds of data changed since the last checkpoint. </p>
+     * <p> A change in the profile counts as a change in {@code DADOS_USUARIO}. </p>
+     *
+     * @param dados Bit mask of {@code DADOS_*} constants.
+     * @return True if any of the data changed, false otherwise.
+     */
+
+    public boolean isModificado(int dados) {
+        if ((dados & DADOS_USUARIO) != 0 && this.profile.isModificado()) {
+            return true;
+        }
+
+        return (this.modificacoes.get() & dados) != 0;
+    }
+
+    /**
+     * <p> Marks all the data of the user, including the profile, as saved. </p>
+     */
+
+    public void limparModificado() {
+        this.modificacoes.set(0);
+        this.profile.limparModificado();
+    }
+
     /**
      * <p> Gets the value of a user's attribute. </p>
      *
@@ -154,8 +286,8 @@ public class User {
      */
 
     public void enviarSolicitacao(User user) {
-        this.solicitationsSent.add(user);
-        user.solicitationsReceived.add(this);
+        this.relacao(GraphStore.SOLICITACOES_ENVIADAS).add(user);
+        user.relacao(GraphStore.SOLICITACOES_RECEBIDAS).add(this);
     }
 
     /**
@@ -164,10 +296,12 @@ public class User {
      * @param user User who sent the friend request.
      */
     public void aceitarSolicitacao(User user) {
-        this.friends.add(user);
-        this.solicitationsReceived.remove(user);
-        user.friends.add(this);
-        user.solicitationsSent.remove(this);
+        this.relacao(GraphStore.AMIGOS).add(user);
+        this.relacao(GraphStore.SOLICITACOES_RECEBIDAS).remove(user);
+        user.relacao(GraphStore.AMIGOS).add(this);
+        user.relacao(GraphStore.SOLICITACOES_ENVIADAS).remove(this);
+        this.marcarModificado(DADOS_AMIGOS);
+        user.marcarModificado(DADOS_AMIGOS);
     }
 
     /**
@@ -176,8 +310,8 @@ public class User {
      * @return List of user's friends.
      */
 
-    public ArrayList<User> getFriends() {
-        return this.friends;
+    public Set<User> getFriends() {
+        return this.relacao(GraphStore.AMIGOS);
     }
 
     /**
@@ -189,7 +323,7 @@ public class User {
      */
 
     public String getAmigosString() {
-        return UtilsString.formatArrayList(this.friends);
+        return this.vertice == null ? "{}" : this.vertice.relacao(GraphStore.AMIGOS).formatar();
     }
 
     /**
@@ -198,8 +332,8 @@ public class User {
      * @return List of friend requests sent by the user.
      */
 
-    public ArrayList<User> getSolicitationsSent() {
-        return this.solicitationsSent;
+    public Set<User> getSolicitationsSent() {
+        return this.relacao(GraphStore.SOLICITACOES_ENVIADAS);
     }
 
     /**
@@ -208,8 +342,8 @@ public class User {
      * @return List of friend requests received by the user.
      */
 
-    public ArrayList<User> getSolicitationsReceived() {
-        return this.solicitationsReceived;
+    public Set<User> getSolicitationsReceived() {
+        return this.relacao(GraphStore.SOLICITACOES_RECEBIDAS);
     }
 
     /**
@@ -225,16 +359,35 @@ public class User {
             throw new DontHaveErrandExcpetion();
         }
 
+        this.marcarModificado(DADOS_RECADOS);
         return this.errands.poll();
     }
 
     /**
-     * <p> Receives a message from a community. </p>
+     * <p> Removes up to {@code quantidade} of the oldest messages from the user's queue of messages. </p>
+     *
+     * @param quantidade Maximum number of messages to be removed.
+     * @return Messages removed, oldest first; empty if the user has no messages in the queue.
+     */
+
+    public List<Errand> getRecados(int quantidade) {
+        List<Errand> recados = new ArrayList<>();
+        if (this.errands.drenar(quantidade, recados::add) > 0) {
+            this.marcarModificado(DADOS_RECADOS);
+        }
+        return recados;
+    }
+
+    /**
+     * <p> Receives a message from another user. </p>
+     * <p> May be called without the lock of the user, concurrently with the other senders and with the
+     * reading of the queue. </p>
      *
      * @param message Message to be received.
      */
     public void receberRecado(Errand message) {
         this.errands.add(message);
+        this.marcarModificado(DADOS_RECADOS);
     }
 
     /**
@@ -245,8 +398,9 @@ public class User {
      */
 
     public void setAmigo(User friend) {
-        if (!this.friends.contains(friend)) {
-            this.friends.add(friend);
+        if (!this.relacao(GraphStore.AMIGOS).contains(friend)) {
+            this.relacao(GraphStore.AMIGOS).add(friend);
+            this.marcarModificado(DADOS_AMIGOS);
         }
     }
 
@@ -258,7 +412,7 @@ public class User {
      * @see Errand
      */
 
-    public Queue<Errand> getErrands() {
+    public Mailbox<Errand> getErrands() {
         return this.errands;
     }
 
@@ -279,6 +433,10 @@ public class User {
      */
     public void setParticipanteComunidade(Community comunidade) {
         this.comunidadesParticipantes.add(comunidade);
+        if (!this.cursoresMensagens.containsKey(comunidade)) {
+            this.cursoresMensagens.put(comunidade, comunidade.getMural().registrarLeitor());
+        }
+        this.marcarModificado(DADOS_USUARIO);
     }
 
     /**
@@ -288,7 +446,7 @@ public class User {
      *
      * @see Community
      */
-    public ArrayList<Community> getComunidadesProprietarias() {
+    public RelationSet<Community> getComunidadesProprietarias() {
         return this.comunidadesProprietarias;
     }
 
@@ -299,34 +457,140 @@ public class User {
      *
      * @see Community
      */
-    public ArrayList<Community> getComunidadesParticipantes() {
+    public RelationSet<Community> getComunidadesParticipantes() {
         return this.comunidadesParticipantes;
     }
 
     /**
-     * <p> Receives a message from a community. </p>
+     * <p> Receives a message kept by the user, outside the logs of the communities. </p>
+     * <p> Used for the messages of communities that no longer exist and for databases written before the
+     * logs existed. </p>
      *
      * @param message Message to be received.
      */
 
     public void receberMensagem(Messages message) {
         this.messages.add(message);
+        this.marcarModificado(DADOS_MENSAGENS);
     }
 
     /**
-     * <p> Reads a message from the user's message queue. </p>
+     * <p> Reads the oldest unread message of the user. </p>
      *
+     * <p> The candidates are the first message kept by the user and the message at the cursor of each of
+     * their communities; the one with the lowest sequence number is read, so the messages come in the order
+     * they were sent, as with a single queue. </p>
+     *
+     * @param reter True while a checkpoint is being captured, to keep in the log of the community the
+     *              messages read by everyone.
      * @return Read message.
      *
      * @throws DontHaveMessagesException Exception thrown if the user has no messages in the queue.
+     *
+     * @see MessageLog#avancar(long, boolean)
      */
 
-    public String lerMensagem() throws DontHaveMessagesException {
-        if (this.messages.isEmpty()) {
+    public String lerMensagem(boolean reter) throws DontHaveMessagesException {
+        Messages proxima = this.messages.peek();
+        Map.Entry<Community, Long> origem = null;
+
+        for (Map.Entry<Community, Long> cursor : this.cursoresMensagens.entrySet()) {
+            Messages mensagem = cursor.getKey().getMural().proxima(cursor.getValue());
+            if (mensagem != null && (proxima == null || mensagem.getSequencia() < proxima.getSequencia())) {
+                proxima = mensagem;
+                origem = cursor;
+            }
+        }
+
+        if (proxima == null) {
             throw new DontHaveMessagesException();
         }
 
-        return this.messages.poll().getMensagem();
+        if (origem == null) {
+            this.messages.poll();
+        } else {
+            origem.setValue(origem.getKey().getMural().avancar(origem.getValue(), !reter));
+        }
+
+        this.marcarModificado(DADOS_MENSAGENS);
+        return proxima.getMensagem();
+    }
+
+    /**
+     * <p> Returns true if the user has an unread message, kept by them or in the log of a community. </p>
+     *
+     * @return True if {@code lerMensagem} would return a message.
+     */
+
+    public boolean temMensagens() {
+        if (!this.messages.isEmpty()) {
+            return true;
+        }
+
+        for (Map.Entry<Community, Long> cursor : this.cursoresMensagens.entrySet()) {
+            if (cursor.getKey().getMural().proxima(cursor.getValue()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p> Sets the counters kept up to date by the mailboxes of the user, moving their items from the previous
+     * ones. The messages in the logs of the communities are counted by the logs. </p>
+     *
+     * @param recados   Counter of pending recados, or null to stop counting.
+     * @param mensagens Counter of pending messages, or null to stop counting.
+     *
+     * @see Mailbox#setContador(LongAdder)
+     */
+    public void setContadores(LongAdder recados, LongAdder mensagens) {
+        this.errands.setContador(recados);
+        this.messages.setContador(mensagens);
+    }
+
+    /**
+     * <p> Returns the cursor of the user in the message log of a community. </p>
+     *
+     * @param comunidade Community.
+     * @return Index of the next message to be read, or null if the user does not read the community.
+     *
+     * @see MessageLog
+     */
+    public Long getCursorMensagens(Community comunidade) {
+        return this.cursoresMensagens.get(comunidade);
+    }
+
+    /**
+     * <p> Sets the cursor of the user in the message log of a community, when it is loaded. </p>
+     * <p> The readers of the log must be recounted afterwards with {@code Community.recontarLeitores}. </p>
+     *
+     * @param comunidade Community.
+     * @param cursor     Index of the next message to be read.
+     */
+    public void setCursorMensagens(Community comunidade, long cursor) {
+        this.cursoresMensagens.put(comunidade, cursor);
+    }
+
+    /**
+     * <p> Returns the cursors of the user in the message logs of their communities. </p>
+     *
+     * @return Cursors indexed by community.
+     */
+    public Map<Community, Long> getCursoresMensagens() {
+        return this.cursoresMensagens;
+    }
+
+    /**
+     * <p> Stops reading every community, so their logs no longer wait for the user. </p>
+     * <p> Used when the user is removed. </p>
+     */
+    public void liberarCursoresMensagens() {
+        for (Map.Entry<Community, Long> cursor : this.cursoresMensagens.entrySet()) {
+            cursor.getKey().getMural().liberarLeitor(cursor.getValue());
+        }
+        this.cursoresMensagens.clear();
+        this.marcarModificado(DADOS_MENSAGENS);
     }
 
     /**
@@ -336,7 +600,7 @@ public class User {
      *
      * @see Messages
      */
-    public Queue<Messages> getMessages() {
+    public Mailbox<Messages> getMessages() {
         return this.messages;
     }
 
@@ -346,7 +610,8 @@ public class User {
      * @param user User to be added as an idol.
      */
     public void setIdolo(User user) {
-        this.idols.add(user);
+        this.relacao(GraphStore.IDOLOS).add(user);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -355,7 +620,8 @@ public class User {
      * @param user User to be added as a fan.
      */
     public void setFa(User user) {
-        this.fas.add(user);
+        this.relacao(GraphStore.FAS).add(user);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -363,8 +629,8 @@ public class User {
      *
      * @return List of idols for the user.
      */
-    public ArrayList<User> getIdols() {
-        return this.idols;
+    public Set<User> getIdols() {
+        return this.relacao(GraphStore.IDOLOS);
     }
 
     /**
@@ -372,8 +638,8 @@ public class User {
      *
      * @return List of idols for the user.
      */
-    public ArrayList<User> getFas() {
-        return this.fas;
+    public Set<User> getFas() {
+        return this.relacao(GraphStore.FAS);
     }
 
     /**
@@ -382,7 +648,7 @@ public class User {
      * @return String representation of the user's fans.
      */
     public String getFasString() {
-        return UtilsString.formatArrayList(this.fas);
+        return this.vertice == null ? "{}" : this.vertice.relacao(GraphStore.FAS).formatar();
     }
 
     /**
@@ -391,7 +657,8 @@ public class User {
      * @param user User to be added as a crush.
      */
     public void setPaquera(User user) {
-        this.crushes.add(user);
+        this.relacao(GraphStore.PAQUERAS).add(user);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -400,7 +667,8 @@ public class User {
      * @param user User to be added as a received crush.
      */
     public void setCrushesReceived(User user) {
-        this.crushesReceived.add(user);
+        this.relacao(GraphStore.PAQUERAS_RECEBIDAS).add(user);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -408,8 +676,8 @@ public class User {
      *
      * @return List of crushes for the user.
      */
-    public ArrayList<User> getCrushes() {
-        return this.crushes;
+    public Set<User> getCrushes() {
+        return this.relacao(GraphStore.PAQUERAS);
     }
 
     /**
@@ -417,8 +685,8 @@ public class User {
      *
      * @return List of crushes received by the user.
      */
-    public ArrayList<User> getCrushesReceived() {
-        return this.crushesReceived;
+    public Set<User> getCrushesReceived() {
+        return this.relacao(GraphStore.PAQUERAS_RECEBIDAS);
     }
 
     /**
@@ -428,7 +696,7 @@ public class User {
      */
 
     public String getPaquerasString() {
-        return UtilsString.formatArrayList(this.crushes);
+        return this.vertice == null ? "{}" : this.vertice.relacao(GraphStore.PAQUERAS).formatar();
     }
 
     /**
@@ -437,7 +705,8 @@ public class User {
      * @return String representation of the user's received crushes.
      */
     public void setInimigo(User usuario) {
-        this.enemy.add(usuario);
+        this.relacao(GraphStore.INIMIGOS).add(usuario);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -446,8 +715,8 @@ public class User {
      * @return List of enemies for the user.
      */
 
-    public ArrayList<User> getEnemy() {
-        return this.enemy;
+    public Set<User> getEnemy() {
+        return this.relacao(GraphStore.INIMIGOS);
     }
 
     /**
@@ -457,7 +726,8 @@ public class User {
      */
 
     public void removerAmigo(User friend) {
-        this.friends.remove(friend);
+        this.relacao(GraphStore.AMIGOS).remove(friend);
+        this.marcarModificado(DADOS_AMIGOS);
     }
 
     /**
@@ -467,7 +737,7 @@ public class User {
      */
 
     public void removerSolicitacaoEnviada(User user) {
-        this.solicitationsSent.remove(user);
+        this.relacao(GraphStore.SOLICITACOES_ENVIADAS).remove(user);
     }
 
     /**
@@ -476,7 +746,7 @@ public class User {
      * @param user User from whose request will be removed.
      */
     public void removerSolicitacaoRecebida(User user) {
-        this.solicitationsReceived.remove(user);
+        this.relacao(GraphStore.SOLICITACOES_RECEBIDAS).remove(user);
     }
 
     /**
@@ -485,7 +755,8 @@ public class User {
      * @param fan Fan to be removed.
      */
     public void removerFa(User fan) {
-        this.fas.remove(fan);
+        this.relacao(GraphStore.FAS).remove(fan);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -495,7 +766,8 @@ public class User {
      */
 
     public void removerPaquera(User crush) {
-        this.crushes.remove(crush);
+        this.relacao(GraphStore.PAQUERAS).remove(crush);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
 
@@ -506,7 +778,8 @@ public class User {
      */
 
     public void removerPaqueraRecebida(User receivedCrush) {
-        this.crushesReceived.remove(receivedCrush);
+        this.relacao(GraphStore.PAQUERAS_RECEBIDAS).remove(receivedCrush);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -516,7 +789,8 @@ public class User {
      */
 
     public void removerInimigo(User enemy) {
-        this.enemy.remove(enemy);
+        this.relacao(GraphStore.INIMIGOS).remove(enemy);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
@@ -526,17 +800,28 @@ public class User {
      */
 
     public void removerIdolo(User idol) {
-        this.idols.remove(idol);
+        this.relacao(GraphStore.IDOLOS).remove(idol);
+        this.marcarModificado(DADOS_RELACOES);
     }
 
     /**
      * <p> Removes the user from a community they own. </p>
+     * <p> The messages of the community the user had not read are kept by the user. </p>
      *
      * @param community Community to be removed from.
      */
 
     public void removerComunidade(Community community) {
         this.comunidadesParticipantes.remove(community);
+        this.marcarModificado(DADOS_USUARIO);
+
+        Long cursor = this.cursoresMensagens.remove(community);
+        if (cursor != null) {
+            for (Messages mensagem : community.getMural().liberarLeitor(cursor)) {
+                this.messages.add(mensagem);
+            }
+            this.marcarModificado(DADOS_MENSAGENS);
+        }
     }
 
     /**
@@ -546,6 +831,55 @@ public class User {
      */
 
     public void removerRecado(Errand errand) {
-        this.errands.remove(errand);
+        this.errands.removeIf(recado -> recado == errand);
+        this.marcarModificado(DADOS_RECADOS);
+    }
+
+    /**
+     * <p> Removes every errand sent by a user from the user's list of errands. </p>
+     *
+     * @param remetente Sender whose errands will be removed.
+     */
+
+    public void removerRecadosDe(User remetente) {
+        if (this.errands.removeIf(recado -> recado.getRemetente() == remetente)) {
+            this.marcarModificado(DADOS_RECADOS);
+        }
+    }
+
+    /**
+     * <p> Records that the user sent an errand to the recipient. </p>
+     * <p> Kept so that removing the user only visits the mailboxes that may hold their errands. </p>
+     *
+     * @param destinatario Recipient of the errand.
+     */
+
+    public void adicionarDestinatarioRecado(User destinatario) {
+        this.destinatariosRecados.add(destinatario);
+    }
+
+    /**
+     * <p> Returns the users that may still hold errands sent by the user. </p>
+     * <p> A recipient stays in the set after reading the errands; it is rebuilt from the pending errands
+     * when the database is loaded. </p>
+     *
+     * @return Recipients of the errands sent by the user.
+     */
+
+    public Set<User> getDestinatariosRecados() {
+        return this.destinatariosRecados;
+    }
+
+    /**
+     * <p> Drops from memory the errands and messages loaded from disk if they were not read since the given instant. </p>
+     *
+     * @param limite Instant, in {@code System.nanoTime} units, before which the mailboxes are considered idle.
+     *
+     * @see Mailbox
+     */
+
+    public void descartarCaixasOciosas(long limite) {
+        this.errands.descartarSeOcioso(limite);
+        this.messages.descartarSeOcioso(limite);
     }
 }
\ No newline at end of file
@@ -1,152 +1,403 @@
 package br.ufal.ic.p2.jackut;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class UtilsFileHandler {
-    public static void criarPasta() {
-        String caminho = "./database";
+    public static final int CHAVES_POR_SEGMENTO = 64;
 
-        File diretorio = new File(caminho);
+    private static final int SEGMENTOS_MINIMO = 16;
+    private static final int SEGMENTOS_LEGADO = 1024;
 
-        if (!diretorio.exists()) {
-            diretorio.mkdir();
+    private static final String[] ARQUIVOS = {
+            "usuarios.txt", "amigos.txt", "recados.txt", "comunidades.txt", "mensagens.txt", "relacoes.txt",
+            "mural.txt", "cursores.txt"
+    };
+
+    public static void criarPasta(File pasta) {
+        if (!pasta.exists()) {
+            pasta.mkdirs();
         }
     }
 
-    public static void escreverArquivo(String nomeArquivo, String conteudo) throws IOException {
-        File arquivo = new File("./database/" + nomeArquivo);
+    public static void escreverArquivo(File pasta, String nomeArquivo, String conteudo) throws IOException {
+        escreverArquivo(new File(pasta, nomeArquivo), conteudo);
+    }
+
+    public static void escreverArquivo(File arquivo, String conteudo) throws IOException {
         arquivo.createNewFile();
 
-        FileWriter fw = new FileWriter(arquivo);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write(conteudo);
-        bw.flush();
-        bw.close();
-        fw.close();
+        try (FileOutputStream fos = new FileOutputStream(arquivo);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos))) {
+            bw.write(conteudo);
+            bw.flush();
+            fos.getFD().sync();
+        }
     }
 
-    public static void salvarUsuarios(Map<String, User> usuarios) throws IOException {
-        StringBuilder usuariosData = new StringBuilder();
-        for (User usuario : usuarios.values()) {
-            usuariosData.append(usuario.getLogin()).append(";")
-                    .append(usuario.getPassword()).append(";")
-                    .append(usuario.getName()).append(";");
+    public static int segmento(String chave, int segmentos) {
+        return Math.floorMod(chave.hashCode(), segmentos);
+    }
 
-            for (String atributo : usuario.getProfile().getAtributos().keySet()) {
-                usuariosData.append(atributo).append(":")
-                        .append(usuario.getProfile().getAtributo(atributo)).append(";");
+    /**
+     * <p> Returns the number of segments for a file of {@code chaves} keys: the smallest power of two that
+     * keeps {@code CHAVES_POR_SEGMENTO} keys per segment on average, and at least 16. </p>
+     *
+     * @param chaves Number of keys of the file.
+     * @return Number of segments.
+     */
+    public static int segmentosPara(int chaves) {
+        int segmentos = SEGMENTOS_MINIMO;
+        while ((long) segmentos * CHAVES_POR_SEGMENTO < chaves) {
+            segmentos *= 2;
+        }
+        return segmentos;
+    }
+
+    /**
+     * <p> Returns the number of segments the files of a directory are split into, recorded in
+     * <b>segmentos.txt</b> by the last complete checkpoint. Directories written before that file existed
+     * are split into 1024 segments, and a new directory into 16; either is recorded right away. </p>
+     *
+     * @param pasta Data directory of the system.
+     * @return Number of segments.
+     *
+     * @throws IOException Exception thrown if the file cannot be read or written.
+     */
+    public static int lerSegmentos(File pasta) throws IOException {
+        File arquivo = new File(pasta, "segmentos.txt");
+        if (arquivo.exists()) {
+            String linha;
+            try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
+                linha = br.readLine();
             }
+            return Integer.parseInt(linha.trim());
+        }
 
-            usuariosData.append(UtilsString.formatArrayList(usuario.getComunidadesParticipantes())).append("\n");
+        int segmentos = segmentosPara(0);
+        for (String nome : ARQUIVOS) {
+            if (arquivoSegmento(pasta, nome, 0).getParentFile().isDirectory()) {
+                segmentos = SEGMENTOS_LEGADO;
+            }
         }
+        salvarSegmentos(pasta, segmentos);
+        return segmentos;
+    }
 
-        escreverArquivo("usuarios.txt", usuariosData.toString());
+    public static void salvarSegmentos(File pasta, int segmentos) throws IOException {
+        escreverAtomico(pasta, "segmentos.txt", Integer.toString(segmentos));
     }
 
-    public static void salvarAmigos(Map<String, User> usuarios) throws IOException {
-        StringBuilder amigosData = new StringBuilder();
-        for (User usuario : usuarios.values()) {
-            String amigos = usuario.getAmigosString();
-            amigosData.append(usuario.getLogin()).append(";").append(amigos).append("\n");
+    public static File arquivoSegmento(File pasta, String nomeArquivo, int segmento) {
+        String tipo = nomeArquivo.substring(0, nomeArquivo.lastIndexOf('.'));
+        return new File(pasta, tipo + "/" + segmento + ".txt");
+    }
+
+    public static boolean existemArquivosLegados(File pasta) {
+        for (String arquivo : ARQUIVOS) {
+            if (new File(pasta, arquivo).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void formatarUsuario(User usuario, StringBuilder usuariosData) {
+        usuariosData.append(usuario.getLogin()).append(";")
+                .append(usuario.getPassword()).append(";")
+                .append(usuario.getName()).append(";");
+
+        for (String atributo : usuario.getProfile().getAtributos().keySet()) {
+            usuariosData.append(atributo).append(":")
+                    .append(usuario.getProfile().getAtributo(atributo)).append(";");
         }
 
-        escreverArquivo("amigos.txt", amigosData.toString());
+        usuariosData.append(usuario.getComunidadesParticipantes().formatar()).append("\n");
     }
 
-    public static void salvarRecados(Map<String, User> usuarios) throws IOException {
-        StringBuilder recadosData = new StringBuilder();
-        for (User usuario : usuarios.values()) {
-            for (Errand recado : usuario.getErrands()) {
-                recadosData.append(usuario.getLogin()).append(";")
-                        .append(recado.getRemetente().getLogin()).append(";")
-                        .append(recado.getRecado()).append("\n");
-            }
+    public static void formatarAmigos(User usuario, StringBuilder amigosData) {
+        String amigos = usuario.getAmigosString();
+        amigosData.append(usuario.getLogin()).append(";").append(amigos).append("\n");
+    }
+
+    public static void formatarRecados(User usuario, StringBuilder recadosData) {
+        for (Errand recado : usuario.getErrands()) {
+            recadosData.append(usuario.getLogin()).append(";")
+                    .append(recado.getRemetente().getLogin()).append(";")
+                    .append(recado.getRecado()).append("\n");
         }
+    }
 
-        escreverArquivo("recados.txt", recadosData.toString());
+    public static void formatarComunidade(Community comunidade, StringBuilder comunidadesData) {
+        String membros = comunidade.getMembrosString();
+        comunidadesData.append(comunidade.getCriador().getLogin()).append(";")
+                .append(comunidade.getNome()).append(";")
+                .append(comunidade.getDescricao()).append(";")
+                .append(membros).append("\n");
     }
 
-    public static void salvarComunidades(Map<String, Community> comunidades) throws IOException {
-        StringBuilder comunidadesData = new StringBuilder();
-        for (Community comunidade : comunidades.values()) {
-            String membros = comunidade.getMembrosString();
-            comunidadesData.append(comunidade.getCriador().getLogin()).append(";")
-                    .append(comunidade.getNome()).append(";")
-                    .append(comunidade.getDescricao()).append(";")
-                    .append(membros).append("\n");
+    public static void formatarMensagens(User usuario, StringBuilder mensagensData) {
+        for (Messages mensagem : usuario.getMessages()) {
+            mensagensData.append(usuario.getLogin()).append(";")
+                    .append(mensagem.getMensagem()).append("\n");
         }
+    }
 
-        escreverArquivo("comunidades.txt", comunidadesData.toString());
+    public static void formatarMural(Community comunidade, StringBuilder muralData) {
+        long indice = comunidade.getMural().getBase();
+        for (Messages mensagem : comunidade.getMural().getMensagens()) {
+            muralData.append(comunidade.getNome()).append(";")
+                    .append(indice++).append(";")
+                    .append(mensagem.getSequencia()).append(";")
+                    .append(mensagem.getMensagem()).append("\n");
+        }
     }
 
-    public static void salvarMensagens(Map<String, User> usuarios) throws IOException {
-        StringBuilder mensagensData = new StringBuilder();
-        for (User usuario : usuarios.values()) {
-            for (Messages mensagem : usuario.getMessages()) {
-                mensagensData.append(usuario.getLogin()).append(";")
-                        .append(mensagem.getMensagem()).append("\n");
-            }
+    public static void formatarCursores(User usuario, StringBuilder cursoresData) {
+        for (Map.Entry<Community, Long> cursor : usuario.getCursoresMensagens().entrySet()) {
+            cursoresData.append(usuario.getLogin()).append(";")
+                    .append(cursor.getKey().getNome()).append(";")
+                    .append(cursor.getValue()).append("\n");
+        }
+    }
+
+    public static void formatarRelacoes(User usuario, StringBuilder relacoesData) {
+        for (User idolo : usuario.getIdols()) {
+            relacoesData.append(usuario.getLogin()).append(";")
+                    .append(idolo.getLogin()).append(";")
+                    .append("idolo").append("\n");
+        }
+
+        for (User fa : usuario.getFas()) {
+            relacoesData.append(usuario.getLogin()).append(";")
+                    .append(fa.getLogin()).append(";")
+                    .append("fa").append("\n");
+        }
+
+        for (User paquera : usuario.getCrushes()) {
+            relacoesData.append(usuario.getLogin()).append(";")
+                    .append(paquera.getLogin()).append(";")
+                    .append("paquera").append("\n");
         }
 
-        escreverArquivo("mensagens.txt", mensagensData.toString());
+        for (User paquerasRecebidas : usuario.getCrushesReceived()) {
+            relacoesData.append(usuario.getLogin()).append(";")
+                    .append(paquerasRecebidas.getLogin()).append(";")
+                    .append("paqueraRecebida").append("\n");
+        }
+
+        for (User inimigos : usuario.getEnemy()) {
+            relacoesData.append(usuario.getLogin()).append(";")
+                    .append(inimigos.getLogin()).append(";")
+                    .append("inimigo").append("\n");
+        }
     }
 
-    public static void salvarRelacoes(Map<String, User> usuarios) throws IOException {
-        StringBuilder relacoesData = new StringBuilder();
-        for (User usuario : usuarios.values()) {
-            for (User idolo : usuario.getIdols()) {
-                relacoesData.append(usuario.getLogin()).append(";")
-                        .append(idolo.getLogin()).append(";")
-                        .append("idolo").append("\n");
-            }
+    /**
+     * <p> Writes a checkpoint captured by the system. </p>
+     *
+     * <p> Each text file is split into the segments of the checkpoint, chosen by the hash of the login (or of
+     * the community name), stored in <b>&lt;pasta&gt;/&lt;file&gt;/&lt;segment&gt;.txt</b>. Only the segments holding
+     * a key of the checkpoint are rewritten: their unchanged lines are kept from disk and the lines of the
+     * modified keys are replaced. Since a segment holds about {@code CHAVES_POR_SEGMENTO} keys, the I/O grows
+     * with the changes and not with the size of the database. </p>
+     *
+     * <p> A complete checkpoint rewrites every segment and records their number in <b>segmentos.txt</b>, so
+     * it is also the one that splits the files into more segments as the database grows. </p>
+     *
+     * <p> The new segments are written to <b>.novo</b> files and only replace the old ones after the list of
+     * replacements is recorded in <b>checkpoint.txt</b>, so a crash in the middle is completed by
+     * {@code recuperarCheckpoint} on the next startup. </p>
+     *
+     * @param pasta      Data directory of the system.
+     * @param checkpoint Image captured by the system.
+     *
+     * @throws IOException Exception thrown if any segment cannot be written.
+     */
+    public static void gravarCheckpoint(File pasta, Checkpoint checkpoint) throws IOException {
+        long inicio = java.lang.System.nanoTime();
+        List<String> operacoes = new ArrayList<>();
+        long bytes = 0;
 
-            for (User fa : usuario.getFas()) {
-                relacoesData.append(usuario.getLogin()).append(";")
-                        .append(fa.getLogin()).append(";")
-                        .append("fa").append("\n");
-            }
+        if (checkpoint.isBinario()) {
+            File novo = new File(pasta, "snapshot.bin.novo");
+            bytes += BinarySnapshot.gravar(novo, checkpoint.getUsuarios(), checkpoint.getComunidades());
+
+            operacoes.add("R " + new File(pasta, "snapshot.bin").getPath());
+        } else {
+            int divisoes = checkpoint.getDivisoes();
+            for (String arquivo : ARQUIVOS) {
+                Map<String, String> substituicoes = checkpoint.getSubstituicoes(arquivo);
+                int campoChave = arquivo.equals("comunidades.txt") ? 1 : 0;
+
+                Map<Integer, StringBuilder> segmentos = new TreeMap<>();
+                if (checkpoint.isCompleto()) {
+                    for (int i = 0; i < divisoes; i++) {
+                        segmentos.put(i, new StringBuilder());
+                    }
+                } else {
+                    for (String chave : substituicoes.keySet()) {
+                        segmentos.computeIfAbsent(segmento(chave, divisoes), segmento -> new StringBuilder());
+                    }
+
+                    for (Map.Entry<Integer, StringBuilder> segmento : segmentos.entrySet()) {
+                        File atual = arquivoSegmento(pasta, arquivo, segmento.getKey());
+                        if (!atual.exists()) {
+                            continue;
+                        }
+
+                        try (BufferedReader br = new BufferedReader(new FileReader(atual))) {
+                            String linha;
+                            while ((linha = br.readLine()) != null) {
+                                if (!substituicoes.containsKey(campo(linha, campoChave))) {
+                                    segmento.getValue().append(linha).append("\n");
+                                }
+                            }
+                        }
+                    }
+                }
 
-            for (User paquera : usuario.getCrushes()) {
-                relacoesData.append(usuario.getLogin()).append(";")
-                        .append(paquera.getLogin()).append(";")
-                        .append("paquera").append("\n");
+                for (Map.Entry<String, String> substituicao : substituicoes.entrySet()) {
+                    segmentos.get(segmento(substituicao.getKey(), divisoes)).append(substituicao.getValue());
+                }
+
+                for (Map.Entry<Integer, StringBuilder> segmento : segmentos.entrySet()) {
+                    File destino = arquivoSegmento(pasta, arquivo, segmento.getKey());
+
+                    if (segmento.getValue().length() == 0) {
+                        if (destino.exists()) {
+                            operacoes.add("D " + destino.getPath());
+                        }
+                    } else {
+                        destino.getParentFile().mkdirs();
+                        escreverArquivo(new File(destino.getPath() + ".novo"), segmento.getValue().toString());
+                        operacoes.add("R " + destino.getPath());
+                        bytes += segmento.getValue().length();
+                    }
+                }
+
+                File legado = new File(pasta, arquivo);
+                if (checkpoint.isCompleto() && legado.exists()) {
+                    operacoes.add("D " + legado.getPath());
+                }
             }
 
-            for (User paquerasRecebidas : usuario.getCrushesReceived()) {
-                relacoesData.append(usuario.getLogin()).append(";")
-                        .append(paquerasRecebidas.getLogin()).append(";")
-                        .append("paqueraRecebida").append("\n");
+            if (checkpoint.isCompleto()) {
+                File destino = new File(pasta, "segmentos.txt");
+                escreverArquivo(new File(destino.getPath() + ".novo"), Integer.toString(divisoes));
+                operacoes.add("R " + destino.getPath());
             }
+        }
+
+        StringBuilder manifesto = new StringBuilder(Long.toString(checkpoint.getLsn())).append("\n");
+        for (String operacao : operacoes) {
+            manifesto.append(operacao).append("\n");
+        }
+        escreverAtomico(pasta, "checkpoint.txt", manifesto.toString());
+
+        aplicarOperacoes(operacoes);
+        salvarCheckpoint(pasta, checkpoint.getLsn());
+
+        checkpoint.setBytes(bytes);
+        checkpoint.setSegmentos(operacoes.size());
+        checkpoint.setDuracaoGravacao(java.lang.System.nanoTime() - inicio);
+    }
+
+    /**
+     * <p> Completes a checkpoint interrupted after its list of replacements was recorded. </p>
+     *
+     * @param pasta Data directory of the system.
+     *
+     * @throws IOException Exception thrown if the replacements cannot be applied.
+     */
+    public static void recuperarCheckpoint(File pasta) throws IOException {
+        File arquivo = new File(pasta, "checkpoint.txt");
+        if (!arquivo.exists()) {
+            return;
+        }
+
+        List<String> linhas = Files.readAllLines(arquivo.toPath());
+        if (linhas.size() <= 1) {
+            return;
+        }
 
-            for (User inimigos : usuario.getEnemy()) {
-                relacoesData.append(usuario.getLogin()).append(";")
-                        .append(inimigos.getLogin()).append(";")
-                        .append("inimigo").append("\n");
+        aplicarOperacoes(linhas.subList(1, linhas.size()));
+        salvarCheckpoint(pasta, Long.parseLong(linhas.get(0).trim()));
+    }
+
+    private static void aplicarOperacoes(List<String> operacoes) throws IOException {
+        for (String operacao : operacoes) {
+            File destino = new File(operacao.substring(2));
+
+            if (operacao.startsWith("R ")) {
+                File novo = new File(destino.getPath() + ".novo");
+                if (novo.exists()) {
+                    Files.move(novo.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } else if (operacao.startsWith("D ")) {
+                destino.delete();
             }
         }
+    }
+
+    private static String campo(String linha, int indice) {
+        int inicio = 0;
+        for (int i = 0; i < indice; i++) {
+            inicio = linha.indexOf(';', inicio) + 1;
+        }
+
+        int fim = linha.indexOf(';', inicio);
+        return fim < 0 ? linha.substring(inicio) : linha.substring(inicio, fim);
+    }
+
+    private static void escreverAtomico(File pasta, String nomeArquivo, String conteudo) throws IOException {
+        File arquivo = new File(pasta, nomeArquivo);
+        File novo = new File(arquivo.getPath() + ".novo");
+
+        escreverArquivo(novo, conteudo);
+        Files.move(novo.toPath(), arquivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static long lerCheckpoint(File pasta) throws IOException {
+        File arquivo = new File(pasta, "checkpoint.txt");
+        if (!arquivo.exists()) {
+            return 0;
+        }
 
-        escreverArquivo("relacoes.txt", relacoesData.toString());
+        String linha;
+        try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
+            linha = br.readLine();
+        }
+
+        return linha == null || linha.isEmpty() ? 0 : Long.parseLong(linha.trim());
     }
 
-    public static void persistirDados(Map<String, User> usuarios, Map<String, Community> comunidades) throws IOException {
-        salvarUsuarios(usuarios);
-        salvarAmigos(usuarios);
-        salvarRecados(usuarios);
-        salvarComunidades(comunidades);
-        salvarMensagens(usuarios);
-        salvarRelacoes(usuarios);
+    public static void salvarCheckpoint(File pasta, long lsn) throws IOException {
+        escreverAtomico(pasta, "checkpoint.txt", Long.toString(lsn));
     }
 
-    public static void limparArquivos() throws IOException {
-        escreverArquivo("usuarios.txt", "");
-        escreverArquivo("amigos.txt", "");
-        escreverArquivo("recados.txt", "");
-        escreverArquivo("comunidades.txt", "");
-        escreverArquivo("mensagens.txt", "");
-        // escreverArquivo("relacoes.txt", "");
+    public static void limparArquivos(File pasta) throws IOException {
+        new File(pasta, "segmentos.txt").delete();
+        for (String arquivo : ARQUIVOS) {
+            new File(pasta, arquivo).delete();
+
+            File[] segmentos = arquivoSegmento(pasta, arquivo, 0).getParentFile().listFiles();
+            if (segmentos != null) {
+                for (File segmento : segmentos) {
+                    segmento.delete();
+                }
+            }
+        }
     }
 }
@@ -1,17 +1,52 @@
 package br.ufal.ic.p2.jackut;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collection;
 
 public class UtilsString {
-    public static String formatArrayList(ArrayList<?> arrayList) {
-        String formattedString = "{";
-        for (int i = 0; i < arrayList.size(); i++) {
-            formattedString += arrayList.get(i).toString();
-            if (i != arrayList.size() - 1) {
-                formattedString += ",";
+    /**
+     * <p> Formats a collection as <b>{a,b,c}</b>, in its iteration order. </p>
+     *
+     * @param colecao Collection to be formatted.
+     * @return Formatted string.
+     */
+    public static String formatArrayList(Collection<?> colecao) {
+        return formatar(colecao, new StringBuilder(2 + colecao.size() * 8)).toString();
+    }
+
+    /**
+     * <p> Appends the items as <b>{a,b,c}</b> to a builder, in linear time. </p>
+     *
+     * @param itens   Items to be formatted.
+     * @param destino Builder the text is appended to.
+     * @return The same builder.
+     */
+    public static StringBuilder formatar(Iterable<?> itens, StringBuilder destino) {
+        try {
+            formatar(itens, (Appendable) destino);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return destino;
+    }
+
+    /**
+     * <p> Writes the items as <b>{a,b,c}</b> to a writer or builder, in linear time. </p>
+     *
+     * @param itens   Items to be formatted.
+     * @param destino Destination of the text.
+     * @throws IOException If the destination cannot be written.
+     */
+    public static void formatar(Iterable<?> itens, Appendable destino) throws IOException {
+        destino.append('{');
+        boolean primeiro = true;
+        for (Object item : itens) {
+            if (!primeiro) {
+                destino.append(',');
             }
+            destino.append(item.toString());
+            primeiro = false;
         }
-        formattedString += "}";
-        return formattedString;
+        destino.append('}');
     }
 }
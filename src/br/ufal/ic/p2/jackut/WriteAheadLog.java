@@ -0,0 +1,524 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p> Append-only log that records every mutating operation of the system. </p>
+ *
+ * <p> Each record is stored as <b>[size][crc32][lsn, operation, arguments]</b>, where every string is
+ * length-prefixed UTF-8, so messages containing <b>;</b>, <b>,</b> or line breaks are kept intact. </p>
+ *
+ * <p> On startup the log is replayed on top of the last snapshot, skipping the records whose sequence
+ * number (LSN) was already included in it. A torn record at the end of the file is discarded. </p>
+ *
+ * <p> A checkpoint rotates the log before writing the snapshot and discards the rotated files once the
+ * snapshot is on disk, so the log never has to be rewritten. </p>
+ *
+ * <p> A writer first reserves the LSNs of its records, then encodes them outside any lock, and only the
+ * append to the file is serialized, in LSN order: a writer whose predecessors did not append yet waits for
+ * them. The file is therefore always in LSN order, and a record is only on disk after every earlier one. </p>
+ *
+ * <p> An operation whose effect is not protected by the locks of the system reserves its LSN and applies its
+ * effect under an ordering lock of the keys it touches, so that effects on the same key happen in the order
+ * of their records while effects on different keys, which commute, run in parallel. </p>
+ *
+ * <p> If a record cannot be written or forced, the file is truncated back to the end of the previous record
+ * and the log refuses every later append and rotation. The system already applied the operation in memory,
+ * so the operations after it could depend on a change the log does not hold; the log is only written again
+ * after a restart replays it. </p>
+ *
+ * <p> Writers wait on {@code ReentrantLock}s rather than monitors, so virtual threads waiting for the log
+ * park instead of pinning their carrier threads. </p>
+ *
+ * @see DurabilityMode
+ */
+public class WriteAheadLog {
+    private static final int ORDENS = 64;
+
+    private final File arquivo;
+    private final DurabilityMode modo;
+    private final long intervalo;
+
+    private FileChannel canal;
+    private ScheduledExecutorService agendador;
+    private long ultimoLsn;
+    private boolean pendente;
+    private IOException falha;
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition vez = this.trava.newCondition();
+    private final AtomicLong reservado = new AtomicLong();
+    private final ReentrantLock[] ordens = new ReentrantLock[ORDENS];
+
+    /**
+     * <p> Constructs a new {@code WriteAheadLog} stored in the given file. </p>
+     *
+     * @param arquivo   File in which the log is stored.
+     * @param modo      Durability mode of the log.
+     * @param intervalo Interval, in milliseconds, between two group commits.
+     *
+     * @see DurabilityMode
+     */
+    public WriteAheadLog(File arquivo, DurabilityMode modo, long intervalo) {
+        this.arquivo = arquivo;
+        this.modo = modo;
+        this.intervalo = intervalo;
+        for (int i = 0; i < ORDENS; i++) {
+            this.ordens[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * <p> Replays the records of the log whose LSN is greater than the checkpoint. </p>
+     * <p> The rotated files that were not discarded yet are replayed first, in LSN order. </p>
+     *
+     * @param checkpoint LSN of the last operation already included in the snapshot.
+     * @param aplicador  Function that applies an operation and its arguments to the system.
+     *
+     * @throws IOException Exception thrown if the log cannot be read.
+     */
+    public void reproduzir(long checkpoint, BiConsumer<String, String[]> aplicador) throws IOException {
+        this.trava.lock();
+        try {
+            this.ultimoLsn = checkpoint;
+
+            for (File antigo : this.listarAntigos()) {
+                this.lerRegistros(antigo, checkpoint, aplicador);
+            }
+
+            if (!this.arquivo.exists()) {
+                return;
+            }
+
+            long valido = this.lerRegistros(this.arquivo, checkpoint, aplicador);
+
+            if (valido < this.arquivo.length()) {
+                this.abrir();
+                this.canal.truncate(valido);
+                this.canal.force(false);
+            }
+        } finally {
+            this.reservado.set(this.ultimoLsn);
+            this.trava.unlock();
+        }
+    }
+
+    /**
+     * <p> Reads the records of a file, returning the length of its valid prefix. </p>
+     */
+    private long lerRegistros(File origem, long checkpoint, BiConsumer<String, String[]> aplicador) throws IOException {
+        long total = origem.length();
+        long valido = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(origem)))) {
+            while (true) {
+                byte[] dados;
+                try {
+                    int tamanho = in.readInt();
+                    int crc = in.readInt();
+                    if (tamanho <= 0 || valido + 8 + tamanho > total) {
+                        break;
+                    }
+                    dados = new byte[tamanho];
+                    in.readFully(dados);
+                    if (crc != crc32(dados)) {
+                        break;
+                    }
+                    valido += 8 + tamanho;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(dados));
+                long lsn = registro.readLong();
+                String operacao = lerTexto(registro);
+                String[] argumentos = new String[registro.readInt()];
+                for (int i = 0; i < argumentos.length; i++) {
+                    argumentos[i] = lerTexto(registro);
+                }
+
+                if (lsn > checkpoint) {
+                    aplicador.accept(operacao, argumentos);
+                }
+                this.ultimoLsn = Math.max(this.ultimoLsn, lsn);
+            }
+        }
+
+        return valido;
+    }
+
+    /**
+     * <p> Appends an operation to the log, honoring the configured durability mode. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of the operation.
+     *
+     * @throws IOException Exception thrown if the record cannot be written.
+     */
+    public void registrar(String operacao, String... argumentos) throws IOException {
+        this.registrarLote(operacao, List.<String[]>of(argumentos));
+    }
+
+    /**
+     * <p> Applies the effect of an operation and reserves its record under the ordering lock of the given
+     * keys, so the effects on each key happen in the order of their records. </p>
+     * <p> Used by operations whose effect is not protected by the locks of the system, as the delivery of a
+     * recado, whose keys are the recipients. Deliveries to different recipients do not wait for one another;
+     * the record is encoded and appended after the ordering lock is released. The effect is applied even if
+     * the record cannot be written, in which case the log stops. </p>
+     *
+     * @param efeito     Effect of the operation.
+     * @param chaves     Keys whose state the effect changes.
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of the operation.
+     *
+     * @throws IOException Exception thrown if the record cannot be written.
+     */
+    public void registrar(Runnable efeito, String[] chaves, String operacao, String... argumentos) throws IOException {
+        int[] indices = this.ordens(chaves);
+        long lsn;
+        for (int indice : indices) {
+            this.ordens[indice].lock();
+        }
+        try {
+            lsn = this.reservado.incrementAndGet();
+            try {
+                efeito.run();
+            } catch (RuntimeException | Error e) {
+                this.anexar(lsn, 1, null);
+                throw e;
+            }
+        } finally {
+            for (int i = indices.length - 1; i >= 0; i--) {
+                this.ordens[indices[i]].unlock();
+            }
+        }
+
+        this.escrever(lsn, operacao, List.<String[]>of(argumentos));
+    }
+
+    /**
+     * <p> Appends several records of the same operation with a single write, and a single {@code force} in
+     * {@code FSYNC} mode. Used by the batch operations of the system. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments of every record.
+     *
+     * @throws IOException Exception thrown if the records cannot be written.
+     */
+    public void registrarLote(String operacao, List<String[]> argumentos) throws IOException {
+        if (argumentos.isEmpty()) {
+            return;
+        }
+
+        this.escrever(this.reservado.getAndAdd(argumentos.size()) + 1, operacao, argumentos);
+    }
+
+    /**
+     * <p> Encodes the records of LSNs reserved from {@code primeiro} on and appends them. </p>
+     * <p> The LSNs are released even if the records cannot be encoded, so the next writers do not wait for
+     * them forever. </p>
+     */
+    private void escrever(long primeiro, String operacao, List<String[]> argumentos) throws IOException {
+        byte[] dados = null;
+        try {
+            ByteArrayOutputStream lote = new ByteArrayOutputStream();
+            DataOutputStream saida = new DataOutputStream(lote);
+            long lsn = primeiro;
+            for (String[] registroArgumentos : argumentos) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream registro = new DataOutputStream(bytes);
+                registro.writeLong(lsn++);
+                escreverTexto(registro, operacao);
+                registro.writeInt(registroArgumentos.length);
+                for (String argumento : registroArgumentos) {
+                    escreverTexto(registro, argumento);
+                }
+                byte[] corpo = bytes.toByteArray();
+
+                saida.writeInt(corpo.length);
+                saida.writeInt(crc32(corpo));
+                saida.write(corpo);
+            }
+            dados = lote.toByteArray();
+        } finally {
+            this.anexar(primeiro, argumentos.size(), dados);
+        }
+    }
+
+    /**
+     * <p> Appends the encoded records of LSNs reserved from {@code primeiro} on, once every earlier LSN was
+     * appended, honoring the configured durability mode. </p>
+     *
+     * @param primeiro   First LSN reserved.
+     * @param quantidade Number of LSNs reserved.
+     * @param dados      Encoded records, or null to release the LSNs without writing anything.
+     *
+     * @throws IOException Exception thrown if the records cannot be written, or if an earlier write failed.
+     */
+    private void anexar(long primeiro, int quantidade, byte[] dados) throws IOException {
+        this.trava.lock();
+        try {
+            while (this.ultimoLsn != primeiro - 1) {
+                this.vez.awaitUninterruptibly();
+            }
+
+            try {
+                if (dados == null) {
+                    return;
+                }
+                this.verificar();
+
+                long inicio = -1;
+                try {
+                    this.abrir();
+                    inicio = this.canal.position();
+
+                    ByteBuffer buffer = ByteBuffer.wrap(dados);
+                    while (buffer.hasRemaining()) {
+                        this.canal.write(buffer);
+                    }
+
+                    if (this.modo == DurabilityMode.FSYNC) {
+                        this.canal.force(false);
+                    } else {
+                        this.pendente = true;
+                    }
+                } catch (IOException e) {
+                    this.falhar(inicio, e);
+                    throw e;
+                }
+            } finally {
+                this.ultimoLsn = primeiro + quantidade - 1;
+                this.vez.signalAll();
+            }
+        } finally {
+            this.trava.unlock();
+        }
+    }
+
+    /**
+     * <p> Truncates the file back to where a failed write started, if it was opened, and stops the log. Called
+     * with the log locked. </p>
+     */
+    private void falhar(long inicio, IOException e) {
+        if (inicio >= 0) {
+            try {
+                this.canal.truncate(inicio);
+            } catch (IOException truncamento) {
+                e.addSuppressed(truncamento);
+            }
+        }
+        this.falha = e;
+    }
+
+    /**
+     * <p> Throws if an earlier write failed. Called with the log locked. </p>
+     */
+    private void verificar() throws IOException {
+        if (this.falha != null) {
+            throw new IOException("O log foi interrompido por uma falha de escrita.", this.falha);
+        }
+    }
+
+    /**
+     * <p> Returns the indexes of the ordering locks of the keys, sorted and without repetition, so they are
+     * always taken in the same order. </p>
+     */
+    private int[] ordens(String[] chaves) {
+        int[] indices = new int[chaves.length];
+        for (int i = 0; i < chaves.length; i++) {
+            int hash = chaves[i].hashCode() * 0x9E3779B9;
+            indices[i] = (hash ^ (hash >>> 16)) & (ORDENS - 1);
+        }
+        return Arrays.stream(indices).sorted().distinct().toArray();
+    }
+
+    /**
+     * <p> Returns the LSN of the last operation recorded in the log. </p>
+     *
+     * @return LSN of the last operation.
+     */
+    public long getUltimoLsn() {
+        this.trava.lock();
+        try {
+            return this.ultimoLsn;
+        } finally {
+            this.trava.unlock();
+        }
+    }
+
+    /**
+     * <p> Closes the current file of the log and renames it to <b>&lt;file&gt;.&lt;lsn&gt;</b>. </p>
+     * <p> The next operations go to a new file, so a checkpoint can be written while the system keeps logging. </p>
+     *
+     * @return Every rotated file not discarded yet, which are all covered by the current LSN.
+     *
+     * @throws IOException Exception thrown if the log cannot be rotated, or if a write failed.
+     */
+    public List<File> rotacionar() throws IOException {
+        this.trava.lock();
+        try {
+            while (this.ultimoLsn != this.reservado.get()) {
+                this.vez.awaitUninterruptibly();
+            }
+            this.verificar();
+            this.fechar();
+
+            if (this.arquivo.exists() && this.arquivo.length() > 0) {
+                File antigo = new File(this.arquivo.getPath() + "." + this.ultimoLsn);
+                Files.move(this.arquivo.toPath(), antigo.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            return this.listarAntigos();
+        } finally {
+            this.trava.unlock();
+        }
+    }
+
+    /**
+     * <p> Deletes rotated files whose records are already included in a checkpoint. </p>
+     *
+     * @param antigos Files returned by {@code rotacionar}.
+     */
+    public void descartar(List<File> antigos) {
+        for (File antigo : antigos) {
+            antigo.delete();
+        }
+    }
+
+    private List<File> listarAntigos() {
+        String prefixo = this.arquivo.getName() + ".";
+        File[] arquivos = this.arquivo.getAbsoluteFile().getParentFile()
+                .listFiles((diretorio, nome) -> nome.startsWith(prefixo) && nome.substring(prefixo.length()).matches("\\d+"));
+
+        List<File> antigos = new ArrayList<>();
+        if (arquivos != null) {
+            antigos.addAll(Arrays.asList(arquivos));
+        }
+        antigos.sort(Comparator.comparingLong(antigo -> Long.parseLong(antigo.getName().substring(prefixo.length()))));
+
+        return antigos;
+    }
+
+    /**
+     * <p> Forces the pending records to disk and closes the log. </p>
+     * <p> The log is reopened automatically by the next {@code registrar}. </p>
+     *
+     * @throws IOException Exception thrown if the log cannot be closed.
+     */
+    public void fechar() throws IOException {
+        this.trava.lock();
+        try {
+            if (this.agendador != null) {
+                this.agendador.shutdown();
+                this.agendador = null;
+            }
+
+            if (this.canal != null) {
+                this.canal.force(false);
+                this.canal.close();
+                this.canal = null;
+            }
+            this.pendente = false;
+        } finally {
+            this.trava.unlock();
+        }
+    }
+
+    private void abrir() throws IOException {
+        if (this.canal != null) {
+            return;
+        }
+
+        this.canal = FileChannel.open(this.arquivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.canal.position(this.canal.size());
+
+        if (this.modo == DurabilityMode.GROUP_COMMIT) {
+            this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "jackut-wal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.agendador.scheduleWithFixedDelay(this::sincronizar, this.intervalo, this.intervalo, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sincronizar() {
+        FileChannel atual;
+        this.trava.lock();
+        try {
+            if (!this.pendente || this.canal == null) {
+                return;
+            }
+            atual = this.canal;
+            this.pendente = false;
+        } finally {
+            this.trava.unlock();
+        }
+
+        try {
+            atual.force(false);
+        } catch (IOException e) {
+            this.trava.lock();
+            try {
+                this.pendente = this.canal == atual;
+            } finally {
+                this.trava.unlock();
+            }
+        }
+    }
+
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String lerTexto(DataInputStream in) throws IOException {
+        int tamanho = in.readInt();
+        if (tamanho < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[tamanho];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc32(byte[] dados) {
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        return (int) crc.getValue();
+    }
+}
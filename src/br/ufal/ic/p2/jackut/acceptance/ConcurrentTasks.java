@@ -0,0 +1,79 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p> Tasks run at once, each in its own thread, while the thread of the script does its part of the test. </p>
+ *
+ * <p> Used by the methods of the facades whose name starts with {@code concorrentes}. A task that fails makes
+ * {@code aguardar} throw its exception, wrapped in an {@code IllegalStateException} if it is checked. </p>
+ */
+final class ConcurrentTasks implements AutoCloseable {
+    private final ExecutorService executor;
+    private final CompletableFuture<?>[] tarefas;
+
+    /**
+     * <p> Body of a task, which receives its index, from 0 to the number of tasks minus 1. </p>
+     */
+    @FunctionalInterface
+    interface Tarefa {
+        void executar(int indice) throws Exception;
+    }
+
+    private ConcurrentTasks(int quantidade, Tarefa tarefa) {
+        this.executor = Executors.newFixedThreadPool(quantidade);
+        this.tarefas = new CompletableFuture<?>[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            int indice = i;
+            this.tarefas[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    tarefa.executar(indice);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, this.executor);
+        }
+    }
+
+    /**
+     * <p> Starts {@code quantidade} tasks, each in its own thread. </p>
+     *
+     * @param quantidade Number of tasks.
+     * @param tarefa     Body of the tasks.
+     * @return Tasks started, to be closed when the test finishes.
+     */
+    static ConcurrentTasks iniciar(int quantidade, Tarefa tarefa) {
+        return new ConcurrentTasks(quantidade, tarefa);
+    }
+
+    /**
+     * <p> Returns true if every task finished, normally or not. </p>
+     */
+    boolean terminadas() {
+        for (CompletableFuture<?> tarefa : this.tarefas) {
+            if (!tarefa.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p> Waits for every task, throwing the exception of the first one that failed. </p>
+     */
+    void aguardar() {
+        CompletableFuture.allOf(this.tarefas).join();
+    }
+
+    /**
+     * <p> Releases the threads of the tasks, without waiting for them. </p>
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+}
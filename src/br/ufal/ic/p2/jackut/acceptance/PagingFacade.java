@@ -0,0 +1,208 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Page;
+
+import java.io.File;
+
+/**
+ * <p> Facade of the acceptance scripts {@code paginaN_M}, which walk the pages of the relations of the
+ * {@code Facade} with their continuation tokens. </p>
+ *
+ * <p> The relation is one of <b>amigos</b>, <b>fas</b> and <b>membros</b>, of the user or community named by
+ * {@code dono}. Each page is returned as <b>{a,b,c}</b>, and its token is kept for {@code proximaPagina} and
+ * {@code token}, so a script can store it and come back to it later. Every user has the password
+ * <b>senha</b>. </p>
+ *
+ * @see Facade
+ * @see Page
+ */
+public class PagingFacade {
+    private static final String SENHA = "senha";
+
+    private final File pasta;
+    private Facade fachada;
+    private String ultimoToken;
+
+    /**
+     * <p> Constructs the facade over a system kept in the given directory. </p>
+     *
+     * @param pasta Data directory.
+     */
+    public PagingFacade(File pasta) {
+        this.pasta = pasta;
+        this.fachada = new Facade(pasta);
+    }
+
+    /**
+     * <p> Closes the system and loads it again from the same directory. </p>
+     */
+    public void reiniciar() {
+        this.fachada.encerrarSistema();
+        this.fachada = new Facade(this.pasta);
+    }
+
+    /**
+     * <p> Same as {@code Facade.zerarSistema}. </p>
+     */
+    public void zerarSistema() {
+        this.fachada.zerarSistema();
+        this.ultimoToken = null;
+    }
+
+    /**
+     * <p> Creates a user whose name is its login. </p>
+     */
+    public void criarUsuario(String login) throws Exception {
+        this.fachada.criarUsuario(login, SENHA, login);
+    }
+
+    /**
+     * <p> Creates the users {@code prefixo0} to {@code prefixoN}, where N is {@code quantidade - 1}. </p>
+     */
+    public void criarUsuarios(String prefixo, int quantidade) throws Exception {
+        for (int i = 0; i < quantidade; i++) {
+            this.criarUsuario(prefixo + i);
+        }
+    }
+
+    /**
+     * <p> Makes the users {@code prefixo0} to {@code prefixoN} friends of a user, in this order. </p>
+     */
+    public void tornarAmigos(String login, String prefixo, int quantidade) throws Exception {
+        String sessao = this.fachada.abrirSessao(login, SENHA);
+        for (int i = 0; i < quantidade; i++) {
+            String amigo = prefixo + i;
+            this.fachada.adicionarAmigo(sessao, amigo);
+            this.fachada.adicionarAmigo(this.fachada.abrirSessao(amigo, SENHA), login);
+        }
+    }
+
+    /**
+     * <p> Makes the users {@code prefixo0} to {@code prefixoN} fans of a user, in this order. </p>
+     */
+    public void tornarFas(String login, String prefixo, int quantidade) throws Exception {
+        for (int i = 0; i < quantidade; i++) {
+            this.fachada.adicionarIdolo(this.fachada.abrirSessao(prefixo + i, SENHA), login);
+        }
+    }
+
+    /**
+     * <p> Creates a community owned by a user. </p>
+     */
+    public void criarComunidade(String dono, String nome) throws Exception {
+        this.fachada.criarComunidade(this.fachada.abrirSessao(dono, SENHA), nome, nome);
+    }
+
+    /**
+     * <p> Makes the users {@code prefixo0} to {@code prefixoN} members of a community, in this order. </p>
+     */
+    public void tornarMembros(String comunidade, String prefixo, int quantidade) throws Exception {
+        for (int i = 0; i < quantidade; i++) {
+            this.fachada.adicionarComunidade(this.fachada.abrirSessao(prefixo + i, SENHA), comunidade);
+        }
+    }
+
+    /**
+     * <p> Same as {@code Facade.removerUsuario}. </p>
+     */
+    public void removerUsuario(String login) throws Exception {
+        this.fachada.removerUsuario(this.fachada.abrirSessao(login, SENHA));
+    }
+
+    /**
+     * <p> Returns the first page of a relation. </p>
+     *
+     * @param relacao Relation: amigos, fas or membros.
+     * @param dono    Login of the user or name of the community.
+     * @param limite  Maximum number of items in the page.
+     * @return Items of the page.
+     */
+    public String primeiraPagina(String relacao, String dono, int limite) throws Exception {
+        return this.guardar(this.pagina(relacao, dono, null, limite));
+    }
+
+    /**
+     * <p> Returns the page that follows the last page returned. </p>
+     *
+     * @param relacao Relation: amigos, fas or membros.
+     * @param dono    Login of the user or name of the community.
+     * @param limite  Maximum number of items in the page.
+     * @return Items of the page.
+     *
+     * @throws IllegalStateException Exception thrown if the last page returned was the last one.
+     */
+    public String proximaPagina(String relacao, String dono, int limite) throws Exception {
+        return this.guardar(this.pagina(relacao, dono, this.token(), limite));
+    }
+
+    /**
+     * <p> Returns the page that follows the given token. </p>
+     *
+     * @param relacao Relation: amigos, fas or membros.
+     * @param dono    Login of the user or name of the community.
+     * @param token   Token kept from an earlier page.
+     * @param limite  Maximum number of items in the page.
+     * @return Items of the page.
+     */
+    public String paginaDoToken(String relacao, String dono, String token, int limite) throws Exception {
+        return this.guardar(this.pagina(relacao, dono, token, limite));
+    }
+
+    /**
+     * <p> Returns the page that starts after skipping {@code deslocamento} items. </p>
+     *
+     * @param relacao      Relation: amigos, fas or membros.
+     * @param dono         Login of the user or name of the community.
+     * @param deslocamento Number of items to skip.
+     * @param limite       Maximum number of items in the page.
+     * @return Items of the page.
+     */
+    public String paginaDoDeslocamento(String relacao, String dono, int deslocamento, int limite) throws Exception {
+        Page<String> pagina;
+        switch (relacao) {
+            case "amigos":
+                pagina = this.fachada.getAmigosPagina(dono, deslocamento, limite);
+                break;
+            case "fas":
+                pagina = this.fachada.getFasPagina(dono, deslocamento, limite);
+                break;
+            case "membros":
+                pagina = this.fachada.getMembrosComunidadePagina(dono, deslocamento, limite);
+                break;
+            default:
+                throw new IllegalArgumentException("Relação desconhecida.");
+        }
+        return this.guardar(pagina);
+    }
+
+    /**
+     * <p> Returns the token of the last page returned. </p>
+     *
+     * @throws IllegalStateException Exception thrown if the last page returned was the last one.
+     */
+    public String token() {
+        if (this.ultimoToken == null) {
+            throw new IllegalStateException("Não há próxima página.");
+        }
+        return this.ultimoToken;
+    }
+
+    private Page<String> pagina(String relacao, String dono, String token, int limite) throws Exception {
+        switch (relacao) {
+            case "amigos":
+                return this.fachada.getAmigosPagina(dono, token, limite);
+            case "fas":
+                return this.fachada.getFasPagina(dono, token, limite);
+            case "membros":
+                return this.fachada.getMembrosComunidadePagina(dono, token, limite);
+            default:
+                throw new IllegalArgumentException("Relação desconhecida.");
+        }
+    }
+
+    private String guardar(Page<String> pagina) {
+        this.ultimoToken = pagina.token();
+        return pagina.formatar();
+    }
+}
@@ -0,0 +1,198 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import br.ufal.ic.p2.jackut.MpscQueue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Facade of the acceptance scripts {@code filaN_M}, which drive an {@code MpscQueue} directly. </p>
+ *
+ * <p> The calling thread is the consumer. The methods whose name starts with {@code concorrentes} run
+ * producers in other threads while it consumes, each producer numbering its items as in <b>2:41</b>, and
+ * check that the items of each producer come out in the order they were offered, none lost or repeated. </p>
+ *
+ * @see MpscQueue
+ */
+public class QueueFacade {
+    private MpscQueue<String> fila = new MpscQueue<>();
+
+    /**
+     * <p> Constructs the facade. The queue is kept in memory only. </p>
+     *
+     * @param pasta Data directory, not used.
+     */
+    public QueueFacade(File pasta) {
+    }
+
+    /**
+     * <p> Replaces the queue by an empty one. </p>
+     */
+    public void zerarFila() {
+        this.fila = new MpscQueue<>();
+    }
+
+    /**
+     * <p> Appends an item to the queue. </p>
+     */
+    public void oferecer(String item) {
+        this.fila.offer(item);
+    }
+
+    /**
+     * <p> Appends the items {@code prefixo0} to {@code prefixoN}, where N is {@code quantidade - 1}. </p>
+     */
+    public void oferecerVarios(String prefixo, int quantidade) {
+        for (int i = 0; i < quantidade; i++) {
+            this.fila.offer(prefixo + i);
+        }
+    }
+
+    /**
+     * <p> Removes and returns the oldest item of the queue. </p>
+     *
+     * @throws IllegalStateException Exception thrown if the queue is empty.
+     */
+    public String retirar() {
+        String item = this.fila.poll();
+        if (item == null) {
+            throw new IllegalStateException("Fila vazia.");
+        }
+        return item;
+    }
+
+    /**
+     * <p> Returns the oldest item of the queue without removing it. </p>
+     *
+     * @throws IllegalStateException Exception thrown if the queue is empty.
+     */
+    public String espiar() {
+        String item = this.fila.peek();
+        if (item == null) {
+            throw new IllegalStateException("Fila vazia.");
+        }
+        return item;
+    }
+
+    /**
+     * <p> Removes up to {@code maximo} items at once and returns them separated by commas. </p>
+     */
+    public String drenar(int maximo) {
+        List<String> itens = new ArrayList<>();
+        this.fila.drenar(maximo, itens::add);
+        return String.join(",", itens);
+    }
+
+    /**
+     * <p> Removes every occurrence of an item, keeping the order of the others. </p>
+     *
+     * @return True if some item was removed.
+     */
+    public boolean remover(String item) {
+        return this.fila.removeIf(item::equals);
+    }
+
+    /**
+     * <p> Returns the number of items in the queue. </p>
+     */
+    public int tamanho() {
+        return this.fila.size();
+    }
+
+    /**
+     * <p> Returns the items of the queue, oldest first, separated by commas, without removing them. </p>
+     */
+    public String conteudo() {
+        return String.join(",", this.fila);
+    }
+
+    /**
+     * <p> Runs {@code produtores} producers, each offering {@code quantidade} items, while the calling thread
+     * consumes them, alternating {@code poll} and {@code drenar}. </p>
+     *
+     * @param produtores Number of producer threads.
+     * @param quantidade Number of items of each producer.
+     * @return Number of items consumed.
+     *
+     * @throws IllegalStateException Exception thrown if an item is missing, repeated or out of order.
+     */
+    public int concorrentesOferecer(int produtores, int quantidade) {
+        return this.concorrentes(produtores, quantidade, 0);
+    }
+
+    /**
+     * <p> Same as {@code concorrentesOferecer}, but the consumer also removes, now and then, the items whose
+     * number is a multiple of {@code divisor}, while the producers keep offering. </p>
+     *
+     * @param produtores Number of producer threads.
+     * @param quantidade Number of items of each producer.
+     * @param divisor    Items whose number is a multiple of it may be removed instead of consumed.
+     * @return Number of items consumed or removed.
+     *
+     * @throws IllegalStateException Exception thrown if an item is missing, repeated or out of order.
+     */
+    public int concorrentesOferecerERemover(int produtores, int quantidade, int divisor) {
+        return this.concorrentes(produtores, quantidade, divisor);
+    }
+
+    private int concorrentes(int produtores, int quantidade, int divisor) {
+        MpscQueue<String> fila = new MpscQueue<>();
+        try (ConcurrentTasks producoes = ConcurrentTasks.iniciar(produtores, p -> {
+            for (int i = 0; i < quantidade; i++) {
+                fila.offer(p + ":" + i);
+            }
+        })) {
+            int[] proximos = new int[produtores];
+            Set<String> removidos = ConcurrentHashMap.newKeySet();
+            int total = produtores * quantidade;
+            int vistos = 0;
+            for (int rodada = 0; vistos + removidos.size() < total; rodada++) {
+                if (divisor > 0 && rodada % 16 == 0) {
+                    fila.removeIf(item -> numero(item) % divisor == 0 && removidos.add(item));
+                }
+
+                List<String> itens = new ArrayList<>();
+                if (rodada % 2 == 0) {
+                    String item = fila.poll();
+                    if (item != null) {
+                        itens.add(item);
+                    }
+                } else {
+                    fila.drenar(64, itens::add);
+                }
+                if (itens.isEmpty()) {
+                    if (producoes.terminadas() && fila.isEmpty()) {
+                        throw new IllegalStateException("Itens perdidos: " + (total - vistos - removidos.size()) + ".");
+                    }
+                    Thread.onSpinWait();
+                }
+
+                for (String item : itens) {
+                    int produtor = Integer.parseInt(item.substring(0, item.indexOf(':')));
+                    while (removidos.contains(produtor + ":" + proximos[produtor])) {
+                        proximos[produtor]++;
+                    }
+                    if (numero(item) != proximos[produtor]) {
+                        throw new IllegalStateException("Item " + item + " fora de ordem, esperado "
+                                + proximos[produtor] + ".");
+                    }
+                    proximos[produtor]++;
+                }
+                vistos += itens.size();
+            }
+
+            producoes.aguardar();
+            if (!fila.isEmpty()) {
+                throw new IllegalStateException("Itens sobrando na fila: " + fila.size() + ".");
+            }
+            return vistos + removidos.size();
+        }
+    }
+
+    private static int numero(String item) {
+        return Integer.parseInt(item.substring(item.indexOf(':') + 1));
+    }
+}
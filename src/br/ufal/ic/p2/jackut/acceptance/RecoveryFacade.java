@@ -0,0 +1,256 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Exceptions.DontHaveMessagesException;
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p> Facade of the acceptance scripts {@code recuperacaoN_M}, which check what survives a crash. </p>
+ *
+ * <p> The operations are those of the {@code Facade}, over a system that logs with {@code FSYNC} and never
+ * writes a checkpoint by itself. {@code reiniciar} abandons the system without closing it and opens a new one
+ * over the same directory, so the state comes back from the operation log alone. </p>
+ *
+ * <p> The methods whose name starts with {@code concorrentes} run operations from several threads at once, to
+ * check that the log replays them in the order their effects happened. {@code iniciarCheckpoints} writes
+ * checkpoints in a loop meanwhile, to check that each image matches the log it cuts. </p>
+ *
+ * @see Facade
+ */
+public class RecoveryFacade {
+    private final File pasta;
+    private Facade fachada;
+    private final AtomicBoolean checkpointando = new AtomicBoolean();
+    private CompletableFuture<Integer> checkpoints;
+
+    /**
+     * <p> Constructs the facade over a system kept in the given directory. </p>
+     *
+     * @param pasta Data directory.
+     */
+    public RecoveryFacade(File pasta) {
+        this.pasta = pasta;
+        this.fachada = new Facade(pasta, DurabilityMode.FSYNC, 0);
+    }
+
+    /**
+     * <p> Abandons the current system, as in a crash, and loads a new one from the same directory. </p>
+     */
+    public void reiniciar() {
+        this.fachada = new Facade(this.pasta, DurabilityMode.FSYNC, 0);
+    }
+
+    /**
+     * <p> Starts writing checkpoints in a loop, in another thread, until {@code pararCheckpoints}. </p>
+     */
+    public void iniciarCheckpoints() {
+        this.checkpointando.set(true);
+        Facade fachada = this.fachada;
+        this.checkpoints = CompletableFuture.supplyAsync(() -> {
+            int escritos = 0;
+            while (this.checkpointando.get()) {
+                if (fachada.checkpoint() == null) {
+                    throw new IllegalStateException("Checkpoint falhou.");
+                }
+                escritos++;
+            }
+            return escritos;
+        });
+    }
+
+    /**
+     * <p> Stops the checkpoints started by {@code iniciarCheckpoints}, waiting for the one in progress. </p>
+     *
+     * @return True if at least one checkpoint was written.
+     */
+    public boolean pararCheckpoints() {
+        this.checkpointando.set(false);
+        return this.checkpoints.join() > 0;
+    }
+
+    /**
+     * <p> Sends {@code quantidade} recados from each sender to the same recipient, every sender in its own
+     * thread. Each recado is the position of its sender in the list and its number, as in <b>0:41</b>. </p>
+     *
+     * @param remetentes   Sessions of the senders, separated by <b>|</b>.
+     * @param destinatario Login of the recipient.
+     * @param quantidade   Number of recados of each sender.
+     * @return Number of recados sent.
+     */
+    public int concorrentesEnviarRecados(String remetentes, String destinatario, int quantidade) {
+        String[] sessoes = remetentes.split("\\|");
+        try (ConcurrentTasks envios = ConcurrentTasks.iniciar(sessoes.length, s -> {
+            for (int i = 0; i < quantidade; i++) {
+                this.fachada.enviarRecado(sessoes[s], destinatario, s + ":" + i);
+            }
+        })) {
+            envios.aguardar();
+            return sessoes.length * quantidade;
+        }
+    }
+
+    /**
+     * <p> Reads every recado of a user, checking that the recados of each sender come in the order they were
+     * numbered by {@code concorrentesEnviarRecados}, from 0 and with no gap or repetition. </p>
+     *
+     * @param sessao Session of the recipient.
+     * @return Number of recados read.
+     *
+     * @throws IllegalStateException Exception thrown if a recado is missing, repeated or out of order.
+     */
+    public int lerRecadosNumerados(String sessao) throws Exception {
+        List<String> recados = this.fachada.lerRecados(sessao, Integer.MAX_VALUE);
+
+        Map<String, Integer> proximos = new HashMap<>();
+        for (String recado : recados) {
+            String remetente = recado.substring(0, recado.indexOf(':'));
+            int numero = Integer.parseInt(recado.substring(recado.indexOf(':') + 1));
+            int esperado = proximos.getOrDefault(remetente, 0);
+            if (numero != esperado) {
+                throw new IllegalStateException("Recado " + recado + " fora de ordem, esperado " + esperado + ".");
+            }
+            proximos.put(remetente, esperado + 1);
+        }
+        return recados.size();
+    }
+
+    /**
+     * <p> Sends {@code quantidade} messages to a community while a member reads them, until all were read. </p>
+     *
+     * @param remetente  Session of the sender.
+     * @param comunidade Name of the community.
+     * @param leitor     Session of a member that is not the sender.
+     * @param quantidade Number of messages.
+     * @return Number of messages read by the member.
+     */
+    public int concorrentesEnviarELerMensagens(String remetente, String comunidade, String leitor, int quantidade)
+            throws Exception {
+        try (ConcurrentTasks envio = ConcurrentTasks.iniciar(1, t -> {
+            for (int i = 0; i < quantidade; i++) {
+                this.fachada.enviarMensagem(remetente, comunidade, "Mensagem " + i);
+            }
+        })) {
+            int lidas = 0;
+            while (lidas < quantidade) {
+                try {
+                    this.fachada.lerMensagem(leitor);
+                    lidas++;
+                } catch (DontHaveMessagesException e) {
+                    Thread.onSpinWait();
+                }
+            }
+
+            envio.aguardar();
+            return lidas;
+        }
+    }
+
+    /**
+     * <p> Creates users named by a prefix and a number, so a checkpoint takes longer to copy them all. </p>
+     *
+     * @param prefixo    Prefix of the logins.
+     * @param quantidade Number of users.
+     */
+    public void criarUsuarios(String prefixo, int quantidade) throws Exception {
+        for (int i = 0; i < quantidade; i++) {
+            this.fachada.criarUsuario(prefixo + i, "senha", prefixo + i);
+        }
+    }
+
+    /**
+     * <p> Reads up to {@code quantidade} messages of a user, one operation per message. </p>
+     *
+     * @param sessao     Session of the user.
+     * @param quantidade Maximum number of messages.
+     * @return Number of messages read.
+     */
+    public int lerMensagensUmaAUma(String sessao, int quantidade) throws Exception {
+        int lidas = 0;
+        try {
+            while (lidas < quantidade) {
+                this.fachada.lerMensagem(sessao);
+                lidas++;
+            }
+        } catch (DontHaveMessagesException e) {
+            return lidas;
+        }
+        return lidas;
+    }
+
+    /**
+     * <p> Same as {@code Facade.zerarSistema}. </p>
+     */
+    public void zerarSistema() {
+        this.fachada.zerarSistema();
+    }
+
+    /**
+     * <p> Same as {@code Facade.criarUsuario}. </p>
+     */
+    public void criarUsuario(String login, String senha, String nome) throws Exception {
+        this.fachada.criarUsuario(login, senha, nome);
+    }
+
+    /**
+     * <p> Same as {@code Facade.abrirSessao}. </p>
+     */
+    public String abrirSessao(String login, String senha) throws Exception {
+        return this.fachada.abrirSessao(login, senha);
+    }
+
+    /**
+     * <p> Same as {@code Facade.criarComunidade}. </p>
+     */
+    public void criarComunidade(String sessao, String nome, String descricao) throws Exception {
+        this.fachada.criarComunidade(sessao, nome, descricao);
+    }
+
+    /**
+     * <p> Same as {@code Facade.adicionarComunidade}. </p>
+     */
+    public void adicionarComunidade(String sessao, String nome) throws Exception {
+        this.fachada.adicionarComunidade(sessao, nome);
+    }
+
+    /**
+     * <p> Same as {@code Facade.enviarMensagem}. </p>
+     */
+    public void enviarMensagem(String sessao, String comunidade, String mensagem) throws Exception {
+        this.fachada.enviarMensagem(sessao, comunidade, mensagem);
+    }
+
+    /**
+     * <p> Same as {@code Facade.lerMensagem}. </p>
+     */
+    public String lerMensagem(String sessao) throws Exception {
+        return this.fachada.lerMensagem(sessao);
+    }
+
+    /**
+     * <p> Same as {@code Facade.enviarRecado}. </p>
+     */
+    public void enviarRecado(String sessao, String destinatario, String recado) throws Exception {
+        this.fachada.enviarRecado(sessao, destinatario, recado);
+    }
+
+    /**
+     * <p> Same as {@code Facade.lerRecado}. </p>
+     */
+    public String lerRecado(String sessao) throws Exception {
+        return this.fachada.lerRecado(sessao);
+    }
+
+    /**
+     * <p> Same as {@code Facade.encerrarSistema}. </p>
+     */
+    public void encerrarSistema() throws Exception {
+        this.fachada.encerrarSistema();
+    }
+}
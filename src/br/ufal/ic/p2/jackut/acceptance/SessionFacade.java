@@ -0,0 +1,151 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import br.ufal.ic.p2.jackut.SessionTable;
+import br.ufal.ic.p2.jackut.User;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p> Facade of the acceptance scripts {@code sessaoN_M}, which drive a {@code SessionTable} directly. </p>
+ *
+ * <p> Users are created by login only, with no other state. The methods whose name starts with
+ * {@code concorrentes} open sessions from several threads while the calling thread closes them, and check
+ * that no session outlives the last close. </p>
+ *
+ * @see SessionTable
+ */
+public class SessionFacade {
+    private SessionTable tabela = new SessionTable();
+    private final Map<String, User> usuarios = new HashMap<>();
+
+    /**
+     * <p> Constructs the facade. The table is kept in memory only. </p>
+     *
+     * @param pasta Data directory, not used.
+     */
+    public SessionFacade(File pasta) {
+    }
+
+    /**
+     * <p> Replaces the table by an empty one with the given limits, forgetting every user. </p>
+     *
+     * @param ociosidade Milliseconds without use after which a session expires.
+     * @param duracao    Milliseconds after its opening after which a session expires.
+     * @param maximo     Maximum number of sessions of a user.
+     */
+    public void zerarTabela(long ociosidade, long duracao, int maximo) {
+        this.tabela = new SessionTable(ociosidade, duracao, maximo);
+        this.usuarios.clear();
+    }
+
+    /**
+     * <p> Creates a user with the given login. </p>
+     */
+    public void criarUsuario(String login) throws Exception {
+        this.usuarios.put(login, new User(login, "senha", login));
+    }
+
+    /**
+     * <p> Opens a session for a user. </p>
+     *
+     * @return Token of the session.
+     */
+    public String abrir(String login) {
+        return this.tabela.abrir(this.usuario(login));
+    }
+
+    /**
+     * <p> Returns the login of the user of a session. </p>
+     *
+     * @throws IllegalStateException Exception thrown if the session does not exist or expired.
+     */
+    public String buscar(String sessao) {
+        User usuario = this.tabela.buscar(sessao);
+        if (usuario == null) {
+            throw new IllegalStateException("Sessão inválida.");
+        }
+        return usuario.getLogin();
+    }
+
+    /**
+     * <p> Closes a session. </p>
+     *
+     * @return True if the session was open.
+     */
+    public boolean encerrar(String sessao) {
+        return this.tabela.encerrar(sessao);
+    }
+
+    /**
+     * <p> Closes every session of a user. </p>
+     */
+    public void encerrarTodas(String login) {
+        this.tabela.encerrarTodas(login);
+    }
+
+    /**
+     * <p> Drops the expired sessions. </p>
+     *
+     * @return Number of sessions dropped.
+     */
+    public int varrer() {
+        return this.tabela.varrer();
+    }
+
+    /**
+     * <p> Returns the number of sessions in the table, expired ones not yet dropped included. </p>
+     */
+    public int tamanho() {
+        return this.tabela.tamanho();
+    }
+
+    /**
+     * <p> Waits the given number of milliseconds, so sessions may expire. </p>
+     */
+    public void esperar(long milissegundos) throws InterruptedException {
+        Thread.sleep(milissegundos);
+    }
+
+    /**
+     * <p> Runs {@code threads} threads, each opening {@code quantidade} sessions for the same user, while the
+     * calling thread closes every session of the user over and over. Once the threads are done, closes them a
+     * last time. </p>
+     *
+     * @param login      Login of the user.
+     * @param threads    Number of threads opening sessions.
+     * @param quantidade Number of sessions opened by each thread.
+     * @return Number of sessions opened.
+     *
+     * @throws IllegalStateException Exception thrown if a session is left in the table after the last close.
+     */
+    public int concorrentesAbrirEEncerrarTodas(String login, int threads, int quantidade) {
+        User usuario = this.usuario(login);
+        SessionTable tabela = this.tabela;
+        try (ConcurrentTasks aberturas = ConcurrentTasks.iniciar(threads, t -> {
+            for (int i = 0; i < quantidade; i++) {
+                tabela.abrir(usuario);
+            }
+        })) {
+            while (!aberturas.terminadas()) {
+                tabela.encerrarTodas(login);
+            }
+            aberturas.aguardar();
+
+            tabela.encerrarTodas(login);
+            if (tabela.tamanho() != 0) {
+                throw new IllegalStateException("Sessões órfãs: " + tabela.tamanho() + ".");
+            }
+            return threads * quantidade;
+        }
+    }
+
+    private User usuario(String login) {
+        User usuario = this.usuarios.get(login);
+        if (usuario == null) {
+            throw new IllegalStateException("Usuário não cadastrado.");
+        }
+        return usuario;
+    }
+}
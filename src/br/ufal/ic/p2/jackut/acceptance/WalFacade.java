@@ -0,0 +1,149 @@
+package br.ufal.ic.p2.jackut.acceptance;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.WriteAheadLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p> Facade of the acceptance scripts {@code walN_M}, which drive a {@code WriteAheadLog} directly. </p>
+ *
+ * <p> {@code reiniciar} stands for a crash: the current log is abandoned without being closed and a new one is
+ * opened over the same file and replayed, as the system does on startup. The records replayed are returned as
+ * {@code operacao(argumento)}, separated by commas. </p>
+ *
+ * @see WriteAheadLog
+ */
+public class WalFacade {
+    private final File arquivo;
+    private WriteAheadLog log;
+    private List<File> antigos = List.of();
+
+    /**
+     * <p> Constructs the facade over the log <b>wal.log</b> of the given directory. </p>
+     *
+     * @param pasta Directory of the log, created if it does not exist.
+     */
+    public WalFacade(File pasta) {
+        pasta.mkdirs();
+        this.arquivo = new File(pasta, "wal.log");
+    }
+
+    /**
+     * <p> Erases the log and its rotated files and opens an empty one. </p>
+     *
+     * @param modo Durability mode, as in {@code DurabilityMode}.
+     */
+    public void zerarLog(String modo) throws IOException {
+        this.fecharLog();
+        File[] arquivos = this.arquivo.getParentFile().listFiles((pasta, nome) -> nome.startsWith("wal.log"));
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                arquivo.delete();
+            }
+        }
+        this.log = new WriteAheadLog(this.arquivo, DurabilityMode.valueOf(modo), 10);
+    }
+
+    /**
+     * <p> Appends a record with a single argument. </p>
+     */
+    public void registrar(String operacao, String argumento) throws IOException {
+        this.log.registrar(operacao, argumento);
+    }
+
+    /**
+     * <p> Appends the same operation with several arguments, one record each, in a single write. </p>
+     *
+     * @param operacao   Name of the operation.
+     * @param argumentos Arguments, separated by <b>|</b>.
+     */
+    public void registrarLote(String operacao, String argumentos) throws IOException {
+        List<String[]> registros = new ArrayList<>();
+        for (String argumento : argumentos.split("\\|")) {
+            registros.add(new String[] { argumento });
+        }
+        this.log.registrarLote(operacao, registros);
+    }
+
+    /**
+     * <p> Returns the LSN of the last record written or replayed. </p>
+     */
+    public long getUltimoLsn() {
+        return this.log.getUltimoLsn();
+    }
+
+    /**
+     * <p> Abandons the log and replays a new one over the same file, skipping the records up to the checkpoint. </p>
+     *
+     * @param checkpoint LSN already included in a snapshot.
+     * @return The records replayed.
+     */
+    public String reiniciar(long checkpoint) throws IOException {
+        this.log = new WriteAheadLog(this.arquivo, DurabilityMode.FSYNC, 10);
+
+        List<String> registros = new ArrayList<>();
+        this.log.reproduzir(checkpoint, (operacao, argumentos) ->
+                registros.add(operacao + "(" + String.join(";", argumentos) + ")"));
+        return String.join(",", registros);
+    }
+
+    /**
+     * <p> Removes the last bytes of the current file, as a write interrupted by a crash. </p>
+     */
+    public void cortarFinal(int bytes) throws IOException {
+        try (RandomAccessFile arquivo = new RandomAccessFile(this.arquivo, "rw")) {
+            arquivo.setLength(Math.max(0, arquivo.length() - bytes));
+        }
+    }
+
+    /**
+     * <p> Inverts the bits of the last byte of the current file, so the checksum of the last record fails. </p>
+     */
+    public void corromperFinal() throws IOException {
+        try (RandomAccessFile arquivo = new RandomAccessFile(this.arquivo, "rw")) {
+            arquivo.seek(arquivo.length() - 1);
+            int ultimo = arquivo.read();
+            arquivo.seek(arquivo.length() - 1);
+            arquivo.write(~ultimo);
+        }
+    }
+
+    /**
+     * <p> Returns the size, in bytes, of the current file of the log. </p>
+     */
+    public long getTamanhoLog() {
+        return this.arquivo.length();
+    }
+
+    /**
+     * <p> Rotates the log, as a checkpoint does before writing its snapshot. </p>
+     *
+     * @return Number of rotated files not discarded yet.
+     */
+    public int rotacionar() throws IOException {
+        this.antigos = this.log.rotacionar();
+        return this.antigos.size();
+    }
+
+    /**
+     * <p> Deletes the files returned by the last rotation, as a checkpoint does once its snapshot is written. </p>
+     */
+    public void descartarAntigos() {
+        this.log.descartar(this.antigos);
+        this.antigos = List.of();
+    }
+
+    /**
+     * <p> Closes the log, forcing its records to disk. </p>
+     */
+    public void fecharLog() throws IOException {
+        if (this.log != null) {
+            this.log.fechar();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.StorageEngine;
+
+/**
+ * <p> System and dataset of a benchmark trial. </p>
+ *
+ * <p> The system may be closed and reopened from its storage during the trial, as {@code encerrarSistema}
+ * does. </p>
+ */
+public class Ambiente {
+    private final StorageEngine armazenamento;
+    private final DurabilityMode durabilidade;
+    private final Dataset dados;
+    private final long semente;
+    private Facade facade;
+
+    /**
+     * <p> Constructs a new {@code Ambiente}. </p>
+     *
+     * @param facade        Open facade, already holding the dataset.
+     * @param armazenamento Storage engine of the facade, used when the system is reopened.
+     * @param durabilidade  Durability of the operation log, used when the system is reopened.
+     * @param dados         Dataset of the trial.
+     * @param semente       Seed of the random choices of the benchmarks.
+     */
+    public Ambiente(Facade facade, StorageEngine armazenamento, DurabilityMode durabilidade, Dataset dados,
+                    long semente) {
+        this.facade = facade;
+        this.armazenamento = armazenamento;
+        this.durabilidade = durabilidade;
+        this.dados = dados;
+        this.semente = semente;
+    }
+
+    /**
+     * <p> Returns the open facade, reopening the system from its storage if it was closed. </p>
+     *
+     * @return Open facade.
+     */
+    public Facade getFacade() {
+        if (this.facade == null) {
+            this.facade = new Facade(this.armazenamento, this.durabilidade, 10);
+        }
+        return this.facade;
+    }
+
+    /**
+     * <p> Closes the system, writing its checkpoint. </p>
+     */
+    public void fechar() {
+        if (this.facade != null) {
+            this.facade.encerrarSistema();
+            this.facade = null;
+        }
+    }
+
+    /**
+     * <p> Returns true if the system is open. </p>
+     *
+     * @return True if the system was not closed.
+     */
+    public boolean isAberto() {
+        return this.facade != null;
+    }
+
+    /**
+     * <p> Returns the dataset of the trial. </p>
+     *
+     * @return Dataset.
+     */
+    public Dataset getDados() {
+        return this.dados;
+    }
+
+    /**
+     * <p> Returns the seed of the random choices of the benchmarks. </p>
+     *
+     * @return Seed.
+     */
+    public long getSemente() {
+        return this.semente;
+    }
+}
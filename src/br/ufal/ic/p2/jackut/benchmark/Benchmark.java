@@ -0,0 +1,49 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+/**
+ * <p> Operation measured by the {@code BenchmarkRunner}. </p>
+ *
+ * <p> {@code preparar} runs once per trial, after the dataset was created, and {@code prepararIteracao} before
+ * each iteration, both outside the measured time. An iteration either calls {@code executar} repeatedly for
+ * a fixed time, or, for operations that consume what was prepared (such as removing users), exactly the
+ * number of times returned by {@code prepararIteracao}. </p>
+ *
+ * @see BenchmarkRunner
+ * @see Benchmarks
+ */
+public interface Benchmark {
+    /**
+     * <p> Returns the name of the benchmark, as shown in the results. </p>
+     *
+     * @return Name of the benchmark.
+     */
+    String getNome();
+
+    /**
+     * <p> Prepares a trial. </p>
+     *
+     * @param ambiente System and dataset of the trial.
+     * @throws Exception If the preparation fails, which aborts the trial.
+     */
+    default void preparar(Ambiente ambiente) throws Exception {
+    }
+
+    /**
+     * <p> Prepares an iteration. </p>
+     *
+     * @return Number of operations of the iteration, or 0 to run operations for the configured time.
+     * @throws Exception If the preparation fails, which aborts the trial.
+     */
+    default int prepararIteracao() throws Exception {
+        return 0;
+    }
+
+    /**
+     * <p> Runs one operation. Expected errors of the operation are returned, not thrown. </p>
+     *
+     * @param operacao Number of the operation in the trial, from 0.
+     * @return Any value produced by the operation, consumed so the work is not optimized away.
+     * @throws Exception If the operation fails unexpectedly, which aborts the trial.
+     */
+    Object executar(long operacao) throws Exception;
+}
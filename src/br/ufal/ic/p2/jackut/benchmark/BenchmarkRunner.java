@@ -0,0 +1,307 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.BinaryStorageEngine;
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.MemoryStorageEngine;
+import br.ufal.ic.p2.jackut.StorageEngine;
+import br.ufal.ic.p2.jackut.TextStorageEngine;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * <p> Runs the {@code Benchmarks} for every dataset size and degree distribution and writes the results as
+ * JSON, in the layout of JMH, so two builds can be compared with the usual tools. </p>
+ *
+ * <p> Every trial creates its dataset on an empty system, runs {@code aquecimento} warmup iterations and then
+ * {@code medicoes} measured iterations, and reports the average time per operation with its 99.9% confidence
+ * interval. </p>
+ *
+ * <p> Arguments are given as {@code nome=valor}: </p>
+ *
+ * <ul>
+ *     <li> {@code tamanhos}: dataset sizes, comma separated (default {@code 1000,10000}); </li>
+ *     <li> {@code distribuicoes}: {@code UNIFORME}, {@code POTENCIA} or both (default both); </li>
+ *     <li> {@code grau}: average number of friends (default 10); </li>
+ *     <li> {@code aquecimento}, {@code medicoes}: number of iterations (default 3 and 5); </li>
+ *     <li> {@code duracao}: length of a timed iteration, in milliseconds (default 1000); </li>
+ *     <li> {@code filtro}: regular expression the benchmark names must contain; </li>
+ *     <li> {@code durabilidade}: {@code DurabilityMode} of the operation log (default {@code OS_BUFFERED}); </li>
+ *     <li> {@code armazenamento}: {@code texto}, {@code binario} or {@code memoria}, the last one measuring the
+ *     system without any I/O (default as given by {@code jackut.snapshot}); </li>
+ *     <li> {@code semente}: seed of the random choices (default 42); </li>
+ *     <li> {@code saida}: JSON file of the results (default {@code benchmark.json}). </li>
+ * </ul>
+ *
+ * <p> Unless stored in memory, the system keeps its data in {@code ./database}, which is erased: the runner
+ * must be started from a scratch directory, never from the project itself. </p>
+ *
+ * @see Benchmark
+ */
+public class BenchmarkRunner {
+    private static volatile Object sumidouro;
+
+    /**
+     * <p> Result of a trial. </p>
+     *
+     * @param benchmark Name of the benchmark.
+     * @param parametros Parameters of the dataset.
+     * @param amostras  Average nanoseconds per operation of each measured iteration.
+     * @param operacoes Number of operations measured.
+     */
+    public record Resultado(String benchmark, Map<String, String> parametros, double[] amostras, long operacoes) {
+        /**
+         * <p> Returns the average of the samples. </p>
+         *
+         * @return Average nanoseconds per operation.
+         */
+        public double media() {
+            double soma = 0;
+            for (double amostra : this.amostras) {
+                soma += amostra;
+            }
+            return soma / this.amostras.length;
+        }
+
+        /**
+         * <p> Returns half the width of the 99.9% confidence interval of the average, as JMH does. </p>
+         *
+         * @return Error of the average, or NaN with a single sample.
+         */
+        public double erro() {
+            int n = this.amostras.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+
+            double media = this.media();
+            double soma = 0;
+            for (double amostra : this.amostras) {
+                soma += (amostra - media) * (amostra - media);
+            }
+            return studentT(n - 1) * Math.sqrt(soma / (n - 1)) / Math.sqrt(n);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = lerOpcoes(args);
+
+        int grau = Integer.parseInt(opcoes.getOrDefault("grau", "10"));
+        int aquecimento = Integer.parseInt(opcoes.getOrDefault("aquecimento", "3"));
+        int medicoes = Integer.parseInt(opcoes.getOrDefault("medicoes", "5"));
+        long duracao = Long.parseLong(opcoes.getOrDefault("duracao", "1000")) * 1_000_000L;
+        long semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        DurabilityMode durabilidade = DurabilityMode.valueOf(opcoes.getOrDefault("durabilidade", "OS_BUFFERED"));
+        Pattern filtro = Pattern.compile(opcoes.getOrDefault("filtro", ""));
+        String tipoArmazenamento = opcoes.getOrDefault("armazenamento", "");
+
+        List<Resultado> resultados = new ArrayList<>();
+        for (String tamanho : opcoes.getOrDefault("tamanhos", "1000,10000").split(",")) {
+            for (String distribuicao : opcoes.getOrDefault("distribuicoes", "UNIFORME,POTENCIA").split(",")) {
+                Map<String, String> parametros = new LinkedHashMap<>();
+                parametros.put("tamanho", tamanho.trim());
+                parametros.put("distribuicao", distribuicao.trim());
+                parametros.put("grau", Integer.toString(grau));
+
+                for (Benchmark benchmark : Benchmarks.todos()) {
+                    if (!filtro.matcher(benchmark.getNome()).find()) {
+                        continue;
+                    }
+
+                    StorageEngine armazenamento = armazenamento(tipoArmazenamento);
+                    Facade facade = new Facade(armazenamento, durabilidade, 10);
+                    facade.zerarSistema();
+                    Dataset dados = Dataset.gerar(facade, Integer.parseInt(parametros.get("tamanho")),
+                            Distribuicao.valueOf(parametros.get("distribuicao")), grau, semente);
+                    Ambiente ambiente = new Ambiente(facade, armazenamento, durabilidade, dados, semente);
+
+                    Resultado resultado = executar(benchmark, ambiente, parametros, aquecimento, medicoes, duracao);
+                    ambiente.fechar();
+
+                    resultados.add(resultado);
+                    java.lang.System.out.printf("%-26s %-40s %14.1f ± %10.1f ns/op%n", resultado.benchmark(),
+                            parametros, resultado.media(), resultado.erro());
+                }
+            }
+        }
+
+        String saida = opcoes.getOrDefault("saida", "benchmark.json");
+        try (Writer escritor = new FileWriter(saida, StandardCharsets.UTF_8)) {
+            escreverJson(resultados, aquecimento, medicoes, escritor);
+        }
+        java.lang.System.out.println("Resultados gravados em " + saida);
+    }
+
+    /**
+     * <p> Returns a new storage engine of the given kind, over {@code ./database} unless kept in memory. </p>
+     *
+     * @param tipo {@code texto}, {@code binario}, {@code memoria}, or empty for the default of the directory.
+     * @return Storage engine.
+     */
+    static StorageEngine armazenamento(String tipo) {
+        File pasta = new File("./database");
+        switch (tipo) {
+            case "texto":
+                return new TextStorageEngine(pasta);
+            case "binario":
+                return new BinaryStorageEngine(pasta);
+            case "memoria":
+                return new MemoryStorageEngine();
+            case "":
+                return StorageEngine.padrao(pasta);
+            default:
+                throw new IllegalArgumentException("Armazenamento desconhecido: " + tipo);
+        }
+    }
+
+    /**
+     * <p> Parses arguments given as {@code nome=valor}. </p>
+     *
+     * @param args Command line arguments.
+     * @return Options, in the order given.
+     */
+    public static Map<String, String> lerOpcoes(String[] args) {
+        Map<String, String> opcoes = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separador = arg.indexOf('=');
+            if (separador < 0) {
+                throw new IllegalArgumentException("Argumento inválido: " + arg);
+            }
+            opcoes.put(arg.substring(0, separador), arg.substring(separador + 1));
+        }
+        return opcoes;
+    }
+
+    /**
+     * <p> Runs the iterations of one trial. </p>
+     *
+     * @param benchmark   Benchmark.
+     * @param ambiente    System and dataset of the trial.
+     * @param parametros  Parameters of the dataset, copied to the result.
+     * @param aquecimento Number of warmup iterations.
+     * @param medicoes    Number of measured iterations.
+     * @param duracao     Length of a timed iteration, in nanoseconds.
+     * @return The result of the trial.
+     * @throws Exception If the benchmark fails.
+     */
+    public static Resultado executar(Benchmark benchmark, Ambiente ambiente, Map<String, String> parametros,
+                                     int aquecimento, int medicoes, long duracao) throws Exception {
+        benchmark.preparar(ambiente);
+
+        double[] amostras = new double[medicoes];
+        long medidas = 0;
+        long operacao = 0;
+        for (int iteracao = 0; iteracao < aquecimento + medicoes; iteracao++) {
+            int fixas = benchmark.prepararIteracao();
+
+            long operacoes = 0;
+            long inicio = java.lang.System.nanoTime();
+            long decorrido;
+            if (fixas > 0) {
+                for (; operacoes < fixas; operacoes++) {
+                    sumidouro = benchmark.executar(operacao++);
+                }
+                decorrido = java.lang.System.nanoTime() - inicio;
+            } else {
+                do {
+                    for (int i = 0; i < 16; i++, operacoes++) {
+                        sumidouro = benchmark.executar(operacao++);
+                    }
+                    decorrido = java.lang.System.nanoTime() - inicio;
+                } while (decorrido < duracao);
+            }
+
+            if (iteracao >= aquecimento) {
+                amostras[iteracao - aquecimento] = (double) decorrido / operacoes;
+                medidas += operacoes;
+            }
+        }
+
+        return new Resultado(benchmark.getNome(), parametros, amostras, medidas);
+    }
+
+    /**
+     * <p> Writes the results as a JSON array in the layout of JMH, with {@code avgt} mode in ns/op. </p>
+     *
+     * @param resultados  Results of the trials.
+     * @param aquecimento Number of warmup iterations.
+     * @param medicoes    Number of measured iterations.
+     * @param escritor    Destination of the JSON.
+     * @throws IOException If the destination cannot be written.
+     */
+    public static void escreverJson(List<Resultado> resultados, int aquecimento, int medicoes, Writer escritor)
+            throws IOException {
+        escritor.write("[\n");
+        for (int r = 0; r < resultados.size(); r++) {
+            Resultado resultado = resultados.get(r);
+            double media = resultado.media();
+            double erro = resultado.erro();
+
+            escritor.write("    {\n");
+            escritor.write("        \"benchmark\" : " + texto(resultado.benchmark()) + ",\n");
+            escritor.write("        \"mode\" : \"avgt\",\n");
+            escritor.write("        \"threads\" : 1,\n");
+            escritor.write("        \"warmupIterations\" : " + aquecimento + ",\n");
+            escritor.write("        \"measurementIterations\" : " + medicoes + ",\n");
+            escritor.write("        \"operations\" : " + resultado.operacoes() + ",\n");
+            escritor.write("        \"params\" : {");
+            int p = 0;
+            for (Map.Entry<String, String> parametro : resultado.parametros().entrySet()) {
+                escritor.write((p++ == 0 ? "\n" : ",\n") + "            " + texto(parametro.getKey()) + " : "
+                        + texto(parametro.getValue()));
+            }
+            escritor.write("\n        },\n");
+            escritor.write("        \"primaryMetric\" : {\n");
+            escritor.write("            \"score\" : " + numero(media) + ",\n");
+            escritor.write("            \"scoreError\" : " + numero(erro) + ",\n");
+            escritor.write("            \"scoreConfidence\" : [ " + numero(media - erro) + ", "
+                    + numero(media + erro) + " ],\n");
+            escritor.write("            \"scoreUnit\" : \"ns/op\",\n");
+            escritor.write("            \"rawData\" : [ [ ");
+            for (int i = 0; i < resultado.amostras().length; i++) {
+                escritor.write((i == 0 ? "" : ", ") + numero(resultado.amostras()[i]));
+            }
+            escritor.write(" ] ]\n");
+            escritor.write("        }\n");
+            escritor.write(r + 1 < resultados.size() ? "    },\n" : "    }\n");
+        }
+        escritor.write("]\n");
+    }
+
+    private static String texto(String valor) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : valor.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String numero(double valor) {
+        return Double.isFinite(valor) ? Double.toString(valor) : "\"NaN\"";
+    }
+
+    /**
+     * <p> Returns the 99.95% quantile of Student's t distribution, for a two-sided 99.9% interval. </p>
+     */
+    private static double studentT(int liberdade) {
+        double[] quantis = { 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587, 4.437,
+                4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725,
+                3.707, 3.690, 3.674, 3.659, 3.646 };
+        return liberdade <= quantis.length ? quantis[liberdade - 1] : 3.291;
+    }
+}
@@ -0,0 +1,237 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p> Benchmarks of the hot paths of the {@code Facade}. </p>
+ *
+ * <p> Users are drawn from a table of random indexes filled once per trial, so drawing them costs an array
+ * read. Operations that may fail by design, such as befriending a user twice, return the exception instead
+ * of aborting the trial. </p>
+ *
+ * @see Benchmark
+ */
+public class Benchmarks {
+    private static final int SORTEIOS = 1 << 16;
+    private static final int LOTE_REMOCAO = 200;
+
+    /**
+     * <p> Returns every benchmark, in the order they run. </p>
+     *
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> todos() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new AbrirSessao());
+        benchmarks.add(new EhAmigo());
+        benchmarks.add(new AdicionarAmigo());
+        benchmarks.add(new Recado());
+        for (String comunidade : Dataset.COMUNIDADES) {
+            benchmarks.add(new EnviarMensagem(comunidade));
+        }
+        benchmarks.add(new GetAmigos(false));
+        benchmarks.add(new GetAmigos(true));
+        benchmarks.add(new RemoverUsuario());
+        benchmarks.add(new EncerrarSistema());
+        return benchmarks;
+    }
+
+    /**
+     * <p> Base of the benchmarks that draw users at random. </p>
+     */
+    private abstract static class Sorteado implements Benchmark {
+        protected Ambiente ambiente;
+        protected Facade facade;
+        protected Dataset dados;
+        protected int[] sorteios;
+
+        @Override
+        public void preparar(Ambiente ambiente) {
+            this.ambiente = ambiente;
+            this.facade = ambiente.getFacade();
+            this.dados = ambiente.getDados();
+
+            SplittableRandom aleatorio = new SplittableRandom(ambiente.getSemente());
+            this.sorteios = new int[SORTEIOS];
+            for (int i = 0; i < SORTEIOS; i++) {
+                this.sorteios[i] = aleatorio.nextInt(this.dados.getTamanho());
+            }
+        }
+
+        protected int sortear(long operacao) {
+            return this.sorteios[(int) (operacao & (SORTEIOS - 1))];
+        }
+    }
+
+    private static final class AbrirSessao extends Sorteado {
+        public String getNome() {
+            return "abrirSessao";
+        }
+
+        public Object executar(long operacao) {
+            return this.facade.abrirSessao(this.dados.getLogin(this.sortear(operacao)), "p");
+        }
+    }
+
+    private static final class EhAmigo extends Sorteado {
+        public String getNome() {
+            return "ehAmigo";
+        }
+
+        public Object executar(long operacao) {
+            return this.facade.ehAmigo(this.dados.getLogin(this.sortear(operacao)),
+                    this.dados.getLogin(this.sortear(operacao + 1)));
+        }
+    }
+
+    private static final class AdicionarAmigo extends Sorteado {
+        public String getNome() {
+            return "adicionarAmigo";
+        }
+
+        public Object executar(long operacao) {
+            int usuario = this.sortear(operacao);
+            int amigo = this.sortear(operacao * 31 + 7);
+            try {
+                this.facade.adicionarAmigo(this.dados.getSessao(usuario), this.dados.getLogin(amigo));
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        }
+    }
+
+    private static final class Recado extends Sorteado {
+        public String getNome() {
+            return "enviarRecado+lerRecado";
+        }
+
+        public Object executar(long operacao) {
+            int remetente = this.sortear(operacao);
+            int destinatario = (remetente + 1) % this.dados.getTamanho();
+            try {
+                this.facade.enviarRecado(this.dados.getSessao(remetente), this.dados.getLogin(destinatario), "Oi!");
+                return this.facade.lerRecado(this.dados.getSessao(destinatario));
+            } catch (Exception e) {
+                return e;
+            }
+        }
+    }
+
+    private static final class EnviarMensagem extends Sorteado {
+        private final String comunidade;
+
+        EnviarMensagem(String comunidade) {
+            this.comunidade = comunidade;
+        }
+
+        public String getNome() {
+            return "enviarMensagem." + this.comunidade;
+        }
+
+        public Object executar(long operacao) {
+            this.facade.enviarMensagem(this.dados.getSessao(0), this.comunidade, "Mensagem");
+            return null;
+        }
+    }
+
+    private static final class GetAmigos extends Sorteado {
+        private final boolean hub;
+
+        GetAmigos(boolean hub) {
+            this.hub = hub;
+        }
+
+        public String getNome() {
+            return this.hub ? "getAmigos.hub" : "getAmigos";
+        }
+
+        public Object executar(long operacao) {
+            String login = this.hub ? this.dados.getHub() : this.dados.getLogin(this.sortear(operacao));
+            return this.facade.getAmigos(login);
+        }
+    }
+
+    /**
+     * <p> Removes users created before each iteration, each with the average degree of the dataset. </p>
+     */
+    private static final class RemoverUsuario extends Sorteado {
+        private final List<String> sessoes = new ArrayList<>();
+        private int criados;
+        private int grau;
+
+        public String getNome() {
+            return "removerUsuario";
+        }
+
+        @Override
+        public void preparar(Ambiente ambiente) {
+            super.preparar(ambiente);
+            long arestas = 0;
+            for (int i = 0; i < this.dados.getTamanho(); i++) {
+                arestas += this.dados.getGrau(i);
+            }
+            this.grau = (int) Math.max(1, arestas / Math.max(1, this.dados.getTamanho()));
+        }
+
+        @Override
+        public int prepararIteracao() throws Exception {
+            this.sessoes.clear();
+            for (int i = 0; i < LOTE_REMOCAO; i++) {
+                String login = "removido" + this.criados++;
+                this.facade.criarUsuario(login, "p", login);
+                String sessao = this.facade.abrirSessao(login, "p");
+                for (int j = 0; j < this.grau; j++) {
+                    int amigo = this.sortear((long) this.criados * this.grau + j);
+                    try {
+                        this.facade.adicionarAmigo(sessao, this.dados.getLogin(amigo));
+                        this.facade.adicionarAmigo(this.dados.getSessao(amigo), login);
+                    } catch (Exception e) {
+                        // Friend drawn twice.
+                    }
+                }
+                this.facade.enviarRecado(sessao, this.dados.getLogin(this.sortear(this.criados)), "Tchau");
+                this.sessoes.add(sessao);
+            }
+            return LOTE_REMOCAO;
+        }
+
+        public Object executar(long operacao) {
+            this.facade.removerUsuario(this.sessoes.get((int) (operacao % LOTE_REMOCAO)));
+            return null;
+        }
+    }
+
+    /**
+     * <p> Closes the system after 1% of the users changed their profile, measuring the checkpoint. The system
+     * is reopened from disk before each iteration. </p>
+     */
+    private static final class EncerrarSistema extends Sorteado {
+        private long edicoes;
+
+        public String getNome() {
+            return "encerrarSistema";
+        }
+
+        @Override
+        public int prepararIteracao() {
+            this.facade = this.ambiente.getFacade();
+            int alterados = Math.max(1, this.dados.getTamanho() / 100);
+            for (int i = 0; i < alterados; i++) {
+                int usuario = this.sortear(this.edicoes++);
+                String sessao = this.facade.abrirSessao(this.dados.getLogin(usuario), "p");
+                this.facade.editarPerfil(sessao, "edicao", Long.toString(this.edicoes));
+            }
+            return 1;
+        }
+
+        public Object executar(long operacao) {
+            this.ambiente.fechar();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p> Users, friendships and communities created through the {@code Facade} before a benchmark runs. </p>
+ *
+ * <p> Users are named {@code u0} to {@code u(n-1)}, all with password {@code p} and an open session. Each user
+ * has about {@code grauMedio} friends, drawn according to the {@code Distribuicao}. Three communities are
+ * created, {@code pequena} with 10 members, {@code media} with 1% of the users and {@code grande} with every
+ * user, so the cost of a message can be compared across community sizes. </p>
+ *
+ * @see Distribuicao
+ */
+public class Dataset {
+    public static final String[] COMUNIDADES = { "pequena", "media", "grande" };
+
+    private final String[] logins;
+    private final String[] sessoes;
+    private final int[] graus;
+    private final String hub;
+
+    private Dataset(String[] logins, String[] sessoes, int[] graus, String hub) {
+        this.logins = logins;
+        this.sessoes = sessoes;
+        this.graus = graus;
+        this.hub = hub;
+    }
+
+    /**
+     * <p> Creates the users, friendships and communities of a dataset. </p>
+     *
+     * @param facade       Facade of an empty system.
+     * @param tamanho      Number of users.
+     * @param distribuicao Distribution of the number of friends.
+     * @param grauMedio    Average number of friends per user.
+     * @param semente      Seed of the random choices, so two runs build the same graph.
+     * @return The dataset.
+     */
+    public static Dataset gerar(Facade facade, int tamanho, Distribuicao distribuicao, int grauMedio, long semente) {
+        String[] logins = new String[tamanho];
+        String[] sessoes = new String[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            logins[i] = "u" + i;
+            facade.criarUsuario(logins[i], "p", "Usuario " + i);
+            sessoes[i] = facade.abrirSessao(logins[i], "p");
+        }
+
+        int[] graus = new int[tamanho];
+        SplittableRandom aleatorio = new SplittableRandom(semente);
+        for (int[] amizade : distribuicao.amizades(tamanho, grauMedio, aleatorio)) {
+            int a = amizade[0];
+            int b = amizade[1];
+            try {
+                facade.adicionarAmigo(sessoes[a], logins[b]);
+                facade.adicionarAmigo(sessoes[b], logins[a]);
+                graus[a]++;
+                graus[b]++;
+            } catch (Exception e) {
+                // Pair drawn twice: the friendship already exists.
+            }
+        }
+
+        int hub = 0;
+        for (int i = 1; i < tamanho; i++) {
+            if (graus[i] > graus[hub]) {
+                hub = i;
+            }
+        }
+
+        int[] membros = { Math.min(10, tamanho), Math.max(1, tamanho / 100), tamanho };
+        for (int c = 0; c < COMUNIDADES.length; c++) {
+            facade.criarComunidade(sessoes[0], COMUNIDADES[c], "Comunidade " + COMUNIDADES[c]);
+            for (int i = 1; i < membros[c]; i++) {
+                facade.adicionarComunidade(sessoes[i], COMUNIDADES[c]);
+            }
+        }
+
+        return new Dataset(logins, sessoes, graus, logins[hub]);
+    }
+
+    /**
+     * <p> Returns the number of users. </p>
+     *
+     * @return Number of users.
+     */
+    public int getTamanho() {
+        return this.logins.length;
+    }
+
+    /**
+     * <p> Returns the login of a user. </p>
+     *
+     * @param indice Index of the user, from 0 to {@code getTamanho() - 1}.
+     * @return Login of the user.
+     */
+    public String getLogin(int indice) {
+        return this.logins[indice];
+    }
+
+    /**
+     * <p> Returns the id of the session opened for a user. </p>
+     *
+     * @param indice Index of the user.
+     * @return Session id.
+     */
+    public String getSessao(int indice) {
+        return this.sessoes[indice];
+    }
+
+    /**
+     * <p> Returns the number of friends of a user when the dataset was created. </p>
+     *
+     * @param indice Index of the user.
+     * @return Number of friends.
+     */
+    public int getGrau(int indice) {
+        return this.graus[indice];
+    }
+
+    /**
+     * <p> Returns the login of the user with the most friends. </p>
+     *
+     * @return Login of the user with the highest degree.
+     */
+    public String getHub() {
+        return this.hub;
+    }
+}
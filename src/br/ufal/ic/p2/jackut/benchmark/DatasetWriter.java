@@ -0,0 +1,86 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+/**
+ * <p> Destination of the data created by the {@code SocialGraphGenerator}. </p>
+ *
+ * <p> Operations refer to users and communities by login and name, and are only called with valid data:
+ * existing users, distinct pairs and communities created before they are joined. </p>
+ *
+ * @see FacadeWriter
+ * @see SnapshotWriter
+ */
+public interface DatasetWriter {
+    /**
+     * <p> Creates a user with password {@code p}. </p>
+     *
+     * @param login Login of the user.
+     * @param nome  Name of the user.
+     */
+    void criarUsuario(String login, String nome);
+
+    /**
+     * <p> Sets an attribute of the profile of a user. </p>
+     *
+     * @param login    Login of the user.
+     * @param atributo Name of the attribute.
+     * @param valor    Value of the attribute.
+     */
+    void editarPerfil(String login, String atributo, String valor);
+
+    /**
+     * <p> Makes two users friends, if they are not friends yet. </p>
+     *
+     * @param login Login of a user.
+     * @param amigo Login of the other user.
+     */
+    void adicionarAmizade(String login, String amigo);
+
+    /**
+     * <p> Makes a user a fan of another, if they are not yet. </p>
+     *
+     * @param login Login of the fan.
+     * @param idolo Login of the idol.
+     */
+    void adicionarIdolo(String login, String idolo);
+
+    /**
+     * <p> Creates a community, whose first member is its owner. </p>
+     *
+     * @param dono      Login of the owner.
+     * @param nome      Name of the community.
+     * @param descricao Description of the community.
+     */
+    void criarComunidade(String dono, String nome, String descricao);
+
+    /**
+     * <p> Adds a user to a community, if they are not a member yet. </p>
+     *
+     * @param login      Login of the user.
+     * @param comunidade Name of the community.
+     */
+    void adicionarComunidade(String login, String comunidade);
+
+    /**
+     * <p> Leaves an unread recado for a user. </p>
+     *
+     * @param remetente    Login of the sender.
+     * @param destinatario Login of the recipient, distinct from the sender.
+     * @param recado       Text of the recado.
+     */
+    void enviarRecado(String remetente, String destinatario, String recado);
+
+    /**
+     * <p> Posts a message to a community, unread by every member. </p>
+     *
+     * @param comunidade Name of the community.
+     * @param mensagem   Text of the message.
+     */
+    void enviarMensagem(String comunidade, String mensagem);
+
+    /**
+     * <p> Writes everything to the database and releases the destination. </p>
+     *
+     * @throws Exception If the database cannot be written.
+     */
+    void concluir() throws Exception;
+}
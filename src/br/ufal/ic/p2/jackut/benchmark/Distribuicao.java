@@ -0,0 +1,77 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p> Distribution of the number of friends of the users of a {@code Dataset}. </p>
+ *
+ * @see Dataset
+ */
+public enum Distribuicao {
+    /**
+     * <p> Every friendship joins two users drawn uniformly, so every user has about the average degree. </p>
+     */
+    UNIFORME {
+        @Override
+        public List<int[]> amizades(int tamanho, int grauMedio, SplittableRandom aleatorio) {
+            List<int[]> amizades = new ArrayList<>();
+            if (tamanho < 2) {
+                return amizades;
+            }
+
+            long total = (long) tamanho * grauMedio / 2;
+            for (long i = 0; i < total; i++) {
+                int a = aleatorio.nextInt(tamanho);
+                int b = aleatorio.nextInt(tamanho - 1);
+                amizades.add(new int[] { a, b >= a ? b + 1 : b });
+            }
+            return amizades;
+        }
+    },
+
+    /**
+     * <p> Preferential attachment (Barabási–Albert): each new user befriends {@code grauMedio / 2} users drawn
+     * in proportion to their degree, so the degrees follow a power law with a few very popular users. </p>
+     */
+    POTENCIA {
+        @Override
+        public List<int[]> amizades(int tamanho, int grauMedio, SplittableRandom aleatorio) {
+            List<int[]> amizades = new ArrayList<>();
+            int m = Math.max(1, grauMedio / 2);
+            if (tamanho < 2) {
+                return amizades;
+            }
+
+            // Every edge puts both ends in the list, so a uniform draw from it is proportional to degree.
+            int[] extremos = new int[2 * m * tamanho + 2];
+            int quantidade = 0;
+            amizades.add(new int[] { 0, 1 });
+            extremos[quantidade++] = 0;
+            extremos[quantidade++] = 1;
+
+            for (int novo = 2; novo < tamanho; novo++) {
+                int ligacoes = Math.min(m, novo);
+                int anteriores = quantidade;
+                for (int j = 0; j < ligacoes; j++) {
+                    int alvo = extremos[aleatorio.nextInt(anteriores)];
+                    amizades.add(new int[] { novo, alvo });
+                    extremos[quantidade++] = novo;
+                    extremos[quantidade++] = alvo;
+                }
+            }
+            return amizades;
+        }
+    };
+
+    /**
+     * <p> Draws the friendships of a graph. A pair may be drawn more than once. </p>
+     *
+     * @param tamanho   Number of users.
+     * @param grauMedio Average number of friends per user.
+     * @param aleatorio Source of random numbers.
+     * @return Pairs of user indexes.
+     */
+    public abstract List<int[]> amizades(int tamanho, int grauMedio, SplittableRandom aleatorio);
+}
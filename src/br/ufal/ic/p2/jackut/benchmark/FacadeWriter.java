@@ -0,0 +1,95 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p> Writes a generated dataset through the {@code Facade}, as real users would, logging every operation. </p>
+ *
+ * <p> Slower than the {@code SnapshotWriter}, but goes through every check and lock of the system. </p>
+ */
+public class FacadeWriter implements DatasetWriter {
+    private final Facade facade;
+    private final Map<String, String> sessoes = new HashMap<>();
+
+    /**
+     * <p> Constructs a new {@code FacadeWriter} over an erased database. </p>
+     *
+     * @param pasta        Data directory of the system.
+     * @param durabilidade Durability of the operation log while writing.
+     */
+    public FacadeWriter(File pasta, DurabilityMode durabilidade) {
+        this.facade = new Facade(pasta, durabilidade, 10);
+        this.facade.zerarSistema();
+    }
+
+    private String sessao(String login) {
+        return this.sessoes.computeIfAbsent(login, chave -> this.facade.abrirSessao(chave, "p"));
+    }
+
+    @Override
+    public void criarUsuario(String login, String nome) {
+        this.facade.criarUsuario(login, "p", nome);
+    }
+
+    @Override
+    public void editarPerfil(String login, String atributo, String valor) {
+        this.facade.editarPerfil(this.sessao(login), atributo, valor);
+    }
+
+    @Override
+    public void adicionarAmizade(String login, String amigo) {
+        try {
+            this.facade.adicionarAmigo(this.sessao(login), amigo);
+            this.facade.adicionarAmigo(this.sessao(amigo), login);
+        } catch (Exception e) {
+            // Already friends.
+        }
+    }
+
+    @Override
+    public void adicionarIdolo(String login, String idolo) {
+        try {
+            this.facade.adicionarIdolo(this.sessao(login), idolo);
+        } catch (Exception e) {
+            // Already a fan.
+        }
+    }
+
+    @Override
+    public void criarComunidade(String dono, String nome, String descricao) {
+        this.facade.criarComunidade(this.sessao(dono), nome, descricao);
+    }
+
+    @Override
+    public void adicionarComunidade(String login, String comunidade) {
+        try {
+            this.facade.adicionarComunidade(this.sessao(login), comunidade);
+        } catch (RuntimeException e) {
+            // Already a member.
+        }
+    }
+
+    @Override
+    public void enviarRecado(String remetente, String destinatario, String recado) {
+        try {
+            this.facade.enviarRecado(this.sessao(remetente), destinatario, recado);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void enviarMensagem(String comunidade, String mensagem) {
+        this.facade.enviarMensagem(this.sessao(this.facade.getDonoComunidade(comunidade)), comunidade, mensagem);
+    }
+
+    @Override
+    public void concluir() {
+        this.facade.encerrarSistema();
+    }
+}
@@ -0,0 +1,102 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+/**
+ * <p> Histogram of latencies in nanoseconds, with a relative error below 1/64 (about 1.6%). </p>
+ *
+ * <p> Values are grouped by their power of two and, inside it, in 64 linear buckets, as in HdrHistogram, so
+ * recording a value is a few shifts and an increment and the histogram takes a fixed 32 KiB whatever the
+ * number of values. Each thread of the {@code LoadDriver} records into its own histogram, merged at the end;
+ * the class is not thread-safe. </p>
+ *
+ * @see LoadDriver
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] contagens = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+    private long maximo;
+
+    /**
+     * <p> Records a latency. </p>
+     *
+     * @param nanos Latency in nanoseconds; negative values count as zero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        this.contagens[indice(valor)]++;
+        this.total++;
+        this.maximo = Math.max(this.maximo, valor);
+    }
+
+    /**
+     * <p> Adds the values of another histogram to this one. </p>
+     *
+     * @param outro Histogram to be merged.
+     */
+    public void somar(LatencyHistogram outro) {
+        for (int i = 0; i < this.contagens.length; i++) {
+            this.contagens[i] += outro.contagens[i];
+        }
+        this.total += outro.total;
+        this.maximo = Math.max(this.maximo, outro.maximo);
+    }
+
+    /**
+     * <p> Returns the number of values recorded. </p>
+     *
+     * @return Number of values.
+     */
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * <p> Returns the greatest value recorded. </p>
+     *
+     * @return Greatest latency, in nanoseconds.
+     */
+    public long getMaximo() {
+        return this.maximo;
+    }
+
+    /**
+     * <p> Returns the value below which the given fraction of the values fall. </p>
+     *
+     * @param quantil Fraction, such as 0.5, 0.99 or 0.999.
+     * @return Upper bound of the bucket of the quantile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long percentil(double quantil) {
+        if (this.total == 0) {
+            return 0;
+        }
+
+        long alvo = Math.max(1, (long) Math.ceil(quantil * this.total));
+        long acumulado = 0;
+        for (int i = 0; i < this.contagens.length; i++) {
+            acumulado += this.contagens[i];
+            if (acumulado >= alvo) {
+                return Math.min(this.maximo, limiteSuperior(i));
+            }
+        }
+        return this.maximo;
+    }
+
+    private static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor) - SUB_BITS + 1;
+        return expoente * SUB_BUCKETS + (int) ((valor >>> (expoente - 1)) & (SUB_BUCKETS - 1));
+    }
+
+    private static long limiteSuperior(int indice) {
+        int expoente = indice / SUB_BUCKETS;
+        long sub = indice % SUB_BUCKETS;
+        if (expoente == 0) {
+            return sub;
+        }
+        return ((SUB_BUCKETS | sub) << (expoente - 1)) + (1L << (expoente - 1)) - 1;
+    }
+}
@@ -0,0 +1,268 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Facade;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p> Multi-threaded closed-loop load driver for a database created by the {@code SocialGraphGenerator}. </p>
+ *
+ * <p> Each thread draws operations from a weighted mix and runs them one after the other against a single
+ * {@code Facade}. With a target rate, each thread schedules its operations at fixed intervals and the latency
+ * is measured from the scheduled time, so a stall also counts against the operations that had to wait
+ * behind it; without a rate, threads run as fast as they can. At the end, the throughput and the p50, p99 and
+ * p99.9 latencies of every operation are printed. </p>
+ *
+ * <p> Arguments are given as {@code nome=valor}: {@code usuarios} and {@code comunidades}, as given to the
+ * generator (default 10000 and {@code usuarios / 100}), {@code threads} (8), {@code taxa} (total operations per
+ * second, 0 for no limit), {@code duracao} and {@code aquecimento} (seconds, 30 and 5), {@code durabilidade}
+ * ({@code DurabilityMode}, default {@code GROUP_COMMIT}), {@code pasta} (data directory written by the
+ * generator, {@code ./database}), {@code semente} (42) and {@code mix}, a list of
+ * {@code operacao=peso} separated by commas, such as the default
+ * {@code ehAmigo=30,getAmigos=20,getAtributoUsuario=15,enviarRecado=10,lerRecado=10,enviarMensagem=5,lerMensagem=5,adicionarAmigo=3,abrirSessao=2}. </p>
+ *
+ * @see SocialGraphGenerator
+ * @see LatencyHistogram
+ */
+public class LoadDriver {
+    private static final String MIX_PADRAO = "ehAmigo=30,getAmigos=20,getAtributoUsuario=15,enviarRecado=10,"
+            + "lerRecado=10,enviarMensagem=5,lerMensagem=5,adicionarAmigo=3,abrirSessao=2";
+
+    private final Facade facade;
+    private final int usuarios;
+    private final int comunidades;
+    private final Map<String, String> sessoes = new ConcurrentHashMap<>();
+
+    /**
+     * <p> Operations of the mix, named as the methods of the {@code Facade}. </p>
+     */
+    public enum Operacao {
+        abrirSessao {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                return driver.facade.abrirSessao(driver.login(aleatorio), "p");
+            }
+        },
+        ehAmigo {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                return driver.facade.ehAmigo(driver.login(aleatorio), driver.login(aleatorio));
+            }
+        },
+        getAmigos {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                return driver.facade.getAmigos(driver.login(aleatorio));
+            }
+        },
+        getAtributoUsuario {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                return driver.facade.getAtributoUsuario(driver.login(aleatorio), "cidade");
+            }
+        },
+        adicionarAmigo {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) throws Exception {
+                driver.facade.adicionarAmigo(driver.sessao(driver.login(aleatorio)), driver.login(aleatorio));
+                return null;
+            }
+        },
+        enviarRecado {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) throws Exception {
+                driver.facade.enviarRecado(driver.sessao(driver.login(aleatorio)), driver.login(aleatorio), "Oi!");
+                return null;
+            }
+        },
+        lerRecado {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                return driver.facade.lerRecado(driver.sessao(driver.login(aleatorio)));
+            }
+        },
+        enviarMensagem {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) {
+                String comunidade = "comunidade" + aleatorio.nextInt(driver.comunidades);
+                driver.facade.enviarMensagem(driver.sessao(driver.login(aleatorio)), comunidade, "Mensagem");
+                return null;
+            }
+        },
+        lerMensagem {
+            Object executar(LoadDriver driver, SplittableRandom aleatorio) throws Exception {
+                return driver.facade.lerMensagem(driver.sessao(driver.login(aleatorio)));
+            }
+        };
+
+        abstract Object executar(LoadDriver driver, SplittableRandom aleatorio) throws Exception;
+    }
+
+    /**
+     * <p> Constructs a new {@code LoadDriver} over a system already holding the generated data. </p>
+     *
+     * @param facade      Facade of the system.
+     * @param usuarios    Number of users, named {@code u0} to {@code u(n-1)}.
+     * @param comunidades Number of communities, named {@code comunidade0} to {@code comunidade(k-1)}.
+     */
+    public LoadDriver(Facade facade, int usuarios, int comunidades) {
+        this.facade = facade;
+        this.usuarios = usuarios;
+        this.comunidades = Math.max(1, comunidades);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = BenchmarkRunner.lerOpcoes(args);
+        int usuarios = Integer.parseInt(opcoes.getOrDefault("usuarios", "10000"));
+        int comunidades = Integer.parseInt(opcoes.getOrDefault("comunidades",
+                Integer.toString(Math.max(1, usuarios / 100))));
+        int threads = Integer.parseInt(opcoes.getOrDefault("threads", "8"));
+        double taxa = Double.parseDouble(opcoes.getOrDefault("taxa", "0"));
+        long duracao = Long.parseLong(opcoes.getOrDefault("duracao", "30")) * 1_000_000_000L;
+        long aquecimento = Long.parseLong(opcoes.getOrDefault("aquecimento", "5")) * 1_000_000_000L;
+        long semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        DurabilityMode durabilidade = DurabilityMode.valueOf(opcoes.getOrDefault("durabilidade", "GROUP_COMMIT"));
+
+        List<Operacao> operacoes = new ArrayList<>();
+        List<Integer> pesos = new ArrayList<>();
+        for (String item : opcoes.getOrDefault("mix", MIX_PADRAO).split(",")) {
+            String[] partes = item.trim().split("=");
+            operacoes.add(Operacao.valueOf(partes[0]));
+            pesos.add(Integer.parseInt(partes[1]));
+        }
+
+        long inicioCarga = java.lang.System.nanoTime();
+        Facade facade = new Facade(new File(opcoes.getOrDefault("pasta", "./database")), durabilidade, 10);
+        java.lang.System.out.printf("Sistema carregado em %.1f s%n", (java.lang.System.nanoTime() - inicioCarga) / 1e9);
+
+        LoadDriver driver = new LoadDriver(facade, usuarios, comunidades);
+        LatencyHistogram[] latencias = new LatencyHistogram[operacoes.size()];
+        long[] erros = new long[operacoes.size()];
+        driver.executar(operacoes, pesos, threads, taxa, aquecimento, duracao, semente, latencias, erros);
+        facade.encerrarSistema();
+
+        java.lang.System.out.printf("%-20s %12s %10s %8s %10s %10s %10s %10s%n",
+                "operacao", "total", "ops/s", "erros", "p50 us", "p99 us", "p99.9 us", "max us");
+        LatencyHistogram total = new LatencyHistogram();
+        for (int i = 0; i < operacoes.size(); i++) {
+            imprimir(operacoes.get(i).name(), latencias[i], erros[i], duracao);
+            total.somar(latencias[i]);
+        }
+        long errosTotais = 0;
+        for (long erro : erros) {
+            errosTotais += erro;
+        }
+        imprimir("total", total, errosTotais, duracao);
+    }
+
+    /**
+     * <p> Runs the load and fills one histogram and error count per operation of the mix. </p>
+     *
+     * @param operacoes   Operations of the mix.
+     * @param pesos       Weight of each operation.
+     * @param threads     Number of threads.
+     * @param taxa        Total operations per second, or 0 for no limit.
+     * @param aquecimento Warmup time, not measured, in nanoseconds.
+     * @param duracao     Measured time, in nanoseconds.
+     * @param semente     Seed of the random choices.
+     * @param latencias   Receives the latencies of each operation.
+     * @param erros       Receives the number of operations that threw an exception.
+     * @throws InterruptedException If interrupted while waiting for the threads.
+     */
+    public void executar(List<Operacao> operacoes, List<Integer> pesos, int threads, double taxa, long aquecimento,
+                         long duracao, long semente, LatencyHistogram[] latencias, long[] erros)
+            throws InterruptedException {
+        int[] acumulados = new int[pesos.size()];
+        int soma = 0;
+        for (int i = 0; i < pesos.size(); i++) {
+            soma += pesos.get(i);
+            acumulados[i] = soma;
+        }
+        int pesoTotal = soma;
+
+        long intervalo = taxa > 0 ? (long) (threads * 1e9 / taxa) : 0;
+        long inicio = java.lang.System.nanoTime();
+        long inicioMedicao = inicio + aquecimento;
+        long fim = inicioMedicao + duracao;
+
+        LatencyHistogram[][] porThread = new LatencyHistogram[threads][operacoes.size()];
+        long[][] errosPorThread = new long[threads][operacoes.size()];
+        Thread[] trabalhadores = new Thread[threads];
+        SplittableRandom raiz = new SplittableRandom(semente);
+        for (int t = 0; t < threads; t++) {
+            LatencyHistogram[] histogramas = porThread[t];
+            long[] errosThread = errosPorThread[t];
+            for (int i = 0; i < histogramas.length; i++) {
+                histogramas[i] = new LatencyHistogram();
+            }
+            SplittableRandom aleatorio = raiz.split();
+            long defasagem = intervalo * t / threads;
+
+            trabalhadores[t] = new Thread(() -> {
+                long agendado = inicio + defasagem;
+                while (true) {
+                    long agora = java.lang.System.nanoTime();
+                    if (intervalo > 0) {
+                        if (agendado > agora) {
+                            LockSupport.parkNanos(agendado - agora);
+                        }
+                    } else {
+                        agendado = agora;
+                    }
+                    if (agendado >= fim) {
+                        break;
+                    }
+
+                    int sorteio = aleatorio.nextInt(pesoTotal);
+                    int operacao = 0;
+                    while (acumulados[operacao] <= sorteio) {
+                        operacao++;
+                    }
+
+                    boolean falhou = false;
+                    try {
+                        operacoes.get(operacao).executar(this, aleatorio);
+                    } catch (Exception e) {
+                        falhou = true;
+                    }
+
+                    long termino = java.lang.System.nanoTime();
+                    if (agendado >= inicioMedicao) {
+                        histogramas[operacao].registrar(termino - agendado);
+                        if (falhou) {
+                            errosThread[operacao]++;
+                        }
+                    }
+                    agendado += intervalo;
+                }
+            }, "carga-" + t);
+            trabalhadores[t].start();
+        }
+
+        for (Thread trabalhador : trabalhadores) {
+            trabalhador.join();
+        }
+
+        for (int i = 0; i < operacoes.size(); i++) {
+            latencias[i] = new LatencyHistogram();
+            for (int t = 0; t < threads; t++) {
+                latencias[i].somar(porThread[t][i]);
+                erros[i] += errosPorThread[t][i];
+            }
+        }
+    }
+
+    private String login(SplittableRandom aleatorio) {
+        return "u" + aleatorio.nextInt(this.usuarios);
+    }
+
+    private String sessao(String login) {
+        return this.sessoes.computeIfAbsent(login, chave -> this.facade.abrirSessao(chave, "p"));
+    }
+
+    private static void imprimir(String nome, LatencyHistogram latencias, long erros, long duracao) {
+        java.lang.System.out.printf("%-20s %12d %10.0f %8d %10.1f %10.1f %10.1f %10.1f%n", nome,
+                latencias.getTotal(), latencias.getTotal() / (duracao / 1e9), erros,
+                latencias.percentil(0.5) / 1e3, latencias.percentil(0.99) / 1e3,
+                latencias.percentil(0.999) / 1e3, latencias.getMaximo() / 1e3);
+    }
+}
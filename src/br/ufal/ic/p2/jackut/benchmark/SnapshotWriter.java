@@ -0,0 +1,111 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.BinarySnapshot;
+import br.ufal.ic.p2.jackut.Community;
+import br.ufal.ic.p2.jackut.DurabilityMode;
+import br.ufal.ic.p2.jackut.Errand;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.GraphStore;
+import br.ufal.ic.p2.jackut.Messages;
+import br.ufal.ic.p2.jackut.User;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p> Writes a generated dataset straight into the binary snapshot, without the {@code Facade}. </p>
+ *
+ * <p> Users and communities are built in memory with the same objects the system uses and saved with
+ * {@code BinarySnapshot} once complete, so millions of users are written in seconds, with no operation log.
+ * The database is erased first; once the snapshot exists, the system always starts from it. </p>
+ *
+ * @see BinarySnapshot
+ */
+public class SnapshotWriter implements DatasetWriter {
+    private final GraphStore grafo = new GraphStore();
+    private final Map<String, User> usuarios = new LinkedHashMap<>();
+    private final Map<String, Community> comunidades = new LinkedHashMap<>();
+    private final File pasta;
+
+    /**
+     * <p> Constructs a new {@code SnapshotWriter}, erasing the database. </p>
+     *
+     * @param pasta Data directory of the system.
+     */
+    public SnapshotWriter(File pasta) {
+        this.pasta = pasta;
+        Facade facade = new Facade(pasta, DurabilityMode.OS_BUFFERED, 10);
+        facade.zerarSistema();
+        facade.encerrarSistema();
+    }
+
+    @Override
+    public void criarUsuario(String login, String nome) {
+        User usuario = new User(login, "p", nome);
+        this.grafo.registrar(usuario);
+        this.usuarios.put(login, usuario);
+    }
+
+    @Override
+    public void editarPerfil(String login, String atributo, String valor) {
+        this.usuarios.get(login).getProfile().setAtributo(atributo, valor);
+    }
+
+    @Override
+    public void adicionarAmizade(String login, String amigo) {
+        User usuario = this.usuarios.get(login);
+        User outro = this.usuarios.get(amigo);
+        if (!usuario.getFriends().contains(outro)) {
+            usuario.enviarSolicitacao(outro);
+            outro.aceitarSolicitacao(usuario);
+        }
+    }
+
+    @Override
+    public void adicionarIdolo(String login, String idolo) {
+        User fa = this.usuarios.get(login);
+        User outro = this.usuarios.get(idolo);
+        if (!fa.getIdols().contains(outro)) {
+            fa.setIdolo(outro);
+            outro.setFa(fa);
+        }
+    }
+
+    @Override
+    public void criarComunidade(String dono, String nome, String descricao) {
+        User usuario = this.usuarios.get(dono);
+        Community comunidade = new Community(usuario, nome, descricao);
+        this.comunidades.put(nome, comunidade);
+        usuario.setCriadorComunidade(comunidade);
+        usuario.setParticipanteComunidade(comunidade);
+    }
+
+    @Override
+    public void adicionarComunidade(String login, String comunidade) {
+        User usuario = this.usuarios.get(login);
+        Community destino = this.comunidades.get(comunidade);
+        if (!usuario.getComunidadesParticipantes().contains(destino)) {
+            destino.adicionarMembro(usuario);
+            usuario.setParticipanteComunidade(destino);
+        }
+    }
+
+    @Override
+    public void enviarRecado(String remetente, String destinatario, String recado) {
+        User de = this.usuarios.get(remetente);
+        User para = this.usuarios.get(destinatario);
+        para.receberRecado(new Errand(de, para, recado));
+        de.adicionarDestinatarioRecado(para);
+    }
+
+    @Override
+    public void enviarMensagem(String comunidade, String mensagem) {
+        this.comunidades.get(comunidade).enviarMensagem(new Messages(mensagem));
+    }
+
+    @Override
+    public void concluir() throws Exception {
+        BinarySnapshot.salvar(new File(this.pasta, "snapshot.bin"), this.usuarios, this.comunidades);
+    }
+}
@@ -0,0 +1,188 @@
+package br.ufal.ic.p2.jackut.benchmark;
+
+import br.ufal.ic.p2.jackut.DurabilityMode;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * <p> Generates a realistic social graph for capacity planning. </p>
+ *
+ * <ul>
+ *     <li> users {@code u0} to {@code u(n-1)}, with password {@code p} and a few profile attributes; </li>
+ *     <li> friendships by preferential attachment, so the number of friends follows a power law; </li>
+ *     <li> idols drawn from a Zipf distribution over the users, so a few celebrities have most fans; </li>
+ *     <li> communities {@code comunidade0} to {@code comunidade(k-1)} whose sizes follow a Zipf distribution,
+ *     {@code comunidade0} being the largest; </li>
+ *     <li> a backlog of unread recados from friends and of unread community messages. </li>
+ * </ul>
+ *
+ * <p> The data is written through the {@code Facade} or straight into the binary snapshot, and always with the
+ * same seed gives the same graph. Arguments are given as {@code nome=valor}: {@code usuarios} (default
+ * 10000), {@code grau} (average number of friends, 20), {@code idolos} (idols per user, 5),
+ * {@code comunidades} (number of communities, {@code usuarios / 100}), {@code participacoes} (communities
+ * per user, 3), {@code zipf} (exponent of both Zipf distributions, 1.0), {@code recados} (unread recados
+ * per user, 2), {@code mensagens} (unread messages per community, 5), {@code destino} ({@code facade} or
+ * {@code snapshot}, default {@code snapshot}), {@code pasta} (data directory, {@code ./database}) and
+ * {@code semente} (42). </p>
+ *
+ * <p> The database in {@code pasta} is erased first. </p>
+ *
+ * @see DatasetWriter
+ * @see LoadDriver
+ */
+public class SocialGraphGenerator {
+    private static final String[] CIDADES = { "Maceió", "Recife", "Salvador", "São Paulo", "Fortaleza", "Natal" };
+    private static final String[] INTERESSES = { "música", "futebol", "cinema", "programação", "leitura", "viagens" };
+
+    private final int usuarios;
+    private final int grau;
+    private final int idolos;
+    private final int comunidades;
+    private final int participacoes;
+    private final double zipf;
+    private final int recados;
+    private final int mensagens;
+    private final long semente;
+
+    /**
+     * <p> Constructs a new {@code SocialGraphGenerator} from the options given as {@code nome=valor}. </p>
+     *
+     * @param opcoes Options of the generator; missing options take their defaults.
+     */
+    public SocialGraphGenerator(Map<String, String> opcoes) {
+        this.usuarios = Integer.parseInt(opcoes.getOrDefault("usuarios", "10000"));
+        this.grau = Integer.parseInt(opcoes.getOrDefault("grau", "20"));
+        this.idolos = Integer.parseInt(opcoes.getOrDefault("idolos", "5"));
+        this.comunidades = Integer.parseInt(opcoes.getOrDefault("comunidades",
+                Integer.toString(Math.max(1, this.usuarios / 100))));
+        this.participacoes = Integer.parseInt(opcoes.getOrDefault("participacoes", "3"));
+        this.zipf = Double.parseDouble(opcoes.getOrDefault("zipf", "1.0"));
+        this.recados = Integer.parseInt(opcoes.getOrDefault("recados", "2"));
+        this.mensagens = Integer.parseInt(opcoes.getOrDefault("mensagens", "5"));
+        this.semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = BenchmarkRunner.lerOpcoes(args);
+        SocialGraphGenerator gerador = new SocialGraphGenerator(opcoes);
+        File pasta = new File(opcoes.getOrDefault("pasta", "./database"));
+
+        DatasetWriter destino = opcoes.getOrDefault("destino", "snapshot").equals("facade")
+                ? new FacadeWriter(pasta, DurabilityMode.OS_BUFFERED)
+                : new SnapshotWriter(pasta);
+
+        long inicio = java.lang.System.nanoTime();
+        gerador.gerar(destino);
+        destino.concluir();
+
+        java.lang.System.out.printf("%d usuários e %d comunidades gerados em %.1f s%n", gerador.usuarios,
+                gerador.comunidades, (java.lang.System.nanoTime() - inicio) / 1e9);
+        java.lang.System.out.printf("Carga: java br.ufal.ic.p2.jackut.benchmark.LoadDriver usuarios=%d comunidades=%d pasta=%s%n",
+                gerador.usuarios, gerador.comunidades, pasta.getPath());
+    }
+
+    /**
+     * <p> Generates the whole graph into a destination, without concluding it. </p>
+     *
+     * @param destino Destination of the data.
+     */
+    public void gerar(DatasetWriter destino) {
+        SplittableRandom aleatorio = new SplittableRandom(this.semente);
+
+        for (int i = 0; i < this.usuarios; i++) {
+            String login = "u" + i;
+            destino.criarUsuario(login, "Usuario " + i);
+            destino.editarPerfil(login, "cidade", CIDADES[aleatorio.nextInt(CIDADES.length)]);
+            destino.editarPerfil(login, "idade", Integer.toString(16 + aleatorio.nextInt(60)));
+            destino.editarPerfil(login, "interesse", INTERESSES[aleatorio.nextInt(INTERESSES.length)]);
+        }
+
+        int[][] amigos = new int[this.usuarios][];
+        int[] graus = new int[this.usuarios];
+        for (int[] amizade : Distribuicao.POTENCIA.amizades(this.usuarios, this.grau, aleatorio)) {
+            destino.adicionarAmizade("u" + amizade[0], "u" + amizade[1]);
+            anotar(amigos, graus, amizade[0], amizade[1]);
+            anotar(amigos, graus, amizade[1], amizade[0]);
+        }
+
+        // Popularity rank is a random permutation, so celebrities are not always the oldest users.
+        int[] ranking = permutacao(this.usuarios, aleatorio);
+        double[] popularidade = zipf(this.usuarios, this.zipf);
+        for (int i = 0; i < this.usuarios && this.usuarios > 1; i++) {
+            for (int j = 0; j < this.idolos; j++) {
+                int idolo = ranking[sortear(popularidade, aleatorio)];
+                if (idolo != i) {
+                    destino.adicionarIdolo("u" + i, "u" + idolo);
+                }
+            }
+        }
+
+        double[] tamanhos = zipf(this.comunidades, this.zipf);
+        int[] donos = new int[this.comunidades];
+        for (int c = 0; c < this.comunidades; c++) {
+            donos[c] = aleatorio.nextInt(this.usuarios);
+            destino.criarComunidade("u" + donos[c], "comunidade" + c, "Comunidade número " + c);
+        }
+        for (int i = 0; i < this.usuarios; i++) {
+            for (int j = 0; j < this.participacoes; j++) {
+                destino.adicionarComunidade("u" + i, "comunidade" + sortear(tamanhos, aleatorio));
+            }
+        }
+
+        for (int i = 0; i < this.usuarios; i++) {
+            for (int j = 0; j < this.recados && graus[i] > 0; j++) {
+                int amigo = amigos[i][aleatorio.nextInt(graus[i])];
+                destino.enviarRecado("u" + amigo, "u" + i, "Recado " + j + " de u" + amigo);
+            }
+        }
+        for (int c = 0; c < this.comunidades; c++) {
+            for (int j = 0; j < this.mensagens; j++) {
+                destino.enviarMensagem("comunidade" + c, "Mensagem " + j + " da comunidade" + c);
+            }
+        }
+    }
+
+    private static void anotar(int[][] amigos, int[] graus, int usuario, int amigo) {
+        if (amigos[usuario] == null) {
+            amigos[usuario] = new int[4];
+        } else if (graus[usuario] == amigos[usuario].length) {
+            amigos[usuario] = Arrays.copyOf(amigos[usuario], graus[usuario] * 2);
+        }
+        amigos[usuario][graus[usuario]++] = amigo;
+    }
+
+    private static int[] permutacao(int tamanho, SplittableRandom aleatorio) {
+        int[] permutacao = new int[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            int j = aleatorio.nextInt(i + 1);
+            permutacao[i] = permutacao[j];
+            permutacao[j] = i;
+        }
+        return permutacao;
+    }
+
+    /**
+     * <p> Returns the cumulative distribution of a Zipf law over {@code n} ranks: rank {@code r} has weight
+     * {@code 1 / (r + 1)^s}. </p>
+     */
+    private static double[] zipf(int n, double s) {
+        double[] acumulada = new double[n];
+        double total = 0;
+        for (int r = 0; r < n; r++) {
+            total += 1 / Math.pow(r + 1, s);
+            acumulada[r] = total;
+        }
+        for (int r = 0; r < n; r++) {
+            acumulada[r] /= total;
+        }
+        return acumulada;
+    }
+
+    private static int sortear(double[] acumulada, SplittableRandom aleatorio) {
+        int posicao = Arrays.binarySearch(acumulada, aleatorio.nextDouble());
+        return Math.min(acumulada.length - 1, posicao >= 0 ? posicao : -posicao - 1);
+    }
+}
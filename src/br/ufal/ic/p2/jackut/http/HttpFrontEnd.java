@@ -0,0 +1,409 @@
+package br.ufal.ic.p2.jackut.http;
+
+import br.ufal.ic.p2.jackut.BatchCommand;
+import br.ufal.ic.p2.jackut.BatchResult;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Page;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p> HTTP/1.1 front end of a {@code Facade}, built on the server of the JDK, with one virtual thread per
+ * request. </p>
+ *
+ * <p> Each method of the {@code Facade} is an endpoint named after it, such as <b>POST /enviarRecado</b> or
+ * <b>GET /getAmigos?login=jdoe</b>. The arguments are given as query or form parameters named as in the
+ * method; lists repeat the parameter, as in {@code atributos=nome&atributos=cidade}. The session id is given
+ * in the header <b>X-Jackut-Sessao</b>. The operations that change the system only accept <b>POST</b>;
+ * <b>encerrarSistema</b> is done by {@code parar}, not through HTTP. </p>
+ *
+ * <p> Responses are plain UTF-8 text: the string returned by the method, <b>true</b> or <b>false</b>, one
+ * item per line for lists, or no content (204) for the methods that return nothing. Pages carry the token of
+ * the next page in the header <b>X-Jackut-Proxima</b>. An exception of the system answers 422, with its
+ * message as the body and its simple class name in the header <b>X-Jackut-Erro</b>; a missing or malformed
+ * parameter answers 400. </p>
+ *
+ * <p> <b>executarLote</b> takes one command per line of a {@code text/plain} body, with the operation and
+ * its arguments separated by tabs, and answers one line per command: <b>+</b> followed by the value, or
+ * <b>-</b> followed by the error. </p>
+ *
+ * <p> Connections are kept alive between requests. An idle connection holds no thread, only its socket in
+ * the selector of the server, so tens of thousands of clients polling {@code lerRecado} cost no more than
+ * their requests. Unless given on the command line, the limits of the JDK server are raised so those
+ * connections stay open: <b>sun.net.httpserver.maxIdleConnections</b> (200 by default in the JDK) and
+ * <b>sun.net.httpserver.idleInterval</b> (30 seconds). </p>
+ *
+ * <p> Usage: {@code java br.ufal.ic.p2.jackut.http.HttpFrontEnd}, listening on <b>jackut.http.endereco</b>
+ * (default 127.0.0.1) and <b>jackut.http.porta</b> (default 8080), over the data directory given by
+ * <b>jackut.pasta</b>. </p>
+ *
+ * @see Facade
+ */
+public class HttpFrontEnd {
+    public static final String CABECALHO_SESSAO = "X-Jackut-Sessao";
+    public static final String CABECALHO_PROXIMA = "X-Jackut-Proxima";
+    public static final String CABECALHO_ERRO = "X-Jackut-Erro";
+
+    private static final int LIMITE_CORPO = 1 << 20;
+
+    static {
+        if (java.lang.System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            java.lang.System.setProperty("sun.net.httpserver.maxIdleConnections",
+                    Integer.toString(Integer.MAX_VALUE));
+        }
+        if (java.lang.System.getProperty("sun.net.httpserver.idleInterval") == null) {
+            java.lang.System.setProperty("sun.net.httpserver.idleInterval", "600");
+        }
+    }
+
+    private static final Map<String, Endpoint> ENDPOINTS = mapear();
+
+    private final Facade facade;
+    private final HttpServer servidor;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * <p> Operation of the {@code Facade} run by an endpoint. </p>
+     */
+    @FunctionalInterface
+    private interface Acao {
+        Object executar(Facade facade, Requisicao requisicao) throws Exception;
+    }
+
+    /**
+     * <p> Endpoint of an operation, and whether the operation changes the system. </p>
+     */
+    private record Endpoint(boolean escrita, Acao acao) {
+    }
+
+    /**
+     * <p> Constructs a new {@code HttpFrontEnd} bound to the given address, not started yet. </p>
+     *
+     * @param facade   Facade whose operations are served.
+     * @param endereco Address and port to listen on; port 0 picks a free one.
+     *
+     * @throws IOException Exception thrown if the address cannot be bound.
+     */
+    public HttpFrontEnd(Facade facade, InetSocketAddress endereco) throws IOException {
+        this.facade = facade;
+        this.servidor = HttpServer.create(endereco, 4096);
+        this.servidor.createContext("/", this::atender);
+        this.servidor.setExecutor(this.executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        InetSocketAddress endereco = new InetSocketAddress(
+                java.lang.System.getProperty("jackut.http.endereco", "127.0.0.1"),
+                Integer.getInteger("jackut.http.porta", 8080));
+
+        Facade facade = new Facade();
+        HttpFrontEnd frontEnd = new HttpFrontEnd(facade, endereco);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            frontEnd.parar(1);
+            facade.encerrarSistema();
+        }));
+
+        frontEnd.iniciar();
+        java.lang.System.out.println("Jackut em http://" + endereco.getHostString() + ":"
+                + frontEnd.getEndereco().getPort());
+    }
+
+    /**
+     * <p> Starts accepting requests. </p>
+     */
+    public void iniciar() {
+        this.servidor.start();
+    }
+
+    /**
+     * <p> Stops accepting requests and waits for the running ones to finish. The {@code Facade} is left open. </p>
+     *
+     * @param segundos Maximum time, in seconds, to wait for the running requests.
+     */
+    public void parar(int segundos) {
+        this.servidor.stop(segundos);
+        this.executor.shutdown();
+    }
+
+    /**
+     * <p> Returns the address the server listens on, with the port picked if 0 was given. </p>
+     *
+     * @return Address of the server.
+     */
+    public InetSocketAddress getEndereco() {
+        return this.servidor.getAddress();
+    }
+
+    private void atender(HttpExchange troca) throws IOException {
+        try (troca) {
+            String caminho = troca.getRequestURI().getPath();
+            Endpoint endpoint = ENDPOINTS.get(caminho.startsWith("/") ? caminho.substring(1) : caminho);
+            if (endpoint == null) {
+                responder(troca, 404, "Operação desconhecida: " + caminho);
+                return;
+            }
+
+            String metodo = troca.getRequestMethod();
+            if (!metodo.equals("POST") && (endpoint.escrita() || !metodo.equals("GET"))) {
+                troca.getResponseHeaders().set("Allow", endpoint.escrita() ? "POST" : "GET, POST");
+                responder(troca, 405, "Método não permitido: " + metodo);
+                return;
+            }
+
+            Object resultado;
+            try {
+                resultado = endpoint.acao().executar(this.facade, new Requisicao(troca));
+            } catch (IllegalArgumentException e) {
+                responder(troca, 400, e.getMessage());
+                return;
+            } catch (Exception e) {
+                if (e instanceof IOException || !e.getClass().getPackageName().startsWith("br.ufal.ic.p2.jackut")) {
+                    e.printStackTrace();
+                    responder(troca, 500, String.valueOf(e.getMessage()));
+                    return;
+                }
+                troca.getResponseHeaders().set(CABECALHO_ERRO, e.getClass().getSimpleName());
+                responder(troca, 422, e.getMessage());
+                return;
+            }
+
+            escrever(troca, resultado);
+        }
+    }
+
+    private static void escrever(HttpExchange troca, Object resultado) throws IOException {
+        if (resultado == null) {
+            troca.sendResponseHeaders(204, -1);
+            return;
+        }
+
+        if (resultado instanceof Page<?> pagina) {
+            if (pagina.temProxima()) {
+                troca.getResponseHeaders().set(CABECALHO_PROXIMA, pagina.token());
+            }
+            responder(troca, 200, pagina.formatar());
+        } else if (resultado instanceof List<?> itens) {
+            StringBuilder linhas = new StringBuilder();
+            for (Object item : itens) {
+                if (item instanceof BatchResult lote) {
+                    linhas.append(lote.isSucesso() ? "+" + (lote.valor() == null ? "" : lote.valor())
+                            : "-" + lote.erro());
+                } else {
+                    linhas.append(item);
+                }
+                linhas.append("\n");
+            }
+            responder(troca, 200, linhas.toString());
+        } else {
+            responder(troca, 200, resultado.toString());
+        }
+    }
+
+    private static void responder(HttpExchange troca, int status, String texto) throws IOException {
+        byte[] corpo = texto == null ? new byte[0] : texto.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        troca.sendResponseHeaders(status, corpo.length == 0 ? -1 : corpo.length);
+        if (corpo.length > 0) {
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        }
+    }
+
+    /**
+     * <p> Parameters, session and body of a request. </p>
+     */
+    private static class Requisicao {
+        private final HttpExchange troca;
+        private final Map<String, List<String>> parametros = new HashMap<>();
+        private final String corpo;
+
+        Requisicao(HttpExchange troca) throws IOException {
+            this.troca = troca;
+            this.decodificar(troca.getRequestURI().getRawQuery());
+
+            try (InputStream entrada = troca.getRequestBody()) {
+                byte[] bytes = entrada.readNBytes(LIMITE_CORPO + 1);
+                if (bytes.length > LIMITE_CORPO) {
+                    throw new IllegalArgumentException("Corpo maior que " + LIMITE_CORPO + " bytes.");
+                }
+                this.corpo = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String tipo = troca.getRequestHeaders().getFirst("Content-Type");
+            if (tipo != null && tipo.startsWith("application/x-www-form-urlencoded")) {
+                this.decodificar(this.corpo);
+            }
+        }
+
+        private void decodificar(String texto) {
+            if (texto == null || texto.isEmpty()) {
+                return;
+            }
+
+            for (String par : texto.split("&")) {
+                int igual = par.indexOf('=');
+                String nome = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+                String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+                this.parametros.computeIfAbsent(nome, chave -> new ArrayList<>()).add(valor);
+            }
+        }
+
+        String sessao() {
+            String sessao = this.troca.getRequestHeaders().getFirst(CABECALHO_SESSAO);
+            return sessao == null ? "" : sessao;
+        }
+
+        String texto(String nome) {
+            List<String> valores = this.parametros.get(nome);
+            if (valores == null) {
+                throw new IllegalArgumentException("Parâmetro ausente: " + nome + ".");
+            }
+            return valores.get(0);
+        }
+
+        String opcional(String nome) {
+            List<String> valores = this.parametros.get(nome);
+            return valores == null ? null : valores.get(0);
+        }
+
+        int inteiro(String nome, int padrao) {
+            String valor = this.opcional(nome);
+            return valor == null ? padrao : Integer.parseInt(valor);
+        }
+
+        List<String> lista(String nome) {
+            return this.parametros.getOrDefault(nome, List.of());
+        }
+
+        List<BatchCommand> comandos() {
+            List<BatchCommand> comandos = new ArrayList<>();
+            for (String linha : this.corpo.split("\n")) {
+                if (linha.isBlank()) {
+                    continue;
+                }
+                String[] campos = linha.stripTrailing().split("\t", -1);
+                comandos.add(new BatchCommand(campos[0], Arrays.copyOfRange(campos, 1, campos.length)));
+            }
+            return comandos;
+        }
+    }
+
+    /**
+     * <p> Returns the endpoints of every operation of the {@code Facade} served through HTTP. </p>
+     */
+    private static Map<String, Endpoint> mapear() {
+        Map<String, Endpoint> endpoints = new HashMap<>();
+
+        escrita(endpoints, "zerarSistema", (facade, r) -> {
+            facade.zerarSistema();
+            return null;
+        });
+        escrita(endpoints, "criarUsuario", (facade, r) -> {
+            facade.criarUsuario(r.texto("login"), r.texto("senha"), r.texto("nome"));
+            return null;
+        });
+        escrita(endpoints, "abrirSessao", (facade, r) -> facade.abrirSessao(r.texto("login"), r.texto("senha")));
+        escrita(endpoints, "encerrarSessao", (facade, r) -> {
+            facade.encerrarSessao(r.sessao());
+            return null;
+        });
+        leitura(endpoints, "getAtributoUsuario",
+                (facade, r) -> facade.getAtributoUsuario(r.texto("login"), r.texto("atributo")));
+        leitura(endpoints, "getAtributosUsuario",
+                (facade, r) -> facade.getAtributosUsuario(r.texto("login"), r.lista("atributos")));
+        escrita(endpoints, "editarPerfil", (facade, r) -> {
+            facade.editarPerfil(r.sessao(), r.texto("atributo"), r.texto("valor"));
+            return null;
+        });
+        escrita(endpoints, "adicionarAmigo", (facade, r) -> {
+            facade.adicionarAmigo(r.sessao(), r.texto("amigo"));
+            return null;
+        });
+        leitura(endpoints, "ehAmigo", (facade, r) -> facade.ehAmigo(r.texto("login"), r.texto("amigo")));
+        leitura(endpoints, "verificarRelacoes", (facade, r) ->
+                facade.verificarRelacoes(r.texto("login"), r.texto("relacao"), r.lista("outros")));
+        leitura(endpoints, "getAmigos", (facade, r) -> facade.getAmigos(r.texto("login")));
+        leitura(endpoints, "getAmigosPagina", (facade, r) -> r.opcional("token") != null
+                ? facade.getAmigosPagina(r.texto("login"), r.texto("token"), r.inteiro("limite", 100))
+                : facade.getAmigosPagina(r.texto("login"), r.inteiro("deslocamento", 0), r.inteiro("limite", 100)));
+        escrita(endpoints, "enviarRecado", (facade, r) -> {
+            facade.enviarRecado(r.sessao(), r.texto("destinatario"), r.texto("recado"));
+            return null;
+        });
+        escrita(endpoints, "lerRecado", (facade, r) -> facade.lerRecado(r.sessao()));
+        escrita(endpoints, "lerRecados", (facade, r) -> facade.lerRecados(r.sessao(), r.inteiro("quantidade", 100)));
+        escrita(endpoints, "criarComunidade", (facade, r) -> {
+            facade.criarComunidade(r.sessao(), r.texto("nome"), r.texto("descricao"));
+            return null;
+        });
+        leitura(endpoints, "getDescricaoComunidade", (facade, r) -> facade.getDescricaoComunidade(r.texto("nome")));
+        leitura(endpoints, "getDonoComunidade", (facade, r) -> facade.getDonoComunidade(r.texto("nome")));
+        leitura(endpoints, "getMembrosComunidade", (facade, r) -> facade.getMembrosComunidade(r.texto("nome")));
+        leitura(endpoints, "getMembrosComunidadePagina", (facade, r) -> r.opcional("token") != null
+                ? facade.getMembrosComunidadePagina(r.texto("nome"), r.texto("token"), r.inteiro("limite", 100))
+                : facade.getMembrosComunidadePagina(r.texto("nome"), r.inteiro("deslocamento", 0),
+                        r.inteiro("limite", 100)));
+        leitura(endpoints, "getComunidades", (facade, r) -> facade.getComunidades(r.texto("login")));
+        leitura(endpoints, "sugerirAmigos", (facade, r) -> facade.sugerirAmigos(r.texto("login"), r.inteiro("k", 10)));
+        escrita(endpoints, "adicionarComunidade", (facade, r) -> {
+            facade.adicionarComunidade(r.sessao(), r.texto("nome"));
+            return null;
+        });
+        escrita(endpoints, "lerMensagem", (facade, r) -> facade.lerMensagem(r.sessao()));
+        escrita(endpoints, "lerMensagens",
+                (facade, r) -> facade.lerMensagens(r.sessao(), r.inteiro("quantidade", 100)));
+        escrita(endpoints, "enviarMensagem", (facade, r) -> {
+            facade.enviarMensagem(r.sessao(), r.texto("comunidade"), r.texto("mensagem"));
+            return null;
+        });
+        leitura(endpoints, "ehFa", (facade, r) -> facade.ehFa(r.texto("login"), r.texto("idolo")));
+        escrita(endpoints, "adicionarIdolo", (facade, r) -> {
+            facade.adicionarIdolo(r.sessao(), r.texto("idolo"));
+            return null;
+        });
+        leitura(endpoints, "getFas", (facade, r) -> facade.getFas(r.texto("login")));
+        leitura(endpoints, "getFasPagina", (facade, r) -> r.opcional("token") != null
+                ? facade.getFasPagina(r.texto("login"), r.texto("token"), r.inteiro("limite", 100))
+                : facade.getFasPagina(r.texto("login"), r.inteiro("deslocamento", 0), r.inteiro("limite", 100)));
+        leitura(endpoints, "ehPaquera", (facade, r) -> facade.ehPaquera(r.sessao(), r.texto("paquera")));
+        escrita(endpoints, "adicionarPaquera", (facade, r) -> {
+            facade.adicionarPaquera(r.sessao(), r.texto("paquera"));
+            return null;
+        });
+        leitura(endpoints, "getPaqueras", (facade, r) -> facade.getPaqueras(r.sessao()));
+        escrita(endpoints, "adicionarInimigo", (facade, r) -> {
+            facade.adicionarInimigo(r.sessao(), r.texto("inimigo"));
+            return null;
+        });
+        escrita(endpoints, "removerUsuario", (facade, r) -> {
+            facade.removerUsuario(r.sessao());
+            return null;
+        });
+        escrita(endpoints, "executarLote", (facade, r) -> facade.executarLote(r.sessao(), r.comandos()));
+
+        return endpoints;
+    }
+
+    private static void leitura(Map<String, Endpoint> endpoints, String nome, Acao acao) {
+        endpoints.put(nome, new Endpoint(false, acao));
+    }
+
+    private static void escrita(Map<String, Endpoint> endpoints, String nome, Acao acao) {
+        endpoints.put(nome, new Endpoint(true, acao));
+    }
+}